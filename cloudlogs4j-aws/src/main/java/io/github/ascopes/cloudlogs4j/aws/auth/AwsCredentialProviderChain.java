@@ -15,24 +15,79 @@
  */
 package io.github.ascopes.cloudlogs4j.aws.auth;
 
+import static java.util.Objects.requireNonNull;
+
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import org.jspecify.annotations.Nullable;
 
 /**
  * Chain of credential providers. The first provider to return a non-null value internally will be
  * the one used to supply credentials.
  *
+ * <p>By default, the chain remembers the provider that last supplied credentials and asks it
+ * first on later calls, so providers earlier in the chain that found nothing are not asked
+ * again. If the remembered provider stops returning credentials, the whole chain is walked
+ * again. This can be turned off in the constructor, or reset with {@link #resetLastProvider()}.
+ *
+ * <p>If an executor is given, the whole chain is walked by starting every provider at once and
+ * taking the result of the first provider in the chain that returns credentials. Lookups for
+ * providers later in the chain are cancelled as soon as an earlier one succeeds. This stops a
+ * slow provider, such as the instance metadata service, from holding up the providers after it
+ * on a cold start.
+ *
+ * <p>The list of providers is copied on write, so the chain can be used from many threads at
+ * once.
+ *
  * @author Ashley Scopes
  * @since 0.0.1
  */
 public final class AwsCredentialProviderChain implements AwsCredentialsProvider {
 
-  private final List<AwsCredentialsProvider> providers;
+  private final boolean reuseLastProvider;
+  private final @Nullable Executor resolutionExecutor;
+  private volatile List<AwsCredentialsProvider> providers;
+  private volatile @Nullable AwsCredentialsProvider lastProvider;
 
+  /**
+   * Initialise this chain, reusing the last provider that supplied credentials.
+   */
   public AwsCredentialProviderChain() {
-    providers = new ArrayList<>();
+    this(true);
+  }
+
+  /**
+   * Initialise this chain.
+   *
+   * @param reuseLastProvider {@code true} to ask the provider that last supplied credentials
+   *                          first, or {@code false} to walk the whole chain on every call.
+   */
+  public AwsCredentialProviderChain(boolean reuseLastProvider) {
+    this(reuseLastProvider, null);
+  }
+
+  /**
+   * Initialise this chain.
+   *
+   * @param reuseLastProvider  {@code true} to ask the provider that last supplied credentials
+   *                           first, or {@code false} to walk the whole chain on every call.
+   * @param resolutionExecutor the executor to run every provider at once on when walking the
+   *                           whole chain, or {@code null} to ask providers one after another.
+   */
+  public AwsCredentialProviderChain(
+      boolean reuseLastProvider,
+      @Nullable Executor resolutionExecutor
+  ) {
+    this.reuseLastProvider = reuseLastProvider;
+    this.resolutionExecutor = resolutionExecutor;
+    providers = List.of();
+    lastProvider = null;
   }
 
   /**
@@ -40,20 +95,162 @@ public final class AwsCredentialProviderChain implements AwsCredentialsProvider
    *
    * @param provider the provider to add.
    */
-  public void addProvider(AwsCredentialsProvider provider) {
-    providers.add(provider);
+  public synchronized void addProvider(AwsCredentialsProvider provider) {
+    requireNonNull(provider, "provider");
+    var newProviders = new ArrayList<>(providers);
+    newProviders.add(provider);
+    providers = List.copyOf(newProviders);
+  }
+
+  /**
+   * Get the providers in this chain, in the order they are asked.
+   *
+   * @return an immutable snapshot of the providers.
+   */
+  public List<AwsCredentialsProvider> getProviders() {
+    return providers;
+  }
+
+  /**
+   * Determine whether the provider that last supplied credentials is asked first.
+   *
+   * @return {@code true} if the last provider is reused.
+   */
+  public boolean isReuseLastProvider() {
+    return reuseLastProvider;
+  }
+
+  /**
+   * Forget the provider that last supplied credentials, so that the next call walks the whole
+   * chain again.
+   */
+  public void resetLastProvider() {
+    lastProvider = null;
   }
 
   @Nullable
   @Override
   public AwsCredentials getCredentials() throws AwsException {
+    var last = lastProvider;
+    if (last != null) {
+      var credential = last.getCredentials();
+      if (credential != null) {
+        return credential;
+      }
+    }
+
+    var executor = resolutionExecutor;
+    var resolution = executor == null
+        ? resolveSequentially(last)
+        : resolveInParallel(executor, last);
+
+    if (resolution == null) {
+      lastProvider = null;
+      return null;
+    }
+
+    if (reuseLastProvider) {
+      lastProvider = resolution.provider();
+    }
+    return resolution.credentials();
+  }
+
+  private @Nullable Resolution resolveSequentially(
+      @Nullable AwsCredentialsProvider skip
+  ) throws AwsException {
     for (var provider : providers) {
+      if (provider == skip) {
+        // Already asked.
+        continue;
+      }
+
       var credential = provider.getCredentials();
       if (credential != null) {
-        return credential;
+        return new Resolution(provider, credential);
       }
     }
 
     return null;
   }
+
+  private @Nullable Resolution resolveInParallel(
+      Executor executor,
+      @Nullable AwsCredentialsProvider skip
+  ) throws AwsException {
+    var candidates = new ArrayList<AwsCredentialsProvider>();
+    var tasks = new ArrayList<FutureTask<@Nullable AwsCredentials>>();
+
+    for (var provider : providers) {
+      if (provider == skip) {
+        continue;
+      }
+
+      var task = new FutureTask<@Nullable AwsCredentials>(provider::getCredentials);
+      candidates.add(provider);
+      tasks.add(task);
+
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException ex) {
+        // Executor is saturated or shut down, so do the lookup here instead.
+        task.run();
+      }
+    }
+
+    // Wait on the providers in chain order, so an earlier provider always wins, even if a later
+    // one finishes first.
+    var index = 0;
+    try {
+      for (; index < tasks.size(); ++index) {
+        var credential = tasks.get(index).get();
+        if (credential != null) {
+          return new Resolution(candidates.get(index), credential);
+        }
+      }
+      return null;
+
+    } catch (ExecutionException ex) {
+      var cause = ex.getCause();
+      if (cause instanceof AwsException awsEx) {
+        throw awsEx;
+      } else if (cause instanceof RuntimeException runtimeEx) {
+        throw runtimeEx;
+      } else if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new AwsIoException("Failed to resolve credentials", cause);
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new AwsIoException("Interrupted while resolving credentials", ex);
+
+    } finally {
+      // Tasks that have already finished ignore this.
+      for (var i = index; i < tasks.size(); ++i) {
+        tasks.get(i).cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Create the default chain, which looks for credentials in the same places as the AWS SDKs.
+   *
+   * <p>The chain asks, in order, the JVM system properties, the environment variables, a web
+   * identity token from the environment, the shared credentials and config files, and finally
+   * the instance metadata service.
+   *
+   * @return the default chain.
+   */
+  public static AwsCredentialProviderChain defaults() {
+    var chain = new AwsCredentialProviderChain();
+    chain.addProvider(new JvmPropertiesCredentialsProvider());
+    chain.addProvider(new EnvironmentVariableCredentialsProvider());
+    chain.addProvider(new WebIdentityCredentialsProvider());
+    chain.addProvider(new ProfileCredentialsProvider());
+    chain.addProvider(new InstanceProfileCredentialsProvider());
+    return chain;
+  }
+
+  private record Resolution(AwsCredentialsProvider provider, AwsCredentials credentials) {
+  }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An AWS shared credentials or config file, such as {@code ~/.aws/credentials} or
+ * {@code ~/.aws/config}.
+ *
+ * <p>The file is not read until a profile is first requested. It is then parsed in a single
+ * pass and the result kept in memory. Later lookups only check the modification time and size
+ * of the file, and parse it again if either has changed.
+ *
+ * <p>A missing file is treated as having no profiles.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class AwsProfileFile {
+
+  private static final String PROFILE_PREFIX = "profile ";
+  private static final String DEFAULT_PROFILE = "default";
+
+  private final Path path;
+  private final boolean configFile;
+
+  // Guarded by this.
+  private @Nullable Parsed parsed;
+
+  /**
+   * Initialise this file.
+   *
+   * @param path       the path to the file.
+   * @param configFile {@code true} if this is a config file, where profiles other than the
+   *                   default one are named {@code [profile name]}, or {@code false} if this is
+   *                   a credentials file, where profiles are named {@code [name]}.
+   */
+  AwsProfileFile(Path path, boolean configFile) {
+    this.path = path;
+    this.configFile = configFile;
+    parsed = null;
+  }
+
+  /**
+   * Get the path to this file.
+   *
+   * @return the path.
+   */
+  Path getPath() {
+    return path;
+  }
+
+  /**
+   * Get the properties of a profile.
+   *
+   * @param profileName the name of the profile.
+   * @return the properties, keyed by lower case name, or an empty map if the profile does not
+   *     exist.
+   * @throws AwsIoException if the file cannot be read.
+   */
+  synchronized Map<String, String> getProfile(String profileName) throws AwsIoException {
+    return refresh().profiles().getOrDefault(profileName, Map.of());
+  }
+
+  private Parsed refresh() throws AwsIoException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException ex) {
+      var empty = new Parsed(null, -1, Map.of());
+      parsed = empty;
+      return empty;
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to read file '" + path + "'", ex);
+    }
+
+    var current = parsed;
+    if (current != null
+        && attributes.lastModifiedTime().equals(current.lastModified())
+        && attributes.size() == current.size()) {
+      return current;
+    }
+
+    try (var reader = Files.newBufferedReader(path)) {
+      current = new Parsed(attributes.lastModifiedTime(), attributes.size(), parse(reader));
+    } catch (NoSuchFileException ex) {
+      current = new Parsed(null, -1, Map.of());
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to read file '" + path + "'", ex);
+    }
+
+    parsed = current;
+    return current;
+  }
+
+  private Map<String, Map<String, String>> parse(BufferedReader reader) throws IOException {
+    var profiles = new HashMap<String, Map<String, String>>();
+    @Nullable Map<String, String> profile = null;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty() || Character.isWhitespace(line.charAt(0))) {
+        // Blank lines, and indented lines that continue a nested property, such as the
+        // settings under "s3 =", which credential providers never use.
+        continue;
+      }
+
+      var first = line.charAt(0);
+      if (first == '#' || first == ';') {
+        continue;
+      }
+
+      if (first == '[') {
+        var end = line.indexOf(']');
+        var sectionName = profileName(line.substring(1, end < 0 ? line.length() : end).strip());
+        profile = sectionName == null
+            ? null
+            : profiles.computeIfAbsent(sectionName, name -> new HashMap<>());
+        continue;
+      }
+
+      var equals = line.indexOf('=');
+      if (profile == null || equals < 0) {
+        continue;
+      }
+
+      var name = line.substring(0, equals).strip().toLowerCase(Locale.ROOT);
+      profile.put(name, stripInlineComment(line.substring(equals + 1)).strip());
+    }
+
+    return profiles;
+  }
+
+  private @Nullable String profileName(String sectionName) {
+    if (!configFile || sectionName.equals(DEFAULT_PROFILE)) {
+      return sectionName;
+    }
+
+    if (sectionName.startsWith(PROFILE_PREFIX)) {
+      return sectionName.substring(PROFILE_PREFIX.length()).strip();
+    }
+
+    // Another kind of section, such as "sso-session" or "services".
+    return null;
+  }
+
+  private static String stripInlineComment(String value) {
+    // Comments only start a value if they follow whitespace, so "abc#def" is kept as it is.
+    for (var i = 1; i < value.length(); ++i) {
+      var c = value.charAt(i);
+      if ((c == '#' || c == ';') && Character.isWhitespace(value.charAt(i - 1))) {
+        return value.substring(0, i);
+      }
+    }
+    return value;
+  }
+
+  private record Parsed(
+      @Nullable FileTime lastModified,
+      long size,
+      Map<String, Map<String, String>> profiles
+  ) {
+  }
+}
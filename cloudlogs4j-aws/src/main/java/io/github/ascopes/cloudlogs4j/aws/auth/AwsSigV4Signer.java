@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Signs requests with AWS Signature Version 4.
+ *
+ * <p>The signing key derived from the secret key, date, region and service is cached, so it is
+ * only derived again when the credentials or the day change. {@link Mac} and
+ * {@link MessageDigest} instances are borrowed from a pool holding no more than one pair per
+ * processor, so threads that come and go, such as virtual threads, do not each create their own.
+ * Payloads are hashed straight from their buffers, and the canonical request is built in a single
+ * {@link StringBuilder}.
+ *
+ * <p>This is safe to use from many threads at once.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class AwsSigV4Signer {
+
+  private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+  private static final String HMAC_SHA256 = "HmacSHA256";
+  private static final String TERMINATOR = "aws4_request";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final char[] UPPER_HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private static final BlockingQueue<Hashers> HASHERS =
+      new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+  private final String region;
+  private final String service;
+  private final Clock clock;
+  private volatile @Nullable SigningKey signingKey;
+
+  /**
+   * Initialise this signer.
+   *
+   * @param region  the region requests are sent to, such as {@code eu-west-2}.
+   * @param service the signing name of the service, such as {@code logs}.
+   */
+  public AwsSigV4Signer(String region, String service) {
+    this(region, service, Clock.systemUTC());
+  }
+
+  /**
+   * Initialise this signer.
+   *
+   * @param region  the region requests are sent to, such as {@code eu-west-2}.
+   * @param service the signing name of the service, such as {@code logs}.
+   * @param clock   the clock to take the signing time from.
+   */
+  public AwsSigV4Signer(String region, String service, Clock clock) {
+    this.region = requireNonNull(region, "region");
+    this.service = requireNonNull(service, "service");
+    this.clock = requireNonNull(clock, "clock");
+    signingKey = null;
+  }
+
+  /**
+   * Sign a request.
+   *
+   * <p>Every header given here is signed, along with {@code Host}, which is taken from the URI
+   * if it is not given.
+   *
+   * @param method      the request method.
+   * @param uri         the request URI.
+   * @param headers     the headers that will be sent with the request.
+   * @param payload     the request body. Its position and limit are not changed.
+   * @param credentials the credentials to sign with.
+   * @return the headers to add to the request: {@code X-Amz-Date}, {@code X-Amz-Security-Token}
+   *     if the credentials have a session token, and {@code Authorization}.
+   */
+  public Map<String, String> sign(
+      String method,
+      URI uri,
+      Map<String, String> headers,
+      ByteBuffer payload,
+      AwsCredentials credentials
+  ) {
+    var dateTime = LocalDateTime.ofEpochSecond(
+        Math.floorDiv(clock.millis(), 1_000L),
+        0,
+        ZoneOffset.UTC
+    );
+    var amzDate = formatAmzDate(dateTime);
+    var date = amzDate.substring(0, 8);
+    var sessionToken = credentials.getSessionToken();
+
+    var canonicalHeaders = new TreeMap<String, String>();
+    for (var header : headers.entrySet()) {
+      canonicalHeaders.put(
+          header.getKey().toLowerCase(Locale.ROOT),
+          normalizeHeaderValue(header.getValue())
+      );
+    }
+    canonicalHeaders.putIfAbsent("host", hostOf(uri));
+    canonicalHeaders.put("x-amz-date", amzDate);
+    if (sessionToken != null) {
+      canonicalHeaders.put("x-amz-security-token", sessionToken);
+    }
+
+    var key = getSigningKey(credentials.getSecretAccessKey(), date);
+    var hashers = Hashers.acquire();
+    var digest = hashers.digest;
+    var mac = hashers.mac;
+
+    digest.update(payload.duplicate());
+    var payloadHash = digest.digest();
+
+    var request = new StringBuilder(512)
+        .append(method).append('\n');
+    appendCanonicalPath(request, uri.getRawPath());
+    request.append('\n');
+    appendCanonicalQuery(request, uri.getRawQuery());
+    request.append('\n');
+
+    var signedHeaders = new StringBuilder(64);
+    for (var header : canonicalHeaders.entrySet()) {
+      request.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+      if (signedHeaders.length() > 0) {
+        signedHeaders.append(';');
+      }
+      signedHeaders.append(header.getKey());
+    }
+    request.append('\n').append(signedHeaders).append('\n');
+    appendHex(request, payloadHash);
+
+    var scope = new StringBuilder(64)
+        .append(date).append('/')
+        .append(region).append('/')
+        .append(service).append('/')
+        .append(TERMINATOR);
+
+    var stringToSign = new StringBuilder(128)
+        .append(ALGORITHM).append('\n')
+        .append(amzDate).append('\n')
+        .append(scope).append('\n');
+    appendHex(stringToSign, digest.digest(request.toString().getBytes(UTF_8)));
+
+    try {
+      mac.init(key);
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalStateException("Failed to initialise HmacSHA256", ex);
+    }
+    var signature = mac.doFinal(stringToSign.toString().getBytes(UTF_8));
+    hashers.release();
+
+    var authorization = new StringBuilder(256)
+        .append(ALGORITHM)
+        .append(" Credential=").append(credentials.getAccessKeyId()).append('/').append(scope)
+        .append(", SignedHeaders=").append(signedHeaders)
+        .append(", Signature=");
+    appendHex(authorization, signature);
+
+    var result = new LinkedHashMap<String, String>(4);
+    result.put("X-Amz-Date", amzDate);
+    if (sessionToken != null) {
+      result.put("X-Amz-Security-Token", sessionToken);
+    }
+    result.put("Authorization", authorization.toString());
+    return result;
+  }
+
+  private SecretKeySpec getSigningKey(String secretAccessKey, String date) {
+    var current = signingKey;
+    if (current != null
+        && current.date().equals(date)
+        && current.secretAccessKey().equals(secretAccessKey)) {
+      return current.key();
+    }
+
+    var key = new SecretKeySpec(
+        deriveSigningKey(secretAccessKey, date, region, service),
+        HMAC_SHA256
+    );
+    signingKey = new SigningKey(secretAccessKey, date, key);
+    return key;
+  }
+
+  /**
+   * Derive a signing key.
+   *
+   * @param secretAccessKey the secret access key.
+   * @param date            the date, as {@code yyyyMMdd}.
+   * @param region          the region.
+   * @param service         the service.
+   * @return the signing key.
+   */
+  static byte[] deriveSigningKey(
+      String secretAccessKey,
+      String date,
+      String region,
+      String service
+  ) {
+    var hashers = Hashers.acquire();
+    var key = ("AWS4" + secretAccessKey).getBytes(UTF_8);
+    key = hmac(hashers.mac, key, date);
+    key = hmac(hashers.mac, key, region);
+    key = hmac(hashers.mac, key, service);
+    key = hmac(hashers.mac, key, TERMINATOR);
+    hashers.release();
+    return key;
+  }
+
+  private static byte[] hmac(Mac mac, byte[] key, String data) {
+    try {
+      mac.init(new SecretKeySpec(key, HMAC_SHA256));
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalStateException("Failed to initialise HmacSHA256", ex);
+    }
+    return mac.doFinal(data.getBytes(UTF_8));
+  }
+
+  private static String formatAmzDate(LocalDateTime dateTime) {
+    var builder = new StringBuilder(16);
+    appendPadded(builder, dateTime.getYear(), 4);
+    appendPadded(builder, dateTime.getMonthValue(), 2);
+    appendPadded(builder, dateTime.getDayOfMonth(), 2);
+    builder.append('T');
+    appendPadded(builder, dateTime.getHour(), 2);
+    appendPadded(builder, dateTime.getMinute(), 2);
+    appendPadded(builder, dateTime.getSecond(), 2);
+    return builder.append('Z').toString();
+  }
+
+  private static void appendPadded(StringBuilder builder, int value, int width) {
+    var digits = Integer.toString(value);
+    for (var i = digits.length(); i < width; ++i) {
+      builder.append('0');
+    }
+    builder.append(digits);
+  }
+
+  private static String hostOf(URI uri) {
+    var port = uri.getPort();
+    if (port == -1
+        || port == 80 && "http".equalsIgnoreCase(uri.getScheme())
+        || port == 443 && "https".equalsIgnoreCase(uri.getScheme())) {
+      return uri.getHost();
+    }
+    return uri.getHost() + ':' + port;
+  }
+
+  private static String normalizeHeaderValue(String value) {
+    var trimmed = value.strip();
+    if (trimmed.indexOf("  ") < 0) {
+      return trimmed;
+    }
+    return trimmed.replaceAll(" {2,}", " ");
+  }
+
+  private static void appendCanonicalPath(StringBuilder builder, @Nullable String rawPath) {
+    if (rawPath == null || rawPath.isEmpty()) {
+      builder.append('/');
+      return;
+    }
+
+    // Every service other than S3 expects the already encoded path to be encoded again.
+    var segmentStart = 0;
+    for (var i = 0; i < rawPath.length(); ++i) {
+      if (rawPath.charAt(i) == '/') {
+        appendUriEncoded(builder, rawPath.substring(segmentStart, i));
+        builder.append('/');
+        segmentStart = i + 1;
+      }
+    }
+    appendUriEncoded(builder, rawPath.substring(segmentStart));
+  }
+
+  private static void appendCanonicalQuery(StringBuilder builder, @Nullable String rawQuery) {
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return;
+    }
+
+    var parameters = new ArrayList<String[]>();
+    for (var parameter : rawQuery.split("&")) {
+      if (parameter.isEmpty()) {
+        continue;
+      }
+      var equals = parameter.indexOf('=');
+      var name = equals < 0 ? parameter : parameter.substring(0, equals);
+      var value = equals < 0 ? "" : parameter.substring(equals + 1);
+      parameters.add(new String[]{uriEncode(decode(name)), uriEncode(decode(value))});
+    }
+
+    parameters.sort((a, b) -> {
+      var result = a[0].compareTo(b[0]);
+      return result == 0 ? a[1].compareTo(b[1]) : result;
+    });
+
+    for (var i = 0; i < parameters.size(); ++i) {
+      if (i > 0) {
+        builder.append('&');
+      }
+      builder.append(parameters.get(i)[0]).append('=').append(parameters.get(i)[1]);
+    }
+  }
+
+  private static String decode(String value) {
+    // A literal plus in a query string is a space in form encoding, but not in SigV4.
+    return URLDecoder.decode(value.replace("+", "%2B"), UTF_8);
+  }
+
+  private static String uriEncode(String value) {
+    var builder = new StringBuilder(value.length() + 8);
+    appendUriEncoded(builder, value);
+    return builder.toString();
+  }
+
+  private static void appendUriEncoded(StringBuilder builder, String value) {
+    for (var b : value.getBytes(UTF_8)) {
+      var c = (char) (b & 0xFF);
+      if (c >= 'A' && c <= 'Z'
+          || c >= 'a' && c <= 'z'
+          || c >= '0' && c <= '9'
+          || c == '-' || c == '_' || c == '.' || c == '~') {
+        builder.append(c);
+      } else {
+        builder.append('%')
+            .append(UPPER_HEX_DIGITS[(b >> 4) & 0xF])
+            .append(UPPER_HEX_DIGITS[b & 0xF]);
+      }
+    }
+  }
+
+  private static void appendHex(StringBuilder builder, byte[] bytes) {
+    for (var b : bytes) {
+      builder.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+  }
+
+  private record SigningKey(String secretAccessKey, String date, SecretKeySpec key) {
+  }
+
+  // Hashers are only released once they have been used successfully, so a failure part-way
+  // through hashing never puts a half-used one back in the pool.
+  private static final class Hashers {
+
+    private final Mac mac;
+    private final MessageDigest digest;
+
+    private Hashers() {
+      try {
+        mac = Mac.getInstance(HMAC_SHA256);
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (GeneralSecurityException ex) {
+        throw new IllegalStateException("HmacSHA256 or SHA-256 is not available", ex);
+      }
+    }
+
+    private static Hashers acquire() {
+      var hashers = HASHERS.poll();
+      return hashers == null ? new Hashers() : hashers;
+    }
+
+    private void release() {
+      // If the pool is full, the hashers are left for the garbage collector.
+      HASHERS.offer(this);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import io.avaje.jsonb.Json;
+import java.time.OffsetDateTime;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * JSON model for the output of a {@code credential_process} command.
+ *
+ * @param version            the output format version, which must be {@code 1}.
+ * @param accessKey          the access key.
+ * @param secretKey          the secret key.
+ * @param sessionToken       the session token, if the credentials are temporary.
+ * @param expirationDateTime the time the credentials expire at, if they are temporary.
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+@Json
+public record CredentialProcessOutput(
+    @Json.Property("Version")
+    int version,
+
+    @Json.Property("AccessKeyId")
+    String accessKey,
+
+    @Json.Property("SecretAccessKey")
+    String secretKey,
+
+    @Json.Property("SessionToken")
+    @Nullable
+    String sessionToken,
+
+    @Json.Property("Expiration")
+    @Nullable
+    OffsetDateTime expirationDateTime
+) {
+}
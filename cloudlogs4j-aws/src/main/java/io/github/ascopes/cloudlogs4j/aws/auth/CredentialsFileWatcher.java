@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Watches a credentials file and runs a callback on a daemon thread whenever it changes.
+ *
+ * <p>Changes to the directory holding the file are picked up through a {@link WatchService}.
+ * The file is also checked at a fixed interval, for file systems where the watch service is
+ * unavailable or misses changes. Either way, the callback only runs if the modification time,
+ * size or identity of the file has changed. Checking the identity picks up the symbolic link
+ * swaps that Kubernetes uses to update mounted secrets, which can leave the other two
+ * unchanged.
+ *
+ * <p>The state of the file is recorded when the watcher is created, so the file should be read
+ * for the first time after that, and before the watcher is started. A change made while it is
+ * being read is then still reported.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class CredentialsFileWatcher implements AutoCloseable {
+
+  private final Path path;
+  private final long pollIntervalMillis;
+  private final BooleanSupplier keepWatching;
+  private final Runnable onChange;
+  private final @Nullable WatchService watchService;
+  private final Thread thread;
+  private volatile boolean closed;
+  private @Nullable FileState lastState;
+
+  private CredentialsFileWatcher(
+      Path path,
+      Duration pollInterval,
+      BooleanSupplier keepWatching,
+      Runnable onChange
+  ) {
+    this.path = path.toAbsolutePath();
+    pollIntervalMillis = pollInterval.toMillis();
+    this.keepWatching = keepWatching;
+    this.onChange = onChange;
+    // Record the state before the caller first reads the file, so a change during the read is
+    // not taken as the starting point.
+    lastState = FileState.of(this.path);
+    watchService = tryRegisterWatchService(this.path);
+    thread = new Thread(this::run, "cloudlogs4j-credentials-watch");
+    thread.setDaemon(true);
+    closed = false;
+  }
+
+  /**
+   * Create a watcher for a file, recording its current state. Call {@link #start()} to begin
+   * watching it.
+   *
+   * @param path         the file to watch.
+   * @param pollInterval how often to check the file when no change has been reported.
+   * @param keepWatching checked on every poll, returning {@code false} to stop watching, even if
+   *                     the file never changes again.
+   * @param onChange     the callback to run when the file changes.
+   * @return the watcher, which can be closed to stop watching.
+   */
+  static CredentialsFileWatcher create(
+      Path path,
+      Duration pollInterval,
+      BooleanSupplier keepWatching,
+      Runnable onChange
+  ) {
+    if (pollInterval.isNegative() || pollInterval.isZero()) {
+      throw new IllegalArgumentException(
+          "Poll interval must be positive (got " + pollInterval + ")"
+      );
+    }
+
+    return new CredentialsFileWatcher(path, pollInterval, keepWatching, onChange);
+  }
+
+  /**
+   * Start watching the file. Any change since this watcher was created is reported straight
+   * away.
+   */
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Determine whether the file is still being watched.
+   *
+   * @return {@code true} if the watching thread is still running.
+   */
+  boolean isWatching() {
+    return thread.isAlive();
+  }
+
+  /**
+   * Determine whether changes are reported by a watch service, rather than only found by
+   * polling.
+   *
+   * @return {@code true} if a watch service is in use.
+   */
+  boolean isUsingWatchService() {
+    return watchService != null;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    thread.interrupt();
+  }
+
+  private void run() {
+    try {
+      while (!closed && keepWatching.getAsBoolean()) {
+        var state = FileState.of(path);
+        if (!Objects.equals(state, lastState)) {
+          lastState = state;
+          onChange.run();
+          continue;
+        }
+
+        if (watchService == null) {
+          Thread.sleep(pollIntervalMillis);
+        } else {
+          var key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+          if (key != null) {
+            // The events only wake us up, the file state decides whether anything changed.
+            key.pollEvents();
+            key.reset();
+          }
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ex) {
+      // Closed.
+    } finally {
+      closeWatchService();
+    }
+  }
+
+  private void closeWatchService() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException ex) {
+        // Nothing else we can do here.
+      }
+    }
+  }
+
+  private static @Nullable WatchService tryRegisterWatchService(Path path) {
+    var directory = path.getParent();
+    if (directory == null) {
+      return null;
+    }
+
+    WatchService watchService = null;
+    try {
+      watchService = directory.getFileSystem().newWatchService();
+      directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      return watchService;
+    } catch (IOException | UnsupportedOperationException ex) {
+      // Fall back to polling.
+      if (watchService != null) {
+        try {
+          watchService.close();
+        } catch (IOException closeEx) {
+          ex.addSuppressed(closeEx);
+        }
+      }
+      return null;
+    }
+  }
+
+  private record FileState(FileTime lastModified, long size, @Nullable Object fileKey) {
+
+    private static @Nullable FileState of(Path path) {
+      try {
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileState(
+            attributes.lastModifiedTime(),
+            attributes.size(),
+            attributes.fileKey()
+        );
+      } catch (IOException ex) {
+        // Missing or unreadable, which is also a state we can change from.
+        return null;
+      }
+    }
+  }
+}
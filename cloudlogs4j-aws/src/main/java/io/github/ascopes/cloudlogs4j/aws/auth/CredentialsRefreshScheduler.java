@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import io.github.ascopes.cloudlogs4j.core.intern.TaskExecutors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared daemon scheduler that refreshes credentials in the background.
+ *
+ * <p>A single timer thread is shared between every provider, as refreshes are rare. The thread
+ * is only started the first time a refresh is scheduled. Refreshes usually block on I/O, so the
+ * timer hands them to {@link TaskExecutors} to run rather than running them itself.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class CredentialsRefreshScheduler {
+
+  private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+  private CredentialsRefreshScheduler() {
+    throw new UnsupportedOperationException("static-only class");
+  }
+
+  /**
+   * Schedule a task.
+   *
+   * @param task        the task to run.
+   * @param delayMillis the delay before running the task, in milliseconds.
+   * @return the scheduled task, which can be cancelled.
+   */
+  static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+    return EXECUTOR.schedule(
+        () -> TaskExecutors.getExecutor().execute(task),
+        delayMillis,
+        TimeUnit.MILLISECONDS
+    );
+  }
+
+  private static ScheduledThreadPoolExecutor createExecutor() {
+    var executor = new ScheduledThreadPoolExecutor(1, task -> {
+      var thread = new Thread(task, "cloudlogs4j-credentials-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+}
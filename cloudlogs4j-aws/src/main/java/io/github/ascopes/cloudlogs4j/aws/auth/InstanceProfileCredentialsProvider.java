@@ -22,6 +22,7 @@ import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
 import org.jspecify.annotations.Nullable;
 
+import java.net.ConnectException;
 import java.net.http.HttpTimeoutException;
 import java.time.Clock;
 import java.time.Duration;
@@ -32,7 +33,8 @@ import static java.util.Objects.requireNonNullElse;
  * Credential provider that queries the AWS EC2 Instance Metadata service to fetch credentials
  * associated with the EC2 instance profile.
  *
- * <p>This will attempt to re-fetch credentials once they expire.
+ * <p>Credentials are refreshed in the background ahead of the time they would be reset, so that
+ * callers do not have to wait on the instance metadata service.
  *
  * @author Ashley Scopes
  * @since 0.0.1
@@ -45,6 +47,7 @@ public final class InstanceProfileCredentialsProvider extends LazyLoadedCredenti
       = "AWS_EC2_METADATA_SERVICE_ENDPOINT";
   private static final String AWS_DEFAULT_EC2_METADATA_ENDPOINT = "http://169.254.169.254";
   private static final Duration RESET_CREDENTIALS_OFFSET = Duration.ofMinutes(15);
+  private static final Duration DEFAULT_REFRESH_AHEAD = Duration.ofMinutes(5);
 
   private final String instanceMetadataServiceEndpoint;
 
@@ -63,7 +66,25 @@ public final class InstanceProfileCredentialsProvider extends LazyLoadedCredenti
    *                                        credentials.
    */
   public InstanceProfileCredentialsProvider(String instanceMetadataServiceEndpoint, Clock clock) {
-    super(clock);
+    this(instanceMetadataServiceEndpoint, clock, DEFAULT_REFRESH_AHEAD);
+  }
+
+  /**
+   * Initialise this provider.
+   *
+   * @param instanceMetadataServiceEndpoint the instance metadata service host to use.
+   * @param clock                           the clock to use to determine when we reset
+   *                                        credentials.
+   * @param refreshAhead                    how long before the reset time to refresh
+   *                                        credentials in the background, or {@code null} to
+   *                                        only fetch credentials when they are requested.
+   */
+  public InstanceProfileCredentialsProvider(
+      String instanceMetadataServiceEndpoint,
+      Clock clock,
+      @Nullable Duration refreshAhead
+  ) {
+    super(clock, refreshAhead);
     this.instanceMetadataServiceEndpoint = instanceMetadataServiceEndpoint;
   }
 
@@ -71,7 +92,7 @@ public final class InstanceProfileCredentialsProvider extends LazyLoadedCredenti
   @Nullable
   protected AwsCredentials fetchCredentials() throws AwsException {
     try {
-      var client = Ec2InstanceMetadataClient.createClient(instanceMetadataServiceEndpoint);
+      var client = Ec2InstanceMetadataClient.forEndpoint(instanceMetadataServiceEndpoint);
 
       var credentialsList = client.getSecurityCredentials().body().split("\n");
       if (credentialsList.length == 0) {
@@ -96,8 +117,9 @@ public final class InstanceProfileCredentialsProvider extends LazyLoadedCredenti
       }
 
     } catch (HttpException ex) {
-      if (ex.getCause() instanceof HttpTimeoutException) {
-        // Instance metadata service did not response, so skip it.
+      if (ex.getCause() instanceof HttpTimeoutException
+          || ex.getCause() instanceof ConnectException) {
+        // Instance metadata service is not reachable, so skip it.
         return null;
       } else if (ex.getCause() != null) {
         throw new AwsIoException("Failed to call the instance metadata service", ex);
@@ -16,7 +16,11 @@
 package io.github.ascopes.cloudlogs4j.aws.auth;
 
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import java.lang.ref.WeakReference;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.jspecify.annotations.Nullable;
@@ -24,17 +28,36 @@ import org.jspecify.annotations.Nullable;
 /**
  * Base for a credentials provider that caches their fetched value after the first call.
  *
+ * <p>The cached credentials and the time they expire at are held together in an immutable
+ * snapshot, so reading valid credentials is a single volatile read with no locking. Only
+ * fetching takes a lock, and the snapshot is checked again once the lock is held, so that
+ * threads that find the credentials expired at the same time only fetch them once.
+ *
+ * <p>Providers can also refresh credentials ahead of time. If a refresh-ahead duration is given,
+ * credentials that are due to be reset are fetched again on a shared daemon thread up to that
+ * long before the reset time. The exact time is jittered, so that many processes started at
+ * once do not all refresh at once. Callers keep getting the old credentials while the refresh
+ * is in progress, so they only ever block if the credentials reach their reset time before a
+ * background refresh succeeds.
+ *
  * @author Ashley Scopes
  * @since 0.0.1
  */
 public abstract class LazyLoadedCredentialsProvider implements AwsCredentialsProvider {
 
+  private static final long NEVER = Long.MAX_VALUE;
+  private static final long RETRY_DELAY_MILLIS = 10_000;
+
   private final Clock clock;
-  private final Lock lock;
-  private volatile boolean set;
-  private volatile @Nullable AwsCredentials credentials;
-  private volatile boolean shouldCheckForReset;
-  private volatile long resetAt;
+  private final long refreshAheadMillis;
+  private final Lock fetchLock;
+  private volatile @Nullable Snapshot snapshot;
+
+  // Guarded by fetchLock.
+  private boolean fetching;
+  private long pendingResetAt;
+  private boolean pendingRefreshAhead;
+  private @Nullable ScheduledFuture<?> scheduledRefresh;
 
   protected LazyLoadedCredentialsProvider() {
     this(Clock.systemUTC());
@@ -46,12 +69,31 @@ public abstract class LazyLoadedCredentialsProvider implements AwsCredentialsPro
    * @param clock the clock to use.
    */
   protected LazyLoadedCredentialsProvider(Clock clock) {
+    this(clock, null);
+  }
+
+  /**
+   * Initialise this credential provider.
+   *
+   * @param clock        the clock to use.
+   * @param refreshAhead how long before the reset time to refresh credentials in the background,
+   *                     or {@code null} to only fetch credentials when they are requested.
+   */
+  protected LazyLoadedCredentialsProvider(Clock clock, @Nullable Duration refreshAhead) {
+    if (refreshAhead != null && (refreshAhead.isNegative() || refreshAhead.isZero())) {
+      throw new IllegalArgumentException(
+          "Refresh ahead duration must be positive (got " + refreshAhead + ")"
+      );
+    }
+
     this.clock = clock;
-    lock = new ReentrantLock(true);
-    set = false;
-    credentials = null;
-    shouldCheckForReset = false;
-    resetAt = 0L;
+    refreshAheadMillis = refreshAhead == null ? 0 : refreshAhead.toMillis();
+    fetchLock = new ReentrantLock();
+    snapshot = null;
+    fetching = false;
+    pendingResetAt = NEVER;
+    pendingRefreshAhead = true;
+    scheduledRefresh = null;
   }
 
   /**
@@ -63,23 +105,13 @@ public abstract class LazyLoadedCredentialsProvider implements AwsCredentialsPro
   @Nullable
   @Override
   public AwsCredentials getCredentials() throws AwsException {
-    lock.lock();
-
-    try {
-      if (shouldCheckForReset && clock.millis() >= resetAt) {
-        // Credentials have expired. Force reset.
-        set = false;
-      }
+    var current = snapshot;
 
-      if (!set) {
-        credentials = fetchCredentials();
-        set = true;
-      }
-
-      return credentials;
-    } finally {
-      lock.unlock();
+    if (current != null && !current.isExpired(clock)) {
+      return current.credentials();
     }
+
+    return fetchAndCache();
   }
 
   /**
@@ -88,8 +120,63 @@ public abstract class LazyLoadedCredentialsProvider implements AwsCredentialsPro
    * @param epochMillis the epoch to reset credentials after.
    */
   protected final void resetCredentialsAfter(long epochMillis) {
-    resetAt = epochMillis;
-    shouldCheckForReset = true;
+    resetCredentialsAfter(epochMillis, true);
+  }
+
+  /**
+   * Request that credentials are reset after the given epoch in milliseconds.
+   *
+   * <p>Providers that re-check a cheap source on a short interval can pass {@code false} to
+   * fetch again only when the credentials are next requested, even if this provider refreshes
+   * credentials ahead of time.
+   *
+   * @param epochMillis  the epoch to reset credentials after.
+   * @param refreshAhead {@code true} to refresh the credentials in the background ahead of the
+   *                     reset time, if this provider does so, or {@code false} to not.
+   */
+  protected final void resetCredentialsAfter(long epochMillis, boolean refreshAhead) {
+    fetchLock.lock();
+
+    try {
+      if (fetching) {
+        // Applied to the snapshot once the fetch completes.
+        pendingResetAt = epochMillis;
+        pendingRefreshAhead = refreshAhead;
+      } else {
+        var current = snapshot;
+        if (current != null) {
+          snapshot = new Snapshot(current.credentials(), epochMillis);
+          scheduleRefreshAhead(epochMillis, refreshAhead);
+        }
+      }
+    } finally {
+      fetchLock.unlock();
+    }
+  }
+
+  /**
+   * Replace the cached credentials, so that callers see the new credentials straight away.
+   *
+   * <p>This is for providers that learn about new credentials in the background. The new
+   * credentials are kept until they are replaced again, or until
+   * {@link #resetCredentialsAfter(long)} is called. This must not be called from
+   * {@link #fetchCredentials()}.
+   *
+   * @param credentials the new credentials, or {@code null} if there are no longer any.
+   */
+  protected final void replaceCredentials(@Nullable AwsCredentials credentials) {
+    fetchLock.lock();
+
+    try {
+      var previous = scheduledRefresh;
+      if (previous != null) {
+        previous.cancel(false);
+        scheduledRefresh = null;
+      }
+      snapshot = new Snapshot(credentials, NEVER);
+    } finally {
+      fetchLock.unlock();
+    }
   }
 
   /**
@@ -103,4 +190,105 @@ public abstract class LazyLoadedCredentialsProvider implements AwsCredentialsPro
    */
   @Nullable
   protected abstract AwsCredentials fetchCredentials() throws AwsException;
+
+  private @Nullable AwsCredentials fetchAndCache() throws AwsException {
+    fetchLock.lock();
+
+    try {
+      // Another thread may have fetched the credentials while we were waiting.
+      var current = snapshot;
+      if (current != null && !current.isExpired(clock)) {
+        return current.credentials();
+      }
+
+      fetching = true;
+      pendingResetAt = NEVER;
+      pendingRefreshAhead = true;
+
+      var credentials = fetchCredentials();
+      snapshot = new Snapshot(credentials, pendingResetAt);
+      scheduleRefreshAhead(pendingResetAt, pendingRefreshAhead);
+      return credentials;
+
+    } finally {
+      fetching = false;
+      fetchLock.unlock();
+    }
+  }
+
+  private void refreshInBackground() {
+    fetchLock.lock();
+
+    try {
+      var current = snapshot;
+      fetching = true;
+      pendingResetAt = NEVER;
+      pendingRefreshAhead = true;
+
+      AwsCredentials credentials;
+      try {
+        credentials = fetchCredentials();
+      } catch (AwsException | RuntimeException ex) {
+        credentials = null;
+      }
+
+      if (credentials != null || current == null || current.credentials() == null) {
+        snapshot = new Snapshot(credentials, pendingResetAt);
+        scheduleRefreshAhead(pendingResetAt, pendingRefreshAhead);
+        return;
+      }
+
+      // The refresh failed or found nothing, but the credentials we already have may still be
+      // valid. Callers keep them until they expire, and then fetch them in the foreground, which
+      // reports any failure to them. Until then, keep trying.
+      var remainingMillis = current.resetAt() - clock.millis();
+      if (remainingMillis > 0) {
+        var delay = RETRY_DELAY_MILLIS / 2 + jitter(RETRY_DELAY_MILLIS / 2);
+        scheduleRefresh(Math.min(delay, remainingMillis));
+      }
+
+    } finally {
+      fetching = false;
+      fetchLock.unlock();
+    }
+  }
+
+  private void scheduleRefreshAhead(long resetAt, boolean refreshAhead) {
+    if (!refreshAhead || refreshAheadMillis == 0 || resetAt == NEVER) {
+      return;
+    }
+
+    // Refresh somewhere between the full and half the refresh-ahead duration before the reset.
+    var leadMillis = refreshAheadMillis - jitter(refreshAheadMillis / 2);
+    scheduleRefresh(resetAt - leadMillis - clock.millis());
+  }
+
+  private void scheduleRefresh(long delayMillis) {
+    var previous = scheduledRefresh;
+    if (previous != null) {
+      previous.cancel(false);
+    }
+
+    // Do not keep the provider reachable just because a refresh is scheduled.
+    var reference = new WeakReference<>(this);
+
+    scheduledRefresh = CredentialsRefreshScheduler.schedule(() -> {
+      var provider = reference.get();
+      if (provider != null) {
+        provider.refreshInBackground();
+      }
+    }, Math.max(0, delayMillis));
+  }
+
+  private static long jitter(long boundMillis) {
+    return ThreadLocalRandom.current().nextLong(boundMillis + 1);
+  }
+
+  private record Snapshot(@Nullable AwsCredentials credentials, long resetAt) {
+
+    private boolean isExpired(Clock clock) {
+      // Avoid reading the clock at all for credentials that never expire.
+      return resetAt != NEVER && clock.millis() >= resetAt;
+    }
+  }
 }
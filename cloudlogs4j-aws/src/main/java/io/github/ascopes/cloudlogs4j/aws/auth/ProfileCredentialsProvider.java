@@ -15,22 +15,328 @@
  */
 package io.github.ascopes.cloudlogs4j.aws.auth;
 
+import static java.util.Objects.requireNonNull;
+
+import io.avaje.jsonb.JsonType;
+import io.avaje.jsonb.Jsonb;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsProfileException;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import org.jspecify.annotations.Nullable;
 
 /**
  * Credentials provider that reads the credentials from the given IAM profile first.
  *
- * <p>This inspects the {@code AWS_PROFILE} environment variable.
+ * <p>This inspects the {@code AWS_PROFILE} environment variable, falling back to the
+ * {@code default} profile. Profiles are read from {@code ~/.aws/credentials} and
+ * {@code ~/.aws/config}, or the files named by {@code AWS_SHARED_CREDENTIALS_FILE} and
+ * {@code AWS_CONFIG_FILE}. Where both files define the same property for a profile, the
+ * credentials file wins.
+ *
+ * <p>A profile can supply credentials in one of the following ways, checked in this order:
+ *
+ * <ul>
+ *   <li>{@code aws_access_key_id}, {@code aws_secret_access_key} and optionally
+ *       {@code aws_session_token};</li>
+ *   <li>{@code credential_process}, a command that prints credentials as JSON;</li>
+ *   <li>{@code source_profile}, naming another profile to take the credentials from.</li>
+ * </ul>
+ *
+ * <p>Profiles that assume a role with {@code role_arn} are not supported yet, and result in an
+ * exception being raised, rather than silently using the credentials of the source profile.
+ *
+ * <p>Credentials from the files are checked again every minute, which only reads the files if
+ * they have changed. The output of a {@code credential_process} is kept until the profile that
+ * runs it changes, or until shortly before the expiry time it gives, so the process is not run
+ * again on every check. Expiring credentials are refreshed in the background ahead of that
+ * time.
  *
  * @author Ashley Scopes
  * @since 0.0.1
  */
 public final class ProfileCredentialsProvider extends LazyLoadedCredentialsProvider {
 
+  private static final String AWS_PROFILE = "AWS_PROFILE";
+  private static final String AWS_DEFAULT_PROFILE = "AWS_DEFAULT_PROFILE";
+  private static final String AWS_SHARED_CREDENTIALS_FILE = "AWS_SHARED_CREDENTIALS_FILE";
+  private static final String AWS_CONFIG_FILE = "AWS_CONFIG_FILE";
+  private static final String DEFAULT_PROFILE = "default";
+
+  private static final String ACCESS_KEY_ID = "aws_access_key_id";
+  private static final String SECRET_ACCESS_KEY = "aws_secret_access_key";
+  private static final String SESSION_TOKEN = "aws_session_token";
+  private static final String CREDENTIAL_PROCESS = "credential_process";
+  private static final String SOURCE_PROFILE = "source_profile";
+  private static final String ROLE_ARN = "role_arn";
+
+  private static final Duration RECHECK_INTERVAL = Duration.ofMinutes(1);
+  private static final Duration RESET_CREDENTIALS_OFFSET = Duration.ofMinutes(5);
+  private static final Duration REFRESH_AHEAD = Duration.ofMinutes(1);
+
+  private final String profileName;
+  private final AwsProfileFile credentialsFile;
+  private final AwsProfileFile configFile;
+  private final Clock clock;
+  private final JsonType<CredentialProcessOutput> credentialProcessOutputType;
+
+  // Only accessed while fetching credentials, which the superclass serializes.
+  private @Nullable CachedProcessOutput cachedProcessOutput;
+
+  /**
+   * Initialise this provider from the environment.
+   */
+  public ProfileCredentialsProvider() {
+    this(
+        getProfileNameFromEnvironment(),
+        getPathFromEnvironment(AWS_SHARED_CREDENTIALS_FILE, "credentials"),
+        getPathFromEnvironment(AWS_CONFIG_FILE, "config"),
+        Clock.systemUTC()
+    );
+  }
+
+  /**
+   * Initialise this provider.
+   *
+   * @param profileName     the name of the profile to use.
+   * @param credentialsFile the path to the shared credentials file.
+   * @param configFile      the path to the shared config file.
+   * @param clock           the clock to use to determine when we reset credentials.
+   */
+  public ProfileCredentialsProvider(
+      String profileName,
+      Path credentialsFile,
+      Path configFile,
+      Clock clock
+  ) {
+    super(clock, REFRESH_AHEAD);
+    this.profileName = requireNonNull(profileName, "profileName");
+    this.credentialsFile = new AwsProfileFile(credentialsFile, false);
+    this.configFile = new AwsProfileFile(configFile, true);
+    this.clock = clock;
+    credentialProcessOutputType = Jsonb.builder().build().type(CredentialProcessOutput.class);
+    cachedProcessOutput = null;
+  }
+
   @Nullable
   @Override
-  protected AwsCredentials fetchCredentials() {
-    // TODO: implement
+  protected AwsCredentials fetchCredentials() throws AwsException {
+    var resolved = resolve(profileName, new LinkedHashSet<>());
+
+    var now = clock.millis();
+
+    if (resolved == null || resolved.expiration() == null) {
+      // Checking the files again is cheap, so there is no need to do it in the background.
+      resetCredentialsAfter(now + RECHECK_INTERVAL.toMillis(), false);
+    } else {
+      var resetAt = resolved.expiration()
+          .minus(RESET_CREDENTIALS_OFFSET)
+          .toInstant()
+          .toEpochMilli();
+      // Credentials that are already close to expiring would be refreshed straight away, over
+      // and over, so they are only fetched again once they are requested.
+      resetCredentialsAfter(resetAt, resetAt - now > REFRESH_AHEAD.toMillis());
+    }
+
+    return resolved == null ? null : resolved.credentials();
+  }
+
+  private @Nullable Resolved resolve(String name, Set<String> visited) throws AwsException {
+    if (!visited.add(name)) {
+      throw new AwsProfileException(
+          "Profile '" + name + "' is its own source profile (through " + visited + ")"
+      );
+    }
+
+    var properties = getProfile(name);
+    if (properties.isEmpty()) {
+      if (visited.size() > 1) {
+        throw new AwsMissingValueException("Source profile '" + name + "' does not exist");
+      }
+      return null;
+    }
+
+    if (properties.containsKey(ROLE_ARN)) {
+      throw new AwsProfileException(
+          "Profile '" + name + "' assumes a role, which is not supported yet"
+      );
+    }
+
+    var accessKeyId = properties.get(ACCESS_KEY_ID);
+    if (accessKeyId != null) {
+      var secretAccessKey = require(name, properties, SECRET_ACCESS_KEY);
+      var sessionToken = properties.get(SESSION_TOKEN);
+      var credentials = sessionToken == null
+          ? new AwsCredentials(accessKeyId, secretAccessKey)
+          : new AwsCredentials(accessKeyId, secretAccessKey, sessionToken);
+      return new Resolved(credentials, null);
+    }
+
+    var credentialProcess = properties.get(CREDENTIAL_PROCESS);
+    if (credentialProcess != null) {
+      var cached = cachedProcessOutput;
+      if (cached != null && cached.isValidFor(name, properties, clock)) {
+        return cached.resolved();
+      }
+
+      var resolved = runCredentialProcess(name, credentialProcess);
+      cachedProcessOutput = new CachedProcessOutput(name, properties, resolved);
+      return resolved;
+    }
+
+    var sourceProfile = properties.get(SOURCE_PROFILE);
+    if (sourceProfile != null) {
+      return resolve(sourceProfile, visited);
+    }
+
+    if (visited.size() > 1) {
+      throw new AwsMissingValueException(
+          "Source profile '" + name + "' does not provide any credentials"
+      );
+    }
     return null;
   }
+
+  private Map<String, String> getProfile(String name) throws AwsException {
+    var config = configFile.getProfile(name);
+    var credentials = credentialsFile.getProfile(name);
+
+    if (config.isEmpty()) {
+      return credentials;
+    }
+    if (credentials.isEmpty()) {
+      return config;
+    }
+
+    var merged = new HashMap<>(config);
+    merged.putAll(credentials);
+    return merged;
+  }
+
+  private Resolved runCredentialProcess(String name, String command) throws AwsException {
+    var isWindows = System.getProperty("os.name", "")
+        .toLowerCase(Locale.ROOT)
+        .startsWith("windows");
+
+    var processBuilder = isWindows
+        ? new ProcessBuilder("cmd.exe", "/C", command)
+        : new ProcessBuilder("sh", "-c", command);
+
+    CredentialProcessOutput output;
+    try {
+      var process = processBuilder
+          .redirectError(Redirect.INHERIT)
+          .redirectInput(Redirect.INHERIT)
+          .start();
+
+      byte[] stdout;
+      try (var inputStream = process.getInputStream()) {
+        stdout = inputStream.readAllBytes();
+      }
+
+      var exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new AwsIoException(
+            "credential_process for profile '" + name + "' exited with code " + exitCode
+        );
+      }
+
+      output = credentialProcessOutputType.fromJson(new String(stdout, StandardCharsets.UTF_8));
+
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to run credential_process for profile '" + name + "'", ex);
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new AwsIoException(
+          "Interrupted while running credential_process for profile '" + name + "'",
+          ex
+      );
+
+    } catch (RuntimeException ex) {
+      throw new AwsIoException(
+          "Failed to read the output of credential_process for profile '" + name + "'",
+          ex
+      );
+    }
+
+    if (output.version() != 1) {
+      throw new AwsProfileException(
+          "credential_process for profile '" + name + "' printed unsupported version "
+              + output.version()
+      );
+    }
+
+    var credentials = output.sessionToken() == null
+        ? new AwsCredentials(output.accessKey(), output.secretKey())
+        : new AwsCredentials(output.accessKey(), output.secretKey(), output.sessionToken());
+
+    return new Resolved(credentials, output.expirationDateTime());
+  }
+
+  private String require(
+      String name,
+      Map<String, String> properties,
+      String key
+  ) throws AwsException {
+    var value = properties.get(key);
+
+    if (value == null) {
+      throw new AwsMissingValueException(
+          "Profile '" + name + "' has missing required property '" + key + "'"
+      );
+    }
+
+    return value;
+  }
+
+  private static String getProfileNameFromEnvironment() {
+    var profileName = System.getenv(AWS_PROFILE);
+    if (profileName == null) {
+      profileName = System.getenv(AWS_DEFAULT_PROFILE);
+    }
+    return profileName == null ? DEFAULT_PROFILE : profileName;
+  }
+
+  private static Path getPathFromEnvironment(String name, String defaultFileName) {
+    var value = System.getenv(name);
+    return value == null
+        ? Path.of(System.getProperty("user.home"), ".aws", defaultFileName)
+        : Path.of(value);
+  }
+
+  private record Resolved(AwsCredentials credentials, @Nullable OffsetDateTime expiration) {
+  }
+
+  private record CachedProcessOutput(
+      String profileName,
+      Map<String, String> properties,
+      Resolved resolved
+  ) {
+
+    private boolean isValidFor(String profileName, Map<String, String> properties, Clock clock) {
+      if (!this.profileName.equals(profileName) || !this.properties.equals(properties)) {
+        return false;
+      }
+
+      // Expiring output is run again whenever the credentials are refreshed or reset.
+      var expiration = resolved.expiration();
+      return expiration == null || clock.instant().isBefore(expiration
+          .minus(RESET_CREDENTIALS_OFFSET)
+          .minus(REFRESH_AHEAD)
+          .toInstant());
+    }
+  }
 }
@@ -21,9 +21,11 @@ import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Properties;
 import org.jspecify.annotations.Nullable;
 
@@ -38,14 +40,23 @@ import org.jspecify.annotations.Nullable;
  *
  * <p>The results of loading the file are cached after being read.
  *
+ * <p>If a poll interval is given, the file is watched for changes, such as those made when
+ * Vault Agent or Kubernetes rotate a secret, and the credentials are reloaded in the
+ * background and swapped in atomically. Callers never wait on file I/O in this mode. If the
+ * file is changed to something that cannot be read, the previous credentials are kept until a
+ * later change can be read. Watching stops when this provider is closed.
+ *
  * @author Ashley Scopes
  * @since 0.0.1
  */
-public final class PropertiesFileCredentialsProvider extends LazyLoadedCredentialsProvider {
+public final class PropertiesFileCredentialsProvider extends LazyLoadedCredentialsProvider
+    implements AutoCloseable {
+
   private static final String ACCESS_KEY_ID = "accessKeyId";
   private static final String SECRET_ACCESS_KEY = "secretAccessKey";
 
   private final Path path;
+  private final @Nullable CredentialsFileWatcher watcher;
 
   /**
    * Create a properties file credentials provider from the given path.
@@ -62,7 +73,53 @@ public final class PropertiesFileCredentialsProvider extends LazyLoadedCredentia
    * @param path the NIO path to the file.
    */
   public PropertiesFileCredentialsProvider(Path path) {
+    this(path, null);
+  }
+
+  /**
+   * Create a properties file credentials provider from the given path.
+   *
+   * @param path         the NIO path to the file.
+   * @param pollInterval how often to check the file for changes if none have been reported by
+   *                     the file system, or {@code null} to read the file once and never watch
+   *                     it.
+   */
+  public PropertiesFileCredentialsProvider(Path path, @Nullable Duration pollInterval) {
     this.path = path;
+
+    if (pollInterval == null) {
+      watcher = null;
+    } else {
+      // Do not keep the provider reachable just because the file is being watched. Once it has
+      // been collected, the watcher stops on its next poll.
+      var reference = new WeakReference<>(this);
+      watcher = CredentialsFileWatcher.create(
+          path,
+          pollInterval,
+          () -> reference.get() != null,
+          () -> {
+            var provider = reference.get();
+            if (provider != null) {
+              provider.reload();
+            }
+          }
+      );
+
+      // The watcher has already recorded the state of the file, so a rotation while we read it
+      // is still picked up once the watcher starts.
+      reload();
+      watcher.start();
+    }
+  }
+
+  /**
+   * Stop watching the file, if it is being watched. The last credentials read are kept.
+   */
+  @Override
+  public void close() {
+    if (watcher != null) {
+      watcher.close();
+    }
   }
 
   @Nullable
@@ -83,6 +140,15 @@ public final class PropertiesFileCredentialsProvider extends LazyLoadedCredentia
     }
   }
 
+  private void reload() {
+    try {
+      replaceCredentials(fetchCredentials());
+    } catch (AwsException ex) {
+      // Probably caught part way through being rewritten. Keep the current credentials until
+      // the next change.
+    }
+  }
+
   private String require(Properties properties, String key) throws AwsException {
     var value = properties.getProperty(key);
 
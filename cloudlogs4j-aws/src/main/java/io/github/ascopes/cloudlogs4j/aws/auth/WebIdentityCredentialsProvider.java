@@ -15,7 +15,17 @@
  */
 package io.github.ascopes.cloudlogs4j.aws.auth;
 
+import static java.util.Objects.requireNonNull;
+
 import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
+import io.github.ascopes.cloudlogs4j.aws.sts.StsClient;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import org.jspecify.annotations.Nullable;
 
 /**
@@ -24,14 +34,148 @@ import org.jspecify.annotations.Nullable;
  * <p>This is used by mechanisms like IRSA in EKS to delegate credential management to IAM for
  * pods.</p>
  *
+ * <p>The token is read from the file named by {@code AWS_WEB_IDENTITY_TOKEN_FILE} and exchanged
+ * for temporary credentials for the role named by {@code AWS_ROLE_ARN}, using the STS
+ * {@code AssumeRoleWithWebIdentity} call. The session name is taken from
+ * {@code AWS_ROLE_SESSION_NAME} if it is set. STS is called in the region named by
+ * {@code AWS_REGION} or {@code AWS_DEFAULT_REGION}, or through the global endpoint if neither is
+ * set.
+ *
+ * <p>If neither {@code AWS_WEB_IDENTITY_TOKEN_FILE} nor {@code AWS_ROLE_ARN} are set, this
+ * returns {@code null}. Setting only one of them results in an exception being raised.
+ *
+ * <p>Credentials are cached until shortly before they expire, and are refreshed in the
+ * background ahead of that time, so that callers do not have to wait on the token file or STS.
+ *
  * @author Ashley Scopes
  * @since 0.0.1
  */
 public final class WebIdentityCredentialsProvider extends LazyLoadedCredentialsProvider {
 
+  private static final String AWS_WEB_IDENTITY_TOKEN_FILE = "AWS_WEB_IDENTITY_TOKEN_FILE";
+  private static final String AWS_ROLE_ARN = "AWS_ROLE_ARN";
+  private static final String AWS_ROLE_SESSION_NAME = "AWS_ROLE_SESSION_NAME";
+  private static final String AWS_REGION = "AWS_REGION";
+  private static final String AWS_DEFAULT_REGION = "AWS_DEFAULT_REGION";
+  private static final String AWS_GLOBAL_STS_ENDPOINT = "https://sts.amazonaws.com";
+  private static final Duration RESET_CREDENTIALS_OFFSET = Duration.ofMinutes(15);
+  private static final Duration DEFAULT_REFRESH_AHEAD = Duration.ofMinutes(5);
+
+  private final @Nullable Path webIdentityTokenFile;
+  private final @Nullable String roleArn;
+  private final @Nullable String roleSessionName;
+  private final String stsEndpoint;
+
+  // Only accessed while fetching credentials, which the superclass serializes.
+  private @Nullable StsClient stsClient;
+
+  /**
+   * Initialise this provider from the environment.
+   */
+  public WebIdentityCredentialsProvider() {
+    this(
+        getPathFromEnvironment(AWS_WEB_IDENTITY_TOKEN_FILE),
+        System.getenv(AWS_ROLE_ARN),
+        System.getenv(AWS_ROLE_SESSION_NAME),
+        getStsEndpointFromEnvironment(),
+        Clock.systemUTC(),
+        DEFAULT_REFRESH_AHEAD
+    );
+  }
+
+  /**
+   * Initialise this provider.
+   *
+   * @param webIdentityTokenFile the file to read the web identity token from, or {@code null} if
+   *                             not set.
+   * @param roleArn              the ARN of the role to assume, or {@code null} if not set.
+   * @param roleSessionName      the role session name to use, or {@code null} to generate one.
+   * @param stsEndpoint          the STS endpoint to call.
+   * @param clock                the clock to use to determine when we reset credentials.
+   * @param refreshAhead         how long before the reset time to refresh credentials in the
+   *                             background, or {@code null} to only fetch credentials when they
+   *                             are requested.
+   */
+  public WebIdentityCredentialsProvider(
+      @Nullable Path webIdentityTokenFile,
+      @Nullable String roleArn,
+      @Nullable String roleSessionName,
+      String stsEndpoint,
+      Clock clock,
+      @Nullable Duration refreshAhead
+  ) {
+    super(clock, refreshAhead);
+    this.webIdentityTokenFile = webIdentityTokenFile;
+    this.roleArn = roleArn;
+    this.roleSessionName = roleSessionName;
+    this.stsEndpoint = requireNonNull(stsEndpoint, "stsEndpoint");
+    stsClient = null;
+  }
+
   @Override
   protected @Nullable AwsCredentials fetchCredentials() throws AwsException {
-    // TODO: implement
-    return null;
+    var tokenFile = webIdentityTokenFile;
+    var role = roleArn;
+
+    if (tokenFile == null && role == null) {
+      return null;
+    }
+
+    if (tokenFile == null) {
+      throw new AwsMissingValueException(
+          AWS_ROLE_ARN + " was set but " + AWS_WEB_IDENTITY_TOKEN_FILE + " was not set"
+      );
+    }
+
+    if (role == null) {
+      throw new AwsMissingValueException(
+          AWS_WEB_IDENTITY_TOKEN_FILE + " was set but " + AWS_ROLE_ARN + " was not set"
+      );
+    }
+
+    String token;
+    try {
+      // The token is rotated on disk, so read it again on every fetch.
+      token = Files.readString(tokenFile).strip();
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to read the web identity token from " + tokenFile, ex);
+    }
+
+    var client = stsClient;
+    if (client == null) {
+      client = StsClient.createClient(stsEndpoint);
+      stsClient = client;
+    }
+
+    var sessionName = roleSessionName == null
+        ? "cloudlogs4j-" + System.currentTimeMillis()
+        : roleSessionName;
+
+    var credentials = client.assumeRoleWithWebIdentity(role, sessionName, token);
+
+    resetCredentialsAfter(credentials.expiration()
+        .minus(RESET_CREDENTIALS_OFFSET)
+        .toEpochMilli());
+
+    return new AwsCredentials(
+        credentials.accessKey(),
+        credentials.secretKey(),
+        credentials.sessionToken()
+    );
+  }
+
+  private static @Nullable Path getPathFromEnvironment(String name) {
+    var value = System.getenv(name);
+    return value == null ? null : Path.of(value);
+  }
+
+  private static String getStsEndpointFromEnvironment() {
+    var region = System.getenv(AWS_REGION);
+    if (region == null) {
+      region = System.getenv(AWS_DEFAULT_REGION);
+    }
+    return region == null
+        ? AWS_GLOBAL_STS_ENDPOINT
+        : "https://sts." + region + ".amazonaws.com";
   }
 }
@@ -15,31 +15,54 @@
  */
 package io.github.ascopes.cloudlogs4j.aws.ec2;
 
-import io.avaje.http.api.Client;
-import io.avaje.http.api.Get;
-import io.avaje.http.client.HttpClient;
-import java.net.http.HttpClient.Version;
+import io.avaje.http.client.HttpException;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 
-@Client
+/**
+ * Client for the EC2 instance metadata service.
+ *
+ * <p>Clients use IMDSv2 session tokens where the service supports them, and fail fast for a
+ * while once the service has been found to be unreachable.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
 public interface Ec2InstanceMetadataClient {
 
-  @Get("/latest/meta-data/iam/security-credentials/")
+  /**
+   * Get the names of the security credentials available to the instance, one per line.
+   *
+   * @return the response.
+   * @throws HttpException if the request fails or the service is unreachable.
+   */
   HttpResponse<String> getSecurityCredentials();
 
-  @Get("/latest/meta-data/iam/security-credentials/{securityCredential}")
+  /**
+   * Get the security credential with the given name.
+   *
+   * @param securityCredential the name of the security credential.
+   * @return the response.
+   * @throws HttpException if the request fails or the service is unreachable.
+   */
   HttpResponse<Ec2SecurityCredential> getSecurityCredential(String securityCredential);
 
+  /**
+   * Get the shared client for the given endpoint, creating it the first time it is requested.
+   *
+   * @param ec2MetadataEndpoint the instance metadata service endpoint.
+   * @return the shared client.
+   */
+  static Ec2InstanceMetadataClient forEndpoint(String ec2MetadataEndpoint) {
+    return Ec2InstanceMetadataClientCache.get(ec2MetadataEndpoint);
+  }
+
+  /**
+   * Create a new client for the given endpoint.
+   *
+   * @param ec2MetadataEndpoint the instance metadata service endpoint.
+   * @return the client.
+   */
   static Ec2InstanceMetadataClient createClient(String ec2MetadataEndpoint) {
-    return HttpClient.builder()
-        .baseUrl(ec2MetadataEndpoint)
-        .connectionTimeout(Duration.ofSeconds(5))
-        .requestIntercept(new Ec2MetadataHeaderInterceptor())
-        .requestLogging(false)
-        .requestTimeout(Duration.ofSeconds(5))
-        .version(Version.HTTP_1_1)
-        .build()
-        .create(Ec2InstanceMetadataClient.class);
+    return new HttpEc2InstanceMetadataClient(ec2MetadataEndpoint);
   }
 }
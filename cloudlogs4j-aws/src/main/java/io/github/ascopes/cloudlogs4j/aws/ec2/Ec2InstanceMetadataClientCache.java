@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ec2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of instance metadata clients, keyed by endpoint.
+ *
+ * <p>Each client owns an HTTP client with its own connection pool and selector thread, so
+ * sharing them lets every refresh reuse the same kept-alive connection.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class Ec2InstanceMetadataClientCache {
+
+  private static final Map<String, Ec2InstanceMetadataClient> CLIENTS = new ConcurrentHashMap<>();
+
+  private Ec2InstanceMetadataClientCache() {
+    throw new UnsupportedOperationException("static-only class");
+  }
+
+  static Ec2InstanceMetadataClient get(String ec2MetadataEndpoint) {
+    return CLIENTS.computeIfAbsent(ec2MetadataEndpoint, Ec2InstanceMetadataClient::createClient);
+  }
+}
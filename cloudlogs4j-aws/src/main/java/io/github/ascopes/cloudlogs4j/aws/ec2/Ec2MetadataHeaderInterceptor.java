@@ -37,7 +37,6 @@ public final class Ec2MetadataHeaderInterceptor implements RequestIntercept {
   public void beforeRequest(HttpClientRequest request) {
     request
         .header("Accept", "*/*")
-        .header("Connection", "close")
         .header("User-Agent", userAgent);
   }
 }
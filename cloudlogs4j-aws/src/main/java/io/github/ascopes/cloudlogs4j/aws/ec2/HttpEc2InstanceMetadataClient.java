@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ec2;
+
+import io.avaje.http.client.HttpClient;
+import io.avaje.http.client.HttpClientRequest;
+import io.avaje.http.client.HttpException;
+import io.github.ascopes.cloudlogs4j.aws.http.AwsHttpTransport;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link Ec2InstanceMetadataClient} that uses the IMDSv2 session token flow.
+ *
+ * <p>A session token is requested with a {@code PUT} to {@code /latest/api/token} and sent on
+ * every metadata request until shortly before it expires. If the token endpoint is not
+ * available, requests are made without a token, as with IMDSv1.
+ *
+ * <p>Off EC2, the service is usually not reachable at all, so connections are given a short
+ * timeout, and once the service has been found to be unreachable, further requests fail
+ * straight away for a while rather than waiting on the timeout again.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class HttpEc2InstanceMetadataClient implements Ec2InstanceMetadataClient {
+
+  static final String TOKEN_HEADER = "X-aws-ec2-metadata-token";
+  static final String TOKEN_TTL_HEADER = "X-aws-ec2-metadata-token-ttl-seconds";
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(1);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(2);
+  private static final Duration TOKEN_TTL = Duration.ofHours(6);
+  private static final Duration TOKEN_REFRESH_MARGIN = Duration.ofMinutes(1);
+  private static final Duration UNREACHABLE_RETRY_DELAY = Duration.ofMinutes(1);
+
+  private final HttpClient client;
+  private final long unreachableRetryDelayNanos;
+  private final ReentrantLock tokenLock;
+  private volatile @Nullable SessionToken sessionToken;
+  private volatile @Nullable Unreachable unreachable;
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint the instance metadata service endpoint.
+   */
+  HttpEc2InstanceMetadataClient(String endpoint) {
+    this(endpoint, UNREACHABLE_RETRY_DELAY);
+  }
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint               the instance metadata service endpoint.
+   * @param unreachableRetryDelay  how long to fail straight away for once the service has been
+   *                               found to be unreachable.
+   */
+  HttpEc2InstanceMetadataClient(String endpoint, Duration unreachableRetryDelay) {
+    this(endpoint, unreachableRetryDelay, AwsHttpTransport.shared());
+  }
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint               the instance metadata service endpoint.
+   * @param unreachableRetryDelay  how long to fail straight away for once the service has been
+   *                               found to be unreachable.
+   * @param transport              the transport to send requests with.
+   */
+  HttpEc2InstanceMetadataClient(
+      String endpoint,
+      Duration unreachableRetryDelay,
+      AwsHttpTransport transport
+  ) {
+    client = HttpClient.builder()
+        .baseUrl(endpoint)
+        .client(transport.getClient(endpoint, CONNECT_TIMEOUT))
+        .requestIntercept(new Ec2MetadataHeaderInterceptor())
+        .requestLogging(false)
+        .requestTimeout(REQUEST_TIMEOUT)
+        .build();
+
+    unreachableRetryDelayNanos = unreachableRetryDelay.toNanos();
+    tokenLock = new ReentrantLock();
+    sessionToken = null;
+    unreachable = null;
+  }
+
+  @Override
+  public HttpResponse<String> getSecurityCredentials() {
+    return get(request -> request
+        .path("latest").path("meta-data").path("iam").path("security-credentials")
+        .GET()
+        .asString());
+  }
+
+  @Override
+  public HttpResponse<Ec2SecurityCredential> getSecurityCredential(String securityCredential) {
+    return get(request -> request
+        .path("latest").path("meta-data").path("iam").path("security-credentials")
+        .path(securityCredential)
+        .GET()
+        .as(Ec2SecurityCredential.class));
+  }
+
+  private <T> HttpResponse<T> get(Function<HttpClientRequest, HttpResponse<T>> call) {
+    checkReachable();
+
+    var token = getSessionToken();
+    int statusCode;
+    try {
+      var response = call.apply(newRequest(token));
+      statusCode = response.statusCode();
+      if (statusCode != 401 || token.value() == null) {
+        return response;
+      }
+    } catch (HttpException ex) {
+      statusCode = ex.statusCode();
+      if (ex.getCause() != null || statusCode != 401 || token.value() == null) {
+        throw markUnreachableIfDisconnected(ex);
+      }
+    }
+
+    // The token was rejected, so it may have been revoked early. Fetch a new one and try once
+    // more.
+    invalidateSessionToken(token);
+    try {
+      return call.apply(newRequest(getSessionToken()));
+    } catch (HttpException ex) {
+      throw markUnreachableIfDisconnected(ex);
+    }
+  }
+
+  private HttpClientRequest newRequest(SessionToken token) {
+    var request = client.request();
+    if (token.value() != null) {
+      request.header(TOKEN_HEADER, token.value());
+    }
+    return request;
+  }
+
+  private SessionToken getSessionToken() {
+    var token = sessionToken;
+    if (token != null && !token.isExpired()) {
+      return token;
+    }
+
+    tokenLock.lock();
+    try {
+      token = sessionToken;
+      if (token == null || token.isExpired()) {
+        token = fetchSessionToken();
+        sessionToken = token;
+      }
+      return token;
+    } finally {
+      tokenLock.unlock();
+    }
+  }
+
+  private void invalidateSessionToken(SessionToken token) {
+    tokenLock.lock();
+    try {
+      if (sessionToken == token) {
+        sessionToken = null;
+      }
+    } finally {
+      tokenLock.unlock();
+    }
+  }
+
+  private SessionToken fetchSessionToken() {
+    var expiresAt = System.nanoTime() + TOKEN_TTL.minus(TOKEN_REFRESH_MARGIN).toNanos();
+
+    HttpResponse<String> response;
+    try {
+      response = client.request()
+          .path("latest").path("api").path("token")
+          .header(TOKEN_TTL_HEADER, String.valueOf(TOKEN_TTL.toSeconds()))
+          .PUT()
+          .asString();
+    } catch (HttpException ex) {
+      if (ex.getCause() == null && isTokenFlowUnavailable(ex.statusCode())) {
+        // IMDSv2 is not available here, so fall back to IMDSv1 until we next check.
+        return new SessionToken(null, expiresAt);
+      }
+      throw markUnreachableIfDisconnected(ex);
+    }
+
+    if (isTokenFlowUnavailable(response.statusCode())) {
+      return new SessionToken(null, expiresAt);
+    }
+
+    return new SessionToken(response.body().strip(), expiresAt);
+  }
+
+  private void checkReachable() {
+    var current = unreachable;
+    if (current != null) {
+      if (System.nanoTime() - current.detectedAt() < unreachableRetryDelayNanos) {
+        throw new HttpException(
+            0,
+            "Instance metadata service was recently found to be unreachable",
+            current.cause()
+        );
+      }
+      unreachable = null;
+    }
+  }
+
+  private HttpException markUnreachableIfDisconnected(HttpException ex) {
+    var cause = ex.getCause();
+    if (cause instanceof ConnectException || cause instanceof HttpTimeoutException) {
+      unreachable = new Unreachable((IOException) cause, System.nanoTime());
+    }
+    return ex;
+  }
+
+  private static boolean isTokenFlowUnavailable(int statusCode) {
+    // 403 means IMDSv2 tokens are disabled, 404 and 405 are returned by implementations that
+    // predate IMDSv2.
+    return statusCode == 403 || statusCode == 404 || statusCode == 405;
+  }
+
+  private record SessionToken(@Nullable String value, long expiresAtNanos) {
+
+    boolean isExpired() {
+      return System.nanoTime() - expiresAtNanos >= 0;
+    }
+  }
+
+  private record Unreachable(IOException cause, long detectedAt) {
+  }
+}
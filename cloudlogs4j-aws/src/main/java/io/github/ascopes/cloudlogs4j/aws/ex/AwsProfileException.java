@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ex;
+
+/**
+ * Exception that is raised if a profile in the shared AWS config files cannot be used.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class AwsProfileException extends AwsException {
+
+  /**
+   * Initialise the exception.
+   *
+   * @param message the message.
+   */
+  public AwsProfileException(String message) {
+    super(message);
+  }
+}
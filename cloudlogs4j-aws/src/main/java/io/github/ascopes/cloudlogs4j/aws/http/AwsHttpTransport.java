@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.http;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.core.intern.TaskExecutors;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Transport that shares {@code java.net.http} clients between the AWS clients in a JVM.
+ *
+ * <p>Every {@link HttpClient} has its own connection pool and selector thread. Rather than
+ * building one for every AWS client, a transport keeps one per endpoint, and hands the same one
+ * out to every AWS client that talks to that endpoint. Several forwarders writing to the same
+ * region therefore share their connections.
+ *
+ * <p>HTTPS endpoints negotiate HTTP/2 where the service supports it, so concurrent requests
+ * such as {@code PutLogEvents} calls are multiplexed over a single connection. Plain HTTP
+ * endpoints, such as the EC2 instance metadata service, always use HTTP/1.1, as the upgrade
+ * to cleartext HTTP/2 is rarely supported and costs an extra round trip.
+ *
+ * <p>Unless {@link #setShared(AwsHttpTransport) replaced}, every AWS client uses the
+ * {@link #shared() shared transport}. Use {@link #builder()} to create a transport with a
+ * bounded executor of your own.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class AwsHttpTransport {
+
+  private static volatile @Nullable AwsHttpTransport shared = null;
+
+  private final Executor executor;
+  private final Map<ClientKey, HttpClient> clients;
+
+  private AwsHttpTransport(Builder builder) {
+    executor = builder.executor;
+    clients = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get the executor that response handling runs on.
+   *
+   * @return the executor.
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Get the client for the given endpoint, creating it if it does not exist yet.
+   *
+   * @param endpoint       the endpoint. Only the scheme, host and port are used.
+   * @param connectTimeout how long to wait for a connection to be established.
+   * @return the client.
+   */
+  public HttpClient getClient(String endpoint, Duration connectTimeout) {
+    var uri = URI.create(requireNonNull(endpoint, "endpoint"));
+    var key = new ClientKey(
+        uri.getScheme().toLowerCase(),
+        uri.getHost(),
+        uri.getPort(),
+        requireNonNull(connectTimeout, "connectTimeout")
+    );
+    return clients.computeIfAbsent(key, this::newClient);
+  }
+
+  private HttpClient newClient(ClientKey key) {
+    return HttpClient.newBuilder()
+        .connectTimeout(key.connectTimeout)
+        .executor(executor)
+        .version("https".equals(key.scheme) ? Version.HTTP_2 : Version.HTTP_1_1)
+        .build();
+  }
+
+  /**
+   * Get the shared transport, creating it with the default settings if it has not been created
+   * or {@link #setShared(AwsHttpTransport) set} yet.
+   *
+   * @return the shared transport.
+   */
+  public static AwsHttpTransport shared() {
+    var transport = shared;
+    if (transport == null) {
+      synchronized (AwsHttpTransport.class) {
+        transport = shared;
+        if (transport == null) {
+          transport = builder().build();
+          shared = transport;
+        }
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * Replace the shared transport.
+   *
+   * <p>Only AWS clients that are created afterwards use the new transport, so this should be
+   * called before any forwarders or credential providers are created.
+   *
+   * @param transport the new shared transport.
+   */
+  public static void setShared(AwsHttpTransport transport) {
+    requireNonNull(transport, "transport");
+    synchronized (AwsHttpTransport.class) {
+      shared = transport;
+    }
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private record ClientKey(String scheme, String host, int port, Duration connectTimeout) {
+  }
+
+  /**
+   * Builder for an {@link AwsHttpTransport}.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  public static final class Builder {
+
+    private Executor executor;
+
+    private Builder() {
+      executor = TaskExecutors.getExecutor();
+    }
+
+    /**
+     * Set the executor that response handling runs on.
+     *
+     * <p>Defaults to {@link TaskExecutors#getExecutor()}, which uses virtual threads where they
+     * are available, and a small pool of platform threads otherwise. Pass a bounded executor
+     * of your own to cap the number of threads that every client in the transport uses between
+     * them.
+     *
+     * @param executor the executor.
+     * @return this builder.
+     */
+    public Builder executor(Executor executor) {
+      this.executor = requireNonNull(executor, "executor");
+      return this;
+    }
+
+    /**
+     * Build the transport.
+     *
+     * @return the transport.
+     */
+    public AwsHttpTransport build() {
+      return new AwsHttpTransport(this);
+    }
+  }
+}
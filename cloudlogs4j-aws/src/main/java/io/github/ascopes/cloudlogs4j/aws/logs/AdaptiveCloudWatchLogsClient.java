@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import io.github.ascopes.cloudlogs4j.core.intern.TaskExecutors;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link CloudWatchLogsClient} that retries failed {@code PutLogEvents} requests, and adapts the
+ * number of requests in flight to how hard CloudWatch is throttling them.
+ *
+ * <p>Failures are classified as throttling, transient, already accepted, or fatal (see
+ * {@link PutLogEventsFailure}). Throttled and transient failures are retried after a delay picked
+ * by the {@link RetryPolicy}, and throttling also shrinks the concurrency limit. Requests over
+ * the limit are queued, and sent in order as others complete. The limit grows back as requests
+ * succeed.
+ *
+ * <p>Batches are read again for each attempt, so callers must not modify a batch until the
+ * future for it has completed.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class AdaptiveCloudWatchLogsClient implements CloudWatchLogsClient {
+
+  private final CloudWatchLogsClient delegate;
+  private final RetryPolicy retryPolicy;
+
+  // Guarded by this.
+  private final AimdConcurrencyLimit concurrencyLimit;
+  private final Deque<Attempt> waiting;
+  private int inFlight;
+
+  /**
+   * Initialise this client.
+   *
+   * @param delegate    the client to send requests with.
+   * @param retryPolicy the policy to retry requests with.
+   */
+  AdaptiveCloudWatchLogsClient(CloudWatchLogsClient delegate, RetryPolicy retryPolicy) {
+    this.delegate = requireNonNull(delegate, "delegate");
+    this.retryPolicy = requireNonNull(retryPolicy, "retryPolicy");
+    concurrencyLimit = new AimdConcurrencyLimit(retryPolicy.getMaxConcurrency());
+    waiting = new ArrayDeque<>();
+    inFlight = 0;
+  }
+
+  /**
+   * Get the current concurrency limit.
+   *
+   * @return the number of requests that may be in flight at once.
+   */
+  synchronized int getConcurrencyLimit() {
+    return concurrencyLimit.getLimit();
+  }
+
+  @Override
+  public CompletableFuture<Void> putLogEvents(
+      String logGroupName,
+      String logStreamName,
+      PutLogEventsBatch batch
+  ) {
+    var attempt = new Attempt(logGroupName, logStreamName, batch);
+    submit(attempt);
+    return attempt.result;
+  }
+
+  @Override
+  public void createLogStream(String logGroupName, String logStreamName) throws AwsException {
+    delegate.createLogStream(logGroupName, logStreamName);
+  }
+
+  private void submit(Attempt attempt) {
+    synchronized (this) {
+      if (inFlight >= concurrencyLimit.getLimit()) {
+        waiting.addLast(attempt);
+        return;
+      }
+      ++inFlight;
+      attempt.epoch = concurrencyLimit.getEpoch();
+    }
+
+    send(attempt);
+  }
+
+  private void send(Attempt attempt) {
+    ++attempt.number;
+
+    CompletableFuture<Void> response;
+    try {
+      response = delegate.putLogEvents(attempt.logGroupName, attempt.logStreamName, attempt.batch);
+    } catch (RuntimeException ex) {
+      response = CompletableFuture.failedFuture(ex);
+    }
+
+    response.whenComplete((ignored, ex) -> complete(attempt, ex));
+  }
+
+  private void complete(Attempt attempt, @Nullable Throwable ex) {
+    var failure = ex == null ? null : PutLogEventsFailure.classify(ex);
+    List<Attempt> ready;
+
+    synchronized (this) {
+      --inFlight;
+
+      if (failure == null || failure == PutLogEventsFailure.ALREADY_ACCEPTED) {
+        concurrencyLimit.onSuccess();
+      } else if (failure == PutLogEventsFailure.THROTTLED) {
+        concurrencyLimit.onThrottled(attempt.epoch);
+      }
+
+      ready = takeReadyAttempts();
+    }
+
+    if (failure == null || failure == PutLogEventsFailure.ALREADY_ACCEPTED) {
+      attempt.result.complete(null);
+    } else if (failure == PutLogEventsFailure.FATAL
+        || attempt.number >= retryPolicy.getMaxAttempts()) {
+      attempt.result.completeExceptionally(translateFailure(ex));
+    } else {
+      scheduleRetry(attempt);
+    }
+
+    for (var next : ready) {
+      send(next);
+    }
+  }
+
+  private List<Attempt> takeReadyAttempts() {
+    List<Attempt> ready = List.of();
+    while (inFlight < concurrencyLimit.getLimit() && !waiting.isEmpty()) {
+      if (ready.isEmpty()) {
+        ready = new ArrayList<>();
+      }
+      var next = waiting.removeFirst();
+      next.epoch = concurrencyLimit.getEpoch();
+      ready.add(next);
+      ++inFlight;
+    }
+    return ready;
+  }
+
+  private void scheduleRetry(Attempt attempt) {
+    // The attempt gives up its slot while it waits, so other requests are not held up by it.
+    attempt.delayNanos = retryPolicy.nextDelayNanos(
+        attempt.delayNanos,
+        ThreadLocalRandom.current()
+    );
+    var executor = CompletableFuture.delayedExecutor(
+        attempt.delayNanos,
+        TimeUnit.NANOSECONDS,
+        TaskExecutors.getExecutor()
+    );
+    executor.execute(() -> submit(attempt));
+  }
+
+  private static AwsException translateFailure(Throwable ex) {
+    if (ex instanceof CompletionException && ex.getCause() != null) {
+      ex = ex.getCause();
+    }
+
+    return ex instanceof AwsException awsEx
+        ? awsEx
+        : new AwsIoException("Failed to send log events to CloudWatch Logs", ex);
+  }
+
+  private static final class Attempt {
+
+    private final String logGroupName;
+    private final String logStreamName;
+    private final PutLogEventsBatch batch;
+    private final CompletableFuture<Void> result;
+    private int number;
+    private long epoch;
+    private long delayNanos;
+
+    private Attempt(String logGroupName, String logStreamName, PutLogEventsBatch batch) {
+      this.logGroupName = logGroupName;
+      this.logStreamName = logStreamName;
+      this.batch = batch;
+      result = new CompletableFuture<>();
+      number = 0;
+      epoch = 0;
+      delayNanos = 0;
+    }
+  }
+}
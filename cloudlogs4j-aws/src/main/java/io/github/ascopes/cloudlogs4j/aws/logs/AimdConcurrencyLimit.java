@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+/**
+ * Concurrency limit that is adjusted with additive-increase, multiplicative-decrease.
+ *
+ * <p>Requests record the {@link #getEpoch() epoch} they were sent in. A throttled response only
+ * decreases the limit if it was sent in the current epoch, and starts a new epoch when it does,
+ * so a burst of throttled responses to requests that were in flight together only counts once.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class AimdConcurrencyLimit {
+
+  private static final double DECREASE_FACTOR = 0.5;
+
+  private final int maxLimit;
+  private double limit;
+  private long epoch;
+
+  /**
+   * Initialise the limit at its maximum.
+   *
+   * @param maxLimit the maximum limit. Must be positive.
+   */
+  AimdConcurrencyLimit(int maxLimit) {
+    if (maxLimit < 1) {
+      throw new IllegalArgumentException("Max limit must be positive (got " + maxLimit + ")");
+    }
+
+    this.maxLimit = maxLimit;
+    limit = maxLimit;
+    epoch = 0;
+  }
+
+  /**
+   * Get the current limit.
+   *
+   * @return the limit, between {@code 1} and the maximum limit.
+   */
+  int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * Get the current epoch.
+   *
+   * @return the epoch.
+   */
+  long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Record a successful response, raising the limit by one per limit's worth of successes.
+   */
+  void onSuccess() {
+    limit = Math.min(maxLimit, limit + 1 / limit);
+  }
+
+  /**
+   * Record a throttled response, halving the limit if the request was sent in the current epoch.
+   *
+   * @param requestEpoch the epoch that the request was sent in.
+   */
+  void onThrottled(long requestEpoch) {
+    if (requestEpoch == epoch) {
+      limit = Math.max(1, limit * DECREASE_FACTOR);
+      ++epoch;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsCredentialsProvider;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import java.util.concurrent.CompletableFuture;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Client for the parts of the CloudWatch Logs API that forwarders use.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public interface CloudWatchLogsClient {
+
+  /**
+   * Send a batch of log events to a log stream asynchronously.
+   *
+   * <p>The batch is read before this method returns, so callers may reuse it as soon as the
+   * returned future completes, or immediately if they do not care about the outcome.
+   *
+   * @param logGroupName  the name of the log group.
+   * @param logStreamName the name of the log stream.
+   * @param batch         the batch of log events, sorted by timestamp.
+   * @return a future that completes once CloudWatch has accepted the batch, or completes
+   *     exceptionally with an {@link AwsException} if the request fails.
+   */
+  CompletableFuture<Void> putLogEvents(
+      String logGroupName,
+      String logStreamName,
+      PutLogEventsBatch batch
+  );
+
+  /**
+   * Create a log stream, if it does not already exist.
+   *
+   * @param logGroupName  the name of the log group.
+   * @param logStreamName the name of the log stream.
+   * @throws AwsException if the log stream cannot be created.
+   */
+  void createLogStream(String logGroupName, String logStreamName) throws AwsException;
+
+  /**
+   * Create a client that talks to the CloudWatch Logs JSON API over HTTPS.
+   *
+   * @param endpoint the CloudWatch Logs endpoint, such as
+   *                 {@code https://logs.eu-west-2.amazonaws.com}.
+   * @return the client.
+   */
+  static CloudWatchLogsClient createClient(String endpoint) {
+    return new HttpCloudWatchLogsClient(endpoint, null);
+  }
+
+  /**
+   * Create a client that talks to the CloudWatch Logs JSON API over HTTPS, and encodes
+   * {@code PutLogEvents} request bodies with the given codec.
+   *
+   * @param endpoint         the CloudWatch Logs endpoint, such as
+   *                         {@code https://logs.eu-west-2.amazonaws.com}.
+   * @param requestBodyCodec the codec to encode request bodies with, such as
+   *                         {@link RequestBodyCodec#gzip()}.
+   * @return the client.
+   */
+  static CloudWatchLogsClient createClient(String endpoint, RequestBodyCodec requestBodyCodec) {
+    return new HttpCloudWatchLogsClient(
+        endpoint,
+        requireNonNull(requestBodyCodec, "requestBodyCodec")
+    );
+  }
+
+  /**
+   * Wrap a client so that failed {@code PutLogEvents} requests are retried, and so that the
+   * number of requests in flight adapts to throttling.
+   *
+   * <p>The wrapped client reads each batch again for every attempt, so callers must not modify
+   * a batch until the future for it has completed.
+   *
+   * @param client      the client to wrap.
+   * @param retryPolicy the policy to retry requests with.
+   * @return the wrapped client.
+   */
+  static CloudWatchLogsClient withRetries(CloudWatchLogsClient client, RetryPolicy retryPolicy) {
+    return new AdaptiveCloudWatchLogsClient(client, retryPolicy);
+  }
+
+  /**
+   * Create a client that talks to the CloudWatch Logs JSON API over HTTPS, and signs requests
+   * with AWS Signature Version 4.
+   *
+   * @param endpoint            the CloudWatch Logs endpoint, such as
+   *                            {@code https://logs.eu-west-2.amazonaws.com}.
+   * @param region              the region to sign requests for, such as {@code eu-west-2}.
+   * @param credentialsProvider the provider of the credentials to sign requests with.
+   * @param requestBodyCodec    the codec to encode request bodies with, or {@code null} to send
+   *                            them as they are.
+   * @return the client.
+   */
+  static CloudWatchLogsClient createClient(
+      String endpoint,
+      String region,
+      AwsCredentialsProvider credentialsProvider,
+      @Nullable RequestBodyCodec requestBodyCodec
+  ) {
+    return new HttpCloudWatchLogsClient(
+        requireNonNull(endpoint, "endpoint"),
+        requestBodyCodec,
+        requireNonNull(region, "region"),
+        requireNonNull(credentialsProvider, "credentialsProvider")
+    );
+  }
+}
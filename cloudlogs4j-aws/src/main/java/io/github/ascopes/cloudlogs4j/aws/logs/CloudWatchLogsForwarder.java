@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsCredentialProviderChain;
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsCredentialsProvider;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.http.AwsHttpTransport;
+import io.github.ascopes.cloudlogs4j.core.AbstractLogForwarder;
+import io.github.ascopes.cloudlogs4j.core.FlushPolicy;
+import io.github.ascopes.cloudlogs4j.core.OverflowPolicy;
+import io.github.ascopes.cloudlogs4j.core.queue.PayloadStorage;
+import java.nio.ByteBuffer;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Log forwarder that ships log entries to CloudWatch Logs in {@code PutLogEvents} batches.
+ *
+ * <p>Use {@link #builder()} to create a forwarder that sends batches to CloudWatch Logs, optionally
+ * sharded across several log streams (see {@link ShardedPutLogEventsSender}). The constructors
+ * accept any {@link PutLogEventsBatchHandler} instead.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class CloudWatchLogsForwarder extends AbstractLogForwarder {
+
+  private final PutLogEventsBatchAssembler assembler;
+
+  /**
+   * Initialise this forwarder.
+   *
+   * @param queueCapacity the minimum capacity of the internal queue.
+   * @param handler       the handler to pass completed batches to.
+   */
+  public CloudWatchLogsForwarder(int queueCapacity, PutLogEventsBatchHandler handler) {
+    this(queueCapacity, FlushPolicy.defaults(), handler);
+  }
+
+  /**
+   * Initialise this forwarder.
+   *
+   * @param queueCapacity the minimum capacity of the internal queue.
+   * @param flushPolicy   the policy that decides when pending entries are flushed.
+   * @param handler       the handler to pass completed batches to.
+   */
+  public CloudWatchLogsForwarder(
+      int queueCapacity,
+      FlushPolicy flushPolicy,
+      PutLogEventsBatchHandler handler
+  ) {
+    super(queueCapacity, flushPolicy);
+    assembler = new PutLogEventsBatchAssembler(handler);
+  }
+
+  private CloudWatchLogsForwarder(Builder builder) {
+    super(
+        builder.queueCapacity,
+        builder.flushPolicy,
+        builder.payloadStorage,
+        builder.overflowPolicy
+    );
+
+    var client = builder.client;
+    if (client == null) {
+      var credentialsProvider = builder.resolveCredentialsProvider();
+      client = new HttpCloudWatchLogsClient(
+          builder.resolveEndpoint(),
+          builder.requestBodyCodec,
+          credentialsProvider == null ? null : builder.resolveRegion(),
+          credentialsProvider,
+          builder.transport == null ? AwsHttpTransport.shared() : builder.transport
+      );
+
+      if (builder.rateLimiter != null) {
+        client = new RateLimitedCloudWatchLogsClient(
+            client,
+            builder.rateLimiter,
+            builder.resolveEndpoint()
+        );
+      }
+
+      // Retries are paced by the rate limiter too.
+      if (builder.retryPolicy != null) {
+        client = CloudWatchLogsClient.withRetries(client, builder.retryPolicy);
+      }
+    }
+
+    assembler = new PutLogEventsBatchAssembler(new ShardedPutLogEventsSender(
+        client,
+        requireNonNull(builder.logGroupName, "logGroupName"),
+        requireNonNull(builder.logStreamName, "logStreamName"),
+        builder.shardCount,
+        builder.journal,
+        this::handleDeliveryFailure
+    ));
+  }
+
+  /**
+   * Get the number of entries that have been dropped for being too large to fit in a batch.
+   *
+   * @return the number of dropped entries.
+   */
+  public long getOversizedLogEntryCount() {
+    return assembler.getOversizedLogEntryCount();
+  }
+
+  @Override
+  protected void appendLogEntry(long timestamp, ByteBuffer contents) throws AwsException {
+    assembler.accept(timestamp, contents);
+  }
+
+  @Override
+  protected int getPendingLogEntryCount() {
+    return assembler.getPendingLogEntryCount();
+  }
+
+  @Override
+  protected long getPendingLogEntryBytes() {
+    return assembler.getPendingBatchBytes();
+  }
+
+  @Override
+  protected void flush() throws AwsException {
+    assembler.flush();
+  }
+
+  @Override
+  protected void recover() throws AwsException {
+    assembler.recover();
+  }
+
+  @Override
+  protected void awaitDelivery() throws AwsException {
+    assembler.awaitCompletion();
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder for a {@link CloudWatchLogsForwarder} that sends batches to CloudWatch Logs.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  public static final class Builder {
+
+    private static final String AWS_REGION_ENVIRONMENT_VARIABLE = "AWS_REGION";
+    private static final String AWS_DEFAULT_REGION_ENVIRONMENT_VARIABLE = "AWS_DEFAULT_REGION";
+    private static final int DEFAULT_QUEUE_CAPACITY = 16_384;
+
+    private @Nullable String logGroupName;
+    private @Nullable String logStreamName;
+    private int shardCount;
+    private @Nullable String region;
+    private @Nullable String endpoint;
+    private @Nullable CloudWatchLogsClient client;
+    private int queueCapacity;
+    private FlushPolicy flushPolicy;
+    private PayloadStorage payloadStorage;
+    private OverflowPolicy overflowPolicy;
+    private @Nullable PutLogEventsJournal journal;
+    private @Nullable RequestBodyCodec requestBodyCodec;
+    private @Nullable AwsCredentialsProvider credentialsProvider;
+    private boolean unsigned;
+    private @Nullable RetryPolicy retryPolicy;
+    private @Nullable PutLogEventsRateLimiter rateLimiter;
+    private @Nullable AwsHttpTransport transport;
+
+    private Builder() {
+      logGroupName = null;
+      logStreamName = null;
+      shardCount = 1;
+      region = null;
+      endpoint = null;
+      client = null;
+      queueCapacity = DEFAULT_QUEUE_CAPACITY;
+      flushPolicy = FlushPolicy.defaults();
+      payloadStorage = PayloadStorage.heap();
+      overflowPolicy = OverflowPolicy.throwException();
+      journal = null;
+      requestBodyCodec = null;
+      credentialsProvider = null;
+      unsigned = false;
+      retryPolicy = RetryPolicy.defaults();
+      rateLimiter = null;
+      transport = null;
+    }
+
+    /**
+     * Set the name of the log group to write to. This is required.
+     *
+     * @param logGroupName the name of the log group.
+     * @return this builder.
+     */
+    public Builder logGroupName(String logGroupName) {
+      this.logGroupName = requireNonNull(logGroupName, "logGroupName");
+      return this;
+    }
+
+    /**
+     * Set the name of the log stream to write to. This is required.
+     *
+     * <p>If there is more than one shard, this is used as the prefix of the log stream names.
+     *
+     * @param logStreamName the name of the log stream.
+     * @return this builder.
+     */
+    public Builder logStreamName(String logStreamName) {
+      this.logStreamName = requireNonNull(logStreamName, "logStreamName");
+      return this;
+    }
+
+    /**
+     * Set the number of log streams to shard log events across. Defaults to {@code 1}.
+     *
+     * @param shardCount the number of shards. Must be positive.
+     * @return this builder.
+     */
+    public Builder shardCount(int shardCount) {
+      if (shardCount < 1) {
+        throw new IllegalArgumentException(
+            "Shard count must be positive (got " + shardCount + ")"
+        );
+      }
+      this.shardCount = shardCount;
+      return this;
+    }
+
+    /**
+     * Set the AWS region to send log events to.
+     *
+     * <p>Defaults to the {@code AWS_REGION} or {@code AWS_DEFAULT_REGION} environment variable.
+     *
+     * @param region the region, such as {@code eu-west-2}.
+     * @return this builder.
+     */
+    public Builder region(String region) {
+      this.region = requireNonNull(region, "region");
+      return this;
+    }
+
+    /**
+     * Override the CloudWatch Logs endpoint, rather than deriving it from the region.
+     *
+     * @param endpoint the endpoint, such as {@code http://localhost:4566}.
+     * @return this builder.
+     */
+    public Builder endpoint(String endpoint) {
+      this.endpoint = requireNonNull(endpoint, "endpoint");
+      return this;
+    }
+
+    /**
+     * Override the client used to call CloudWatch Logs.
+     *
+     * <p>If this is set, the region, endpoint, request body codec, credentials provider, retry
+     * policy, rate limiter and transport are ignored. Use
+     * {@link CloudWatchLogsClient#withRetries} to add retries to it.
+     *
+     * @param client the client.
+     * @return this builder.
+     */
+    public Builder client(CloudWatchLogsClient client) {
+      this.client = requireNonNull(client, "client");
+      return this;
+    }
+
+    /**
+     * Set the minimum capacity of the internal queue. Defaults to {@code 16384}.
+     *
+     * @param queueCapacity the minimum capacity.
+     * @return this builder.
+     */
+    public Builder queueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Set the policy that decides when pending entries are flushed.
+     *
+     * @param flushPolicy the flush policy.
+     * @return this builder.
+     */
+    public Builder flushPolicy(FlushPolicy flushPolicy) {
+      this.flushPolicy = requireNonNull(flushPolicy, "flushPolicy");
+      return this;
+    }
+
+    /**
+     * Set the storage to hold queued payloads in. Defaults to {@link PayloadStorage#heap()}.
+     *
+     * @param payloadStorage the payload storage. This must not be shared with any other
+     *                       forwarder.
+     * @return this builder.
+     */
+    public Builder payloadStorage(PayloadStorage payloadStorage) {
+      this.payloadStorage = requireNonNull(payloadStorage, "payloadStorage");
+      return this;
+    }
+
+    /**
+     * Set the policy that decides what happens to entries that do not fit in the queue.
+     *
+     * <p>Defaults to {@link OverflowPolicy#throwException()}.
+     *
+     * @param overflowPolicy the overflow policy.
+     * @return this builder.
+     */
+    public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+      this.overflowPolicy = requireNonNull(overflowPolicy, "overflowPolicy");
+      return this;
+    }
+
+    /**
+     * Set the journal to write each batch to before it is sent.
+     *
+     * <p>Batches left in the journal by a previous run are resent when the forwarder starts. By
+     * default, batches are not journaled.
+     *
+     * @param journal the journal. This must not be shared with any other forwarder.
+     * @return this builder.
+     */
+    public Builder journal(PutLogEventsJournal journal) {
+      this.journal = requireNonNull(journal, "journal");
+      return this;
+    }
+
+    /**
+     * Set the codec to encode request bodies with, such as {@link RequestBodyCodec#gzip()}.
+     *
+     * <p>This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided. By
+     * default, request bodies are not encoded.
+     *
+     * @param requestBodyCodec the codec.
+     * @return this builder.
+     */
+    public Builder requestBodyCodec(RequestBodyCodec requestBodyCodec) {
+      this.requestBodyCodec = requireNonNull(requestBodyCodec, "requestBodyCodec");
+      return this;
+    }
+
+    /**
+     * Set the provider of the credentials to sign requests with.
+     *
+     * <p>This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided.
+     * Defaults to {@link AwsCredentialProviderChain#defaults()}. Signing needs a region, so if an
+     * {@link #endpoint(String) endpoint} is set, the region must be set or available from the
+     * environment too.
+     *
+     * @param credentialsProvider the credentials provider.
+     * @return this builder.
+     */
+    public Builder credentialsProvider(AwsCredentialsProvider credentialsProvider) {
+      this.credentialsProvider = requireNonNull(credentialsProvider, "credentialsProvider");
+      unsigned = false;
+      return this;
+    }
+
+    /**
+     * Send requests without signing them.
+     *
+     * <p>CloudWatch Logs rejects unsigned requests, so this is only useful with local stand-ins
+     * for it. This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided.
+     *
+     * @return this builder.
+     */
+    public Builder unsigned() {
+      credentialsProvider = null;
+      unsigned = true;
+      return this;
+    }
+
+    /**
+     * Set the policy to retry failed requests with, and to limit the number of requests in
+     * flight with.
+     *
+     * <p>This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided. Defaults
+     * to {@link RetryPolicy#defaults()}.
+     *
+     * @param retryPolicy the retry policy.
+     * @return this builder.
+     */
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = requireNonNull(retryPolicy, "retryPolicy");
+      return this;
+    }
+
+    /**
+     * Disable retries for failed requests.
+     *
+     * <p>This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided.
+     *
+     * @return this builder.
+     */
+    public Builder noRetries() {
+      retryPolicy = null;
+      return this;
+    }
+
+    /**
+     * Set the rate limiter to pace requests with.
+     *
+     * <p>The limiter should be shared between every forwarder that sends log events with the
+     * same AWS account. This is ignored if a {@link #client(CloudWatchLogsClient) client} is
+     * provided. By default, requests are not rate limited.
+     *
+     * @param rateLimiter the rate limiter.
+     * @return this builder.
+     */
+    public Builder rateLimiter(PutLogEventsRateLimiter rateLimiter) {
+      this.rateLimiter = requireNonNull(rateLimiter, "rateLimiter");
+      return this;
+    }
+
+    /**
+     * Set the transport to send requests with.
+     *
+     * <p>This is ignored if a {@link #client(CloudWatchLogsClient) client} is provided. Defaults
+     * to {@link AwsHttpTransport#shared()}, so that every forwarder in the JVM shares its
+     * connections.
+     *
+     * @param transport the transport.
+     * @return this builder.
+     */
+    public Builder transport(AwsHttpTransport transport) {
+      this.transport = requireNonNull(transport, "transport");
+      return this;
+    }
+
+    /**
+     * Build the forwarder.
+     *
+     * @return the forwarder.
+     */
+    public CloudWatchLogsForwarder build() {
+      return new CloudWatchLogsForwarder(this);
+    }
+
+    private @Nullable AwsCredentialsProvider resolveCredentialsProvider() {
+      if (unsigned) {
+        return null;
+      }
+
+      return credentialsProvider == null
+          ? AwsCredentialProviderChain.defaults()
+          : credentialsProvider;
+    }
+
+    private String resolveEndpoint() {
+      if (endpoint != null) {
+        return endpoint;
+      }
+
+      return "https://logs." + resolveRegion() + ".amazonaws.com";
+    }
+
+    private String resolveRegion() {
+      var resolvedRegion = region;
+      if (resolvedRegion == null) {
+        resolvedRegion = System.getenv(AWS_REGION_ENVIRONMENT_VARIABLE);
+      }
+      if (resolvedRegion == null) {
+        resolvedRegion = System.getenv(AWS_DEFAULT_REGION_ENVIRONMENT_VARIABLE);
+      }
+      if (resolvedRegion == null) {
+        throw new IllegalStateException(
+            "No region was set, and neither " + AWS_REGION_ENVIRONMENT_VARIABLE + " nor "
+                + AWS_DEFAULT_REGION_ENVIRONMENT_VARIABLE + " are defined"
+        );
+      }
+
+      return resolvedRegion;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * {@link RequestBodyCodec} that compresses bodies with gzip.
+ *
+ * <p>Each {@link Deflater} and its output buffer is borrowed from a small pool for the duration
+ * of a single body, and reset and reused for later bodies. The pool holds no more encoders than
+ * there are processors, so threads that come and go, such as virtual threads, do not each keep
+ * their own. Encoders that do not fit back in the pool are ended straight away, freeing their
+ * native memory. The gzip framing is written directly around the raw deflate output, so no
+ * streams are created per body.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class GzipRequestBodyCodec implements RequestBodyCodec {
+
+  static final int DEFAULT_MINIMUM_BYTES = 4 * 1024;
+  static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+  private static final byte[] HEADER = {
+      (byte) 0x1f, (byte) 0x8b,  // Magic number.
+      Deflater.DEFLATED,         // Compression method.
+      0,                         // Flags.
+      0, 0, 0, 0,                // Modification time.
+      0,                         // Extra flags.
+      (byte) 0xff                // Operating system (unknown).
+  };
+  private static final int TRAILER_BYTES = 8;
+  private static final int INITIAL_BUFFER_BYTES = 8 * 1024;
+
+  private final int minimumBytes;
+  private final int level;
+  private final BlockingQueue<Encoder> encoders;
+
+  GzipRequestBodyCodec(int minimumBytes, int level) {
+    if (minimumBytes < 0) {
+      throw new IllegalArgumentException(
+          "Minimum bytes must not be negative (got " + minimumBytes + ")"
+      );
+    }
+
+    if (level != Deflater.DEFAULT_COMPRESSION
+        && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException(
+          "Compression level must be between 1 and 9, or -1 (got " + level + ")"
+      );
+    }
+
+    this.minimumBytes = minimumBytes;
+    this.level = level;
+    encoders = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Override
+  public String getContentEncoding() {
+    return "gzip";
+  }
+
+  @Override
+  public boolean shouldEncode(int length) {
+    return length >= minimumBytes;
+  }
+
+  @Override
+  public byte[] encode(byte[] body) {
+    return encodePooled(ByteBuffer.wrap(body));
+  }
+
+  @Override
+  public byte[] encode(ByteBuffer body) {
+    return encodePooled(body.duplicate());
+  }
+
+  private byte[] encodePooled(ByteBuffer body) {
+    var encoder = encoders.poll();
+    if (encoder == null) {
+      encoder = new Encoder(level);
+    }
+
+    try {
+      return encoder.encode(body);
+    } finally {
+      if (!encoders.offer(encoder)) {
+        encoder.deflater.end();
+      }
+    }
+  }
+
+  private static final class Encoder {
+
+    private final Deflater deflater;
+    private final CRC32 checksum;
+    private byte[] buffer;
+
+    private Encoder(int level) {
+      // Raw deflate output, as we write the gzip framing ourselves.
+      deflater = new Deflater(level, true);
+      checksum = new CRC32();
+      buffer = new byte[INITIAL_BUFFER_BYTES];
+    }
+
+    private byte[] encode(ByteBuffer body) {
+      var bodyLength = body.remaining();
+      deflater.reset();
+      deflater.setInput(body.duplicate());
+      deflater.finish();
+
+      System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+      var length = HEADER.length;
+
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+
+      if (length + TRAILER_BYTES > buffer.length) {
+        buffer = Arrays.copyOf(buffer, length + TRAILER_BYTES);
+      }
+
+      checksum.reset();
+      checksum.update(body);
+      writeIntLittleEndian((int) checksum.getValue(), length);
+      writeIntLittleEndian(bodyLength, length + Integer.BYTES);
+
+      return Arrays.copyOf(buffer, length + TRAILER_BYTES);
+    }
+
+    private void writeIntLittleEndian(int value, int offset) {
+      buffer[offset] = (byte) value;
+      buffer[offset + 1] = (byte) (value >>> 8);
+      buffer[offset + 2] = (byte) (value >>> 16);
+      buffer[offset + 3] = (byte) (value >>> 24);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import io.avaje.http.client.HttpClient;
+import io.avaje.http.client.HttpClientRequest;
+import io.avaje.http.client.HttpException;
+import io.avaje.jsonb.JsonType;
+import io.avaje.jsonb.Jsonb;
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsCredentialsProvider;
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsSigV4Signer;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
+import io.github.ascopes.cloudlogs4j.aws.http.AwsHttpTransport;
+import io.github.ascopes.cloudlogs4j.core.intern.UserAgent;
+import java.net.URI;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link CloudWatchLogsClient} that uses the CloudWatch Logs JSON API.
+ *
+ * <p>{@code PutLogEvents} requests are sent through the asynchronous API of the underlying
+ * {@code java.net.http} client, so the caller never blocks on the round trip. Their bodies are
+ * written by a {@link PutLogEventsRequestEncoder} directly from the batch contents. If a
+ * {@link RequestBodyCodec} is provided, their bodies are encoded with it when they are large
+ * enough to be worth it. If a {@link AwsSigV4Signer signer} and credentials provider are
+ * provided, requests are signed with them.
+ *
+ * <p>Connections are shared with other clients for the same endpoint through an
+ * {@link AwsHttpTransport}, and use HTTP/2 where CloudWatch Logs supports it, so concurrent
+ * requests are multiplexed over one connection.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class HttpCloudWatchLogsClient implements CloudWatchLogsClient {
+
+  private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+  private static final String TARGET_PREFIX = "Logs_20140328.";
+  private static final String RESOURCE_ALREADY_EXISTS = "ResourceAlreadyExistsException";
+  private static final String SIGNING_NAME = "logs";
+
+  private final HttpClient client;
+  private final PutLogEventsRequestEncoder putLogEventsRequestEncoder;
+  private final JsonType<CreateLogStreamRequest> createLogStreamRequestType;
+  private final String userAgent;
+  private final @Nullable RequestBodyCodec requestBodyCodec;
+  private final URI endpointUri;
+  private final @Nullable AwsSigV4Signer signer;
+  private final @Nullable AwsCredentialsProvider credentialsProvider;
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint         the CloudWatch Logs endpoint.
+   * @param requestBodyCodec the codec to encode {@code PutLogEvents} request bodies with, or
+   *                         {@code null} to send them as they are.
+   */
+  HttpCloudWatchLogsClient(String endpoint, @Nullable RequestBodyCodec requestBodyCodec) {
+    this(endpoint, requestBodyCodec, null, null);
+  }
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint            the CloudWatch Logs endpoint.
+   * @param requestBodyCodec    the codec to encode {@code PutLogEvents} request bodies with, or
+   *                            {@code null} to send them as they are.
+   * @param region              the region to sign requests for, or {@code null} to send requests
+   *                            unsigned.
+   * @param credentialsProvider the provider of the credentials to sign requests with, or
+   *                            {@code null} to send requests unsigned.
+   */
+  HttpCloudWatchLogsClient(
+      String endpoint,
+      @Nullable RequestBodyCodec requestBodyCodec,
+      @Nullable String region,
+      @Nullable AwsCredentialsProvider credentialsProvider
+  ) {
+    this(endpoint, requestBodyCodec, region, credentialsProvider, AwsHttpTransport.shared());
+  }
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint            the CloudWatch Logs endpoint.
+   * @param requestBodyCodec    the codec to encode {@code PutLogEvents} request bodies with, or
+   *                            {@code null} to send them as they are.
+   * @param region              the region to sign requests for, or {@code null} to send requests
+   *                            unsigned.
+   * @param credentialsProvider the provider of the credentials to sign requests with, or
+   *                            {@code null} to send requests unsigned.
+   * @param transport           the transport to send requests with.
+   */
+  HttpCloudWatchLogsClient(
+      String endpoint,
+      @Nullable RequestBodyCodec requestBodyCodec,
+      @Nullable String region,
+      @Nullable AwsCredentialsProvider credentialsProvider,
+      AwsHttpTransport transport
+  ) {
+    client = HttpClient.builder()
+        .baseUrl(endpoint)
+        .client(transport.getClient(endpoint, Duration.ofSeconds(10)))
+        .requestLogging(false)
+        .requestTimeout(Duration.ofSeconds(30))
+        .build();
+
+    var jsonb = Jsonb.builder().build();
+    putLogEventsRequestEncoder = new PutLogEventsRequestEncoder();
+    createLogStreamRequestType = jsonb.type(CreateLogStreamRequest.class);
+    userAgent = UserAgent.getUserAgentFor(getClass().getPackage());
+    this.requestBodyCodec = requestBodyCodec;
+    endpointUri = URI.create(endpoint);
+
+    if (region == null || credentialsProvider == null) {
+      signer = null;
+      this.credentialsProvider = null;
+    } else {
+      signer = new AwsSigV4Signer(region, SIGNING_NAME);
+      this.credentialsProvider = credentialsProvider;
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> putLogEvents(
+      String logGroupName,
+      String logStreamName,
+      PutLogEventsBatch batch
+  ) {
+    var body = putLogEventsRequestEncoder.encode(logGroupName, logStreamName, batch);
+    @Nullable ByteBuffer pooledBody = body;
+
+    var result = new CompletableFuture<Void>();
+    var codec = requestBodyCodec;
+    String contentEncoding = null;
+
+    if (codec != null && codec.shouldEncode(body.remaining())) {
+      contentEncoding = codec.getContentEncoding();
+      body = ByteBuffer.wrap(codec.encode(body));
+      // The compressed copy is sent instead, so the buffer can be reused straight away.
+      putLogEventsRequestEncoder.release(pooledBody);
+      pooledBody = null;
+    }
+
+    HttpClientRequest request;
+    try {
+      request = newRequest("PutLogEvents", body, contentEncoding);
+    } catch (AwsException ex) {
+      releaseIfNotNull(pooledBody);
+      result.completeExceptionally(ex);
+      return result;
+    }
+
+    var bufferToRelease = pooledBody;
+    request
+        .POST()
+        .async()
+        .asString()
+        .whenComplete((response, ex) -> {
+          releaseIfNotNull(bufferToRelease);
+          try {
+            if (ex != null) {
+              throw translateFailure(ex);
+            }
+            checkResponse(response);
+            result.complete(null);
+          } catch (AwsException failure) {
+            result.completeExceptionally(failure);
+          }
+        });
+
+    return result;
+  }
+
+  @Override
+  public void createLogStream(String logGroupName, String logStreamName) throws AwsException {
+    var body = createLogStreamRequestType
+        .toJsonBytes(new CreateLogStreamRequest(logGroupName, logStreamName));
+
+    try {
+      checkResponse(
+          newRequest("CreateLogStream", ByteBuffer.wrap(body), null).POST().asString()
+      );
+    } catch (HttpException ex) {
+      throwUnlessAlreadyExists(translateFailure(ex));
+    } catch (AwsHttpResponseException ex) {
+      throwUnlessAlreadyExists(ex);
+    }
+  }
+
+  private HttpClientRequest newRequest(
+      String operation,
+      ByteBuffer body,
+      @Nullable String contentEncoding
+  ) throws AwsException {
+    var headers = new LinkedHashMap<String, String>(8);
+    headers.put("Content-Type", CONTENT_TYPE);
+    headers.put("X-Amz-Target", TARGET_PREFIX + operation);
+    if (contentEncoding != null) {
+      headers.put("Content-Encoding", contentEncoding);
+    }
+
+    if (signer != null && credentialsProvider != null) {
+      var credentials = credentialsProvider.getCredentials();
+      if (credentials == null) {
+        throw new AwsMissingValueException("No AWS credentials were found to sign requests with");
+      }
+      headers.putAll(signer.sign("POST", endpointUri, headers, body, credentials));
+    }
+
+    var request = client.request()
+        // Proxies may rewrite this, so it is never signed.
+        .header("User-Agent", userAgent)
+        .body(BodyPublishers.ofByteArray(
+            body.array(),
+            body.arrayOffset() + body.position(),
+            body.remaining()
+        ));
+    headers.forEach(request::header);
+    return request;
+  }
+
+  private void releaseIfNotNull(@Nullable ByteBuffer buffer) {
+    if (buffer != null) {
+      putLogEventsRequestEncoder.release(buffer);
+    }
+  }
+
+  private static void checkResponse(HttpResponse<String> response)
+      throws AwsHttpResponseException {
+    if (response.statusCode() >= 300) {
+      throw new AwsHttpResponseException(
+          response.request().method(),
+          response.uri(),
+          response.statusCode(),
+          response.body()
+      );
+    }
+  }
+
+  private static void throwUnlessAlreadyExists(AwsException ex) throws AwsException {
+    if (ex instanceof AwsHttpResponseException responseEx
+        && responseEx.getResponseStatus() == 400
+        && responseEx.getResponseBody().contains(RESOURCE_ALREADY_EXISTS)) {
+      return;
+    }
+    throw ex;
+  }
+
+  private static AwsException translateFailure(Throwable ex) {
+    if (ex instanceof CompletionException && ex.getCause() != null) {
+      ex = ex.getCause();
+    }
+
+    if (ex instanceof HttpException httpEx && httpEx.getCause() == null) {
+      return new AwsHttpResponseException(httpEx);
+    }
+
+    return new AwsIoException("Failed to call CloudWatch Logs", ex);
+  }
+}
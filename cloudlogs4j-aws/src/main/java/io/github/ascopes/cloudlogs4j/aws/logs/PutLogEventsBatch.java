@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A reusable batch of log events for a single CloudWatch Logs {@code PutLogEvents} call.
+ *
+ * <p>All storage is allocated up front and sized to the API limits, so a batch can be cleared
+ * and refilled indefinitely without allocating. The size of the batch, as CloudWatch computes
+ * it, is tracked incrementally as events are added.
+ *
+ * <p>Malformed UTF-8 sequences in event contents are replaced with {@code U+FFFD} as they are
+ * added, as the service would reject the request otherwise. The size of the batch counts the
+ * replacements, so it matches the size of the messages that are eventually sent.
+ *
+ * <p>Events are stored in the order they were added. Call {@link #sort()} before reading them to
+ * get them in timestamp order, as CloudWatch requires.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class PutLogEventsBatch {
+
+  /**
+   * The maximum size of a batch, in bytes.
+   */
+  public static final int MAX_BATCH_BYTES = 1_048_576;
+
+  /**
+   * The number of bytes CloudWatch adds to the size of each event in a batch.
+   */
+  public static final int EVENT_OVERHEAD_BYTES = 26;
+
+  /**
+   * The maximum number of events in a batch.
+   */
+  public static final int MAX_BATCH_EVENTS = 10_000;
+
+  /**
+   * The maximum time span between the earliest and latest events in a batch, in milliseconds.
+   */
+  public static final long MAX_BATCH_SPAN_MILLIS = 24L * 60 * 60 * 1_000;
+
+  /**
+   * The largest event payload that can be added to a batch, in bytes.
+   */
+  public static final int MAX_EVENT_BYTES = MAX_BATCH_BYTES - EVENT_OVERHEAD_BYTES;
+
+  // Sort keys pack the offset from the earliest timestamp into the upper bits, and the event
+  // index into the lower bits. The span limit keeps the offset well within 37 bits.
+  private static final int SORT_INDEX_BITS = 14;
+  private static final long SORT_INDEX_MASK = (1L << SORT_INDEX_BITS) - 1;
+
+  private static final byte[] REPLACEMENT = {(byte) 0xef, (byte) 0xbf, (byte) 0xbd};
+
+  private final long[] timestamps;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final long[] sortKeys;
+  private final byte[] payloads;
+  private int count;
+  private int byteSize;
+  private int payloadPosition;
+  private long minTimestamp;
+  private long maxTimestamp;
+  private boolean sorted;
+
+  /**
+   * Initialise an empty batch.
+   */
+  public PutLogEventsBatch() {
+    timestamps = new long[MAX_BATCH_EVENTS];
+    offsets = new int[MAX_BATCH_EVENTS];
+    lengths = new int[MAX_BATCH_EVENTS];
+    sortKeys = new long[MAX_BATCH_EVENTS];
+    payloads = new byte[MAX_EVENT_BYTES];
+    clear();
+  }
+
+  /**
+   * Attempt to add an event to the batch.
+   *
+   * <p>The event is rejected if adding it would exceed the event count, byte size or time span
+   * limits, measured after any malformed UTF-8 sequences have been replaced. On success, the
+   * contents are copied into the batch and the buffer position is advanced to its limit. On
+   * failure, the buffer is left untouched.
+   *
+   * @param timestamp the UNIX timestamp of the event, in milliseconds.
+   * @param contents  the byte-encoded contents of the event.
+   * @return {@code true} if the event was added, or {@code false} if it did not fit.
+   */
+  public boolean tryAdd(long timestamp, ByteBuffer contents) {
+    var rawLength = contents.remaining();
+
+    // Replacements only ever make the contents longer, so this rejects most events that do not
+    // fit before anything is copied.
+    if (count == MAX_BATCH_EVENTS || !fits(rawLength)) {
+      return false;
+    }
+
+    var newMinTimestamp = count == 0 ? timestamp : Math.min(minTimestamp, timestamp);
+    var newMaxTimestamp = count == 0 ? timestamp : Math.max(maxTimestamp, timestamp);
+
+    if (newMaxTimestamp - newMinTimestamp >= MAX_BATCH_SPAN_MILLIS) {
+      return false;
+    }
+
+    contents.get(contents.position(), payloads, payloadPosition, rawLength);
+    var length = sanitizedLength(payloads, payloadPosition, payloadPosition + rawLength);
+
+    if (length != rawLength) {
+      if (!fits(length)) {
+        return false;
+      }
+      sanitize(payloads, payloadPosition, rawLength, length);
+    }
+
+    contents.position(contents.limit());
+    timestamps[count] = timestamp;
+    offsets[count] = payloadPosition;
+    lengths[count] = length;
+    payloadPosition += length;
+    byteSize += length + EVENT_OVERHEAD_BYTES;
+    minTimestamp = newMinTimestamp;
+    maxTimestamp = newMaxTimestamp;
+    sorted = sorted && (count == 0 || timestamp >= timestamps[count - 1]);
+    ++count;
+    return true;
+  }
+
+  /**
+   * Sort the events in the batch by timestamp.
+   *
+   * <p>Events with identical timestamps keep the order they were added in. This is a no-op if the
+   * events were already added in order.
+   */
+  public void sort() {
+    if (sorted) {
+      return;
+    }
+
+    for (var i = 0; i < count; ++i) {
+      sortKeys[i] = (timestamps[i] - minTimestamp) << SORT_INDEX_BITS | i;
+    }
+
+    Arrays.sort(sortKeys, 0, count);
+
+    // Apply the permutation via the sort key array. The payload bytes themselves never move, only
+    // the offsets that refer to them. Timestamps can be recovered directly from the sort keys.
+    for (var i = 0; i < count; ++i) {
+      var source = (int) (sortKeys[i] & SORT_INDEX_MASK);
+      timestamps[i] = minTimestamp + (sortKeys[i] >>> SORT_INDEX_BITS);
+      sortKeys[i] = (long) offsets[source] << 32 | lengths[source];
+    }
+
+    for (var i = 0; i < count; ++i) {
+      offsets[i] = (int) (sortKeys[i] >>> 32);
+      lengths[i] = (int) sortKeys[i];
+    }
+
+    sorted = true;
+  }
+
+  /**
+   * Remove all events from the batch so that it can be reused.
+   */
+  public void clear() {
+    count = 0;
+    byteSize = 0;
+    payloadPosition = 0;
+    minTimestamp = 0L;
+    maxTimestamp = 0L;
+    sorted = true;
+  }
+
+  /**
+   * Determine if the batch has no events.
+   *
+   * @return {@code true} if the batch is empty, or {@code false} otherwise.
+   */
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * Get the number of events in the batch.
+   *
+   * @return the number of events.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the size of the batch as CloudWatch computes it, in bytes.
+   *
+   * <p>This is the sum of the event payload sizes, plus {@link #EVENT_OVERHEAD_BYTES} for each
+   * event.
+   *
+   * @return the size of the batch.
+   */
+  public int byteSize() {
+    return byteSize;
+  }
+
+  /**
+   * Get the earliest timestamp in the batch.
+   *
+   * @return the earliest timestamp, or {@code 0} if the batch is empty.
+   */
+  public long getMinTimestamp() {
+    return minTimestamp;
+  }
+
+  /**
+   * Get the latest timestamp in the batch.
+   *
+   * @return the latest timestamp, or {@code 0} if the batch is empty.
+   */
+  public long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  /**
+   * Get the timestamp of the event at the given index.
+   *
+   * @param index the index of the event.
+   * @return the timestamp, in milliseconds.
+   */
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * Get a read-only view of the contents of the event at the given index.
+   *
+   * @param index the index of the event.
+   * @return the contents of the event.
+   */
+  public ByteBuffer getContents(int index) {
+    checkIndex(index);
+    return ByteBuffer.wrap(payloads, offsets[index], lengths[index]).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Get the length of the contents of the event at the given index.
+   *
+   * @param index the index of the event.
+   * @return the length of the contents, in bytes.
+   */
+  int getContentsLength(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+
+  /**
+   * Get the offset of the contents of the event at the given index within
+   * {@link #getPayloadArray()}.
+   *
+   * @param index the index of the event.
+   * @return the offset of the contents, in bytes.
+   */
+  int getContentsOffset(int index) {
+    checkIndex(index);
+    return offsets[index];
+  }
+
+  /**
+   * Get the array that the contents of every event are stored in.
+   *
+   * <p>This is exposed so that encoders can read the contents in place. It must not be modified.
+   *
+   * @return the payload array.
+   */
+  byte[] getPayloadArray() {
+    return payloads;
+  }
+
+  /**
+   * Copy the contents of the event at the given index into a buffer, without creating a view.
+   *
+   * @param index the index of the event.
+   * @param dest  the buffer to copy into, at its position.
+   */
+  void copyContents(int index, ByteBuffer dest) {
+    checkIndex(index);
+    dest.put(payloads, offsets[index], lengths[index]);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(
+          "Index " + index + " out of bounds for batch of size " + count
+      );
+    }
+  }
+
+  private boolean fits(int length) {
+    return (long) byteSize + length + EVENT_OVERHEAD_BYTES <= MAX_BATCH_BYTES;
+  }
+
+  /**
+   * Determine the length of the given UTF-8 bytes once malformed sequences are replaced.
+   */
+  private static int sanitizedLength(byte[] source, int start, int end) {
+    var length = end - start;
+    var i = start;
+
+    while (i < end) {
+      if (source[i] >= 0) {
+        ++i;
+        continue;
+      }
+
+      var sequenceLength = validSequenceLength(source, i, end);
+      if (sequenceLength > 0) {
+        i += sequenceLength;
+      } else {
+        length += REPLACEMENT.length + sequenceLength;
+        i -= sequenceLength;
+      }
+    }
+
+    return length;
+  }
+
+  /**
+   * Replace malformed sequences in the UTF-8 bytes at the given offset, in place.
+   *
+   * <p>The bytes are first moved to the end of the space the sanitized contents will take, and
+   * then written forwards from there. Replacements never shrink the contents, so the write
+   * position never overtakes the read position.
+   */
+  private static void sanitize(byte[] payloads, int offset, int rawLength, int sanitizedLength) {
+    var readPosition = offset + sanitizedLength - rawLength;
+    var end = offset + sanitizedLength;
+    var writePosition = offset;
+    System.arraycopy(payloads, offset, payloads, readPosition, rawLength);
+
+    while (readPosition < end) {
+      var b = payloads[readPosition];
+      if (b >= 0) {
+        payloads[writePosition++] = b;
+        ++readPosition;
+        continue;
+      }
+
+      var sequenceLength = validSequenceLength(payloads, readPosition, end);
+      if (sequenceLength > 0) {
+        System.arraycopy(payloads, readPosition, payloads, writePosition, sequenceLength);
+        writePosition += sequenceLength;
+        readPosition += sequenceLength;
+      } else {
+        System.arraycopy(REPLACEMENT, 0, payloads, writePosition, REPLACEMENT.length);
+        writePosition += REPLACEMENT.length;
+        readPosition -= sequenceLength;
+      }
+    }
+  }
+
+  /**
+   * Validate the multibyte UTF-8 sequence that starts at the given index.
+   *
+   * @return the length of the sequence if it is valid, or the negated length of the maximal
+   *     malformed subpart to replace if it is not.
+   */
+  private static int validSequenceLength(byte[] source, int start, int end) {
+    var lead = source[start] & 0xff;
+    int expected;
+    int secondMin = 0x80;
+    int secondMax = 0xbf;
+
+    if (lead >= 0xc2 && lead <= 0xdf) {
+      expected = 2;
+    } else if (lead >= 0xe0 && lead <= 0xef) {
+      expected = 3;
+      if (lead == 0xe0) {
+        secondMin = 0xa0;
+      } else if (lead == 0xed) {
+        // Reject encoded UTF-16 surrogates.
+        secondMax = 0x9f;
+      }
+    } else if (lead >= 0xf0 && lead <= 0xf4) {
+      expected = 4;
+      if (lead == 0xf0) {
+        secondMin = 0x90;
+      } else if (lead == 0xf4) {
+        secondMax = 0x8f;
+      }
+    } else {
+      return -1;
+    }
+
+    for (var i = 1; i < expected; ++i) {
+      if (start + i >= end) {
+        return -i;
+      }
+
+      var b = source[start + i] & 0xff;
+      var min = i == 1 ? secondMin : 0x80;
+      var max = i == 1 ? secondMax : 0xbf;
+      if (b < min || b > max) {
+        return -i;
+      }
+    }
+
+    return expected;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntryConsumer;
+import java.nio.ByteBuffer;
+
+/**
+ * Assembles log entries drained from a forwarder queue into {@code PutLogEvents} batches.
+ *
+ * <p>Batches are cut greedily: entries are added to the current batch until the next entry would
+ * break one of the API limits on event count, byte size or time span, at which point the current
+ * batch is sorted and passed to the handler, and the entry starts a new batch.
+ *
+ * <p>Entries that are too large to ever fit in a batch, including once any malformed UTF-8
+ * sequences in them are replaced, are dropped and counted.
+ *
+ * <p>This class is not thread-safe, and is expected to only be used from a forwarder thread.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class PutLogEventsBatchAssembler implements LogEntryConsumer {
+
+  private final PutLogEventsBatchHandler handler;
+  private PutLogEventsBatch batch;
+  private volatile long oversizedLogEntryCount;
+
+  /**
+   * Initialise this assembler.
+   *
+   * @param handler the handler to pass completed batches to.
+   */
+  public PutLogEventsBatchAssembler(PutLogEventsBatchHandler handler) {
+    this.handler = handler;
+    batch = new PutLogEventsBatch();
+    oversizedLogEntryCount = 0L;
+  }
+
+  @Override
+  public void accept(long timestamp, ByteBuffer contents) throws AwsException {
+    if (contents.remaining() > PutLogEventsBatch.MAX_EVENT_BYTES) {
+      ++oversizedLogEntryCount;
+      return;
+    }
+
+    if (!batch.tryAdd(timestamp, contents)) {
+      flush();
+
+      if (!batch.tryAdd(timestamp, contents)) {
+        // Within the size limit, but not once its malformed UTF-8 sequences are replaced.
+        ++oversizedLogEntryCount;
+      }
+    }
+  }
+
+  /**
+   * Pass the current batch to the handler if it contains any entries.
+   *
+   * <p>The assembler continues with whichever batch the handler returns.
+   *
+   * @throws AwsException if the handler fails. The batch is discarded either way.
+   */
+  public void flush() throws AwsException {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    PutLogEventsBatch next;
+    try {
+      batch.sort();
+      next = handler.handleBatch(batch);
+    } catch (AwsException | RuntimeException ex) {
+      batch.clear();
+      throw ex;
+    }
+
+    next.clear();
+    batch = next;
+  }
+
+  /**
+   * Ask the handler to resend any batches that were persisted by a previous run.
+   *
+   * @throws AwsException if the batches cannot be resent.
+   */
+  public void recover() throws AwsException {
+    handler.recover();
+  }
+
+  /**
+   * Wait for the handler to finish with every batch that has been passed to it.
+   *
+   * @throws AwsException if waiting fails.
+   */
+  public void awaitCompletion() throws AwsException {
+    handler.awaitCompletion();
+  }
+
+  /**
+   * Get the number of entries in the current batch.
+   *
+   * @return the number of pending entries.
+   */
+  public int getPendingLogEntryCount() {
+    return batch.size();
+  }
+
+  /**
+   * Get the size of the current batch, in bytes, as CloudWatch computes it.
+   *
+   * @return the size of the pending batch.
+   */
+  public int getPendingBatchBytes() {
+    return batch.byteSize();
+  }
+
+  /**
+   * Get the number of entries that have been dropped for being too large to fit in a batch.
+   *
+   * @return the number of dropped entries.
+   */
+  public long getOversizedLogEntryCount() {
+    return oversizedLogEntryCount;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+
+/**
+ * Callback that receives completed {@code PutLogEvents} batches.
+ *
+ * <p>Ownership of each batch passes to the handler, which returns a batch for the caller to fill
+ * next. Synchronous handlers can simply return the batch they were given once they are done with
+ * it. Asynchronous handlers can keep hold of the batch until it has been delivered, and return a
+ * different one from a pool instead, so that batches never need to be copied.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+@FunctionalInterface
+public interface PutLogEventsBatchHandler {
+
+  /**
+   * Handle a completed batch.
+   *
+   * <p>The batch is sorted by timestamp before it is passed to this method. If this method
+   * throws, the caller keeps ownership of the batch and discards its contents.
+   *
+   * @param batch the batch.
+   * @return the batch that the caller should fill next. The caller clears it before use.
+   * @throws AwsException if the batch cannot be handled.
+   */
+  PutLogEventsBatch handleBatch(PutLogEventsBatch batch) throws AwsException;
+
+  /**
+   * Resend any batches that were persisted by a previous run but never delivered.
+   *
+   * <p>This is called once, before any batches are handed to this handler. The default
+   * implementation does nothing.
+   *
+   * @throws AwsException if the batches cannot be resent.
+   */
+  default void recover() throws AwsException {
+    // Nothing is persisted by default.
+  }
+
+  /**
+   * Wait for all batches that have been handed to this handler to finish being handled.
+   *
+   * <p>The default implementation does nothing, which is correct for synchronous handlers.
+   *
+   * @throws AwsException if waiting fails.
+   */
+  default void awaitCompletion() throws AwsException {
+    // Nothing to wait for.
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Classification of a failed {@code PutLogEvents} request.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+enum PutLogEventsFailure {
+
+  /**
+   * CloudWatch is throttling requests, so the request should be retried with fewer in flight.
+   */
+  THROTTLED,
+
+  /**
+   * The request failed for a transient reason, and should be retried.
+   */
+  RETRYABLE,
+
+  /**
+   * CloudWatch had already accepted the batch, so the request can be treated as a success.
+   */
+  ALREADY_ACCEPTED,
+
+  /**
+   * The request cannot succeed by being retried.
+   */
+  FATAL;
+
+  private static final String THROTTLING_EXCEPTION = "ThrottlingException";
+  private static final String DATA_ALREADY_ACCEPTED_EXCEPTION = "DataAlreadyAcceptedException";
+  private static final String INVALID_SEQUENCE_TOKEN_EXCEPTION = "InvalidSequenceTokenException";
+
+  /**
+   * Classify a failure.
+   *
+   * @param ex the failure.
+   * @return the classification.
+   */
+  static PutLogEventsFailure classify(Throwable ex) {
+    if (ex instanceof CompletionException && ex.getCause() != null) {
+      ex = ex.getCause();
+    }
+
+    if (ex instanceof AwsHttpResponseException responseEx) {
+      var status = responseEx.getResponseStatus();
+      var body = responseEx.getResponseBody();
+
+      if (status == 429 || status == 503 || body.contains(THROTTLING_EXCEPTION)) {
+        return THROTTLED;
+      }
+
+      if (body.contains(DATA_ALREADY_ACCEPTED_EXCEPTION)) {
+        return ALREADY_ACCEPTED;
+      }
+
+      // Sequence tokens are never sent, and are no longer checked by CloudWatch, so a resend is
+      // enough to get past this if an older endpoint still reports it.
+      if (status >= 500 || body.contains(INVALID_SEQUENCE_TOKEN_EXCEPTION)) {
+        return RETRYABLE;
+      }
+
+      return FATAL;
+    }
+
+    // Anything else that went wrong with the I/O, such as a refused connection or a timeout.
+    return ex instanceof AwsIoException ? RETRYABLE : FATAL;
+  }
+}
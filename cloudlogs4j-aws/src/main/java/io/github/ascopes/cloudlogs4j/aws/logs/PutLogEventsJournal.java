@@ -0,0 +1,592 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Write-ahead journal of {@code PutLogEvents} batches that have not yet been delivered.
+ *
+ * <p>Each batch is appended to the journal, and forced to the storage device, before it is sent.
+ * Once CloudWatch has accepted the batch, it is acknowledged. The journal is written as a series
+ * of segment files, and each segment is deleted once every batch within it has been acknowledged.
+ * Batches that were journaled by a previous run but never acknowledged, for example because the
+ * process was killed, are recovered when the journal is opened, and can be replayed.
+ *
+ * <p>Forcing the journal is the expensive part of journaling, so it is done once per batch
+ * rather than once per event. Each batch therefore acts as a group commit of all of its events.
+ *
+ * <p>Each record holds the length of the record, the sequence number of the batch, the number of
+ * events, the timestamp, length and contents of each event, and a CRC32C checksum. Records that
+ * were only partially written are detected and discarded on recovery. Batches that fail to be
+ * sent can be requeued, so that they are read back from the journal and resent rather than
+ * holding the journal open forever. Anything still unacknowledged when the process stops is
+ * recovered by the next run, so delivery is at-least-once.
+ *
+ * <p>Appending and replaying must only be done from a single thread. Acknowledging and
+ * requeueing are thread-safe. The directory must not be shared with any other journal.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class PutLogEventsJournal {
+
+  // Length, sequence, event count.
+  private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+  // Timestamp, length.
+  private static final int EVENT_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+  private static final int MAX_RECORD_BYTES = RECORD_HEADER_BYTES
+      + PutLogEventsBatch.MAX_BATCH_EVENTS * EVENT_HEADER_BYTES
+      + PutLogEventsBatch.MAX_BATCH_BYTES
+      + Integer.BYTES;
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".wal";
+
+  private final Path directory;
+  private final long segmentBytes;
+  private final CRC32C checksum;
+  private final ByteBuffer writeBuffer;
+  private final CRC32C readChecksum;
+
+  // Guarded by this. Segments are ordered from oldest to newest.
+  private final Deque<Segment> segments;
+  private final List<Segment> recoveredSegments;
+  private final Deque<RecordLocation> requeued;
+  private @Nullable Segment active;
+  private long nextSequence;
+
+  // Only accessed from the thread that appends and replays. The replayer may wait on
+  // acknowledgements, so the write buffer cannot be shared.
+  private @Nullable ByteBuffer readBuffer;
+  private @Nullable PutLogEventsBatch spareBatch;
+
+  private PutLogEventsJournal(Path directory, long segmentBytes) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    checksum = new CRC32C();
+    writeBuffer = ByteBuffer.allocateDirect(MAX_RECORD_BYTES);
+    readChecksum = new CRC32C();
+    segments = new ArrayDeque<>();
+    recoveredSegments = new ArrayList<>();
+    requeued = new ArrayDeque<>();
+    active = null;
+    nextSequence = 0;
+    readBuffer = null;
+    spareBatch = null;
+  }
+
+  /**
+   * Get the directory that segments are stored in.
+   *
+   * @return the directory.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Get the number of batches that have been journaled but not acknowledged yet.
+   *
+   * @return the number of unacknowledged batches.
+   */
+  public synchronized long getUnacknowledgedBatchCount() {
+    var count = 0L;
+    for (var segment : segments) {
+      count += segment.unacknowledged;
+    }
+    return count;
+  }
+
+  /**
+   * Append a batch to the journal, and force it to the storage device.
+   *
+   * <p>The journal is only locked while the record is written, and not while it is forced, so
+   * batches can still be acknowledged in the meantime.
+   *
+   * @param batch the batch to append.
+   * @return the sequence number to acknowledge the batch with once it has been delivered.
+   * @throws AwsIoException if the batch cannot be journaled.
+   */
+  public long append(PutLogEventsBatch batch) throws AwsIoException {
+    // Only this thread changes the next sequence number.
+    long sequence;
+    synchronized (this) {
+      sequence = nextSequence;
+    }
+    var buffer = writeBuffer.clear();
+
+    buffer.position(Integer.BYTES);
+    buffer.putLong(sequence);
+    buffer.putInt(batch.size());
+
+    for (var i = 0; i < batch.size(); ++i) {
+      buffer.putLong(batch.getTimestamp(i));
+      buffer.putInt(batch.getContentsLength(i));
+      batch.copyContents(i, buffer);
+    }
+
+    checksum.reset();
+    checksum.update(buffer.slice(Integer.BYTES, buffer.position() - Integer.BYTES));
+    buffer.putInt((int) checksum.getValue());
+    buffer.putInt(0, buffer.position() - Integer.BYTES);
+    buffer.flip();
+
+    Segment segment;
+
+    try {
+      synchronized (this) {
+        segment = active;
+
+        if (segment == null || segment.size >= segmentBytes) {
+          segment = createSegment(sequence);
+        }
+
+        // Writes are positional, so a partially written record is overwritten by the next one.
+        var position = segment.size;
+        while (buffer.hasRemaining()) {
+          position += segment.channel.write(buffer, position);
+        }
+
+        // Counting the record as unacknowledged stops the segment being truncated or closed
+        // while it is forced below.
+        segment.addRecord(sequence, segment.size);
+        segment.size = position;
+        ++nextSequence;
+      }
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to append batch " + sequence + " to the journal", ex);
+    }
+
+    try {
+      segment.channel.force(false);
+    } catch (IOException ex) {
+      // The record was written, so it is still delivered from the journal later on.
+      requeue(sequence);
+      throw new AwsIoException("Failed to force batch " + sequence + " to the journal", ex);
+    }
+
+    return sequence;
+  }
+
+  /**
+   * Acknowledge that a batch has been delivered, so that it is no longer needed.
+   *
+   * <p>Each batch must only be acknowledged once.
+   *
+   * @param sequence the sequence number of the batch.
+   * @throws AwsIoException if the journal cannot be truncated.
+   */
+  public synchronized void acknowledge(long sequence) throws AwsIoException {
+    for (var segment : segments) {
+      if (sequence >= segment.firstSequence && sequence <= segment.lastSequence) {
+        --segment.unacknowledged;
+        break;
+      }
+    }
+
+    try {
+      Segment head;
+      while ((head = segments.peekFirst()) != null
+          && head != active
+          && head.unacknowledged == 0) {
+        segments.removeFirst();
+        head.channel.close();
+        Files.deleteIfExists(head.path);
+      }
+
+      var segment = active;
+      if (segment != null && segment.unacknowledged == 0 && segment.size > 0) {
+        // Everything has been delivered, so there is nothing worth keeping.
+        segment.channel.truncate(0);
+        segment.size = 0;
+        segment.reset(nextSequence);
+      }
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to truncate the journal", ex);
+    }
+  }
+
+  /**
+   * Requeue a batch that failed to be delivered, so that it is resent by the next call to
+   * {@link #replayRequeued(Replayer)}.
+   *
+   * <p>The batch stays unacknowledged until it is acknowledged after being resent. Batches that
+   * are not in the journal are ignored.
+   *
+   * @param sequence the sequence number of the batch.
+   */
+  public synchronized void requeue(long sequence) {
+    for (var segment : segments) {
+      if (sequence >= segment.firstSequence && sequence <= segment.lastSequence) {
+        requeued.addLast(new RecordLocation(segment, segment.getPosition(sequence)));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Read every batch that has been requeued back from the journal, and replay it, in the order
+   * that the batches were requeued.
+   *
+   * <p>Replayed batches keep their original sequence numbers, and must still be acknowledged
+   * once they have been delivered.
+   *
+   * @param replayer the callback to pass each batch to.
+   * @throws AwsException if the journal cannot be read, or the replayer raises an exception.
+   */
+  public void replayRequeued(Replayer replayer) throws AwsException {
+    while (true) {
+      RecordLocation location;
+      synchronized (this) {
+        location = requeued.pollFirst();
+      }
+
+      if (location == null) {
+        return;
+      }
+
+      // Unacknowledged records are never truncated, and their segments are never closed.
+      replayRecord(location.segment, location.position, replayer);
+    }
+  }
+
+  /**
+   * Replay every batch that was recovered when the journal was opened, in the order they were
+   * journaled.
+   *
+   * <p>Replayed batches keep their original sequence numbers, and must still be acknowledged
+   * once they have been delivered.
+   *
+   * @param replayer the callback to pass each batch to.
+   * @throws AwsException if the journal cannot be read, or the replayer raises an exception.
+   */
+  public void replay(Replayer replayer) throws AwsException {
+    List<Segment> toReplay;
+
+    synchronized (this) {
+      toReplay = List.copyOf(recoveredSegments);
+      recoveredSegments.clear();
+    }
+
+    for (var segment : toReplay) {
+      var position = 0L;
+
+      while (position < segment.size) {
+        var recordBytes = replayRecord(segment, position, replayer);
+
+        if (recordBytes < 0) {
+          break;
+        }
+
+        position += recordBytes;
+      }
+    }
+  }
+
+  private int replayRecord(
+      Segment segment,
+      long position,
+      Replayer replayer
+  ) throws AwsException {
+    var buffer = readBuffer;
+    if (buffer == null) {
+      buffer = ByteBuffer.allocateDirect(MAX_RECORD_BYTES);
+      readBuffer = buffer;
+    }
+
+    int recordBytes;
+    try {
+      recordBytes = readRecord(segment.channel, position, buffer, readChecksum);
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to read " + segment.path, ex);
+    }
+
+    if (recordBytes < 0) {
+      return -1;
+    }
+
+    var batch = spareBatch;
+    if (batch == null) {
+      batch = new PutLogEventsBatch();
+    }
+
+    var sequence = buffer.getLong();
+    var count = buffer.getInt();
+    batch.clear();
+
+    for (var i = 0; i < count; ++i) {
+      var timestamp = buffer.getLong();
+      var length = buffer.getInt();
+      var end = buffer.position() + length;
+      var limit = buffer.limit();
+      batch.tryAdd(timestamp, buffer.limit(end));
+      buffer.limit(limit).position(end);
+    }
+
+    spareBatch = replayer.replay(sequence, batch);
+    return recordBytes;
+  }
+
+  private Segment createSegment(long firstSequence) throws IOException {
+    var path = directory.resolve(segmentFileName(firstSequence));
+    var channel = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+    );
+    var segment = new Segment(path, channel, firstSequence);
+    segments.addLast(segment);
+    active = segment;
+    return segment;
+  }
+
+  private void recover() throws IOException {
+    var ids = new ArrayList<Long>();
+
+    try (var paths = Files.list(directory)) {
+      for (var path : (Iterable<Path>) paths::iterator) {
+        var id = parseSegmentId(path.getFileName().toString());
+        if (id >= 0) {
+          ids.add(id);
+        }
+      }
+    }
+
+    ids.sort(null);
+    var buffer = writeBuffer;
+
+    for (var id : ids) {
+      var path = directory.resolve(segmentFileName(id));
+      var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      var segment = new Segment(path, channel, id);
+      var position = 0L;
+      int recordBytes;
+
+      while ((recordBytes = readRecord(channel, position, buffer, checksum)) > 0) {
+        var sequence = buffer.getLong();
+        if (segment.unacknowledged == 0) {
+          // Truncated segments keep their original name, so this can be after the segment ID.
+          segment.reset(sequence);
+        }
+        segment.addRecord(sequence, position);
+        position += recordBytes;
+      }
+
+      if (segment.unacknowledged == 0) {
+        channel.close();
+        Files.delete(path);
+        continue;
+      }
+
+      segment.size = position;
+      segments.addLast(segment);
+      recoveredSegments.add(segment);
+      nextSequence = Math.max(nextSequence, segment.lastSequence + 1);
+    }
+  }
+
+  /**
+   * Open a journal in the given directory, recovering any batches that were left over from a
+   * previous run.
+   *
+   * @param directory    the directory to store segments in. This is created if it does not
+   *                     exist.
+   * @param segmentBytes the size that a segment grows to before a new one is started, in bytes.
+   *                     Must be positive.
+   * @return the journal.
+   * @throws AwsIoException if the directory or the existing segments cannot be read.
+   */
+  public static PutLogEventsJournal open(
+      Path directory,
+      long segmentBytes
+  ) throws AwsIoException {
+    requireNonNull(directory, "directory");
+
+    if (segmentBytes < 1) {
+      throw new IllegalArgumentException(
+          "Segment size must be positive (got " + segmentBytes + ")"
+      );
+    }
+
+    var journal = new PutLogEventsJournal(directory, segmentBytes);
+
+    try {
+      Files.createDirectories(directory);
+      journal.recover();
+    } catch (IOException ex) {
+      throw new AwsIoException("Failed to open journal in " + directory, ex);
+    }
+
+    return journal;
+  }
+
+  /**
+   * Read and validate the record at the given position. On success, the buffer is left positioned
+   * at the sequence number, and limited to the end of the events.
+   *
+   * @return the size of the record, in bytes, or {@code -1} if there is no valid record here.
+   */
+  private static int readRecord(
+      FileChannel channel,
+      long position,
+      ByteBuffer buffer,
+      CRC32C checksum
+  ) throws IOException {
+    buffer.clear().limit(Integer.BYTES);
+    if (!readFully(channel, position, buffer)) {
+      return -1;
+    }
+
+    var length = buffer.getInt(0);
+    if (length < RECORD_HEADER_BYTES || length > MAX_RECORD_BYTES - Integer.BYTES) {
+      return -1;
+    }
+
+    buffer.limit(Integer.BYTES + length);
+    if (!readFully(channel, position + Integer.BYTES, buffer)) {
+      return -1;
+    }
+
+    var checksumPosition = Integer.BYTES + length - Integer.BYTES;
+    checksum.reset();
+    checksum.update(buffer.slice(Integer.BYTES, checksumPosition - Integer.BYTES));
+
+    if ((int) checksum.getValue() != buffer.getInt(checksumPosition)) {
+      return -1;
+    }
+
+    buffer.limit(checksumPosition).position(Integer.BYTES);
+    return Integer.BYTES + length;
+  }
+
+  private static boolean readFully(
+      FileChannel channel,
+      long position,
+      ByteBuffer buffer
+  ) throws IOException {
+    var offset = position - buffer.position();
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static String segmentFileName(long firstSequence) {
+    return SEGMENT_PREFIX + String.format("%020d", firstSequence) + SEGMENT_SUFFIX;
+  }
+
+  private static long parseSegmentId(String fileName) {
+    if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+
+    try {
+      return Long.parseLong(
+          fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())
+      );
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * Callback that receives batches replayed from the journal.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  @FunctionalInterface
+  public interface Replayer {
+
+    /**
+     * Replay a batch.
+     *
+     * <p>Ownership of the batch passes to the replayer, in the same way as
+     * {@link PutLogEventsBatchHandler#handleBatch(PutLogEventsBatch)}.
+     *
+     * @param sequence the sequence number to acknowledge the batch with.
+     * @param batch    the batch.
+     * @return the batch that the journal should fill next.
+     * @throws AwsException if the batch cannot be replayed.
+     */
+    PutLogEventsBatch replay(long sequence, PutLogEventsBatch batch) throws AwsException;
+  }
+
+  private static final class Segment {
+
+    private final Path path;
+    private final FileChannel channel;
+    private long firstSequence;
+    private long lastSequence;
+    private long size;
+    private int unacknowledged;
+    // The position of each record, indexed from the first sequence number.
+    private long[] positions;
+
+    private Segment(Path path, FileChannel channel, long firstSequence) {
+      this.path = path;
+      this.channel = channel;
+      this.firstSequence = firstSequence;
+      lastSequence = firstSequence - 1;
+      size = 0;
+      unacknowledged = 0;
+      positions = new long[16];
+    }
+
+    private void reset(long firstSequence) {
+      this.firstSequence = firstSequence;
+      lastSequence = firstSequence - 1;
+    }
+
+    private void addRecord(long sequence, long position) {
+      var index = (int) (sequence - firstSequence);
+      if (index >= positions.length) {
+        positions = Arrays.copyOf(positions, positions.length * 2);
+      }
+      positions[index] = position;
+      lastSequence = sequence;
+      ++unacknowledged;
+    }
+
+    private long getPosition(long sequence) {
+      return positions[(int) (sequence - firstSequence)];
+    }
+  }
+
+  private record RecordLocation(Segment segment, long position) {
+  }
+}
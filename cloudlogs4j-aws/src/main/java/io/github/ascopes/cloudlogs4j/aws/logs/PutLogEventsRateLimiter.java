@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Client-side rate limiter for {@code PutLogEvents} requests.
+ *
+ * <p>CloudWatch Logs enforces request quotas per account and region. When several forwarders
+ * send as fast as they can, they tend to all be throttled at the same time, and throttling costs
+ * far more than pacing requests in the first place. This limiter shapes both the number of
+ * requests per second and the number of bytes per second, with separate token buckets for the
+ * whole account in each region, and for each log group.
+ *
+ * <p>Share a single limiter between every forwarder that uses the same AWS account, by passing it
+ * to {@link CloudWatchLogsForwarder.Builder#rateLimiter(PutLogEventsRateLimiter)}. Buckets are
+ * created lazily, keyed by the CloudWatch Logs endpoint, which identifies the region, and by the
+ * log group name. Taking tokens from a bucket is lock-free (see {@link TokenBucket}).
+ *
+ * <p>Requests that would exceed a limit are delayed rather than rejected, without blocking the
+ * sending thread.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class PutLogEventsRateLimiter {
+
+  private final double accountRequestsPerSecond;
+  private final double accountBytesPerSecond;
+  private final double logGroupRequestsPerSecond;
+  private final double logGroupBytesPerSecond;
+  private final double burst;
+  private final LongSupplier nanoClock;
+  private final Map<String, Buckets> accountBuckets;
+  private final Map<String, Buckets> logGroupBuckets;
+
+  private PutLogEventsRateLimiter(Builder builder) {
+    this(builder, System::nanoTime);
+  }
+
+  /**
+   * Initialise the limiter.
+   *
+   * @param builder   the builder to take the limits from.
+   * @param nanoClock the source of the current time, in nanoseconds.
+   */
+  PutLogEventsRateLimiter(Builder builder, LongSupplier nanoClock) {
+    accountRequestsPerSecond = builder.accountRequestsPerSecond;
+    accountBytesPerSecond = builder.accountBytesPerSecond;
+    logGroupRequestsPerSecond = builder.logGroupRequestsPerSecond;
+    logGroupBytesPerSecond = builder.logGroupBytesPerSecond;
+    burst = builder.burst;
+    this.nanoClock = nanoClock;
+    accountBuckets = new ConcurrentHashMap<>();
+    logGroupBuckets = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Reserve capacity for a request.
+   *
+   * @param endpoint     the CloudWatch Logs endpoint that the request is sent to.
+   * @param logGroupName the name of the log group that the request writes to.
+   * @param bytes        the size of the request, as CloudWatch computes it.
+   * @return how long to wait before sending the request, in nanoseconds.
+   */
+  long reserve(String endpoint, String logGroupName, int bytes) {
+    var now = nanoClock.getAsLong();
+    var account = accountBuckets.computeIfAbsent(
+        endpoint,
+        key -> new Buckets(accountRequestsPerSecond, accountBytesPerSecond, now)
+    );
+    var logGroup = logGroupBuckets.computeIfAbsent(
+        endpoint + '\n' + logGroupName,
+        key -> new Buckets(logGroupRequestsPerSecond, logGroupBytesPerSecond, now)
+    );
+
+    return Math.max(account.reserve(bytes, now), logGroup.reserve(bytes, now));
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final class Buckets {
+
+    private final @Nullable TokenBucket requests;
+    private final @Nullable TokenBucket bytes;
+
+    private Buckets(double requestsPerSecond, double bytesPerSecond, long nowNanos) {
+      requests = Double.isInfinite(requestsPerSecond)
+          ? null
+          : new TokenBucket(requestsPerSecond, burst, nowNanos);
+      bytes = Double.isInfinite(bytesPerSecond)
+          ? null
+          : new TokenBucket(bytesPerSecond, burst, nowNanos);
+    }
+
+    private long reserve(int byteCount, long nowNanos) {
+      var requestWait = requests == null ? 0 : requests.reserve(1, nowNanos);
+      var byteWait = bytes == null ? 0 : bytes.reserve(byteCount, nowNanos);
+      return Math.max(requestWait, byteWait);
+    }
+  }
+
+  /**
+   * Builder for a {@link PutLogEventsRateLimiter}.
+   *
+   * <p>Every limit defaults to unlimited.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  public static final class Builder {
+
+    private double accountRequestsPerSecond;
+    private double accountBytesPerSecond;
+    private double logGroupRequestsPerSecond;
+    private double logGroupBytesPerSecond;
+    private double burst;
+
+    private Builder() {
+      accountRequestsPerSecond = Double.POSITIVE_INFINITY;
+      accountBytesPerSecond = Double.POSITIVE_INFINITY;
+      logGroupRequestsPerSecond = Double.POSITIVE_INFINITY;
+      logGroupBytesPerSecond = Double.POSITIVE_INFINITY;
+      burst = 1;
+    }
+
+    /**
+     * Set the number of requests per second to allow across the account, in each region.
+     *
+     * @param accountRequestsPerSecond the rate. Must be positive.
+     * @return this builder.
+     */
+    public Builder accountRequestsPerSecond(double accountRequestsPerSecond) {
+      this.accountRequestsPerSecond = checkRate(accountRequestsPerSecond, "Account requests");
+      return this;
+    }
+
+    /**
+     * Set the number of bytes per second to allow across the account, in each region.
+     *
+     * @param accountBytesPerSecond the rate. Must be positive.
+     * @return this builder.
+     */
+    public Builder accountBytesPerSecond(double accountBytesPerSecond) {
+      this.accountBytesPerSecond = checkRate(accountBytesPerSecond, "Account bytes");
+      return this;
+    }
+
+    /**
+     * Set the number of requests per second to allow for each log group.
+     *
+     * @param logGroupRequestsPerSecond the rate. Must be positive.
+     * @return this builder.
+     */
+    public Builder logGroupRequestsPerSecond(double logGroupRequestsPerSecond) {
+      this.logGroupRequestsPerSecond = checkRate(logGroupRequestsPerSecond, "Log group requests");
+      return this;
+    }
+
+    /**
+     * Set the number of bytes per second to allow for each log group.
+     *
+     * @param logGroupBytesPerSecond the rate. Must be positive.
+     * @return this builder.
+     */
+    public Builder logGroupBytesPerSecond(double logGroupBytesPerSecond) {
+      this.logGroupBytesPerSecond = checkRate(logGroupBytesPerSecond, "Log group bytes");
+      return this;
+    }
+
+    /**
+     * Set how many seconds' worth of each rate can be used in a single burst. Defaults to
+     * {@code 1}.
+     *
+     * @param burst the burst, in seconds. Must be positive.
+     * @return this builder.
+     */
+    public Builder burst(double burst) {
+      if (!(burst > 0) || Double.isInfinite(burst)) {
+        throw new IllegalArgumentException("Burst must be positive (got " + burst + ")");
+      }
+      this.burst = burst;
+      return this;
+    }
+
+    /**
+     * Build the limiter.
+     *
+     * @return the limiter.
+     */
+    public PutLogEventsRateLimiter build() {
+      return new PutLogEventsRateLimiter(this);
+    }
+
+    private static double checkRate(double rate, String name) {
+      if (!(rate > 0)) {
+        throw new IllegalArgumentException(
+            name + " per second must be positive (got " + rate + ")"
+        );
+      }
+      return rate;
+    }
+  }
+}
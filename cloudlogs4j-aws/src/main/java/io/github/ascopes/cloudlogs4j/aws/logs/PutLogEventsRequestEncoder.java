@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Streaming encoder for the JSON body of a CloudWatch Logs {@code PutLogEvents} request.
+ *
+ * <p>The body is written straight into a pooled byte array, reading the event contents in place
+ * from the {@link PutLogEventsBatch}, so no intermediate strings are created for the messages or
+ * for the request itself. Contents are copied as they are where possible, with JSON escapes added
+ * where needed. The batch has already replaced any malformed UTF-8 sequences, so the message bytes
+ * are copied through as they are.
+ *
+ * <p>The start of the body, which holds the log group and log stream names, is cached for each
+ * log stream, so requests that alternate between the streams of a sharded sender do not rebuild
+ * it.
+ *
+ * <p>Buffers returned by {@link #encode} should be handed back with {@link #release} once the
+ * request that they were sent with has completed, so that their arrays can be reused.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class PutLogEventsRequestEncoder {
+
+  private static final int MAX_POOLED_BUFFERS = 8;
+  private static final int MIN_BUFFER_BYTES = 8 * 1024;
+  private static final int MAX_CACHED_PREFIXES = 64;
+
+  // The largest number of bytes that a single input byte can be written as.
+  private static final int MAX_ESCAPED_BYTES = 6;
+
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(UTF_8);
+  private static final byte[] TIMESTAMP_PREFIX = "{\"timestamp\":".getBytes(UTF_8);
+  private static final byte[] MESSAGE_PREFIX = ",\"message\":\"".getBytes(UTF_8);
+  private static final byte[] EVENT_SUFFIX = "\"}".getBytes(UTF_8);
+  private static final byte[] REQUEST_SUFFIX = "]}".getBytes(UTF_8);
+
+  private final BlockingQueue<byte[]> pool;
+  private final ConcurrentMap<String, Prefix> prefixes;
+
+  /**
+   * Initialise this encoder.
+   */
+  PutLogEventsRequestEncoder() {
+    pool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+    prefixes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Encode a request body.
+   *
+   * @param logGroupName  the name of the log group.
+   * @param logStreamName the name of the log stream.
+   * @param batch         the batch of events to encode, in the order they should be sent.
+   * @return a heap buffer holding the body between its position and limit.
+   */
+  ByteBuffer encode(String logGroupName, String logStreamName, PutLogEventsBatch batch) {
+    var prefix = getPrefix(logGroupName, logStreamName);
+    var writer = new Writer(acquire(prefix.bytes.length + batch.byteSize()));
+    writer.writeRaw(prefix.bytes);
+
+    var payloads = batch.getPayloadArray();
+    for (var i = 0; i < batch.size(); ++i) {
+      if (i > 0) {
+        writer.writeByte(',');
+      }
+      writer.writeRaw(TIMESTAMP_PREFIX);
+      writer.writeLong(batch.getTimestamp(i));
+      writer.writeRaw(MESSAGE_PREFIX);
+      writer.writeEscaped(payloads, batch.getContentsOffset(i), batch.getContentsLength(i));
+      writer.writeRaw(EVENT_SUFFIX);
+    }
+
+    writer.writeRaw(REQUEST_SUFFIX);
+    return ByteBuffer.wrap(writer.buffer, 0, writer.length);
+  }
+
+  /**
+   * Return a buffer created by {@link #encode} to the pool.
+   *
+   * <p>The buffer must not be used again afterwards.
+   *
+   * @param buffer the buffer to release.
+   */
+  void release(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      // If the pool is full, the array is left for the garbage collector.
+      pool.offer(buffer.array());
+    }
+  }
+
+  private Prefix getPrefix(String logGroupName, String logStreamName) {
+    // Keyed by stream alone, so that lookups do not allocate. The group is checked separately.
+    var prefix = prefixes.get(logStreamName);
+    if (prefix != null && prefix.logGroupName.equals(logGroupName)) {
+      return prefix;
+    }
+
+    var writer = new Writer(new byte[64 + logGroupName.length() + logStreamName.length()]);
+    writer.writeRaw("{\"logGroupName\":\"".getBytes(UTF_8));
+    writeEscaped(writer, logGroupName);
+    writer.writeRaw("\",\"logStreamName\":\"".getBytes(UTF_8));
+    writeEscaped(writer, logStreamName);
+    writer.writeRaw("\",\"logEvents\":[".getBytes(UTF_8));
+
+    prefix = new Prefix(logGroupName, Arrays.copyOf(writer.buffer, writer.length));
+
+    if (prefixes.size() >= MAX_CACHED_PREFIXES) {
+      // Something is churning through stream names, so do not let the cache grow without bound.
+      prefixes.clear();
+    }
+    prefixes.put(logStreamName, prefix);
+    return prefix;
+  }
+
+  private byte[] acquire(int expectedBytes) {
+    var buffer = pool.poll();
+    if (buffer == null || buffer.length < expectedBytes) {
+      // Escapes are rare, so the expected size is usually enough to avoid growing the buffer.
+      return new byte[Math.max(MIN_BUFFER_BYTES, expectedBytes + expectedBytes / 8)];
+    }
+    return buffer;
+  }
+
+  private static void writeEscaped(Writer writer, String value) {
+    var bytes = value.getBytes(UTF_8);
+    writer.writeEscaped(bytes, 0, bytes.length);
+  }
+
+  private record Prefix(String logGroupName, byte[] bytes) {
+  }
+
+  private static final class Writer {
+
+    private byte[] buffer;
+    private int length;
+
+    private Writer(byte[] buffer) {
+      this.buffer = buffer;
+      length = 0;
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) value;
+    }
+
+    private void writeRaw(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, length, bytes.length);
+      length += bytes.length;
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(20);
+
+      if (value < 0) {
+        buffer[length++] = '-';
+      }
+
+      var digits = 1;
+      for (var remaining = value / 10; remaining != 0; remaining /= 10) {
+        ++digits;
+      }
+
+      // Work with the negated digits of negative values, so that Long.MIN_VALUE is handled.
+      var remaining = value;
+      for (var i = length + digits - 1; i >= length; --i) {
+        buffer[i] = (byte) ('0' + Math.abs(remaining % 10));
+        remaining /= 10;
+      }
+      length += digits;
+    }
+
+    private void writeEscaped(byte[] source, int offset, int sourceLength) {
+      var end = offset + sourceLength;
+      var runStart = offset;
+      var i = offset;
+
+      while (i < end) {
+        var b = source[i] & 0xff;
+
+        // Multibyte sequences have already been validated by the batch, so they are copied as
+        // they are.
+        if (b >= 0x20 && b != '"' && b != '\\') {
+          ++i;
+          continue;
+        }
+
+        flushRun(source, runStart, i);
+        writeEscapedAscii(b);
+        runStart = ++i;
+      }
+
+      flushRun(source, runStart, end);
+    }
+
+    private void flushRun(byte[] source, int start, int end) {
+      var runLength = end - start;
+      ensureCapacity(runLength);
+      System.arraycopy(source, start, buffer, length, runLength);
+      length += runLength;
+    }
+
+    private void writeEscapedAscii(int b) {
+      ensureCapacity(MAX_ESCAPED_BYTES);
+      buffer[length++] = '\\';
+
+      switch (b) {
+        case '"' -> buffer[length++] = '"';
+        case '\\' -> buffer[length++] = '\\';
+        case '\n' -> buffer[length++] = 'n';
+        case '\r' -> buffer[length++] = 'r';
+        case '\t' -> buffer[length++] = 't';
+        case '\b' -> buffer[length++] = 'b';
+        case '\f' -> buffer[length++] = 'f';
+        default -> {
+          buffer[length++] = 'u';
+          buffer[length++] = '0';
+          buffer[length++] = '0';
+          buffer[length++] = HEX_DIGITS[b >>> 4];
+          buffer[length++] = HEX_DIGITS[b & 0xf];
+        }
+      }
+    }
+
+    private void ensureCapacity(int extraBytes) {
+      if (length + extraBytes > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extraBytes));
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.core.intern.TaskExecutors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CloudWatchLogsClient} that paces {@code PutLogEvents} requests with a
+ * {@link PutLogEventsRateLimiter}.
+ *
+ * <p>Requests that have to wait are sent later from a timer, so the caller is never blocked.
+ * Batches are read when the request is sent, so callers must not modify a batch until the future
+ * for it has completed.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class RateLimitedCloudWatchLogsClient implements CloudWatchLogsClient {
+
+  private final CloudWatchLogsClient delegate;
+  private final PutLogEventsRateLimiter rateLimiter;
+  private final String endpoint;
+
+  /**
+   * Initialise this client.
+   *
+   * @param delegate    the client to send requests with.
+   * @param rateLimiter the rate limiter to pace requests with.
+   * @param endpoint    the endpoint that the delegate sends requests to.
+   */
+  RateLimitedCloudWatchLogsClient(
+      CloudWatchLogsClient delegate,
+      PutLogEventsRateLimiter rateLimiter,
+      String endpoint
+  ) {
+    this.delegate = requireNonNull(delegate, "delegate");
+    this.rateLimiter = requireNonNull(rateLimiter, "rateLimiter");
+    this.endpoint = requireNonNull(endpoint, "endpoint");
+  }
+
+  @Override
+  public CompletableFuture<Void> putLogEvents(
+      String logGroupName,
+      String logStreamName,
+      PutLogEventsBatch batch
+  ) {
+    var waitNanos = rateLimiter.reserve(endpoint, logGroupName, batch.byteSize());
+    if (waitNanos == 0) {
+      return delegate.putLogEvents(logGroupName, logStreamName, batch);
+    }
+
+    var executor = CompletableFuture.delayedExecutor(
+        waitNanos,
+        TimeUnit.NANOSECONDS,
+        TaskExecutors.getExecutor()
+    );
+    return CompletableFuture.runAsync(() -> { }, executor)
+        .thenCompose(ignored -> delegate.putLogEvents(logGroupName, logStreamName, batch));
+  }
+
+  @Override
+  public void createLogStream(String logGroupName, String logStreamName) throws AwsException {
+    delegate.createLogStream(logGroupName, logStreamName);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec that encodes request bodies before they are sent, such as to compress them.
+ *
+ * <p>The encoding is advertised to the service in the {@code Content-Encoding} header. Codecs
+ * may choose to leave small bodies as they are, where encoding them would cost more than it
+ * saves.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public interface RequestBodyCodec {
+
+  /**
+   * Get the name of the encoding, as used in the {@code Content-Encoding} header.
+   *
+   * @return the name of the encoding.
+   */
+  String getContentEncoding();
+
+  /**
+   * Determine if a body of the given size is worth encoding.
+   *
+   * @param length the size of the body, in bytes.
+   * @return {@code true} if the body should be encoded, or {@code false} if it should be sent
+   *     as it is.
+   */
+  boolean shouldEncode(int length);
+
+  /**
+   * Encode a body.
+   *
+   * @param body the body to encode.
+   * @return the encoded body.
+   */
+  byte[] encode(byte[] body);
+
+  /**
+   * Encode the remaining contents of a buffer.
+   *
+   * <p>The position of the buffer is not changed. The default implementation copies the
+   * contents into an array and passes it to {@link #encode(byte[])}.
+   *
+   * @param body the body to encode.
+   * @return the encoded body.
+   */
+  default byte[] encode(ByteBuffer body) {
+    var array = new byte[body.remaining()];
+    body.duplicate().get(array);
+    return encode(array);
+  }
+
+  /**
+   * Get a codec that compresses bodies of at least {@code 4 KiB} with gzip at the default
+   * compression level.
+   *
+   * @return the codec.
+   */
+  static RequestBodyCodec gzip() {
+    return gzip(GzipRequestBodyCodec.DEFAULT_MINIMUM_BYTES, GzipRequestBodyCodec.DEFAULT_LEVEL);
+  }
+
+  /**
+   * Get a codec that compresses bodies with gzip.
+   *
+   * @param minimumBytes the smallest body to compress, in bytes. Smaller bodies are sent as they
+   *                     are. Must not be negative.
+   * @param level        the compression level, from {@code 1} (fastest) to {@code 9} (smallest),
+   *                     or {@code -1} for the default level.
+   * @return the codec.
+   */
+  static RequestBodyCodec gzip(int minimumBytes, int level) {
+    return new GzipRequestBodyCodec(minimumBytes, level);
+  }
+}
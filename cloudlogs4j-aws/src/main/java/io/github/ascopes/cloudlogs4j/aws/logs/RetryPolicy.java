@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Policy that decides how failed {@code PutLogEvents} requests are retried, and how many may be
+ * in flight at once.
+ *
+ * <p>Retries are delayed with decorrelated jitter: each delay is picked at random between the
+ * base delay and three times the previous delay, capped at the maximum delay. This backs off
+ * exponentially while keeping clients that were throttled together from retrying in lockstep.
+ *
+ * <p>The number of requests in flight is limited with additive-increase, multiplicative-decrease
+ * (AIMD). Each throttled response halves the limit, and each successful response raises it by
+ * the reciprocal of the limit, so it grows by roughly one per round of requests until it reaches
+ * the maximum concurrency again.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class RetryPolicy {
+
+  private static final RetryPolicy DEFAULTS = builder().build();
+
+  private final int maxAttempts;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final int maxConcurrency;
+  private final long baseDelayNanos;
+  private final long maxDelayNanos;
+
+  private RetryPolicy(Builder builder) {
+    maxAttempts = builder.maxAttempts;
+    baseDelay = builder.baseDelay;
+    maxDelay = builder.maxDelay;
+    maxConcurrency = builder.maxConcurrency;
+    baseDelayNanos = builder.baseDelay.toNanos();
+    maxDelayNanos = Math.max(baseDelayNanos, builder.maxDelay.toNanos());
+  }
+
+  /**
+   * Get the maximum number of attempts to make for each request, including the first.
+   *
+   * @return the maximum number of attempts.
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Get the smallest delay before a retry.
+   *
+   * @return the base delay.
+   */
+  public Duration getBaseDelay() {
+    return baseDelay;
+  }
+
+  /**
+   * Get the largest delay before a retry.
+   *
+   * @return the maximum delay.
+   */
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Get the largest number of requests that may be in flight at once.
+   *
+   * @return the maximum concurrency.
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Pick the delay before the next retry.
+   *
+   * @param previousDelayNanos the previous delay, in nanoseconds, or {@code 0} if this is the
+   *                           first retry.
+   * @param random             the random number generator to use.
+   * @return the delay, in nanoseconds.
+   */
+  long nextDelayNanos(long previousDelayNanos, RandomGenerator random) {
+    var upperBound = Math.min(maxDelayNanos, Math.max(baseDelayNanos, previousDelayNanos) * 3);
+    if (upperBound <= baseDelayNanos) {
+      return baseDelayNanos;
+    }
+    return random.nextLong(baseDelayNanos, upperBound + 1);
+  }
+
+  /**
+   * Get the default policy.
+   *
+   * <p>This makes up to {@code 8} attempts, with delays between {@code 100ms} and {@code 20s},
+   * and allows up to {@code 16} requests in flight at once.
+   *
+   * @return the default policy.
+   */
+  public static RetryPolicy defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder for a {@link RetryPolicy}.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  public static final class Builder {
+
+    private int maxAttempts;
+    private Duration baseDelay;
+    private Duration maxDelay;
+    private int maxConcurrency;
+
+    private Builder() {
+      maxAttempts = 8;
+      baseDelay = Duration.ofMillis(100);
+      maxDelay = Duration.ofSeconds(20);
+      maxConcurrency = 16;
+    }
+
+    /**
+     * Set the maximum number of attempts to make for each request, including the first.
+     *
+     * @param maxAttempts the maximum number of attempts. Must be positive. {@code 1} disables
+     *                    retries.
+     * @return this builder.
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException(
+            "Max attempts must be positive (got " + maxAttempts + ")"
+        );
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Set the smallest delay before a retry.
+     *
+     * @param baseDelay the base delay. Must not be negative.
+     * @return this builder.
+     */
+    public Builder baseDelay(Duration baseDelay) {
+      requireNonNull(baseDelay, "baseDelay");
+      if (baseDelay.isNegative()) {
+        throw new IllegalArgumentException(
+            "Base delay must not be negative (got " + baseDelay + ")"
+        );
+      }
+      this.baseDelay = baseDelay;
+      return this;
+    }
+
+    /**
+     * Set the largest delay before a retry.
+     *
+     * <p>If this is less than the base delay, the base delay is used instead.
+     *
+     * @param maxDelay the maximum delay. Must not be negative.
+     * @return this builder.
+     */
+    public Builder maxDelay(Duration maxDelay) {
+      requireNonNull(maxDelay, "maxDelay");
+      if (maxDelay.isNegative()) {
+        throw new IllegalArgumentException(
+            "Max delay must not be negative (got " + maxDelay + ")"
+        );
+      }
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * Set the largest number of requests that may be in flight at once.
+     *
+     * @param maxConcurrency the maximum concurrency. Must be positive.
+     * @return this builder.
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      if (maxConcurrency < 1) {
+        throw new IllegalArgumentException(
+            "Max concurrency must be positive (got " + maxConcurrency + ")"
+        );
+      }
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Build the policy.
+     *
+     * @return the policy.
+     */
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link PutLogEventsBatchHandler} that spreads batches across several log streams, keeping one
+ * {@code PutLogEvents} request in flight per stream.
+ *
+ * <p>CloudWatch applies its throughput limits per log stream, so a single stream written to
+ * serially is bound by the round-trip time of each request. This handler instead treats each of
+ * a number of log streams as a shard, and hands each completed batch to the shard that has been
+ * idle the longest. Requests are sent asynchronously, so the forwarder thread can carry on
+ * assembling the next batch while earlier ones are in flight. Each shard only ever has one
+ * request in flight, so batches sent to the same shard arrive in the order they were sent.
+ *
+ * <p>Batches are pooled rather than copied. A pool of one batch more than the number of shards
+ * guarantees a free batch is available whenever a shard is. If every shard is busy, handing over
+ * a batch blocks until one becomes idle, which applies back-pressure to the forwarder thread.
+ *
+ * <p>When there is more than one shard, the shards write to log streams named
+ * {@code <logStreamName>-<shard>}. With a single shard, the log stream name is used as-is. Each
+ * log stream is created the first time it is used.
+ *
+ * <p>If a {@link PutLogEventsJournal} is provided, each batch is journaled before it is sent, and
+ * acknowledged once CloudWatch has accepted it. Batches that fail for a transient reason are
+ * requeued in the journal and resent before the next batch is sent, while batches that fail in a
+ * way that resending cannot fix are acknowledged and dropped, so the journal can always be
+ * truncated eventually. Batches that were left in the journal by a previous run are resent by
+ * {@link #recover()}.
+ *
+ * <p>Handing over batches must only be done from a single thread.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class ShardedPutLogEventsSender implements PutLogEventsBatchHandler {
+
+  private static final long NOT_JOURNALED = -1;
+
+  private final CloudWatchLogsClient client;
+  private final String logGroupName;
+  private final Shard[] shards;
+  private final @Nullable PutLogEventsJournal journal;
+  private final Consumer<? super AwsException> failureHandler;
+  private final BlockingQueue<Shard> idleShards;
+  private final BlockingQueue<PutLogEventsBatch> freeBatches;
+
+  /**
+   * Initialise this sender.
+   *
+   * @param client         the client to send requests with.
+   * @param logGroupName   the name of the log group.
+   * @param logStreamName  the name of the log stream, or the prefix of the log stream names if
+   *                       there is more than one shard.
+   * @param shardCount     the number of shards. Must be positive.
+   * @param failureHandler the callback to notify when a request fails. This is called from the
+   *                       threads that complete the requests.
+   */
+  public ShardedPutLogEventsSender(
+      CloudWatchLogsClient client,
+      String logGroupName,
+      String logStreamName,
+      int shardCount,
+      Consumer<? super AwsException> failureHandler
+  ) {
+    this(client, logGroupName, logStreamName, shardCount, null, failureHandler);
+  }
+
+  /**
+   * Initialise this sender.
+   *
+   * @param client         the client to send requests with.
+   * @param logGroupName   the name of the log group.
+   * @param logStreamName  the name of the log stream, or the prefix of the log stream names if
+   *                       there is more than one shard.
+   * @param shardCount     the number of shards. Must be positive.
+   * @param journal        the journal to write batches to before they are sent, or {@code null}
+   *                       to not journal batches.
+   * @param failureHandler the callback to notify when a request fails. This is called from the
+   *                       threads that complete the requests.
+   */
+  public ShardedPutLogEventsSender(
+      CloudWatchLogsClient client,
+      String logGroupName,
+      String logStreamName,
+      int shardCount,
+      @Nullable PutLogEventsJournal journal,
+      Consumer<? super AwsException> failureHandler
+  ) {
+    requireNonNull(logStreamName, "logStreamName");
+
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("Shard count must be positive (got " + shardCount + ")");
+    }
+
+    this.client = requireNonNull(client, "client");
+    this.logGroupName = requireNonNull(logGroupName, "logGroupName");
+    this.journal = journal;
+    this.failureHandler = requireNonNull(failureHandler, "failureHandler");
+
+    shards = new Shard[shardCount];
+    idleShards = new ArrayBlockingQueue<>(shardCount);
+    freeBatches = new ArrayBlockingQueue<>(shardCount + 1);
+
+    for (var i = 0; i < shardCount; ++i) {
+      var shardLogStreamName = shardCount == 1 ? logStreamName : logStreamName + "-" + i;
+      shards[i] = new Shard(shardLogStreamName);
+      idleShards.add(shards[i]);
+    }
+  }
+
+  /**
+   * Get the number of shards.
+   *
+   * @return the number of shards.
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Get the name of the log stream that a shard writes to.
+   *
+   * @param shard the index of the shard.
+   * @return the name of the log stream.
+   */
+  public String getLogStreamName(int shard) {
+    return shards[shard].logStreamName;
+  }
+
+  @Override
+  public PutLogEventsBatch handleBatch(PutLogEventsBatch batch) throws AwsException {
+    if (journal == null) {
+      return send(NOT_JOURNALED, batch);
+    }
+
+    // Resend anything that failed before, so that the journal can be truncated once it has been
+    // delivered.
+    journal.replayRequeued(this::send);
+    return send(journal.append(batch), batch);
+  }
+
+  @Override
+  public void recover() throws AwsException {
+    if (journal != null) {
+      journal.replay(this::send);
+    }
+  }
+
+  @Override
+  public void awaitCompletion() throws AwsException {
+    var held = new Shard[shards.length];
+    var heldCount = 0;
+
+    try {
+      // Once we hold every shard, nothing can still be in flight.
+      while (heldCount < shards.length) {
+        var shard = takeIdleShard();
+        held[heldCount++] = shard;
+      }
+    } finally {
+      for (var i = 0; i < heldCount; ++i) {
+        idleShards.add(held[i]);
+      }
+    }
+  }
+
+  private PutLogEventsBatch send(long sequence, PutLogEventsBatch batch) throws AwsException {
+    var shard = takeIdleShard();
+
+    try {
+      if (!shard.created) {
+        client.createLogStream(logGroupName, shard.logStreamName);
+        shard.created = true;
+      }
+
+      // A shard is only released after its batch has been returned to the pool, so at most one
+      // fewer batches than shards can be in flight here, and one is always free.
+      // Batches are allocated lazily, as each one is over a megabyte in size.
+      var next = freeBatches.poll();
+      if (next == null) {
+        next = new PutLogEventsBatch();
+      }
+
+      client.putLogEvents(logGroupName, shard.logStreamName, batch)
+          .whenComplete((ignored, ex) -> {
+            if (ex != null) {
+              reportFailure(ex);
+              if (sequence != NOT_JOURNALED) {
+                requeueOrDrop(sequence, ex);
+              }
+            } else if (sequence != NOT_JOURNALED) {
+              acknowledge(sequence);
+            }
+            batch.clear();
+            // Batches handed to us while recovering are surplus to the pool, so may not fit.
+            freeBatches.offer(batch);
+            idleShards.add(shard);
+          });
+
+      return next;
+
+    } catch (AwsException | RuntimeException ex) {
+      idleShards.add(shard);
+      throw ex;
+    }
+  }
+
+  private void acknowledge(long sequence) {
+    try {
+      requireNonNull(journal).acknowledge(sequence);
+    } catch (AwsException ex) {
+      failureHandler.accept(ex);
+    }
+  }
+
+  private void requeueOrDrop(long sequence, Throwable ex) {
+    switch (PutLogEventsFailure.classify(ex)) {
+      case THROTTLED, RETRYABLE -> requireNonNull(journal).requeue(sequence);
+      // Resending would never succeed, so the batch is dropped rather than kept forever.
+      default -> acknowledge(sequence);
+    }
+  }
+
+  private Shard takeIdleShard() throws AwsException {
+    try {
+      return idleShards.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new AwsIoException("Interrupted while waiting for an idle log stream shard", ex);
+    }
+  }
+
+  private void reportFailure(Throwable ex) {
+    if (ex instanceof CompletionException && ex.getCause() != null) {
+      ex = ex.getCause();
+    }
+
+    failureHandler.accept(ex instanceof AwsException awsEx
+        ? awsEx
+        : new AwsIoException("Failed to send log events to CloudWatch Logs", ex));
+  }
+
+  private static final class Shard {
+
+    private final String logStreamName;
+    private boolean created;
+
+    private Shard(String logStreamName) {
+      this.logStreamName = logStreamName;
+      created = false;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm.
+ *
+ * <p>Rather than storing the number of tokens and the time they were last refilled separately,
+ * the bucket stores a single "theoretical arrival time": the time at which the bucket would be
+ * full again if nothing else were taken from it. Taking tokens pushes that time forwards by the
+ * time it takes to refill them. Both values are packed into one {@code long} this way, so taking
+ * tokens is a single compare-and-set, and any number of threads can share a bucket.
+ *
+ * <p>Tokens are always reserved, even if there are not enough of them yet. The caller is told
+ * how long to wait before the reservation is honoured instead, which keeps the bucket fair
+ * between callers.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class TokenBucket {
+
+  private final double nanosPerToken;
+  private final long burstNanos;
+  private final AtomicLong fullAtNanos;
+
+  /**
+   * Initialise a full bucket.
+   *
+   * @param tokensPerSecond the rate that tokens are refilled at. Must be positive.
+   * @param burst           the capacity of the bucket, in seconds' worth of tokens. Must be
+   *                        positive.
+   * @param nowNanos        the current time, in nanoseconds.
+   */
+  TokenBucket(double tokensPerSecond, double burst, long nowNanos) {
+    if (!(tokensPerSecond > 0)) {
+      throw new IllegalArgumentException(
+          "Tokens per second must be positive (got " + tokensPerSecond + ")"
+      );
+    }
+
+    if (!(burst > 0)) {
+      throw new IllegalArgumentException("Burst must be positive (got " + burst + ")");
+    }
+
+    nanosPerToken = 1_000_000_000 / tokensPerSecond;
+    burstNanos = (long) Math.min(Long.MAX_VALUE / 4, burst * 1_000_000_000);
+    fullAtNanos = new AtomicLong(nowNanos);
+  }
+
+  /**
+   * Reserve tokens.
+   *
+   * @param tokens   the number of tokens to reserve.
+   * @param nowNanos the current time, in nanoseconds.
+   * @return how long to wait before using the tokens, in nanoseconds. This is zero if there
+   *     were enough tokens in the bucket already.
+   */
+  long reserve(long tokens, long nowNanos) {
+    var costNanos = (long) Math.min(Long.MAX_VALUE / 4, tokens * nanosPerToken);
+
+    while (true) {
+      var fullAt = fullAtNanos.get();
+      // Compare by subtraction, as nano times may overflow.
+      var start = fullAt - nowNanos > 0 ? fullAt : nowNanos;
+      var newFullAt = start + costNanos;
+
+      if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+        return Math.max(0, newFullAt - nowNanos - burstNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.sts;
+
+import io.avaje.jsonb.Json;
+
+/**
+ * JSON model for the body of an STS {@code AssumeRoleWithWebIdentity} response.
+ *
+ * @param response the response element.
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+@Json
+public record AssumeRoleWithWebIdentityResponse(
+    @Json.Property("AssumeRoleWithWebIdentityResponse")
+    Response response
+) {
+
+  /**
+   * The response element.
+   *
+   * @param result the result element.
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  @Json
+  public record Response(
+      @Json.Property("AssumeRoleWithWebIdentityResult")
+      Result result
+  ) {
+  }
+
+  /**
+   * The result element.
+   *
+   * @param credentials the issued credentials.
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  @Json
+  public record Result(
+      @Json.Property("Credentials")
+      StsCredentials credentials
+  ) {
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.sts;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.avaje.http.client.HttpClient;
+import io.avaje.http.client.HttpException;
+import io.avaje.jsonb.JsonType;
+import io.avaje.jsonb.Jsonb;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import io.github.ascopes.cloudlogs4j.aws.http.AwsHttpTransport;
+import io.github.ascopes.cloudlogs4j.core.intern.UserAgent;
+import java.net.URLEncoder;
+import java.time.Duration;
+
+/**
+ * {@link StsClient} that uses the STS query API, asking for JSON responses.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class HttpStsClient implements StsClient {
+
+  private static final String API_VERSION = "2011-06-15";
+
+  private final HttpClient client;
+  private final JsonType<AssumeRoleWithWebIdentityResponse> assumeRoleWithWebIdentityResponseType;
+  private final String userAgent;
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint the STS endpoint.
+   */
+  HttpStsClient(String endpoint) {
+    this(endpoint, AwsHttpTransport.shared());
+  }
+
+  /**
+   * Initialise this client.
+   *
+   * @param endpoint  the STS endpoint.
+   * @param transport the transport to send requests with.
+   */
+  HttpStsClient(String endpoint, AwsHttpTransport transport) {
+    client = HttpClient.builder()
+        .baseUrl(endpoint)
+        .client(transport.getClient(endpoint, Duration.ofSeconds(5)))
+        .requestLogging(false)
+        .requestTimeout(Duration.ofSeconds(10))
+        .build();
+
+    assumeRoleWithWebIdentityResponseType = Jsonb.builder().build()
+        .type(AssumeRoleWithWebIdentityResponse.class);
+    userAgent = UserAgent.getUserAgentFor(getClass().getPackage());
+  }
+
+  @Override
+  public StsCredentials assumeRoleWithWebIdentity(
+      String roleArn,
+      String roleSessionName,
+      String webIdentityToken
+  ) throws AwsException {
+    var body = "Action=AssumeRoleWithWebIdentity"
+        + "&Version=" + API_VERSION
+        + "&RoleArn=" + encode(roleArn)
+        + "&RoleSessionName=" + encode(roleSessionName)
+        + "&WebIdentityToken=" + encode(webIdentityToken);
+
+    try {
+      var response = client.request()
+          .header("Accept", "application/json")
+          .header("Content-Type", "application/x-www-form-urlencoded; charset=utf-8")
+          .header("User-Agent", userAgent)
+          .body(body)
+          .POST()
+          .asString();
+
+      if (response.statusCode() >= 300) {
+        throw new AwsHttpResponseException(
+            response.request().method(),
+            response.uri(),
+            response.statusCode(),
+            response.body()
+        );
+      }
+
+      return assumeRoleWithWebIdentityResponseType.fromJson(response.body())
+          .response()
+          .result()
+          .credentials();
+
+    } catch (HttpException ex) {
+      if (ex.getCause() == null) {
+        throw new AwsHttpResponseException(ex);
+      }
+      throw new AwsIoException("Failed to call STS", ex);
+
+    } catch (RuntimeException ex) {
+      throw new AwsIoException("Failed to read the STS response", ex);
+    }
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, UTF_8);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.sts;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+
+/**
+ * Client for the AWS Security Token Service.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public interface StsClient {
+
+  /**
+   * Exchange a web identity token for temporary credentials for a role.
+   *
+   * <p>This call does not need to be signed, so no credentials are needed to make it.
+   *
+   * @param roleArn          the ARN of the role to assume.
+   * @param roleSessionName  the name to give the role session.
+   * @param webIdentityToken the web identity token.
+   * @return the temporary credentials.
+   * @throws AwsException if the call fails.
+   */
+  StsCredentials assumeRoleWithWebIdentity(
+      String roleArn,
+      String roleSessionName,
+      String webIdentityToken
+  ) throws AwsException;
+
+  /**
+   * Create a new client for the given endpoint.
+   *
+   * @param stsEndpoint the STS endpoint.
+   * @return the client.
+   */
+  static StsClient createClient(String stsEndpoint) {
+    return new HttpStsClient(stsEndpoint);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.sts;
+
+import io.avaje.jsonb.Json;
+import java.time.Instant;
+
+/**
+ * JSON model for temporary credentials issued by STS.
+ *
+ * @param accessKey         the access key.
+ * @param secretKey         the secret key.
+ * @param sessionToken      the session token.
+ * @param expirationSeconds the time the credentials expire at, in seconds since the epoch.
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+@Json
+public record StsCredentials(
+    @Json.Property("AccessKeyId")
+    String accessKey,
+
+    @Json.Property("SecretAccessKey")
+    String secretKey,
+
+    @Json.Property("SessionToken")
+    String sessionToken,
+
+    @Json.Property("Expiration")
+    double expirationSeconds
+) {
+
+  /**
+   * Get the time the credentials expire at.
+   *
+   * @return the expiration time.
+   */
+  public Instant expiration() {
+    return Instant.ofEpochMilli((long) (expirationSeconds * 1_000));
+  }
+}
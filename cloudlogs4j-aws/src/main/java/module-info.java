@@ -14,11 +14,13 @@
  * limitations under the License.
  */
 module io.github.ascopes.cloudlogs4j.aws {
-  requires static io.avaje.http.api;
   requires io.avaje.http.client;
   requires io.avaje.jsonb;
   requires io.github.ascopes.cloudlogs4j.core;
   requires java.base;
   requires java.net.http;
   requires static org.jspecify;
+
+  provides io.avaje.jsonb.Jsonb.GeneratedComponent
+      with io.github.ascopes.cloudlogs4j.aws.jsonb.GeneratedJsonComponent;
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Minimal HTTP/1.1 server for standing in for AWS endpoints in tests.
+ *
+ * <p>This only understands {@code Content-Length} delimited bodies, which is all the JDK HTTP
+ * client sends for the requests made in this module.
+ *
+ * @author Ashley Scopes
+ */
+public final class FakeHttpServer implements AutoCloseable {
+
+  private final ServerSocket serverSocket;
+  private final Handler handler;
+
+  /**
+   * Start a new server on a random loopback port.
+   *
+   * @param handler the handler to respond to requests with.
+   * @throws IOException if the server cannot be started.
+   */
+  public FakeHttpServer(Handler handler) throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    this.handler = handler;
+
+    var acceptor = new Thread(this::acceptConnections, "fake-http-server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Get the base URL of this server.
+   *
+   * @return the base URL.
+   */
+  public String getEndpoint() {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        var socket = serverSocket.accept();
+        var connection = new Thread(() -> serve(socket), "fake-http-server-connection");
+        connection.setDaemon(true);
+        connection.start();
+      } catch (IOException ex) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (socket) {
+      var in = new BufferedInputStream(socket.getInputStream());
+      var out = socket.getOutputStream();
+
+      String requestLine;
+      while ((requestLine = readLine(in)) != null) {
+        var headers = new HashMap<String, String>();
+        String headerLine;
+        while ((headerLine = readLine(in)) != null && !headerLine.isEmpty()) {
+          var colon = headerLine.indexOf(':');
+          headers.put(
+              headerLine.substring(0, colon).strip().toLowerCase(Locale.ROOT),
+              headerLine.substring(colon + 1).strip()
+          );
+        }
+        var contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+        var requestBody = new String(in.readNBytes(contentLength), UTF_8);
+
+        var parts = requestLine.split(" ");
+        var response = handler.handle(new Request(parts[0], parts[1], headers, requestBody));
+        var body = response.body().getBytes(UTF_8);
+        out.write(("HTTP/1.1 " + response.status() + " X\r\n"
+            + "Content-Length: " + body.length + "\r\n\r\n").getBytes(US_ASCII));
+        out.write(body);
+        out.flush();
+      }
+    } catch (IOException ex) {
+      // Connection dropped by the client.
+    }
+  }
+
+  private static @Nullable String readLine(InputStream in) throws IOException {
+    var line = new ByteArrayOutputStream();
+    int next;
+    while ((next = in.read()) != -1) {
+      if (next == '\n') {
+        var bytes = line.toByteArray();
+        var length = bytes.length > 0 && bytes[bytes.length - 1] == '\r'
+            ? bytes.length - 1
+            : bytes.length;
+        return new String(bytes, 0, length, US_ASCII);
+      }
+      line.write(next);
+    }
+    return null;
+  }
+
+  /**
+   * Handler for requests made to a {@link FakeHttpServer}.
+   */
+  @FunctionalInterface
+  public interface Handler {
+
+    /**
+     * Respond to a request.
+     *
+     * @param request the request.
+     * @return the response.
+     */
+    Response handle(Request request);
+  }
+
+  /**
+   * A request made to the server.
+   *
+   * @param method  the request method.
+   * @param path    the request path.
+   * @param headers the request headers, keyed by lower case name.
+   * @param body    the request body.
+   */
+  public record Request(String method, String path, Map<String, String> headers, String body) {
+
+    /**
+     * Get a header.
+     *
+     * @param name the header name, in any case.
+     * @return the header value, or {@code null} if not present.
+     */
+    public @Nullable String header(String name) {
+      return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * A response to send back.
+   *
+   * @param status the status code.
+   * @param body   the response body.
+   */
+  public record Response(int status, String body) {
+  }
+}
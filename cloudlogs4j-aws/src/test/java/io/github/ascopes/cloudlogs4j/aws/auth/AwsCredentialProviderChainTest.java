@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link AwsCredentialProviderChain} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AwsCredentialProviderChain tests")
+class AwsCredentialProviderChainTest {
+
+  @DisplayName("The first provider to return credentials wins")
+  @Test
+  void theFirstProviderToReturnCredentialsWins() throws Exception {
+    // Given
+    var credentials = new AwsCredentials("foo", "bar");
+    var chain = new AwsCredentialProviderChain();
+    chain.addProvider(new StubProvider(null));
+    chain.addProvider(new StubProvider(credentials));
+    chain.addProvider(new StubProvider(new AwsCredentials("baz", "bork")));
+
+    // Then
+    assertThat(chain.getCredentials()).isSameAs(credentials);
+  }
+
+  @DisplayName("The default chain looks in the same places as the AWS SDKs")
+  @Test
+  void theDefaultChainLooksInTheSamePlacesAsTheAwsSdks() {
+    // When
+    var chain = AwsCredentialProviderChain.defaults();
+
+    // Then
+    assertThat(chain.getProviders())
+        .map(Object::getClass)
+        .containsExactly(
+            JvmPropertiesCredentialsProvider.class,
+            EnvironmentVariableCredentialsProvider.class,
+            WebIdentityCredentialsProvider.class,
+            ProfileCredentialsProvider.class,
+            InstanceProfileCredentialsProvider.class
+        );
+  }
+
+  @DisplayName("The winning provider is asked first on later calls")
+  @Test
+  void theWinningProviderIsAskedFirstOnLaterCalls() throws Exception {
+    // Given
+    var empty = new StubProvider(null);
+    var winner = new StubProvider(new AwsCredentials("foo", "bar"));
+    var chain = new AwsCredentialProviderChain();
+    chain.addProvider(empty);
+    chain.addProvider(winner);
+
+    // When
+    chain.getCredentials();
+    chain.getCredentials();
+    chain.getCredentials();
+
+    // Then
+    assertThat(empty.calls).hasValue(1);
+    assertThat(winner.calls).hasValue(3);
+  }
+
+  @DisplayName("The whole chain is walked on every call when reuse is disabled")
+  @Test
+  void theWholeChainIsWalkedOnEveryCallWhenReuseIsDisabled() throws Exception {
+    // Given
+    var empty = new StubProvider(null);
+    var chain = new AwsCredentialProviderChain(false);
+    chain.addProvider(empty);
+    chain.addProvider(new StubProvider(new AwsCredentials("foo", "bar")));
+
+    // When
+    chain.getCredentials();
+    chain.getCredentials();
+
+    // Then
+    assertThat(empty.calls).hasValue(2);
+  }
+
+  @DisplayName("Resetting the last provider walks the whole chain again")
+  @Test
+  void resettingTheLastProviderWalksTheWholeChainAgain() throws Exception {
+    // Given
+    var empty = new StubProvider(null);
+    var chain = new AwsCredentialProviderChain();
+    chain.addProvider(empty);
+    chain.addProvider(new StubProvider(new AwsCredentials("foo", "bar")));
+    chain.getCredentials();
+
+    // When
+    chain.resetLastProvider();
+    chain.getCredentials();
+
+    // Then
+    assertThat(empty.calls).hasValue(2);
+  }
+
+  @DisplayName("The chain is walked again when the last provider stops returning credentials")
+  @Test
+  void theChainIsWalkedAgainWhenTheLastProviderStopsReturningCredentials() throws Exception {
+    // Given
+    var fallback = new AwsCredentials("baz", "bork");
+    var first = new StubProvider(new AwsCredentials("foo", "bar"));
+    var chain = new AwsCredentialProviderChain();
+    chain.addProvider(first);
+    chain.addProvider(new StubProvider(fallback));
+    chain.getCredentials();
+
+    // When
+    first.credentials = null;
+    var result = chain.getCredentials();
+
+    // Then
+    assertThat(result).isSameAs(fallback);
+    assertThat(first.calls).hasValue(2);
+  }
+
+  @DisplayName("Parallel resolution runs providers at once and prefers earlier providers")
+  @Test
+  void parallelResolutionRunsProvidersAtOnceAndPrefersEarlierProviders() throws Exception {
+    // Given
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var laterStarted = new CountDownLatch(1);
+      var earlier = new AwsCredentials("foo", "bar");
+      var chain = new AwsCredentialProviderChain(true, executor);
+      chain.addProvider(() -> {
+        // Only completes if the later provider runs at the same time.
+        awaitQuietly(laterStarted);
+        return laterStarted.getCount() == 0 ? earlier : null;
+      });
+      chain.addProvider(() -> {
+        laterStarted.countDown();
+        return new AwsCredentials("baz", "bork");
+      });
+
+      // When
+      var result = chain.getCredentials();
+
+      // Then
+      assertThat(result).isSameAs(earlier);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @DisplayName("Parallel resolution cancels later lookups once an earlier provider succeeds")
+  @Test
+  void parallelResolutionCancelsLaterLookupsOnceAnEarlierProviderSucceeds() throws Exception {
+    // Given
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var laterStarted = new CountDownLatch(1);
+      var laterInterrupted = new CountDownLatch(1);
+      var chain = new AwsCredentialProviderChain(true, executor);
+      chain.addProvider(() -> {
+        awaitQuietly(laterStarted);
+        return new AwsCredentials("foo", "bar");
+      });
+      chain.addProvider(() -> {
+        laterStarted.countDown();
+        try {
+          Thread.sleep(60_000);
+        } catch (InterruptedException ex) {
+          laterInterrupted.countDown();
+        }
+        return null;
+      });
+
+      // When
+      chain.getCredentials();
+
+      // Then
+      assertThat(laterInterrupted.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class StubProvider implements AwsCredentialsProvider {
+
+    private final AtomicInteger calls;
+    private volatile @Nullable AwsCredentials credentials;
+
+    private StubProvider(@Nullable AwsCredentials credentials) {
+      calls = new AtomicInteger();
+      this.credentials = credentials;
+    }
+
+    @Override
+    public @Nullable AwsCredentials getCredentials() {
+      calls.incrementAndGet();
+      return credentials;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link AwsProfileFile} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AwsProfileFile tests")
+class AwsProfileFileTest {
+
+  @TempDir
+  Path tempDir;
+
+  @DisplayName("Credentials file profiles are parsed")
+  @Test
+  void credentialsFileProfilesAreParsed() throws Exception {
+    // Given
+    var path = Files.writeString(tempDir.resolve("credentials"), String.join("\n",
+        "# A comment",
+        "[default]",
+        "aws_access_key_id = AKIA123",
+        "AWS_Secret_Access_Key=secret ; trailing comment",
+        "",
+        "[other]",
+        "aws_access_key_id = AKIA456#not-a-comment"
+    ));
+    var file = new AwsProfileFile(path, false);
+
+    // Then
+    assertThat(file.getProfile("default")).isEqualTo(Map.of(
+        "aws_access_key_id", "AKIA123",
+        "aws_secret_access_key", "secret"
+    ));
+    assertThat(file.getProfile("other"))
+        .isEqualTo(Map.of("aws_access_key_id", "AKIA456#not-a-comment"));
+    assertThat(file.getProfile("missing")).isEmpty();
+  }
+
+  @DisplayName("Config file profiles are parsed and other sections are ignored")
+  @Test
+  void configFileProfilesAreParsedAndOtherSectionsAreIgnored() throws Exception {
+    // Given
+    var path = Files.writeString(tempDir.resolve("config"), String.join("\n",
+        "[default]",
+        "region = eu-west-2",
+        "[profile dev]",
+        "source_profile = default",
+        "s3 =",
+        "  max_concurrent_requests = 20",
+        "[sso-session corp]",
+        "sso_region = us-east-1"
+    ));
+    var file = new AwsProfileFile(path, true);
+
+    // Then
+    assertThat(file.getProfile("default")).isEqualTo(Map.of("region", "eu-west-2"));
+    assertThat(file.getProfile("dev")).isEqualTo(Map.of("source_profile", "default", "s3", ""));
+    assertThat(file.getProfile("sso-session corp")).isEmpty();
+    assertThat(file.getProfile("corp")).isEmpty();
+  }
+
+  @DisplayName("A missing file has no profiles")
+  @Test
+  void aMissingFileHasNoProfiles() throws Exception {
+    // Given
+    var file = new AwsProfileFile(tempDir.resolve("does-not-exist"), false);
+
+    // Then
+    assertThat(file.getProfile("default")).isEmpty();
+  }
+
+  @DisplayName("The file is only parsed again when its modification time or size changes")
+  @Test
+  void theFileIsOnlyParsedAgainWhenItsModificationTimeOrSizeChanges() throws Exception {
+    // Given
+    var path = Files.writeString(tempDir.resolve("credentials"), "[default]\nkey = aaa\n");
+    var file = new AwsProfileFile(path, false);
+    assertThat(file.getProfile("default")).containsEntry("key", "aaa");
+    var lastModified = Files.getLastModifiedTime(path);
+
+    // When
+    Files.writeString(path, "[default]\nkey = bbb\n");
+    Files.setLastModifiedTime(path, lastModified);
+    var unchanged = file.getProfile("default");
+
+    Files.writeString(path, "[default]\nkey = cccc\n");
+    var changed = file.getProfile("default");
+
+    // Then
+    assertThat(unchanged).containsEntry("key", "aaa");
+    assertThat(changed).containsEntry("key", "cccc");
+  }
+}
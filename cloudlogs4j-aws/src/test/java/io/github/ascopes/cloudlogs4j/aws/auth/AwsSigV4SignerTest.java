@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link AwsSigV4Signer} tests.
+ *
+ * <p>Expected values come from the AWS Signature Version 4 test suite.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AwsSigV4Signer tests")
+class AwsSigV4SignerTest {
+
+  private static final AwsCredentials CREDENTIALS = new AwsCredentials(
+      "AKIDEXAMPLE",
+      "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY"
+  );
+  private static final Clock CLOCK = Clock.fixed(
+      Instant.parse("2015-08-30T12:36:00Z"),
+      ZoneOffset.UTC
+  );
+
+  @DisplayName("The signing key is derived with the HMAC chain")
+  @Test
+  void theSigningKeyIsDerivedWithTheHmacChain() {
+    // When
+    var key = AwsSigV4Signer.deriveSigningKey(
+        "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY",
+        "20120215",
+        "us-east-1",
+        "iam"
+    );
+
+    // Then
+    assertThat(HexFormat.of().formatHex(key))
+        .isEqualTo("f4780e2d9f65fa895f9c67b32ce1baf0b0d8a43505a000a1a9e090d414db404d");
+  }
+
+  @DisplayName("A plain GET request is signed")
+  @Test
+  void aPlainGetRequestIsSigned() {
+    // Given
+    var signer = new AwsSigV4Signer("us-east-1", "service", CLOCK);
+
+    // When
+    var headers = signer.sign(
+        "GET",
+        URI.create("https://example.amazonaws.com/"),
+        Map.of(),
+        ByteBuffer.allocate(0),
+        CREDENTIALS
+    );
+
+    // Then
+    assertThat(headers).containsExactly(
+        Map.entry("X-Amz-Date", "20150830T123600Z"),
+        Map.entry("Authorization", "AWS4-HMAC-SHA256 "
+            + "Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, "
+            + "SignedHeaders=host;x-amz-date, "
+            + "Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31")
+    );
+  }
+
+  @DisplayName("Query parameters are sorted in the canonical request")
+  @Test
+  void queryParametersAreSortedInTheCanonicalRequest() {
+    // Given
+    var signer = new AwsSigV4Signer("us-east-1", "service", CLOCK);
+
+    // When
+    var headers = signer.sign(
+        "GET",
+        URI.create("https://example.amazonaws.com/?Param2=value2&Param1=value1"),
+        Map.of(),
+        ByteBuffer.allocate(0),
+        CREDENTIALS
+    );
+
+    // Then
+    assertThat(headers.get("Authorization")).endsWith(
+        "Signature=b97d918cfa904a5beff61c982a1b6f458b799221646efd99d3219ec94cdf2500"
+    );
+  }
+
+  @DisplayName("Session tokens are signed and returned as a header")
+  @Test
+  void sessionTokensAreSignedAndReturnedAsAHeader() {
+    // Given
+    var signer = new AwsSigV4Signer("eu-west-2", "logs", CLOCK);
+    var credentials = new AwsCredentials("AKIDEXAMPLE", "secret", "session-token");
+
+    // When
+    var headers = signer.sign(
+        "POST",
+        URI.create("https://logs.eu-west-2.amazonaws.com/"),
+        Map.of("Content-Type", "application/x-amz-json-1.1"),
+        ByteBuffer.wrap("{}".getBytes(UTF_8)),
+        credentials
+    );
+
+    // Then
+    assertThat(headers).containsEntry("X-Amz-Security-Token", "session-token");
+    assertThat(headers.get("Authorization"))
+        .contains("Credential=AKIDEXAMPLE/20150830/eu-west-2/logs/aws4_request")
+        .contains("SignedHeaders=content-type;host;x-amz-date;x-amz-security-token");
+  }
+
+  @DisplayName("The payload buffer is left as it was")
+  @Test
+  void thePayloadBufferIsLeftAsItWas() {
+    // Given
+    var signer = new AwsSigV4Signer("eu-west-2", "logs", CLOCK);
+    var payload = ByteBuffer.allocateDirect(16).put("hello".getBytes(UTF_8)).flip();
+
+    // When
+    var first = signer.sign("POST", URI.create("https://x/"), Map.of(), payload, CREDENTIALS);
+    var second = signer.sign("POST", URI.create("https://x/"), Map.of(), payload, CREDENTIALS);
+
+    // Then
+    assertThat(payload.position()).isZero();
+    assertThat(payload.limit()).isEqualTo(5);
+    assertThat(first).isEqualTo(second);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link CredentialsFileWatcher} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("CredentialsFileWatcher tests")
+class CredentialsFileWatcherTest {
+
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+  @TempDir
+  Path tempDir;
+
+  @DisplayName("Changes made before the watcher is started are reported")
+  @Test
+  void changesMadeBeforeTheWatcherIsStartedAreReported() throws Exception {
+    // Given
+    var path = Files.writeString(tempDir.resolve("credentials.properties"), "first");
+    var changed = new CountDownLatch(1);
+    var watcher = CredentialsFileWatcher.create(
+        path,
+        POLL_INTERVAL,
+        () -> true,
+        changed::countDown
+    );
+
+    try {
+      // When
+      Files.writeString(path, "second, rotated while the file was first being read");
+      watcher.start();
+
+      // Then
+      assertThat(changed.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      watcher.close();
+    }
+  }
+
+  @DisplayName("Watching stops once it is no longer wanted, even if the file never changes")
+  @Test
+  void watchingStopsOnceItIsNoLongerWantedEvenIfTheFileNeverChanges() throws Exception {
+    // Given
+    var path = Files.writeString(tempDir.resolve("credentials.properties"), "first");
+    var keepWatching = new AtomicBoolean(true);
+    var changes = new AtomicInteger();
+    var watcher = CredentialsFileWatcher.create(
+        path,
+        POLL_INTERVAL,
+        keepWatching::get,
+        changes::incrementAndGet
+    );
+    watcher.start();
+
+    try {
+      // When
+      keepWatching.set(false);
+
+      // Then
+      var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+      while (watcher.isWatching() && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(watcher.isWatching()).isFalse();
+      assertThat(changes).hasValue(0);
+    } finally {
+      watcher.close();
+    }
+  }
+}
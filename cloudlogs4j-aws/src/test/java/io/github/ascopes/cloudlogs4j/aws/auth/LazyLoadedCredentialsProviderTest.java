@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link LazyLoadedCredentialsProvider} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("LazyLoadedCredentialsProvider tests")
+class LazyLoadedCredentialsProviderTest {
+
+  @DisplayName("Credentials are fetched once and then cached")
+  @Test
+  void credentialsAreFetchedOnceAndThenCached() throws Exception {
+    // Given
+    var provider = new CountingProvider(new MutableClock(), 0);
+
+    // When
+    var first = provider.getCredentials();
+    var second = provider.getCredentials();
+
+    // Then
+    assertThat(first).isSameAs(second);
+    assertThat(provider.fetches).hasValue(1);
+  }
+
+  @DisplayName("Credentials are fetched again once the reset time has passed")
+  @Test
+  void credentialsAreFetchedAgainOnceTheResetTimeHasPassed() throws Exception {
+    // Given
+    var clock = new MutableClock();
+    var provider = new CountingProvider(clock, 1_000);
+    var first = provider.getCredentials();
+
+    // When
+    clock.millis.set(999);
+    var beforeReset = provider.getCredentials();
+    clock.millis.set(1_000);
+    var afterReset = provider.getCredentials();
+
+    // Then
+    assertThat(beforeReset).isSameAs(first);
+    assertThat(afterReset).isNotSameAs(first);
+    assertThat(provider.fetches).hasValue(2);
+  }
+
+  @DisplayName("Concurrent callers only fetch expired credentials once")
+  @Test
+  void concurrentCallersOnlyFetchExpiredCredentialsOnce() throws Exception {
+    // Given
+    var release = new CountDownLatch(1);
+    var provider = new CountingProvider(new MutableClock(), 0) {
+      @Override
+      protected AwsCredentials fetchCredentials() {
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return super.fetchCredentials();
+      }
+    };
+    var executor = Executors.newFixedThreadPool(8);
+
+    try {
+      // When
+      var futures = new ArrayList<Future<@Nullable AwsCredentials>>();
+      for (var i = 0; i < 8; ++i) {
+        futures.add(executor.submit(provider::getCredentials));
+      }
+      Thread.sleep(50);
+      release.countDown();
+
+      // Then
+      for (var future : futures) {
+        assertThat(future.get()).isSameAs(futures.get(0).get());
+      }
+      assertThat(provider.fetches).hasValue(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @DisplayName("Credentials are refreshed in the background before they are reset")
+  @Test
+  void credentialsAreRefreshedInTheBackgroundBeforeTheyAreReset() throws Exception {
+    // Given
+    var provider = new CountingProvider(new MutableClock(), 1_000, Duration.ofSeconds(1));
+
+    // When
+    var first = provider.getCredentials();
+    awaitFetches(provider, 2);
+
+    // Then
+    assertThat(provider.getCredentials()).isNotSameAs(first);
+  }
+
+  @DisplayName("Callers keep the old credentials while a background refresh is in progress")
+  @Test
+  void callersKeepTheOldCredentialsWhileBackgroundRefreshIsInProgress() throws Exception {
+    // Given
+    var refreshing = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var provider = new CountingProvider(new MutableClock(), 1_000, Duration.ofSeconds(1)) {
+      @Override
+      protected AwsCredentials fetchCredentials() {
+        if (fetches.get() > 0) {
+          refreshing.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.fetchCredentials();
+      }
+    };
+    var first = provider.getCredentials();
+    refreshing.await();
+
+    try {
+      // When
+      var duringRefresh = provider.getCredentials();
+
+      // Then
+      assertThat(duringRefresh).isSameAs(first);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @DisplayName("A background refresh that finds nothing keeps the old credentials and retries")
+  @Test
+  void backgroundRefreshThatFindsNothingKeepsTheOldCredentialsAndRetries() throws Exception {
+    // Given
+    var provider = new CountingProvider(new MutableClock(), 1_000, Duration.ofSeconds(1)) {
+      @Override
+      protected @Nullable AwsCredentials fetchCredentials() {
+        var credentials = super.fetchCredentials();
+        // Simulate the source timing out on the first refresh.
+        return fetches.get() == 2 ? null : credentials;
+      }
+    };
+    var first = provider.getCredentials();
+
+    // When
+    awaitFetches(provider, 2);
+    var afterFailedRefresh = provider.getCredentials();
+    awaitFetches(provider, 3);
+
+    // Then
+    assertThat(afterFailedRefresh).isSameAs(first);
+    var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (provider.getCredentials() == first && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    var refreshed = provider.getCredentials();
+    assertThat(refreshed).isNotNull();
+    assertThat(refreshed.getAccessKeyId()).isEqualTo("key-3");
+  }
+
+  static class CountingProvider extends LazyLoadedCredentialsProvider {
+    final AtomicInteger fetches = new AtomicInteger();
+    private final Clock clock;
+    private final long lifetimeMillis;
+
+    CountingProvider(Clock clock, long lifetimeMillis) {
+      this(clock, lifetimeMillis, null);
+    }
+
+    CountingProvider(Clock clock, long lifetimeMillis, @Nullable Duration refreshAhead) {
+      super(clock, refreshAhead);
+      this.clock = clock;
+      this.lifetimeMillis = lifetimeMillis;
+    }
+
+    @Override
+    protected AwsCredentials fetchCredentials() {
+      var fetch = fetches.incrementAndGet();
+      if (lifetimeMillis > 0) {
+        resetCredentialsAfter(clock.millis() + lifetimeMillis);
+      }
+      return new AwsCredentials("key-" + fetch, "secret-" + fetch);
+    }
+  }
+
+  private static void awaitFetches(CountingProvider provider, int count) throws Exception {
+    var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (provider.fetches.get() < count) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Timed out waiting for " + count + " fetches");
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  static final class MutableClock extends Clock {
+    final AtomicLong millis = new AtomicLong();
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long millis() {
+      return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis());
+    }
+  }
+}
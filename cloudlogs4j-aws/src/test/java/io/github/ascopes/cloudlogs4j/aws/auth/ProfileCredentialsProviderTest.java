@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsProfileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ProfileCredentialsProvider} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("ProfileCredentialsProvider tests")
+class ProfileCredentialsProviderTest {
+
+  @TempDir
+  Path tempDir;
+
+  @DisplayName("No credentials are returned when the profile does not exist")
+  @Test
+  void noCredentialsAreReturnedWhenTheProfileDoesNotExist() throws Exception {
+    // Given
+    var provider = newProvider("default", "", "");
+
+    // Then
+    assertThat(provider.getCredentials()).isNull();
+  }
+
+  @DisplayName("Static credentials are read, with the credentials file taking precedence")
+  @Test
+  void staticCredentialsAreReadWithTheCredentialsFileTakingPrecedence() throws Exception {
+    // Given
+    var provider = newProvider(
+        "dev",
+        "[dev]\naws_access_key_id = AKIA123\naws_secret_access_key = secret\n",
+        "[profile dev]\naws_access_key_id = AKIA456\naws_session_token = session\n"
+    );
+
+    // When
+    var credentials = provider.getCredentials();
+
+    // Then
+    assertThat(credentials).isNotNull();
+    assertThat(credentials.getAccessKeyId()).isEqualTo("AKIA123");
+    assertThat(credentials.getSecretAccessKey()).isEqualTo("secret");
+    assertThat(credentials.getSessionToken()).isEqualTo("session");
+  }
+
+  @DisplayName("Credentials are taken from the source profile")
+  @Test
+  void credentialsAreTakenFromTheSourceProfile() throws Exception {
+    // Given
+    var provider = newProvider(
+        "dev",
+        "[base]\naws_access_key_id = AKIA123\naws_secret_access_key = secret\n",
+        "[profile dev]\nsource_profile = base\n"
+    );
+
+    // When
+    var credentials = provider.getCredentials();
+
+    // Then
+    assertThat(credentials).isNotNull();
+    assertThat(credentials.getAccessKeyId()).isEqualTo("AKIA123");
+  }
+
+  @DisplayName("Source profile cycles are rejected")
+  @Test
+  void sourceProfileCyclesAreRejected() {
+    // Given
+    var provider = newProvider(
+        "a",
+        "",
+        "[profile a]\nsource_profile = b\n[profile b]\nsource_profile = a\n"
+    );
+
+    // Then
+    assertThatThrownBy(provider::getCredentials)
+        .isInstanceOf(AwsProfileException.class)
+        .hasMessageContaining("'a'");
+  }
+
+  @DisplayName("Missing source profiles are rejected")
+  @Test
+  void missingSourceProfilesAreRejected() {
+    // Given
+    var provider = newProvider("dev", "", "[profile dev]\nsource_profile = nope\n");
+
+    // Then
+    assertThatThrownBy(provider::getCredentials)
+        .isInstanceOf(AwsMissingValueException.class)
+        .hasMessageContaining("'nope'");
+  }
+
+  @DisplayName("Credentials are read from the output of the credential process")
+  @DisabledOnOs(OS.WINDOWS)
+  @Test
+  void credentialsAreReadFromTheOutputOfTheCredentialProcess() throws Exception {
+    // Given
+    var output = "{\"Version\": 1, \"AccessKeyId\": \"AKIA789\", "
+        + "\"SecretAccessKey\": \"secret\", \"SessionToken\": \"session\", "
+        + "\"Expiration\": \"2099-01-01T00:00:00Z\"}";
+    var provider = newProvider(
+        "default",
+        "",
+        "[default]\ncredential_process = printf '%s' '" + output + "'\n"
+    );
+
+    // When
+    var credentials = provider.getCredentials();
+
+    // Then
+    assertThat(credentials).isNotNull();
+    assertThat(credentials.getAccessKeyId()).isEqualTo("AKIA789");
+    assertThat(credentials.getSecretAccessKey()).isEqualTo("secret");
+    assertThat(credentials.getSessionToken()).isEqualTo("session");
+  }
+
+  @DisplayName("Credential process output without an expiry is reused until the profile changes")
+  @DisabledOnOs(OS.WINDOWS)
+  @Test
+  void credentialProcessOutputWithoutExpiryIsReusedUntilTheProfileChanges() throws Exception {
+    // Given
+    var clock = new LazyLoadedCredentialsProviderTest.MutableClock();
+    var runs = tempDir.resolve("runs");
+    var provider = newProvider("default", "", credentialProcessConfig(runs, "AKIA1"), clock);
+    provider.getCredentials();
+
+    // When
+    clock.millis.addAndGet(Duration.ofMinutes(5).toMillis());
+    var unchanged = provider.getCredentials();
+    Files.writeString(tempDir.resolve("config"), credentialProcessConfig(runs, "AKIA22"));
+    clock.millis.addAndGet(Duration.ofMinutes(5).toMillis());
+    var changed = provider.getCredentials();
+
+    // Then
+    assertThat(unchanged).isNotNull();
+    assertThat(unchanged.getAccessKeyId()).isEqualTo("AKIA1");
+    assertThat(changed).isNotNull();
+    assertThat(changed.getAccessKeyId()).isEqualTo("AKIA22");
+    assertThat(Files.readAllLines(runs)).hasSize(2);
+  }
+
+  private static String credentialProcessConfig(Path runs, String accessKeyId) {
+    var output = "{\"Version\": 1, \"AccessKeyId\": \"" + accessKeyId + "\", "
+        + "\"SecretAccessKey\": \"secret\"}";
+    return "[default]\ncredential_process = echo run >> '" + runs + "' && printf '%s' '"
+        + output + "'\n";
+  }
+
+  private ProfileCredentialsProvider newProvider(
+      String profileName,
+      String credentials,
+      String config
+  ) {
+    return newProvider(profileName, credentials, config, Clock.systemUTC());
+  }
+
+  private ProfileCredentialsProvider newProvider(
+      String profileName,
+      String credentials,
+      String config,
+      Clock clock
+  ) {
+    try {
+      return new ProfileCredentialsProvider(
+          profileName,
+          Files.writeString(tempDir.resolve("credentials"), credentials),
+          Files.writeString(tempDir.resolve("config"), config),
+          clock
+      );
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link PropertiesFileCredentialsProvider} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PropertiesFileCredentialsProvider tests")
+class PropertiesFileCredentialsProviderTest {
+
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+  @TempDir
+  Path tempDir;
+
+  @DisplayName("Credentials are read once when the file is not watched")
+  @Test
+  void credentialsAreReadOnceWhenTheFileIsNotWatched() throws Exception {
+    // Given
+    var path = writeCredentials(tempDir.resolve("credentials.properties"), "first");
+    var provider = new PropertiesFileCredentialsProvider(path);
+    var first = provider.getCredentials();
+
+    // When
+    writeCredentials(path, "second");
+
+    // Then
+    assertThat(provider.getCredentials()).isSameAs(first);
+  }
+
+  @DisplayName("Rewritten files are reloaded in the background when watched")
+  @Test
+  void rewrittenFilesAreReloadedInTheBackgroundWhenWatched() throws Exception {
+    // Given
+    var path = writeCredentials(tempDir.resolve("credentials.properties"), "first");
+
+    try (var provider = new PropertiesFileCredentialsProvider(path, POLL_INTERVAL)) {
+      assertThat(provider.getCredentials().getAccessKeyId()).isEqualTo("first");
+
+      // When
+      writeCredentials(path, "second");
+
+      // Then
+      assertThat(awaitAccessKeyId(provider, "second")).isTrue();
+    }
+  }
+
+  @DisplayName("Unreadable rewrites keep the previous credentials")
+  @Test
+  void unreadableRewritesKeepThePreviousCredentials() throws Exception {
+    // Given
+    var path = writeCredentials(tempDir.resolve("credentials.properties"), "first");
+
+    try (var provider = new PropertiesFileCredentialsProvider(path, POLL_INTERVAL)) {
+      // When
+      Files.writeString(path, "accessKeyId=half-written\n");
+      Thread.sleep(POLL_INTERVAL.toMillis() * 5);
+      var during = provider.getCredentials();
+      writeCredentials(path, "second");
+
+      // Then
+      assertThat(during.getAccessKeyId()).isEqualTo("first");
+      assertThat(awaitAccessKeyId(provider, "second")).isTrue();
+    }
+  }
+
+  @DisplayName("Symbolic link swaps like those used for Kubernetes secrets are reloaded")
+  @DisabledOnOs(OS.WINDOWS)
+  @Test
+  void symbolicLinkSwapsLikeThoseUsedForKubernetesSecretsAreReloaded() throws Exception {
+    // Given
+    var first = Files.createDirectory(tempDir.resolve("..2022_06_01"));
+    var second = Files.createDirectory(tempDir.resolve("..2022_06_02"));
+    writeCredentials(first.resolve("credentials.properties"), "first");
+    writeCredentials(second.resolve("credentials.properties"), "second");
+
+    var data = Files.createSymbolicLink(tempDir.resolve("..data"), first.getFileName());
+    var path = Files.createSymbolicLink(
+        tempDir.resolve("credentials.properties"),
+        data.getFileName().resolve("credentials.properties")
+    );
+
+    try (var provider = new PropertiesFileCredentialsProvider(path, POLL_INTERVAL)) {
+      assertThat(provider.getCredentials().getAccessKeyId()).isEqualTo("first");
+
+      // When
+      var newData = Files.createSymbolicLink(tempDir.resolve("..data_tmp"), second.getFileName());
+      Files.move(newData, data, StandardCopyOption.ATOMIC_MOVE);
+
+      // Then
+      assertThat(awaitAccessKeyId(provider, "second")).isTrue();
+    }
+  }
+
+  private static Path writeCredentials(Path path, String accessKeyId) throws Exception {
+    return Files.writeString(path, "accessKeyId=" + accessKeyId + "\nsecretAccessKey=secret\n");
+  }
+
+  private static boolean awaitAccessKeyId(
+      PropertiesFileCredentialsProvider provider,
+      String accessKeyId
+  ) throws Exception {
+    var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (System.nanoTime() < deadline) {
+      var credentials = provider.getCredentials();
+      if (credentials != null && credentials.getAccessKeyId().equals(accessKeyId)) {
+        return true;
+      }
+      Thread.sleep(10);
+    }
+    return false;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Request;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Response;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsMissingValueException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link WebIdentityCredentialsProvider} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("WebIdentityCredentialsProvider tests")
+class WebIdentityCredentialsProviderTest {
+
+  private static final Instant NOW = Instant.parse("2022-06-01T12:00:00Z");
+  private static final String ROLE_ARN = "arn:aws:iam::123456789012:role/some-role";
+
+  @TempDir
+  Path tempDir;
+
+  @DisplayName("No credentials are returned when web identity is not configured")
+  @Test
+  void noCredentialsAreReturnedWhenWebIdentityIsNotConfigured() throws Exception {
+    // Given
+    var provider = newProvider(null, null, "http://127.0.0.1:1");
+
+    // Then
+    assertThat(provider.getCredentials()).isNull();
+  }
+
+  @DisplayName("An exception is raised when only the role ARN is configured")
+  @Test
+  void anExceptionIsRaisedWhenOnlyTheRoleArnIsConfigured() {
+    // Given
+    var provider = newProvider(null, ROLE_ARN, "http://127.0.0.1:1");
+
+    // Then
+    assertThatThrownBy(provider::getCredentials)
+        .isInstanceOf(AwsMissingValueException.class)
+        .hasMessageContaining("AWS_WEB_IDENTITY_TOKEN_FILE");
+  }
+
+  @DisplayName("The web identity token is exchanged for credentials with STS")
+  @Test
+  void theWebIdentityTokenIsExchangedForCredentialsWithSts() throws Exception {
+    // Given
+    var tokenFile = Files.writeString(tempDir.resolve("token"), "some.jwt.token\n");
+    var requests = new CopyOnWriteArrayList<Request>();
+    var expiration = NOW.plusSeconds(3_600).getEpochSecond();
+
+    try (var sts = new FakeHttpServer(request -> {
+      requests.add(request);
+      return new Response(200, "{\"AssumeRoleWithWebIdentityResponse\":"
+          + "{\"AssumeRoleWithWebIdentityResult\":"
+          + "{\"Credentials\":{\"AccessKeyId\":\"AKIA123\",\"SecretAccessKey\":\"secret\","
+          + "\"SessionToken\":\"session\",\"Expiration\":" + expiration + ".0}}}}");
+    })) {
+      var provider = newProvider(tokenFile, ROLE_ARN, sts.getEndpoint());
+
+      // When
+      var credentials = provider.getCredentials();
+
+      // Then
+      assertThat(credentials).isNotNull();
+      assertThat(credentials.getAccessKeyId()).isEqualTo("AKIA123");
+      assertThat(credentials.getSecretAccessKey()).isEqualTo("secret");
+      assertThat(credentials.getSessionToken()).isEqualTo("session");
+
+      assertThat(requests).hasSize(1);
+      var request = requests.get(0);
+      assertThat(request.method()).isEqualTo("POST");
+      assertThat(request.header("Accept")).isEqualTo("application/json");
+      assertThat(List.of(request.body().split("&"))).contains(
+          "Action=AssumeRoleWithWebIdentity",
+          "RoleArn=arn%3Aaws%3Aiam%3A%3A123456789012%3Arole%2Fsome-role",
+          "RoleSessionName=some-session",
+          "WebIdentityToken=some.jwt.token"
+      );
+
+      // Cached until shortly before the credentials expire.
+      assertThat(provider.getCredentials()).isSameAs(credentials);
+      assertThat(requests).hasSize(1);
+    }
+  }
+
+  @DisplayName("STS errors are raised as response exceptions")
+  @Test
+  void stsErrorsAreRaisedAsResponseExceptions() throws Exception {
+    // Given
+    var tokenFile = Files.writeString(tempDir.resolve("token"), "some.jwt.token");
+
+    try (var sts = new FakeHttpServer(request -> new Response(400, "InvalidIdentityToken"))) {
+      var provider = newProvider(tokenFile, ROLE_ARN, sts.getEndpoint());
+
+      // Then
+      assertThatThrownBy(provider::getCredentials)
+          .isInstanceOfSatisfying(
+              AwsHttpResponseException.class,
+              ex -> assertThat(ex.getResponseStatus()).isEqualTo(400)
+          );
+    }
+  }
+
+  private static WebIdentityCredentialsProvider newProvider(
+      @Nullable Path tokenFile,
+      @Nullable String roleArn,
+      String stsEndpoint
+  ) {
+    return new WebIdentityCredentialsProvider(
+        tokenFile,
+        roleArn,
+        "some-session",
+        stsEndpoint,
+        Clock.fixed(NOW, ZoneOffset.UTC),
+        null
+    );
+  }
+}
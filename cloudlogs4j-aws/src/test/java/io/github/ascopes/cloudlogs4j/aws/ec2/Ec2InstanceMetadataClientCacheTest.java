@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ec2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link Ec2InstanceMetadataClientCache} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("Ec2InstanceMetadataClientCache tests")
+class Ec2InstanceMetadataClientCacheTest {
+
+  @DisplayName("One client is shared per endpoint")
+  @Test
+  void oneClientIsSharedPerEndpoint() {
+    // When
+    var first = Ec2InstanceMetadataClient.forEndpoint("http://127.0.0.1:1");
+    var second = Ec2InstanceMetadataClient.forEndpoint("http://127.0.0.1:1");
+    var other = Ec2InstanceMetadataClient.forEndpoint("http://127.0.0.1:2");
+
+    // Then
+    assertThat(first).isSameAs(second).isNotSameAs(other);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ec2;
+
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Request;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Response;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the instance metadata service.
+ *
+ * <p>Session tokens are issued as {@code token-1}, {@code token-2}, and so on. Metadata requests
+ * carrying anything other than the most recently issued token are rejected with a {@code 401}.
+ *
+ * @author Ashley Scopes
+ */
+final class FakeInstanceMetadataService implements AutoCloseable {
+
+  private final FakeHttpServer server;
+  private final List<String> requests;
+  private final List<String> tokensSeen;
+  private final AtomicInteger tokenStatus;
+  private final AtomicInteger tokensIssued;
+
+  FakeInstanceMetadataService() throws IOException {
+    requests = new CopyOnWriteArrayList<>();
+    tokensSeen = new CopyOnWriteArrayList<>();
+    tokenStatus = new AtomicInteger(200);
+    tokensIssued = new AtomicInteger();
+    server = new FakeHttpServer(this::handle);
+  }
+
+  String getEndpoint() {
+    return server.getEndpoint();
+  }
+
+  List<String> getRequests() {
+    return requests;
+  }
+
+  List<String> getTokensSeen() {
+    return tokensSeen;
+  }
+
+  void setTokenStatus(int status) {
+    tokenStatus.set(status);
+  }
+
+  void revokeTokens() {
+    tokensIssued.addAndGet(100);
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+  }
+
+  private Response handle(Request request) {
+    requests.add(request.method() + " " + request.path());
+
+    if (request.method().equals("PUT") && request.path().equals("/latest/api/token")) {
+      return tokenStatus.get() == 200
+          ? new Response(200, "token-" + tokensIssued.incrementAndGet())
+          : new Response(tokenStatus.get(), "");
+    }
+
+    var token = request.header(HttpEc2InstanceMetadataClient.TOKEN_HEADER);
+    tokensSeen.add(token == null ? "" : token);
+
+    return token != null && !token.equals("token-" + tokensIssued.get())
+        ? new Response(401, "")
+        : new Response(200, "some-role");
+  }
+}
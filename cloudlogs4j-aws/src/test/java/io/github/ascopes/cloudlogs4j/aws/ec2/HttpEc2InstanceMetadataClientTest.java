@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.ec2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.avaje.http.client.HttpException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link HttpEc2InstanceMetadataClient} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("HttpEc2InstanceMetadataClient tests")
+class HttpEc2InstanceMetadataClientTest {
+
+  private static final String TOKEN_REQUEST = "PUT /latest/api/token";
+  private static final String CREDENTIALS_REQUEST
+      = "GET /latest/meta-data/iam/security-credentials";
+
+  private FakeInstanceMetadataService service;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    service = new FakeInstanceMetadataService();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    service.close();
+  }
+
+  @DisplayName("One session token is fetched and sent with every request")
+  @Test
+  void oneSessionTokenIsFetchedAndSentWithEveryRequest() {
+    // Given
+    var client = new HttpEc2InstanceMetadataClient(service.getEndpoint());
+
+    // When
+    var first = client.getSecurityCredentials();
+    var second = client.getSecurityCredentials();
+
+    // Then
+    assertThat(first.body()).isEqualTo("some-role");
+    assertThat(second.body()).isEqualTo("some-role");
+    assertThat(service.getRequests())
+        .containsExactly(TOKEN_REQUEST, CREDENTIALS_REQUEST, CREDENTIALS_REQUEST);
+    assertThat(service.getTokensSeen()).containsExactly("token-1", "token-1");
+  }
+
+  @DisplayName("Requests fall back to IMDSv1 when the token endpoint is unavailable")
+  @Test
+  void requestsFallBackToImdsV1WhenTheTokenEndpointIsUnavailable() {
+    // Given
+    service.setTokenStatus(405);
+    var client = new HttpEc2InstanceMetadataClient(service.getEndpoint());
+
+    // When
+    var response = client.getSecurityCredentials();
+    client.getSecurityCredentials();
+
+    // Then
+    assertThat(response.body()).isEqualTo("some-role");
+    assertThat(service.getRequests())
+        .containsExactly(TOKEN_REQUEST, CREDENTIALS_REQUEST, CREDENTIALS_REQUEST);
+    assertThat(service.getTokensSeen()).containsExactly("", "");
+  }
+
+  @DisplayName("A rejected session token is replaced and the request retried")
+  @Test
+  void aRejectedSessionTokenIsReplacedAndTheRequestRetried() {
+    // Given
+    var client = new HttpEc2InstanceMetadataClient(service.getEndpoint());
+    client.getSecurityCredentials();
+    service.revokeTokens();
+
+    // When
+    var response = client.getSecurityCredentials();
+
+    // Then
+    assertThat(response.body()).isEqualTo("some-role");
+    assertThat(service.getTokensSeen()).containsExactly("token-1", "token-1", "token-102");
+  }
+
+  @DisplayName("An unreachable service fails fast until the retry delay has passed")
+  @Test
+  void anUnreachableServiceFailsFastUntilTheRetryDelayHasPassed() throws IOException {
+    // Given
+    int port;
+    try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    var client = new HttpEc2InstanceMetadataClient(
+        "http://127.0.0.1:" + port,
+        Duration.ofHours(1)
+    );
+
+    // Then
+    assertThatThrownBy(client::getSecurityCredentials)
+        .isInstanceOf(HttpException.class)
+        .hasCauseInstanceOf(ConnectException.class);
+    assertThatThrownBy(client::getSecurityCredentials)
+        .isInstanceOf(HttpException.class)
+        .hasMessageContaining("recently found to be unreachable")
+        .hasCauseInstanceOf(ConnectException.class);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link AwsHttpTransport} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AwsHttpTransport tests")
+class AwsHttpTransportTest {
+
+  @DisplayName("Clients are shared between callers of the same endpoint")
+  @Test
+  void clientsAreSharedBetweenCallersOfTheSameEndpoint() {
+    // Given
+    var transport = AwsHttpTransport.builder().build();
+    var timeout = Duration.ofSeconds(10);
+
+    // When
+    var first = transport.getClient("https://logs.eu-west-2.amazonaws.com", timeout);
+    var second = transport.getClient("https://logs.eu-west-2.amazonaws.com/", timeout);
+    var other = transport.getClient("https://logs.us-east-1.amazonaws.com", timeout);
+
+    // Then
+    assertThat(second).isSameAs(first);
+    assertThat(other).isNotSameAs(first);
+  }
+
+  @DisplayName("HTTPS endpoints negotiate HTTP/2, and plain HTTP endpoints use HTTP/1.1")
+  @Test
+  void httpsEndpointsNegotiateHttp2AndPlainHttpEndpointsUseHttp11() {
+    // Given
+    var transport = AwsHttpTransport.builder().build();
+    var timeout = Duration.ofSeconds(1);
+
+    // When
+    var https = transport.getClient("https://sts.amazonaws.com", timeout);
+    var http = transport.getClient("http://169.254.169.254", timeout);
+
+    // Then
+    assertThat(https.version()).isEqualTo(Version.HTTP_2);
+    assertThat(http.version()).isEqualTo(Version.HTTP_1_1);
+    assertThat(http.connectTimeout()).contains(timeout);
+  }
+
+  @DisplayName("Clients use the executor of the transport")
+  @Test
+  void clientsUseTheExecutorOfTheTransport() {
+    // Given
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var transport = AwsHttpTransport.builder().executor(executor).build();
+
+      // When
+      var client = transport.getClient(
+          "https://logs.eu-west-2.amazonaws.com",
+          Duration.ofSeconds(1)
+      );
+
+      // Then
+      assertThat(client.executor()).containsSame(executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
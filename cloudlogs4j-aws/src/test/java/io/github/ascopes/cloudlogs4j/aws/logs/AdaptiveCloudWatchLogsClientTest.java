@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link AdaptiveCloudWatchLogsClient} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AdaptiveCloudWatchLogsClient tests")
+class AdaptiveCloudWatchLogsClientTest {
+
+  @DisplayName("Throttled requests are retried and shrink the concurrency limit")
+  @Test
+  void throttledRequestsAreRetriedAndShrinkTheConcurrencyLimit() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(5, 8));
+
+    // When
+    var result = client.putLogEvents("group", "stream", batch());
+    delegate.awaitRequests(1);
+    delegate.requests.get(0).future()
+        .completeExceptionally(failure(400, "{\"__type\":\"ThrottlingException\"}"));
+    delegate.awaitRequests(2);
+    var limitWhileThrottled = client.getConcurrencyLimit();
+    delegate.requests.get(1).future().complete(null);
+
+    // Then
+    result.get(10, TimeUnit.SECONDS);
+    assertThat(limitWhileThrottled).isEqualTo(4);
+    assertThat(delegate.requests).hasSize(2);
+  }
+
+  @DisplayName("Server errors are retried until the attempts run out")
+  @Test
+  void serverErrorsAreRetriedUntilTheAttemptsRunOut() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(2, 8));
+    var lastFailure = failure(500, "{\"__type\":\"ServiceUnavailableException\"}");
+
+    // When
+    var result = client.putLogEvents("group", "stream", batch());
+    delegate.awaitRequests(1);
+    delegate.requests.get(0).future().completeExceptionally(failure(502, "bad gateway"));
+    delegate.awaitRequests(2);
+    delegate.requests.get(1).future().completeExceptionally(lastFailure);
+
+    // Then
+    assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCause(lastFailure);
+    assertThat(client.getConcurrencyLimit()).isEqualTo(8);
+  }
+
+  @DisplayName("Fatal failures are not retried")
+  @Test
+  void fatalFailuresAreNotRetried() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(5, 8));
+    var failure = failure(400, "{\"__type\":\"InvalidParameterException\"}");
+
+    // When
+    var result = client.putLogEvents("group", "stream", batch());
+    delegate.awaitRequests(1);
+    delegate.requests.get(0).future().completeExceptionally(failure);
+
+    // Then
+    assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCause(failure);
+    assertThat(delegate.requests).hasSize(1);
+  }
+
+  @DisplayName("Batches that were already accepted are treated as successful")
+  @Test
+  void batchesThatWereAlreadyAcceptedAreTreatedAsSuccessful() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(5, 8));
+
+    // When
+    var result = client.putLogEvents("group", "stream", batch());
+    delegate.awaitRequests(1);
+    delegate.requests.get(0).future()
+        .completeExceptionally(failure(400, "{\"__type\":\"DataAlreadyAcceptedException\"}"));
+
+    // Then
+    result.get(10, TimeUnit.SECONDS);
+    assertThat(delegate.requests).hasSize(1);
+  }
+
+  @DisplayName("Requests over the concurrency limit wait for others to complete")
+  @Test
+  void requestsOverTheConcurrencyLimitWaitForOthersToComplete() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(5, 2));
+
+    // When
+    var first = client.putLogEvents("group", "stream-1", batch());
+    client.putLogEvents("group", "stream-2", batch());
+    client.putLogEvents("group", "stream-3", batch());
+    var sentBeforeCompletion = delegate.requests.size();
+    delegate.requests.get(0).future().complete(null);
+
+    // Then
+    first.get(10, TimeUnit.SECONDS);
+    assertThat(sentBeforeCompletion).isEqualTo(2);
+    assertThat(delegate.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::logStreamName)
+        .containsExactly("stream-1", "stream-2", "stream-3");
+  }
+
+  @DisplayName("A burst of throttled responses only shrinks the limit once")
+  @Test
+  void aBurstOfThrottledResponsesOnlyShrinksTheLimitOnce() throws Exception {
+    // Given
+    var delegate = new FakeCloudWatchLogsClient(false);
+    var client = new AdaptiveCloudWatchLogsClient(delegate, policy(5, 8));
+    for (var i = 0; i < 4; ++i) {
+      client.putLogEvents("group", "stream", batch());
+    }
+
+    // When
+    for (var i = 0; i < 4; ++i) {
+      delegate.requests.get(i).future().completeExceptionally(failure(429, ""));
+    }
+
+    // Then
+    assertThat(client.getConcurrencyLimit()).isEqualTo(4);
+  }
+
+  @DisplayName("The concurrency limit grows back as requests succeed")
+  @Test
+  void theConcurrencyLimitGrowsBackAsRequestsSucceed() {
+    // Given
+    var limit = new AimdConcurrencyLimit(4);
+    limit.onThrottled(limit.getEpoch());
+    limit.onThrottled(limit.getEpoch());
+    var afterThrottling = limit.getLimit();
+
+    // When
+    for (var i = 0; i < 3; ++i) {
+      limit.onSuccess();
+    }
+
+    // Then
+    assertThat(afterThrottling).isEqualTo(1);
+    assertThat(limit.getLimit()).isEqualTo(2);
+  }
+
+  private static RetryPolicy policy(int maxAttempts, int maxConcurrency) {
+    return RetryPolicy.builder()
+        .maxAttempts(maxAttempts)
+        .baseDelay(Duration.ofMillis(1))
+        .maxDelay(Duration.ofMillis(5))
+        .maxConcurrency(maxConcurrency)
+        .build();
+  }
+
+  private static PutLogEventsBatch batch() {
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(1, ByteBuffer.allocate(1));
+    return batch;
+  }
+
+  private static AwsHttpResponseException failure(int status, String body) {
+    return new AwsHttpResponseException(
+        "POST",
+        URI.create("https://logs.eu-west-2.amazonaws.com"),
+        status,
+        body
+    );
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.ascopes.cloudlogs4j.core.FlushPolicy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link CloudWatchLogsForwarder} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("CloudWatchLogsForwarder tests")
+class CloudWatchLogsForwarderTest {
+
+  @DisplayName("The builder requires a log group and log stream name")
+  @Test
+  void builderRequiresLogGroupAndLogStreamName() {
+    // Given
+    var client = new FakeCloudWatchLogsClient(true);
+
+    // Then
+    assertThatThrownBy(() -> CloudWatchLogsForwarder.builder()
+        .client(client)
+        .logStreamName("stream")
+        .build())
+        .isInstanceOf(NullPointerException.class)
+        .hasMessage("logGroupName");
+    assertThatThrownBy(() -> CloudWatchLogsForwarder.builder()
+        .client(client)
+        .logGroupName("group")
+        .build())
+        .isInstanceOf(NullPointerException.class)
+        .hasMessage("logStreamName");
+  }
+
+  @DisplayName("Log entries are sent across shards")
+  @Test
+  void logEntriesAreSentAcrossShards() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(true);
+    var forwarder = CloudWatchLogsForwarder.builder()
+        .client(client)
+        .logGroupName("group")
+        .logStreamName("stream")
+        .shardCount(2)
+        .flushPolicy(FlushPolicy.builder()
+            .linger(Duration.ofHours(1))
+            .maxPendingLogEntries(1)
+            .build())
+        .build();
+    forwarder.start();
+
+    // When
+    for (var i = 0; i < 4; ++i) {
+      forwarder.submitLogEntry(i, "foo".getBytes(UTF_8));
+    }
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::logStreamName)
+        .containsOnly("stream-0", "stream-1")
+        .hasSize(4);
+  }
+
+  @DisplayName("Stopping waits for requests that are still in flight")
+  @Test
+  void stoppingWaitsForRequestsThatAreStillInFlight() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var forwarder = CloudWatchLogsForwarder.builder()
+        .client(client)
+        .logGroupName("group")
+        .logStreamName("stream")
+        .build();
+    forwarder.start();
+    forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+    client.awaitRequests(1);
+
+    // When
+    var stopping = CompletableFuture.runAsync(() -> {
+      try {
+        forwarder.stop(Duration.ofSeconds(10));
+      } catch (Exception ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+
+    // Then
+    Thread.sleep(100);
+    assertThat(stopping).isNotDone();
+    client.requests.get(0).future().complete(null);
+    stopping.get(10, TimeUnit.SECONDS);
+  }
+}
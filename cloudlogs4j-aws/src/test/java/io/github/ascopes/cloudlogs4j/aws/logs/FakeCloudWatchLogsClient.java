@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link CloudWatchLogsClient} that records requests and lets tests decide when they complete.
+ *
+ * @author Ashley Scopes
+ */
+final class FakeCloudWatchLogsClient implements CloudWatchLogsClient {
+
+  final List<String> createdLogStreams = new CopyOnWriteArrayList<>();
+  final List<Request> requests = new CopyOnWriteArrayList<>();
+  private final boolean completeImmediately;
+
+  FakeCloudWatchLogsClient(boolean completeImmediately) {
+    this.completeImmediately = completeImmediately;
+  }
+
+  @Override
+  public CompletableFuture<Void> putLogEvents(
+      String logGroupName,
+      String logStreamName,
+      PutLogEventsBatch batch
+  ) {
+    var timestamps = new ArrayList<Long>();
+    for (var i = 0; i < batch.size(); ++i) {
+      timestamps.add(batch.getTimestamp(i));
+    }
+
+    var request = new Request(logGroupName, logStreamName, timestamps, new CompletableFuture<>());
+    requests.add(request);
+
+    if (completeImmediately) {
+      request.future().complete(null);
+    }
+
+    return request.future();
+  }
+
+  @Override
+  public void createLogStream(String logGroupName, String logStreamName) {
+    createdLogStreams.add(logGroupName + "/" + logStreamName);
+  }
+
+  long inFlightCount() {
+    return requests.stream().filter(request -> !request.future().isDone()).count();
+  }
+
+  void awaitRequests(int count) throws InterruptedException {
+    var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (requests.size() < count) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Timed out waiting for " + count + " requests");
+      }
+      Thread.sleep(5);
+    }
+  }
+
+  record Request(
+      String logGroupName,
+      String logStreamName,
+      List<Long> timestamps,
+      CompletableFuture<Void> future
+  ) {
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link GzipRequestBodyCodec} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("GzipRequestBodyCodec tests")
+class GzipRequestBodyCodecTest {
+
+  @DisplayName("Encoded bodies are valid gzip streams")
+  @Test
+  void encodedBodiesAreValidGzipStreams() throws Exception {
+    // Given
+    var codec = RequestBodyCodec.gzip();
+    var body = "{\"message\":\"hello, world\"},".repeat(1_000).getBytes(UTF_8);
+
+    // When
+    var encoded = codec.encode(body);
+
+    // Then
+    assertThat(codec.getContentEncoding()).isEqualTo("gzip");
+    assertThat(encoded.length).isLessThan(body.length / 8);
+    assertThat(decode(encoded)).isEqualTo(body);
+  }
+
+  @DisplayName("The encoder can be reused for bodies of different sizes")
+  @Test
+  void encoderCanBeReusedForBodiesOfDifferentSizes() throws Exception {
+    // Given
+    var codec = RequestBodyCodec.gzip(0, 1);
+    var large = new byte[100_000];
+    for (var i = 0; i < large.length; ++i) {
+      large[i] = (byte) (i * 31 ^ i >>> 3);
+    }
+    var small = "small".getBytes(UTF_8);
+
+    // Then
+    assertThat(decode(codec.encode(large))).isEqualTo(large);
+    assertThat(decode(codec.encode(small))).isEqualTo(small);
+    assertThat(decode(codec.encode(new byte[0]))).isEmpty();
+  }
+
+  @DisplayName("Bodies encoded from many threads at once share pooled encoders safely")
+  @Test
+  void bodiesEncodedFromManyThreadsAtOnceSharePooledEncodersSafely() throws Exception {
+    // Given
+    var codec = RequestBodyCodec.gzip(0, 6);
+    var futures = new ArrayList<CompletableFuture<Boolean>>();
+    var executor = Executors.newFixedThreadPool(16);
+
+    try {
+      // When
+      for (var i = 0; i < 256; ++i) {
+        var body = ("body-" + i + ",").repeat(i + 1).getBytes(UTF_8);
+        futures.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return Arrays.equals(decode(codec.encode(body)), body);
+          } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+          }
+        }, executor));
+      }
+
+      // Then
+      for (var future : futures) {
+        assertThat(future.get(10, TimeUnit.SECONDS)).isTrue();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @DisplayName("Bodies smaller than the minimum size are not encoded")
+  @Test
+  void bodiesSmallerThanTheMinimumSizeAreNotEncoded() {
+    // Given
+    var codec = RequestBodyCodec.gzip(1_024, 6);
+
+    // Then
+    assertThat(codec.shouldEncode(1_023)).isFalse();
+    assertThat(codec.shouldEncode(1_024)).isTrue();
+  }
+
+  @DisplayName("Invalid settings are rejected")
+  @Test
+  void invalidSettingsAreRejected() {
+    // Then
+    assertThatThrownBy(() -> RequestBodyCodec.gzip(-1, 6))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Minimum bytes must not be negative (got -1)");
+    assertThatThrownBy(() -> RequestBodyCodec.gzip(0, 10))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Compression level must be between 1 and 9, or -1 (got 10)");
+  }
+
+  @DisplayName("Buffers are encoded from their position to their limit without being consumed")
+  @Test
+  void buffersAreEncodedWithoutBeingConsumed() throws Exception {
+    // Given
+    var codec = RequestBodyCodec.gzip(0, 6);
+    var buffer = ByteBuffer.wrap("xxhello, worldxx".getBytes(UTF_8), 2, 12);
+
+    // When
+    var encoded = codec.encode(buffer);
+
+    // Then
+    assertThat(decode(encoded)).isEqualTo("hello, world".getBytes(UTF_8));
+    assertThat(buffer.position()).isEqualTo(2);
+    assertThat(buffer.remaining()).isEqualTo(12);
+  }
+
+  private static byte[] decode(byte[] encoded) throws Exception {
+    try (var input = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+      return input.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Request;
+import io.github.ascopes.cloudlogs4j.aws.FakeHttpServer.Response;
+import io.github.ascopes.cloudlogs4j.aws.auth.AwsCredentials;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link HttpCloudWatchLogsClient} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("HttpCloudWatchLogsClient tests")
+class HttpCloudWatchLogsClientTest {
+
+  @DisplayName("Requests are signed when a credentials provider is given")
+  @Test
+  void requestsAreSignedWhenACredentialsProviderIsGiven() throws Exception {
+    // Given
+    var requests = new CopyOnWriteArrayList<Request>();
+    try (var server = new FakeHttpServer(request -> {
+      requests.add(request);
+      return new Response(200, "{}");
+    })) {
+      var client = CloudWatchLogsClient.createClient(
+          server.getEndpoint(),
+          "eu-west-2",
+          () -> new AwsCredentials("AKIDEXAMPLE", "secret", "session"),
+          null
+      );
+      var batch = new PutLogEventsBatch();
+      batch.tryAdd(1, ByteBuffer.wrap("hello".getBytes(UTF_8)));
+
+      // When
+      client.putLogEvents("group", "stream", batch).get(10, TimeUnit.SECONDS);
+
+      // Then
+      assertThat(requests).singleElement().satisfies(request -> {
+        assertThat(request.header("X-Amz-Date")).isNotNull();
+        assertThat(request.header("X-Amz-Security-Token")).isEqualTo("session");
+        assertThat(request.header("Authorization"))
+            .startsWith("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/")
+            .contains("/eu-west-2/logs/aws4_request")
+            .contains("SignedHeaders=content-type;host;x-amz-date;x-amz-security-token;"
+                + "x-amz-target");
+      });
+    }
+  }
+
+  @DisplayName("Requests are not signed when no credentials provider is given")
+  @Test
+  void requestsAreNotSignedWhenNoCredentialsProviderIsGiven() throws Exception {
+    // Given
+    var requests = new CopyOnWriteArrayList<Request>();
+    try (var server = new FakeHttpServer(request -> {
+      requests.add(request);
+      return new Response(200, "{}");
+    })) {
+      var client = CloudWatchLogsClient.createClient(server.getEndpoint());
+      var batch = new PutLogEventsBatch();
+      batch.tryAdd(1, ByteBuffer.wrap("hello".getBytes(UTF_8)));
+
+      // When
+      client.putLogEvents("group", "stream", batch).get(10, TimeUnit.SECONDS);
+
+      // Then
+      assertThat(requests).singleElement()
+          .satisfies(request -> assertThat(request.header("Authorization")).isNull());
+    }
+  }
+}
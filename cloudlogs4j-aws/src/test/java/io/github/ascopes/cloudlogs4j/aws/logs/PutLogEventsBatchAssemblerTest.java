@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PutLogEventsBatchAssembler} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PutLogEventsBatchAssembler tests")
+class PutLogEventsBatchAssemblerTest {
+
+  @DisplayName("Batches are cut greedily when the next entry would not fit")
+  @Test
+  void batchesAreCutGreedily() throws Exception {
+    // Given
+    var batchSizes = new ArrayList<Integer>();
+    var assembler = new PutLogEventsBatchAssembler(batch -> {
+      batchSizes.add(batch.size());
+      return batch;
+    });
+    var entrySize = 100_000;
+
+    // When
+    for (var i = 0; i < 25; ++i) {
+      assembler.accept(i, ByteBuffer.allocate(entrySize));
+    }
+    assembler.flush();
+
+    // Then
+    var perBatch = PutLogEventsBatch.MAX_BATCH_BYTES
+        / (entrySize + PutLogEventsBatch.EVENT_OVERHEAD_BYTES);
+    assertThat(batchSizes).containsExactly(perBatch, perBatch, 25 - 2 * perBatch);
+  }
+
+  @DisplayName("Batches are passed to the handler in timestamp order")
+  @Test
+  void batchesArePassedToHandlerInTimestampOrder() throws Exception {
+    // Given
+    var timestamps = new ArrayList<List<Long>>();
+    var assembler = new PutLogEventsBatchAssembler(batch -> {
+      var batchTimestamps = new ArrayList<Long>();
+      for (var i = 0; i < batch.size(); ++i) {
+        batchTimestamps.add(batch.getTimestamp(i));
+      }
+      timestamps.add(batchTimestamps);
+      return batch;
+    });
+
+    // When
+    assembler.accept(3, ByteBuffer.allocate(1));
+    assembler.accept(1, ByteBuffer.allocate(1));
+    assembler.accept(2, ByteBuffer.allocate(1));
+    assembler.flush();
+
+    // Then
+    assertThat(timestamps).containsExactly(List.of(1L, 2L, 3L));
+  }
+
+  @DisplayName("Flushing an empty assembler does not invoke the handler")
+  @Test
+  void flushingAnEmptyAssemblerDoesNotInvokeTheHandler() throws Exception {
+    // Given
+    var calls = new ArrayList<PutLogEventsBatch>();
+    var assembler = new PutLogEventsBatchAssembler(batch -> {
+      calls.add(batch);
+      return batch;
+    });
+
+    // When
+    assembler.flush();
+
+    // Then
+    assertThat(calls).isEmpty();
+  }
+
+  @DisplayName("Oversized entries are dropped and counted")
+  @Test
+  void oversizedEntriesAreDroppedAndCounted() throws Exception {
+    // Given
+    var calls = new ArrayList<Integer>();
+    var assembler = new PutLogEventsBatchAssembler(batch -> {
+      calls.add(batch.size());
+      return batch;
+    });
+
+    // When
+    assembler.accept(1, ByteBuffer.allocate(PutLogEventsBatch.MAX_EVENT_BYTES + 1));
+    assembler.accept(2, ByteBuffer.allocate(1));
+    assembler.flush();
+
+    // Then
+    assertThat(assembler.getOversizedLogEntryCount()).isEqualTo(1);
+    assertThat(calls).containsExactly(1);
+  }
+
+  @DisplayName("The assembler continues with the batch the handler returns")
+  @Test
+  void assemblerContinuesWithTheBatchTheHandlerReturns() throws Exception {
+    // Given
+    var handed = new ArrayList<PutLogEventsBatch>();
+    var replacement = new PutLogEventsBatch();
+    replacement.tryAdd(99, ByteBuffer.allocate(1));
+    var assembler = new PutLogEventsBatchAssembler(batch -> {
+      handed.add(batch);
+      return replacement;
+    });
+
+    // When
+    assembler.accept(1, ByteBuffer.allocate(1));
+    assembler.flush();
+    assembler.accept(2, ByteBuffer.allocate(1));
+
+    // Then
+    assertThat(handed).hasSize(1).doesNotContain(replacement);
+    assertThat(replacement.size()).isEqualTo(1);
+    assertThat(replacement.getTimestamp(0)).isEqualTo(2);
+  }
+}
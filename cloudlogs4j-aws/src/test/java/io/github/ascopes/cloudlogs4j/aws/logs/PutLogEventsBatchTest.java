@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PutLogEventsBatch} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PutLogEventsBatch tests")
+class PutLogEventsBatchTest {
+
+  @DisplayName("The byte size includes the per-event overhead")
+  @Test
+  void byteSizeIncludesPerEventOverhead() {
+    // Given
+    var batch = new PutLogEventsBatch();
+
+    // When
+    batch.tryAdd(1, utf8("hello"));
+    batch.tryAdd(2, utf8("world!"));
+
+    // Then
+    assertThat(batch.size()).isEqualTo(2);
+    assertThat(batch.byteSize()).isEqualTo(5 + 6 + 2 * PutLogEventsBatch.EVENT_OVERHEAD_BYTES);
+  }
+
+  @DisplayName("Events that would exceed the byte limit are rejected")
+  @Test
+  void eventsThatWouldExceedTheByteLimitAreRejected() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    var big = ByteBuffer.allocate(PutLogEventsBatch.MAX_EVENT_BYTES - 10);
+    batch.tryAdd(1, big);
+    var contents = utf8("this will not fit");
+
+    // When
+    var added = batch.tryAdd(2, contents);
+
+    // Then
+    assertThat(added).isFalse();
+    assertThat(contents.remaining()).isEqualTo(17);
+    assertThat(batch.size()).isEqualTo(1);
+  }
+
+  @DisplayName("Malformed UTF-8 sequences are replaced and counted in the byte size")
+  @Test
+  void malformedUtf8SequencesAreReplacedAndCountedInTheByteSize() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    var contents = new byte[]{
+        'a',
+        (byte) 0xff,                      // Never valid.
+        'b',
+        (byte) 0xc0, (byte) 0x80,         // Overlong encoding.
+        'c',
+        (byte) 0xed, (byte) 0xa0, (byte) 0x80,  // Encoded surrogate.
+        'd',
+        (byte) 0xe2, (byte) 0x82,         // Truncated sequence.
+    };
+    batch.tryAdd(1, utf8("é"));
+
+    // When
+    batch.tryAdd(2, ByteBuffer.wrap(contents));
+
+    // Then
+    assertThat(decode(batch.getContents(0))).isEqualTo("é");
+    assertThat(decode(batch.getContents(1)))
+        .isEqualTo("a\ufffdb\ufffd\ufffdc\ufffd\ufffd\ufffdd\ufffd");
+    assertThat(batch.byteSize())
+        .isEqualTo(2 + 4 + 7 * 3 + 2 * PutLogEventsBatch.EVENT_OVERHEAD_BYTES);
+  }
+
+  @DisplayName("Events that only exceed the byte limit once sanitized are rejected")
+  @Test
+  void eventsThatOnlyExceedTheByteLimitOnceSanitizedAreRejected() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    // Leaves room for 30 more bytes, which fits two raw bytes, but not two replacements.
+    var big = ByteBuffer.allocate(PutLogEventsBatch.MAX_EVENT_BYTES - 30);
+    batch.tryAdd(1, big);
+    var contents = ByteBuffer.wrap(new byte[]{(byte) 0xff, (byte) 0xff});
+
+    // When
+    var added = batch.tryAdd(2, contents);
+
+    // Then
+    assertThat(added).isFalse();
+    assertThat(contents.remaining()).isEqualTo(2);
+    assertThat(batch.size()).isEqualTo(1);
+    assertThat(batch.tryAdd(3, ByteBuffer.wrap(new byte[]{'o', 'k', '!', '!'}))).isTrue();
+  }
+
+  @DisplayName("Events that would exceed the count limit are rejected")
+  @Test
+  void eventsThatWouldExceedTheCountLimitAreRejected() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    for (var i = 0; i < PutLogEventsBatch.MAX_BATCH_EVENTS; ++i) {
+      assertThat(batch.tryAdd(i, utf8("x"))).isTrue();
+    }
+
+    // Then
+    assertThat(batch.tryAdd(0, utf8("x"))).isFalse();
+  }
+
+  @DisplayName("Events that would exceed the time span limit are rejected")
+  @Test
+  void eventsThatWouldExceedTheTimeSpanLimitAreRejected() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(1_000_000, utf8("x"));
+
+    // Then
+    assertThat(batch.tryAdd(1_000_000 + PutLogEventsBatch.MAX_BATCH_SPAN_MILLIS, utf8("x")))
+        .isFalse();
+    assertThat(batch.tryAdd(1_000_000 - PutLogEventsBatch.MAX_BATCH_SPAN_MILLIS, utf8("x")))
+        .isFalse();
+    assertThat(batch.tryAdd(1_000_000 + PutLogEventsBatch.MAX_BATCH_SPAN_MILLIS - 1, utf8("x")))
+        .isTrue();
+  }
+
+  @DisplayName("Sorting orders events by timestamp and keeps insertion order for ties")
+  @Test
+  void sortingOrdersEventsByTimestampStably() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(30, utf8("c"));
+    batch.tryAdd(10, utf8("a1"));
+    batch.tryAdd(20, utf8("b"));
+    batch.tryAdd(10, utf8("a2"));
+
+    // When
+    batch.sort();
+
+    // Then
+    assertThat(batch.getTimestamp(0)).isEqualTo(10);
+    assertThat(decode(batch.getContents(0))).isEqualTo("a1");
+    assertThat(batch.getTimestamp(1)).isEqualTo(10);
+    assertThat(decode(batch.getContents(1))).isEqualTo("a2");
+    assertThat(batch.getTimestamp(2)).isEqualTo(20);
+    assertThat(decode(batch.getContents(2))).isEqualTo("b");
+    assertThat(batch.getTimestamp(3)).isEqualTo(30);
+    assertThat(decode(batch.getContents(3))).isEqualTo("c");
+  }
+
+  @DisplayName("Clearing the batch resets it for reuse")
+  @Test
+  void clearingTheBatchResetsItForReuse() {
+    // Given
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(1, utf8("foo"));
+
+    // When
+    batch.clear();
+    batch.tryAdd(2, utf8("bar"));
+
+    // Then
+    assertThat(batch.size()).isEqualTo(1);
+    assertThat(batch.byteSize()).isEqualTo(3 + PutLogEventsBatch.EVENT_OVERHEAD_BYTES);
+    assertThat(decode(batch.getContents(0))).isEqualTo("bar");
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(UTF_8));
+  }
+
+  private static String decode(ByteBuffer buffer) {
+    return UTF_8.decode(buffer).toString();
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link PutLogEventsJournal} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PutLogEventsJournal tests")
+class PutLogEventsJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @DisplayName("Unacknowledged batches are replayed in order after reopening")
+  @Test
+  void unacknowledgedBatchesAreReplayedInOrderAfterReopening() throws Exception {
+    // Given
+    var previous = PutLogEventsJournal.open(directory, 1_000_000);
+    previous.append(batch(1, "foo", 2, "bar"));
+    previous.append(batch(3, "baz"));
+
+    // When
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+
+    // Then
+    assertThat(journal.getUnacknowledgedBatchCount()).isEqualTo(2);
+    assertThat(replay(journal)).containsExactly("0=[1:foo, 2:bar]", "1=[3:baz]");
+    assertThat(replay(journal)).isEmpty();
+  }
+
+  @DisplayName("Acknowledged batches are not replayed")
+  @Test
+  void acknowledgedBatchesAreNotReplayed() throws Exception {
+    // Given
+    // A tiny segment size puts each batch in a segment of its own.
+    var previous = PutLogEventsJournal.open(directory, 1);
+    var first = previous.append(batch(1, "foo"));
+    previous.append(batch(2, "bar"));
+    var third = previous.append(batch(3, "baz"));
+
+    // When
+    previous.acknowledge(first);
+    previous.acknowledge(third);
+    var journal = PutLogEventsJournal.open(directory, 1);
+
+    // Then
+    assertThat(replay(journal)).containsExactly("1=[2:bar]");
+  }
+
+  @DisplayName("The journal is truncated once every batch has been acknowledged")
+  @Test
+  void journalIsTruncatedOnceEveryBatchHasBeenAcknowledged() throws Exception {
+    // Given
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+    var first = journal.append(batch(1, "foo"));
+    var second = journal.append(batch(2, "bar"));
+
+    // When
+    journal.acknowledge(second);
+    journal.acknowledge(first);
+
+    // Then
+    assertThat(journal.getUnacknowledgedBatchCount()).isZero();
+    assertThat(segmentFiles()).singleElement().satisfies(path -> assertThat(path).isEmptyFile());
+    assertThat(replay(PutLogEventsJournal.open(directory, 1_000_000))).isEmpty();
+  }
+
+  @DisplayName("Segments are deleted once every batch within them has been acknowledged")
+  @Test
+  void segmentsAreDeletedOnceEveryBatchWithinThemHasBeenAcknowledged() throws Exception {
+    // Given
+    var journal = PutLogEventsJournal.open(directory, 1);
+    var first = journal.append(batch(1, "foo"));
+    journal.append(batch(2, "bar"));
+    var third = journal.append(batch(3, "baz"));
+    assertThat(segmentFiles()).hasSize(3);
+
+    // When
+    journal.acknowledge(third);
+    journal.acknowledge(first);
+
+    // Then
+    assertThat(segmentFiles()).hasSize(2);
+    assertThat(segmentFiles().get(1)).isEmptyFile();
+  }
+
+  @DisplayName("Requeued batches are read back from the journal and replayed")
+  @Test
+  void requeuedBatchesAreReadBackFromTheJournalAndReplayed() throws Exception {
+    // Given
+    var journal = PutLogEventsJournal.open(directory, 1);
+    var first = journal.append(batch(1, "foo"));
+    var second = journal.append(batch(2, "bar", 3, "baz"));
+    journal.append(batch(4, "qux"));
+
+    // When
+    journal.requeue(second);
+    journal.requeue(first);
+    var replayed = new ArrayList<String>();
+    journal.replayRequeued((sequence, batch) -> {
+      replayed.add(sequence + "=" + batch.size());
+      return batch;
+    });
+
+    // Then
+    assertThat(replayed).containsExactly("1=2", "0=1");
+    assertThat(journal.getUnacknowledgedBatchCount()).isEqualTo(3);
+  }
+
+  @DisplayName("Partially written records are discarded on recovery")
+  @Test
+  void partiallyWrittenRecordsAreDiscardedOnRecovery() throws Exception {
+    // Given
+    var previous = PutLogEventsJournal.open(directory, 1_000_000);
+    previous.append(batch(1, "foo"));
+    previous.append(batch(2, "bar"));
+    var segment = segmentFiles().get(0);
+    var bytes = Files.readAllBytes(segment);
+    Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+    // When
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+
+    // Then
+    assertThat(replay(journal)).containsExactly("0=[1:foo]");
+    assertThat(journal.append(batch(3, "baz"))).isEqualTo(1);
+  }
+
+  @DisplayName("Segment sizes that are not positive are rejected")
+  @Test
+  void segmentSizesThatAreNotPositiveAreRejected() {
+    // Then
+    assertThatThrownBy(() -> PutLogEventsJournal.open(directory, 0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Segment size must be positive (got 0)");
+  }
+
+  private List<Path> segmentFiles() throws Exception {
+    try (var paths = Files.list(directory)) {
+      return paths.sorted().toList();
+    }
+  }
+
+  private static List<String> replay(PutLogEventsJournal journal) throws Exception {
+    var replayed = new ArrayList<String>();
+    journal.replay((sequence, batch) -> {
+      var events = new ArrayList<String>();
+      for (var i = 0; i < batch.size(); ++i) {
+        events.add(batch.getTimestamp(i) + ":" + UTF_8.decode(batch.getContents(i)));
+      }
+      replayed.add(sequence + "=" + events);
+      return batch;
+    });
+    return replayed;
+  }
+
+  private static PutLogEventsBatch batch(Object... timestampsAndContents) {
+    var batch = new PutLogEventsBatch();
+    for (var i = 0; i < timestampsAndContents.length; i += 2) {
+      batch.tryAdd(
+          ((Number) timestampsAndContents[i]).longValue(),
+          ByteBuffer.wrap(((String) timestampsAndContents[i + 1]).getBytes(UTF_8))
+      );
+    }
+    return batch;
+  }
+}
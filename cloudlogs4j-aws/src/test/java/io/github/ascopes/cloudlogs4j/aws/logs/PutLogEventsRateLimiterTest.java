@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PutLogEventsRateLimiter} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PutLogEventsRateLimiter tests")
+class PutLogEventsRateLimiterTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  @DisplayName("Requests within the burst are not delayed")
+  @Test
+  void requestsWithinTheBurstAreNotDelayed() {
+    // Given
+    var clock = new AtomicLong();
+    var limiter = limiter(PutLogEventsRateLimiter.builder().accountRequestsPerSecond(10), clock);
+
+    // Then
+    for (var i = 0; i < 10; ++i) {
+      assertThat(limiter.reserve("endpoint", "group", 100)).isZero();
+    }
+  }
+
+  @DisplayName("Requests over the request rate are delayed")
+  @Test
+  void requestsOverTheRequestRateAreDelayed() {
+    // Given
+    var clock = new AtomicLong();
+    var limiter = limiter(PutLogEventsRateLimiter.builder().accountRequestsPerSecond(10), clock);
+    for (var i = 0; i < 10; ++i) {
+      limiter.reserve("endpoint", "group", 100);
+    }
+
+    // Then
+    assertThat(limiter.reserve("endpoint", "group", 100)).isEqualTo(SECOND / 10);
+    assertThat(limiter.reserve("endpoint", "group", 100)).isEqualTo(2 * SECOND / 10);
+    // The two delayed requests are still owed, so only eight tokens have refilled.
+    clock.addAndGet(SECOND);
+    for (var i = 0; i < 8; ++i) {
+      assertThat(limiter.reserve("endpoint", "group", 100)).isZero();
+    }
+    assertThat(limiter.reserve("endpoint", "group", 100)).isEqualTo(SECOND / 10);
+  }
+
+  @DisplayName("Requests over the byte rate are delayed")
+  @Test
+  void requestsOverTheByteRateAreDelayed() {
+    // Given
+    var clock = new AtomicLong();
+    var limiter = limiter(PutLogEventsRateLimiter.builder().logGroupBytesPerSecond(1_000), clock);
+
+    // Then
+    assertThat(limiter.reserve("endpoint", "group", 1_000)).isZero();
+    assertThat(limiter.reserve("endpoint", "group", 500)).isEqualTo(SECOND / 2);
+  }
+
+  @DisplayName("Log groups have separate buckets, but share the account bucket")
+  @Test
+  void logGroupsHaveSeparateBucketsButShareTheAccountBucket() {
+    // Given
+    var clock = new AtomicLong();
+    var limiter = limiter(
+        PutLogEventsRateLimiter.builder()
+            .accountRequestsPerSecond(4)
+            .logGroupRequestsPerSecond(2),
+        clock
+    );
+
+    // When
+    limiter.reserve("endpoint", "group-1", 1);
+    limiter.reserve("endpoint", "group-1", 1);
+    var groupOneWait = limiter.reserve("endpoint", "group-1", 1);
+    var groupTwoWait = limiter.reserve("endpoint", "group-2", 1);
+    var accountWait = limiter.reserve("endpoint", "group-3", 1);
+    var otherRegionWait = limiter.reserve("other-endpoint", "group-1", 1);
+
+    // Then
+    assertThat(groupOneWait).isEqualTo(SECOND / 2);
+    assertThat(groupTwoWait).isZero();
+    assertThat(accountWait).isEqualTo(SECOND / 4);
+    assertThat(otherRegionWait).isZero();
+  }
+
+  @DisplayName("Concurrent reservations are never lost")
+  @Test
+  void concurrentReservationsAreNeverLost() throws Exception {
+    // Given
+    var clock = new AtomicLong();
+    var limiter = limiter(PutLogEventsRateLimiter.builder().accountRequestsPerSecond(1), clock);
+    var threadCount = 8;
+    var perThread = 1_000;
+    var maxWaits = new AtomicLongArray(threadCount);
+    var start = new CountDownLatch(1);
+    var threads = new ArrayList<Thread>();
+
+    for (var t = 0; t < threadCount; ++t) {
+      var index = t;
+      var thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        for (var i = 0; i < perThread; ++i) {
+          var wait = limiter.reserve("endpoint", "group", 1);
+          maxWaits.accumulateAndGet(index, wait, Math::max);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    // When
+    start.countDown();
+    for (var thread : threads) {
+      thread.join();
+    }
+
+    // Then
+    var maxWait = 0L;
+    for (var t = 0; t < threadCount; ++t) {
+      maxWait = Math.max(maxWait, maxWaits.get(t));
+    }
+    // One token was free, so the last of the reservations waits for all of the others.
+    assertThat(maxWait).isEqualTo((threadCount * perThread - 1) * SECOND);
+  }
+
+  @DisplayName("Invalid settings are rejected")
+  @Test
+  void invalidSettingsAreRejected() {
+    // Given
+    var builder = PutLogEventsRateLimiter.builder();
+
+    // Then
+    assertThatThrownBy(() -> builder.accountRequestsPerSecond(0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Account requests per second must be positive (got 0.0)");
+    assertThatThrownBy(() -> builder.logGroupBytesPerSecond(Double.NaN))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Log group bytes per second must be positive (got NaN)");
+    assertThatThrownBy(() -> builder.burst(-1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Burst must be positive (got -1.0)");
+  }
+
+  private static PutLogEventsRateLimiter limiter(
+      PutLogEventsRateLimiter.Builder builder,
+      AtomicLong clock
+  ) {
+    return new PutLogEventsRateLimiter(builder, clock::get);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PutLogEventsRequestEncoder} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("PutLogEventsRequestEncoder tests")
+class PutLogEventsRequestEncoderTest {
+
+  @DisplayName("Batches are encoded as PutLogEvents request bodies")
+  @Test
+  void batchesAreEncodedAsPutLogEventsRequestBodies() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(1_234_567_890_123L, utf8("hello"));
+    batch.tryAdd(1_234_567_890_124L, utf8("héllo, wörld 😀"));
+
+    // When
+    var body = encoder.encode("group", "stream", batch);
+
+    // Then
+    assertThat(UTF_8.decode(body).toString()).isEqualTo(
+        "{\"logGroupName\":\"group\",\"logStreamName\":\"stream\",\"logEvents\":["
+            + "{\"timestamp\":1234567890123,\"message\":\"hello\"},"
+            + "{\"timestamp\":1234567890124,\"message\":\"héllo, wörld 😀\"}]}"
+    );
+  }
+
+  @DisplayName("Empty batches are encoded with no events")
+  @Test
+  void emptyBatchesAreEncodedWithNoEvents() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+
+    // When
+    var body = encoder.encode("group", "stream", new PutLogEventsBatch());
+
+    // Then
+    assertThat(UTF_8.decode(body).toString())
+        .isEqualTo("{\"logGroupName\":\"group\",\"logStreamName\":\"stream\",\"logEvents\":[]}");
+  }
+
+  @DisplayName("Special characters are escaped")
+  @Test
+  void specialCharactersAreEscaped() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(0, utf8("\"quoted\" back\\slash\n\r\t\b\f\u0001\u001f"));
+
+    // When
+    var body = encoder.encode("gro\"up", "stre\\am", batch);
+
+    // Then
+    assertThat(UTF_8.decode(body).toString()).isEqualTo(
+        "{\"logGroupName\":\"gro\\\"up\",\"logStreamName\":\"stre\\\\am\",\"logEvents\":["
+            + "{\"timestamp\":0,\"message\":"
+            + "\"\\\"quoted\\\" back\\\\slash\\n\\r\\t\\b\\f\\u0001\\u001f\"}]}"
+    );
+  }
+
+  @DisplayName("Malformed UTF-8 sequences are replaced")
+  @Test
+  void malformedUtf8SequencesAreReplaced() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    var contents = new byte[]{
+        'a',
+        (byte) 0xff,                      // Never valid.
+        'b',
+        (byte) 0xc0, (byte) 0x80,         // Overlong encoding.
+        'c',
+        (byte) 0xed, (byte) 0xa0, (byte) 0x80,  // Encoded surrogate.
+        'd',
+        (byte) 0xe2, (byte) 0x82,         // Truncated sequence.
+    };
+    batch.tryAdd(0, ByteBuffer.wrap(contents));
+
+    // When
+    var body = encoder.encode("group", "stream", batch);
+
+    // Then
+    assertThat(UTF_8.decode(body).toString())
+        .contains("\"message\":\"a�b��c���d�\"");
+  }
+
+  @DisplayName("Requests that alternate between log streams get the right prefix")
+  @Test
+  void requestsThatAlternateBetweenLogStreamsGetTheRightPrefix() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+
+    // When
+    var bodies = new ArrayList<String>();
+    for (var i = 0; i < 4; ++i) {
+      var body = encoder.encode("group-" + i / 2, "stream-" + i % 2, batch);
+      bodies.add(UTF_8.decode(body).toString());
+      encoder.release(body);
+    }
+
+    // Then
+    assertThat(bodies).containsExactly(
+        "{\"logGroupName\":\"group-0\",\"logStreamName\":\"stream-0\",\"logEvents\":[]}",
+        "{\"logGroupName\":\"group-0\",\"logStreamName\":\"stream-1\",\"logEvents\":[]}",
+        "{\"logGroupName\":\"group-1\",\"logStreamName\":\"stream-0\",\"logEvents\":[]}",
+        "{\"logGroupName\":\"group-1\",\"logStreamName\":\"stream-1\",\"logEvents\":[]}"
+    );
+  }
+
+  @DisplayName("Negative timestamps are encoded")
+  @Test
+  void negativeTimestampsAreEncoded() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(-42, utf8("x"));
+
+    // When
+    var body = encoder.encode("group", "stream", batch);
+
+    // Then
+    assertThat(UTF_8.decode(body).toString()).contains("{\"timestamp\":-42,");
+  }
+
+  @DisplayName("Released buffers are reused for later requests")
+  @Test
+  void releasedBuffersAreReusedForLaterRequests() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(1, utf8("first"));
+    var first = encoder.encode("group", "stream", batch);
+    var firstArray = first.array();
+    encoder.release(first);
+    batch.clear();
+    batch.tryAdd(2, utf8("second"));
+
+    // When
+    var second = encoder.encode("group", "other-stream", batch);
+
+    // Then
+    assertThat(second.array()).isSameAs(firstArray);
+    assertThat(UTF_8.decode(second).toString()).isEqualTo(
+        "{\"logGroupName\":\"group\",\"logStreamName\":\"other-stream\",\"logEvents\":["
+            + "{\"timestamp\":2,\"message\":\"second\"}]}"
+    );
+  }
+
+  @DisplayName("Buffers grow to fit heavily escaped contents")
+  @Test
+  void buffersGrowToFitHeavilyEscapedContents() {
+    // Given
+    var encoder = new PutLogEventsRequestEncoder();
+    var batch = new PutLogEventsBatch();
+    var contents = new byte[50_000];
+    batch.tryAdd(0, ByteBuffer.wrap(contents));
+
+    // When
+    var body = encoder.encode("group", "stream", batch);
+
+    // Then
+    assertThat(UTF_8.decode(body).toString())
+        .contains("\"message\":\"" + "\\u0000".repeat(50_000) + "\"}]}");
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link RetryPolicy} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("RetryPolicy tests")
+class RetryPolicyTest {
+
+  @DisplayName("Delays stay between the base delay and three times the previous delay")
+  @Test
+  void delaysStayBetweenTheBaseDelayAndThreeTimesThePreviousDelay() {
+    // Given
+    var policy = RetryPolicy.builder()
+        .baseDelay(Duration.ofNanos(100))
+        .maxDelay(Duration.ofNanos(1_000_000))
+        .build();
+    var random = new Random(1234);
+    var previous = 0L;
+
+    for (var i = 0; i < 1_000; ++i) {
+      // When
+      var next = policy.nextDelayNanos(previous, random);
+
+      // Then
+      assertThat(next).isBetween(100L, Math.min(1_000_000, Math.max(100, previous) * 3));
+      previous = next;
+    }
+  }
+
+  @DisplayName("Delays are capped at the maximum delay")
+  @Test
+  void delaysAreCappedAtTheMaximumDelay() {
+    // Given
+    var policy = RetryPolicy.builder()
+        .baseDelay(Duration.ofMillis(10))
+        .maxDelay(Duration.ofMillis(20))
+        .build();
+
+    // When
+    var next = policy.nextDelayNanos(Duration.ofSeconds(10).toNanos(), new Random(1234));
+
+    // Then
+    assertThat(next).isBetween(Duration.ofMillis(10).toNanos(), Duration.ofMillis(20).toNanos());
+  }
+
+  @DisplayName("Invalid settings are rejected")
+  @Test
+  void invalidSettingsAreRejected() {
+    // Given
+    var builder = RetryPolicy.builder();
+
+    // Then
+    assertThatThrownBy(() -> builder.maxAttempts(0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Max attempts must be positive (got 0)");
+    assertThatThrownBy(() -> builder.baseDelay(Duration.ofMillis(-1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Base delay must not be negative (got PT-0.001S)");
+    assertThatThrownBy(() -> builder.maxConcurrency(0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Max concurrency must be positive (got 0)");
+  }
+}
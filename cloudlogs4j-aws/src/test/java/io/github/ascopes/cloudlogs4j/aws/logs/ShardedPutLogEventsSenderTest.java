@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.aws.logs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsHttpResponseException;
+import io.github.ascopes.cloudlogs4j.aws.ex.AwsIoException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ShardedPutLogEventsSender} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("ShardedPutLogEventsSender tests")
+class ShardedPutLogEventsSenderTest {
+
+  @DisplayName("Log stream names are suffixed with the shard only if there are several shards")
+  @Test
+  void logStreamNamesAreSuffixedOnlyIfThereAreSeveralShards() {
+    // Given
+    var client = new FakeCloudWatchLogsClient(true);
+
+    // When
+    var single = new ShardedPutLogEventsSender(client, "group", "stream", 1, ex -> { });
+    var sharded = new ShardedPutLogEventsSender(client, "group", "stream", 3, ex -> { });
+
+    // Then
+    assertThat(single.getLogStreamName(0)).isEqualTo("stream");
+    assertThat(sharded.getLogStreamName(0)).isEqualTo("stream-0");
+    assertThat(sharded.getLogStreamName(2)).isEqualTo("stream-2");
+  }
+
+  @DisplayName("Batches are spread across shards with one request in flight per shard")
+  @Test
+  void batchesAreSpreadAcrossShardsWithOneRequestInFlightPerShard() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 3, ex -> { });
+
+    // When
+    var handed = new ArrayList<PutLogEventsBatch>();
+    var batch = new PutLogEventsBatch();
+    for (var i = 0; i < 3; ++i) {
+      batch.tryAdd(i, ByteBuffer.allocate(1));
+      handed.add(batch);
+      batch = sender.handleBatch(batch);
+      batch.clear();
+    }
+
+    // Then
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::logStreamName)
+        .containsExactly("stream-0", "stream-1", "stream-2");
+    assertThat(client.inFlightCount()).isEqualTo(3);
+    assertThat(client.createdLogStreams)
+        .containsExactly("group/stream-0", "group/stream-1", "group/stream-2");
+    assertThat(handed).doesNotHaveDuplicates().doesNotContain(batch);
+  }
+
+  @DisplayName("Handing over a batch blocks until a shard becomes idle")
+  @Test
+  void handingOverBatchBlocksUntilShardBecomesIdle() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 2, ex -> { });
+    var batch = sender.handleBatch(nonEmptyBatch(1));
+    batch = sender.handleBatch(nonEmptyBatch(2));
+
+    // When
+    var third = CompletableFuture.supplyAsync(() -> {
+      try {
+        return sender.handleBatch(nonEmptyBatch(3));
+      } catch (AwsException ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+
+    // Then
+    Thread.sleep(100);
+    assertThat(third).isNotDone();
+    client.requests.get(1).future().complete(null);
+    third.get(10, TimeUnit.SECONDS);
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::logStreamName)
+        .containsExactly("stream-0", "stream-1", "stream-1");
+  }
+
+  @DisplayName("Batches sent to the same shard are sent in order")
+  @Test
+  void batchesSentToSameShardAreSentInOrder() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(true);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 1, ex -> { });
+
+    // When
+    for (var i = 0; i < 5; ++i) {
+      sender.handleBatch(nonEmptyBatch(i));
+    }
+
+    // Then
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::timestamps)
+        .containsExactly(List.of(0L), List.of(1L), List.of(2L), List.of(3L), List.of(4L));
+    assertThat(client.createdLogStreams).containsExactly("group/stream");
+  }
+
+  @DisplayName("Awaiting completion waits for every request in flight")
+  @Test
+  void awaitingCompletionWaitsForEveryRequestInFlight() throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 2, ex -> { });
+    sender.handleBatch(nonEmptyBatch(1));
+    sender.handleBatch(nonEmptyBatch(2));
+
+    // When
+    var awaiting = CompletableFuture.runAsync(() -> {
+      try {
+        sender.awaitCompletion();
+      } catch (AwsException ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+
+    // Then
+    Thread.sleep(100);
+    assertThat(awaiting).isNotDone();
+    client.requests.get(0).future().complete(null);
+    Thread.sleep(50);
+    assertThat(awaiting).isNotDone();
+    client.requests.get(1).future().complete(null);
+    awaiting.get(10, TimeUnit.SECONDS);
+  }
+
+  @DisplayName("Failed requests are reported and release their shard")
+  @Test
+  void failedRequestsAreReportedAndReleaseTheirShard() throws Exception {
+    // Given
+    var failures = new CopyOnWriteArrayList<AwsException>();
+    var client = new FakeCloudWatchLogsClient(false);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 1, failures::add);
+    var cause = new AwsIoException("bang");
+    sender.handleBatch(nonEmptyBatch(1));
+
+    // When
+    client.requests.get(0).future().completeExceptionally(cause);
+    sender.handleBatch(nonEmptyBatch(2));
+
+    // Then
+    assertThat(failures).containsExactly(cause);
+    assertThat(client.requests).hasSize(2);
+  }
+
+  @DisplayName("Journaled batches are acknowledged once they have been accepted")
+  @Test
+  void journaledBatchesAreAcknowledgedOnceTheyHaveBeenAccepted(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 2, journal, ex -> { });
+    sender.handleBatch(nonEmptyBatch(1));
+    sender.handleBatch(nonEmptyBatch(2));
+
+    // When
+    client.requests.get(0).future().complete(null);
+    client.requests.get(1).future().completeExceptionally(new AwsIoException("bang"));
+
+    // Then
+    assertThat(journal.getUnacknowledgedBatchCount()).isEqualTo(1);
+  }
+
+  @DisplayName("Journaled batches that fail transiently are resent before the next batch")
+  @Test
+  void journaledBatchesThatFailTransientlyAreResentBeforeTheNextBatch(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 2, journal, ex -> { });
+    sender.handleBatch(nonEmptyBatch(1));
+    client.requests.get(0).future().completeExceptionally(new AwsIoException("bang"));
+
+    // When
+    sender.handleBatch(nonEmptyBatch(2));
+    client.requests.get(1).future().complete(null);
+    client.requests.get(2).future().complete(null);
+
+    // Then
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::timestamps)
+        .containsExactly(List.of(1L), List.of(1L), List.of(2L));
+    assertThat(journal.getUnacknowledgedBatchCount()).isZero();
+  }
+
+  @DisplayName("Journaled batches that can never be accepted are dropped from the journal")
+  @Test
+  void journaledBatchesThatCanNeverBeAcceptedAreDroppedFromTheJournal(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var client = new FakeCloudWatchLogsClient(false);
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+    var failures = new CopyOnWriteArrayList<AwsException>();
+    var sender = new ShardedPutLogEventsSender(
+        client, "group", "stream", 1, journal, failures::add
+    );
+    sender.handleBatch(nonEmptyBatch(1));
+
+    // When
+    client.requests.get(0).future().completeExceptionally(new AwsHttpResponseException(
+        "POST", URI.create("https://logs.example.com"), 400, "InvalidParameterException"
+    ));
+    sender.handleBatch(nonEmptyBatch(2));
+
+    // Then
+    assertThat(failures).hasSize(1);
+    assertThat(client.requests).hasSize(2);
+    assertThat(journal.getUnacknowledgedBatchCount()).isEqualTo(1);
+  }
+
+  @DisplayName("Batches left in the journal by a previous run are resent when recovering")
+  @Test
+  void batchesLeftInTheJournalByPreviousRunAreResentWhenRecovering(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var previous = PutLogEventsJournal.open(directory, 1_000_000);
+    previous.append(nonEmptyBatch(1));
+    previous.append(nonEmptyBatch(2));
+    var client = new FakeCloudWatchLogsClient(true);
+    var journal = PutLogEventsJournal.open(directory, 1_000_000);
+    var sender = new ShardedPutLogEventsSender(client, "group", "stream", 1, journal, ex -> { });
+
+    // When
+    sender.recover();
+    sender.awaitCompletion();
+
+    // Then
+    assertThat(client.requests)
+        .extracting(FakeCloudWatchLogsClient.Request::timestamps)
+        .containsExactly(List.of(1L), List.of(2L));
+    assertThat(journal.getUnacknowledgedBatchCount()).isZero();
+  }
+
+  private static PutLogEventsBatch nonEmptyBatch(long timestamp) {
+    var batch = new PutLogEventsBatch();
+    batch.tryAdd(timestamp, ByteBuffer.allocate(1));
+    return batch;
+  }
+}
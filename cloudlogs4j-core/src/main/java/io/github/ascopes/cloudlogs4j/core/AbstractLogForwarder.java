@@ -0,0 +1,602 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderQueueOverflowException;
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderTimeoutException;
+import io.github.ascopes.cloudlogs4j.core.intern.Utf8;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntryConsumer;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntryQueue;
+import io.github.ascopes.cloudlogs4j.core.queue.OfferResult;
+import io.github.ascopes.cloudlogs4j.core.queue.PayloadStorage;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Base for a log forwarder that buffers log entries in a bounded in-memory queue, and forwards
+ * them to the Cloud provider from a single dedicated thread.
+ *
+ * <p>Application threads submitting log entries only ever publish into a preallocated
+ * {@link LogEntryQueue}, so submitting never blocks and never allocates unless the queue is full.
+ * What happens then is decided by the {@link OverflowPolicy}. The forwarder thread
+ * drains the queue, passing each entry to {@link #appendLogEntry(long, ByteBuffer)}, and calls
+ * {@link #flush()} when the {@link FlushPolicy} decides that the pending entries should be sent.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public abstract class AbstractLogForwarder implements LogForwarder {
+
+  private static final int DRAIN_LIMIT = 1_024;
+  private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private static final long BLOCK_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final int MAX_EVICTION_ATTEMPTS = 16;
+
+  private final LogEntryQueue queue;
+  private final FlushPolicy flushPolicy;
+  private final OverflowPolicy overflowPolicy;
+  private final LongAdder droppedLogEntries;
+  private final AtomicLong deliveryFailures;
+  private final LogEntryConsumer appender;
+  private final Object lifecycleLock;
+  private volatile boolean running;
+  private volatile @Nullable Thread forwarderThread;
+
+  // Only accessed from the forwarder thread.
+  private long lingerStartedAt;
+  private boolean spilloverReplayed;
+  private long deliveryFailuresBeforeReplay;
+
+  /**
+   * Initialise this forwarder with the default flush policy.
+   *
+   * @param queueCapacity the minimum capacity of the internal queue. This is rounded up to the
+   *                      next power of two.
+   */
+  protected AbstractLogForwarder(int queueCapacity) {
+    this(queueCapacity, FlushPolicy.defaults());
+  }
+
+  /**
+   * Initialise this forwarder.
+   *
+   * @param queueCapacity the minimum capacity of the internal queue. This is rounded up to the
+   *                      next power of two.
+   * @param flushPolicy   the policy that decides when pending entries are flushed.
+   */
+  protected AbstractLogForwarder(int queueCapacity, FlushPolicy flushPolicy) {
+    this(queueCapacity, flushPolicy, PayloadStorage.heap());
+  }
+
+  /**
+   * Initialise this forwarder.
+   *
+   * @param queueCapacity  the minimum capacity of the internal queue. This is rounded up to the
+   *                       next power of two.
+   * @param flushPolicy    the policy that decides when pending entries are flushed.
+   * @param payloadStorage the storage to hold queued payloads in. This must not be shared with
+   *                       any other forwarder.
+   */
+  protected AbstractLogForwarder(
+      int queueCapacity,
+      FlushPolicy flushPolicy,
+      PayloadStorage payloadStorage
+  ) {
+    this(queueCapacity, flushPolicy, payloadStorage, OverflowPolicy.throwException());
+  }
+
+  /**
+   * Initialise this forwarder.
+   *
+   * @param queueCapacity  the minimum capacity of the internal queue. This is rounded up to the
+   *                       next power of two.
+   * @param flushPolicy    the policy that decides when pending entries are flushed.
+   * @param payloadStorage the storage to hold queued payloads in. This must not be shared with
+   *                       any other forwarder.
+   * @param overflowPolicy the policy that decides what happens to entries that do not fit in the
+   *                       queue.
+   */
+  protected AbstractLogForwarder(
+      int queueCapacity,
+      FlushPolicy flushPolicy,
+      PayloadStorage payloadStorage,
+      OverflowPolicy overflowPolicy
+  ) {
+    queue = new LogEntryQueue(queueCapacity, payloadStorage);
+    this.flushPolicy = flushPolicy;
+    this.overflowPolicy = overflowPolicy;
+    droppedLogEntries = new LongAdder();
+    deliveryFailures = new AtomicLong();
+    appender = this::appendAndCheckThresholds;
+    lifecycleLock = new Object();
+    running = false;
+    forwarderThread = null;
+    lingerStartedAt = 0L;
+    spilloverReplayed = false;
+    deliveryFailuresBeforeReplay = 0L;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public void start() {
+    synchronized (lifecycleLock) {
+      if (running) {
+        return;
+      }
+
+      var thread = new Thread(this::forwardLogEntries, getClass().getSimpleName() + "-forwarder");
+      thread.setDaemon(true);
+      running = true;
+      forwarderThread = thread;
+      thread.start();
+    }
+  }
+
+  @Override
+  public void stop(@Nullable Duration timeout)
+      throws ForwarderTimeoutException, InterruptedException {
+    Thread thread;
+
+    synchronized (lifecycleLock) {
+      if (!running) {
+        return;
+      }
+
+      running = false;
+      thread = forwarderThread;
+      forwarderThread = null;
+    }
+
+    if (thread == null) {
+      return;
+    }
+
+    LockSupport.unpark(thread);
+
+    if (timeout == null) {
+      thread.join();
+      return;
+    }
+
+    thread.join(Math.max(1, timeout.toMillis()));
+
+    if (thread.isAlive()) {
+      thread.interrupt();
+      throw new ForwarderTimeoutException(
+          "Timed out after " + timeout + " waiting for the forwarder to stop"
+      );
+    }
+  }
+
+  @Override
+  public void submitLogEntry(long timestamp, LogSeverity severity, byte[] contents)
+      throws ForwarderQueueOverflowException {
+    if (isSampledOut(severity)) {
+      return;
+    }
+
+    var result = queue.offer(timestamp, contents);
+
+    if (result != OfferResult.ACCEPTED) {
+      handleOverflow(
+          result,
+          severity,
+          () -> queue.offer(timestamp, contents),
+          () -> ByteBuffer.wrap(contents),
+          timestamp
+      );
+    }
+  }
+
+  @Override
+  public void submitLogEntry(long timestamp, LogSeverity severity, ByteBuffer contents)
+      throws ForwarderQueueOverflowException {
+    if (isSampledOut(severity)) {
+      return;
+    }
+
+    var result = queue.offer(timestamp, contents);
+
+    if (result != OfferResult.ACCEPTED) {
+      handleOverflow(
+          result,
+          severity,
+          () -> queue.offer(timestamp, contents),
+          contents::duplicate,
+          timestamp
+      );
+    }
+  }
+
+  @Override
+  public void submitLogEntry(long timestamp, LogSeverity severity, CharSequence contents)
+      throws ForwarderQueueOverflowException {
+    if (isSampledOut(severity)) {
+      return;
+    }
+
+    var result = queue.offer(timestamp, contents);
+
+    if (result != OfferResult.ACCEPTED) {
+      handleOverflow(
+          result,
+          severity,
+          () -> queue.offer(timestamp, contents),
+          () -> {
+            var encoded = new byte[Utf8.encodedLength(contents)];
+            return ByteBuffer.wrap(encoded, 0, Utf8.encode(contents, encoded, 0));
+          },
+          timestamp
+      );
+    }
+  }
+
+  /**
+   * Get the number of log entries that have been dropped by the overflow policy.
+   *
+   * @return the number of dropped entries.
+   */
+  public long getDroppedLogEntryCount() {
+    return droppedLogEntries.sum();
+  }
+
+  /**
+   * Get the queue that log entries are buffered in.
+   *
+   * @return the queue.
+   */
+  protected final LogEntryQueue getQueue() {
+    return queue;
+  }
+
+  /**
+   * Append a log entry to the batch that is currently being built.
+   *
+   * <p>This is only ever called from the forwarder thread. The contents buffer is only valid for
+   * the duration of the call, so implementations must copy anything they need to retain.
+   * Implementations are responsible for sending the pending batch first if the entry would not
+   * fit in it.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry.
+   * @throws CloudLogs4jException if the entry cannot be appended.
+   */
+  protected abstract void appendLogEntry(long timestamp, ByteBuffer contents)
+      throws CloudLogs4jException;
+
+  /**
+   * Get the number of log entries that have been appended but not yet flushed.
+   *
+   * <p>This is only ever called from the forwarder thread.
+   *
+   * @return the number of pending entries.
+   */
+  protected abstract int getPendingLogEntryCount();
+
+  /**
+   * Get the size of the log entries that have been appended but not yet flushed, in bytes.
+   *
+   * <p>This is only ever called from the forwarder thread.
+   *
+   * @return the size of the pending entries.
+   */
+  protected abstract long getPendingLogEntryBytes();
+
+  /**
+   * Send any pending log entries to the Cloud provider.
+   *
+   * <p>This is only ever called from the forwarder thread, and should do nothing if there are no
+   * pending log entries.
+   *
+   * @throws CloudLogs4jException if the entries cannot be sent.
+   */
+  protected abstract void flush() throws CloudLogs4jException;
+
+  /**
+   * Resend any log entries that were persisted by a previous run but never delivered.
+   *
+   * <p>This is called on the forwarder thread once it has started, before any submitted entries
+   * are forwarded. The default implementation does nothing.
+   *
+   * @throws CloudLogs4jException if the entries cannot be resent.
+   */
+  protected void recover() throws CloudLogs4jException {
+    // Nothing is persisted by default.
+  }
+
+  /**
+   * Wait for any log entries handed off by {@link #flush()} to finish being delivered.
+   *
+   * <p>This is called on the forwarder thread once the final flush has been made while stopping,
+   * and before replayed spillover entries are acknowledged. Implementations that deliver entries
+   * asynchronously should override this so that stopping does not abandon requests that are
+   * still in flight, and should report any delivery that fails in the meantime through
+   * {@link #handleDeliveryFailure(Exception)}. The default implementation does nothing.
+   *
+   * @throws CloudLogs4jException if waiting fails.
+   */
+  protected void awaitDelivery() throws CloudLogs4jException {
+    // Entries are delivered synchronously by default.
+  }
+
+  /**
+   * Handle a failure that occurred while forwarding log entries.
+   *
+   * <p>This is usually called on the forwarder thread, but implementations that deliver entries
+   * asynchronously may also call it from the threads that complete those deliveries.
+   *
+   * <p>Log forwarders cannot safely log through the logging framework they are serving, so the
+   * default implementation writes the failure to the standard error stream.
+   *
+   * @param ex the failure.
+   */
+  protected void handleForwardingFailure(Exception ex) {
+    System.err.println(getClass().getName() + ": failed to forward log entries");
+    ex.printStackTrace(System.err);
+  }
+
+  /**
+   * Handle a failure to deliver log entries, either while they were being flushed or after they
+   * were handed off asynchronously by {@link #flush()}.
+   *
+   * <p>This may be called from any thread. Besides passing the failure on to
+   * {@link #handleForwardingFailure(Exception)}, it stops any replayed spillover entries that were
+   * in flight from being acknowledged, so that they are replayed again rather than lost.
+   *
+   * @param ex the failure.
+   */
+  protected final void handleDeliveryFailure(Exception ex) {
+    deliveryFailures.incrementAndGet();
+    handleForwardingFailure(ex);
+  }
+
+  private void forwardLogEntries() {
+    try {
+      recover();
+    } catch (CloudLogs4jException | RuntimeException ex) {
+      handleForwardingFailure(ex);
+    }
+
+    while (running) {
+      var drained = drainQueue();
+      if (drained == 0) {
+        drained = replaySpillover();
+      }
+      var waitNanos = flushIfDue(drained == 0);
+
+      if (drained == 0) {
+        LockSupport.parkNanos(this, Math.min(waitNanos, IDLE_WAIT_NANOS));
+      }
+    }
+
+    // Forward anything that was submitted before we were asked to stop. Anything that was
+    // spilled is left in the spillover.
+    int drained;
+    do {
+      drained = drainQueue();
+    } while (drained > 0);
+
+    flushQuietly();
+
+    try {
+      awaitDelivery();
+    } catch (CloudLogs4jException | RuntimeException ex) {
+      handleForwardingFailure(ex);
+    }
+  }
+
+  private void appendAndCheckThresholds(long timestamp, ByteBuffer contents)
+      throws CloudLogs4jException {
+    appendLogEntry(timestamp, contents);
+
+    var pendingLogEntries = getPendingLogEntryCount();
+
+    if (pendingLogEntries == 1) {
+      // This entry started a new batch.
+      lingerStartedAt = System.nanoTime();
+    }
+
+    if (flushPolicy.isBatchFull(pendingLogEntries, getPendingLogEntryBytes())) {
+      flush();
+    }
+  }
+
+  private long flushIfDue(boolean queueDrained) {
+    if (getPendingLogEntryCount() == 0) {
+      return Long.MAX_VALUE;
+    }
+
+    var remainingNanos = flushPolicy.remainingLingerNanos(
+        System.nanoTime() - lingerStartedAt,
+        queueDrained
+    );
+
+    if (remainingNanos <= 0 || flushPolicy.isQueueUnderPressure(queue.size(), queue.capacity())) {
+      flushQuietly();
+      return Long.MAX_VALUE;
+    }
+
+    return remainingNanos;
+  }
+
+  private int drainQueue() {
+    try {
+      return queue.drain(appender, DRAIN_LIMIT);
+    } catch (CloudLogs4jException | RuntimeException ex) {
+      // The appender may have been flushing a full batch, which can hold replayed entries.
+      handleDeliveryFailure(ex);
+      // The failing entry was still consumed, so there may be more work to do.
+      return 1;
+    }
+  }
+
+  private int replaySpillover() {
+    var spillover = overflowPolicy.getSpillover();
+    if (spillover == null) {
+      return 0;
+    }
+
+    if (!spilloverReplayed) {
+      deliveryFailuresBeforeReplay = deliveryFailures.get();
+    }
+
+    try {
+      var replayed = spillover.replay(appender, DRAIN_LIMIT);
+      spilloverReplayed |= replayed > 0;
+      return replayed;
+    } catch (CloudLogs4jException | RuntimeException ex) {
+      spilloverReplayed = true;
+      handleDeliveryFailure(ex);
+      return 0;
+    }
+  }
+
+  private boolean isSampledOut(LogSeverity severity) {
+    if (overflowPolicy.getKind() != OverflowPolicy.Kind.SAMPLE_BY_SEVERITY
+        || severity.isAtLeast(overflowPolicy.getMinimumRetainedSeverity())
+        || queue.size() * 2 < queue.capacity()
+        || ThreadLocalRandom.current().nextInt(overflowPolicy.getSampleInterval()) == 0) {
+      return false;
+    }
+
+    droppedLogEntries.increment();
+    return true;
+  }
+
+  private void handleOverflow(
+      OfferResult result,
+      LogSeverity severity,
+      Retry retry,
+      Supplier<ByteBuffer> contents,
+      long timestamp
+  ) throws ForwarderQueueOverflowException {
+    switch (overflowPolicy.getKind()) {
+      case THROW_EXCEPTION -> throw result == OfferResult.STORAGE_FULL
+          ? new ForwarderQueueOverflowException(
+              queue.capacity(),
+              queue.payloadStorage().getMemoryLimit()
+          )
+          : new ForwarderQueueOverflowException(queue.capacity());
+
+      case DROP_NEWEST -> droppedLogEntries.increment();
+
+      case DROP_OLDEST -> evictUntilOffered(retry);
+
+      case BLOCK -> blockUntilOffered(retry);
+
+      case SAMPLE_BY_SEVERITY -> {
+        if (severity.isAtLeast(overflowPolicy.getMinimumRetainedSeverity())) {
+          evictUntilOffered(retry);
+        } else {
+          droppedLogEntries.increment();
+        }
+      }
+
+      case SPILL -> {
+        var spillover = requireNonNull(overflowPolicy.getSpillover());
+        if (!spillover.spill(timestamp, contents.get())) {
+          droppedLogEntries.increment();
+        }
+      }
+
+      default -> throw new IllegalStateException("Unknown policy " + overflowPolicy.getKind());
+    }
+  }
+
+  private void evictUntilOffered(Retry retry) {
+    for (var attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; ++attempt) {
+      if (queue.evictOldest()) {
+        droppedLogEntries.increment();
+      } else {
+        // The oldest entry is still being written or consumed.
+        Thread.onSpinWait();
+      }
+
+      if (retry.offer() == OfferResult.ACCEPTED) {
+        return;
+      }
+    }
+
+    droppedLogEntries.increment();
+  }
+
+  private void blockUntilOffered(Retry retry) {
+    var deadline = System.nanoTime() + overflowPolicy.getBlockTimeout().toNanos();
+    var thread = forwarderThread;
+
+    if (thread != null) {
+      // Make sure the forwarder is not idling while we wait on it.
+      LockSupport.unpark(thread);
+    }
+
+    do {
+      LockSupport.parkNanos(this, BLOCK_POLL_NANOS);
+
+      if (retry.offer() == OfferResult.ACCEPTED) {
+        return;
+      }
+    } while (System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted());
+
+    droppedLogEntries.increment();
+  }
+
+  private void flushQuietly() {
+    var spillover = overflowPolicy.getSpillover();
+
+    try {
+      flush();
+
+      if (spillover != null && spilloverReplayed) {
+        // Flushing may only have handed the entries off, so they cannot be discarded until they
+        // have actually been delivered.
+        awaitDelivery();
+        spilloverReplayed = false;
+
+        if (deliveryFailures.get() == deliveryFailuresBeforeReplay) {
+          spillover.acknowledge();
+        } else {
+          spillover.rewind();
+        }
+      }
+    } catch (CloudLogs4jException | RuntimeException ex) {
+      if (spillover != null) {
+        spilloverReplayed = false;
+        spillover.rewind();
+      }
+      handleForwardingFailure(ex);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Retry {
+
+    OfferResult offer();
+  }
+}
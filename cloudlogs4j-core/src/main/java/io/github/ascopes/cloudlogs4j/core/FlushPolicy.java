@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+
+/**
+ * Policy that decides when a forwarder sends its pending log entries.
+ *
+ * <p>This works like the {@code linger.ms} setting in Kafka producers. Once the first entry of a
+ * batch has been appended, the forwarder waits up to the linger duration for more entries to
+ * arrive before flushing, trading a small amount of latency for larger batches. The batch is
+ * flushed straight away if it reaches the entry count or byte size threshold, or if the queue
+ * fills up past the pressure threshold.
+ *
+ * <p>A zero linger flushes pending entries as soon as the queue runs dry.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class FlushPolicy {
+
+  private static final FlushPolicy DEFAULTS = builder().build();
+
+  private final Duration linger;
+  private final long lingerNanos;
+  private final int maxPendingLogEntries;
+  private final long maxPendingBytes;
+  private final double queuePressureThreshold;
+
+  private FlushPolicy(Builder builder) {
+    linger = builder.linger;
+    lingerNanos = builder.linger.toNanos();
+    maxPendingLogEntries = builder.maxPendingLogEntries;
+    maxPendingBytes = builder.maxPendingBytes;
+    queuePressureThreshold = builder.queuePressureThreshold;
+  }
+
+  /**
+   * Get the linger duration.
+   *
+   * @return the linger duration.
+   */
+  public Duration getLinger() {
+    return linger;
+  }
+
+  /**
+   * Get the number of pending entries that triggers an immediate flush.
+   *
+   * @return the entry count threshold.
+   */
+  public int getMaxPendingLogEntries() {
+    return maxPendingLogEntries;
+  }
+
+  /**
+   * Get the size of pending entries, in bytes, that triggers an immediate flush.
+   *
+   * @return the byte size threshold.
+   */
+  public long getMaxPendingBytes() {
+    return maxPendingBytes;
+  }
+
+  /**
+   * Get the fraction of the queue capacity that, once in use, triggers an immediate flush.
+   *
+   * @return the queue pressure threshold, between {@code 0} and {@code 1}.
+   */
+  public double getQueuePressureThreshold() {
+    return queuePressureThreshold;
+  }
+
+  /**
+   * Determine if the pending entries have reached the count or size threshold.
+   *
+   * @param pendingLogEntries the number of pending entries.
+   * @param pendingBytes      the size of the pending entries, in bytes.
+   * @return {@code true} if the entries should be flushed now.
+   */
+  boolean isBatchFull(int pendingLogEntries, long pendingBytes) {
+    return pendingLogEntries >= maxPendingLogEntries || pendingBytes >= maxPendingBytes;
+  }
+
+  /**
+   * Determine if the queue is full enough that pending entries should be flushed now.
+   *
+   * @param queueSize     the number of entries in the queue.
+   * @param queueCapacity the capacity of the queue.
+   * @return {@code true} if the entries should be flushed now.
+   */
+  boolean isQueueUnderPressure(int queueSize, int queueCapacity) {
+    return queueSize >= queueCapacity * queuePressureThreshold;
+  }
+
+  /**
+   * Determine how long to keep waiting before flushing.
+   *
+   * @param lingeredNanos how long the oldest pending entry has been waiting, in nanoseconds.
+   * @param queueDrained  whether the queue has run dry.
+   * @return the number of nanoseconds left to wait, or zero or less if the entries should be
+   *     flushed now.
+   */
+  long remainingLingerNanos(long lingeredNanos, boolean queueDrained) {
+    if (lingerNanos == 0 && !queueDrained) {
+      // Keep filling the batch while entries are still arriving.
+      return Long.MAX_VALUE;
+    }
+    return lingerNanos - lingeredNanos;
+  }
+
+  /**
+   * Get the default policy.
+   *
+   * <p>This has no linger, no count or size thresholds, and a queue pressure threshold of
+   * {@code 0.5}.
+   *
+   * @return the default policy.
+   */
+  public static FlushPolicy defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Builder for a {@link FlushPolicy}.
+   *
+   * @author Ashley Scopes
+   * @since 0.0.1
+   */
+  public static final class Builder {
+
+    private Duration linger;
+    private int maxPendingLogEntries;
+    private long maxPendingBytes;
+    private double queuePressureThreshold;
+
+    private Builder() {
+      linger = Duration.ZERO;
+      maxPendingLogEntries = Integer.MAX_VALUE;
+      maxPendingBytes = Long.MAX_VALUE;
+      queuePressureThreshold = 0.5;
+    }
+
+    /**
+     * Set how long to wait for a batch to fill before flushing it.
+     *
+     * @param linger the linger duration. Must not be negative.
+     * @return this builder.
+     */
+    public Builder linger(Duration linger) {
+      requireNonNull(linger, "linger");
+      if (linger.isNegative()) {
+        throw new IllegalArgumentException("Linger must not be negative (got " + linger + ")");
+      }
+      this.linger = linger;
+      return this;
+    }
+
+    /**
+     * Set the number of pending entries that triggers an immediate flush.
+     *
+     * @param maxPendingLogEntries the entry count threshold. Must be positive.
+     * @return this builder.
+     */
+    public Builder maxPendingLogEntries(int maxPendingLogEntries) {
+      if (maxPendingLogEntries < 1) {
+        throw new IllegalArgumentException(
+            "Max pending log entries must be positive (got " + maxPendingLogEntries + ")"
+        );
+      }
+      this.maxPendingLogEntries = maxPendingLogEntries;
+      return this;
+    }
+
+    /**
+     * Set the size of pending entries, in bytes, that triggers an immediate flush.
+     *
+     * @param maxPendingBytes the byte size threshold. Must be positive.
+     * @return this builder.
+     */
+    public Builder maxPendingBytes(long maxPendingBytes) {
+      if (maxPendingBytes < 1) {
+        throw new IllegalArgumentException(
+            "Max pending bytes must be positive (got " + maxPendingBytes + ")"
+        );
+      }
+      this.maxPendingBytes = maxPendingBytes;
+      return this;
+    }
+
+    /**
+     * Set the fraction of the queue capacity that, once in use, triggers an immediate flush.
+     *
+     * @param queuePressureThreshold the threshold, greater than {@code 0} and at most
+     *                               {@code 1}.
+     * @return this builder.
+     */
+    public Builder queuePressureThreshold(double queuePressureThreshold) {
+      if (!(queuePressureThreshold > 0 && queuePressureThreshold <= 1)) {
+        throw new IllegalArgumentException(
+            "Queue pressure threshold must be in the range (0, 1] (got "
+                + queuePressureThreshold + ")"
+        );
+      }
+      this.queuePressureThreshold = queuePressureThreshold;
+      return this;
+    }
+
+    /**
+     * Build the policy.
+     *
+     * @return the policy.
+     */
+    public FlushPolicy build() {
+      return new FlushPolicy(this);
+    }
+  }
+}
@@ -17,6 +17,7 @@ package io.github.ascopes.cloudlogs4j.core;
 
 import io.github.ascopes.cloudlogs4j.core.ex.ForwarderQueueOverflowException;
 import io.github.ascopes.cloudlogs4j.core.ex.ForwarderTimeoutException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import org.jspecify.annotations.Nullable;
 
@@ -56,8 +57,90 @@ public interface LogForwarder {
   /**
    * Submit a log entry to be forwarded to the Cloud provider.
    *
+   * <p>The contents array may be held by reference until it has been forwarded, so callers must
+   * not modify it after submitting it.
+   *
    * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param severity  the severity of the log entry.
    * @param contents  the byte-encoded contents of the log entry.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   */
+  void submitLogEntry(long timestamp, LogSeverity severity, byte[] contents)
+      throws ForwarderQueueOverflowException;
+
+  /**
+   * Submit a log entry to be forwarded to the Cloud provider.
+   *
+   * <p>The remaining contents of the buffer are copied into storage owned by the forwarder
+   * before this method returns, and the buffer position is left unchanged. This allows layouts
+   * to encode into a reusable buffer.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param severity  the severity of the log entry.
+   * @param contents  the byte-encoded contents of the log entry, between the buffer position and
+   *                  limit.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   */
+  void submitLogEntry(long timestamp, LogSeverity severity, ByteBuffer contents)
+      throws ForwarderQueueOverflowException;
+
+  /**
+   * Submit a log entry to be forwarded to the Cloud provider.
+   *
+   * <p>The contents are encoded as UTF-8 straight into storage owned by the forwarder before
+   * this method returns. This allows layouts to format into a reusable {@link StringBuilder}.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param severity  the severity of the log entry.
+   * @param contents  the contents of the log entry.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   */
+  void submitLogEntry(long timestamp, LogSeverity severity, CharSequence contents)
+      throws ForwarderQueueOverflowException;
+
+  /**
+   * Submit a log entry with {@link LogSeverity#INFO} severity.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   * @see #submitLogEntry(long, LogSeverity, byte[])
+   */
+  default void submitLogEntry(long timestamp, byte[] contents)
+      throws ForwarderQueueOverflowException {
+    submitLogEntry(timestamp, LogSeverity.INFO, contents);
+  }
+
+  /**
+   * Submit a log entry with {@link LogSeverity#INFO} severity.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry, between the buffer position and
+   *                  limit.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   * @see #submitLogEntry(long, LogSeverity, ByteBuffer)
+   */
+  default void submitLogEntry(long timestamp, ByteBuffer contents)
+      throws ForwarderQueueOverflowException {
+    submitLogEntry(timestamp, LogSeverity.INFO, contents);
+  }
+
+  /**
+   * Submit a log entry with {@link LogSeverity#INFO} severity.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the contents of the log entry.
+   * @throws ForwarderQueueOverflowException if the entry cannot be queued, and the overflow
+   *                                         policy is to raise an exception.
+   * @see #submitLogEntry(long, LogSeverity, CharSequence)
    */
-  void submitLogEntry(long timestamp, byte[] contents) throws ForwarderQueueOverflowException;
+  default void submitLogEntry(long timestamp, CharSequence contents)
+      throws ForwarderQueueOverflowException {
+    submitLogEntry(timestamp, LogSeverity.INFO, contents);
+  }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+/**
+ * Severity of a log entry, used to decide which entries to keep when the forwarder is
+ * overloaded.
+ *
+ * <p>Constants are declared from least to most severe.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public enum LogSeverity {
+
+  /**
+   * Fine-grained tracing information.
+   */
+  TRACE,
+
+  /**
+   * Debugging information.
+   */
+  DEBUG,
+
+  /**
+   * General information. This is used when no severity is given.
+   */
+  INFO,
+
+  /**
+   * A potential problem.
+   */
+  WARN,
+
+  /**
+   * An error.
+   */
+  ERROR,
+
+  /**
+   * An error that the application cannot recover from.
+   */
+  FATAL;
+
+  /**
+   * Determine if this severity is at least as severe as another.
+   *
+   * @param other the other severity.
+   * @return {@code true} if this severity is the same as or more severe than the other.
+   */
+  public boolean isAtLeast(LogSeverity other) {
+    return compareTo(other) >= 0;
+  }
+}
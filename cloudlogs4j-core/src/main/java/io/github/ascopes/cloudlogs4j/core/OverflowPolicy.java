@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderQueueOverflowException;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntrySpillover;
+import java.time.Duration;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Policy that decides what a forwarder does with a log entry that does not fit in its queue.
+ *
+ * <p>Apart from {@link #throwException()}, every policy counts the entries it drops rather than
+ * raising an exception, so that application threads see predictable latency even while the
+ * forwarder is overloaded. The count is available from
+ * {@link AbstractLogForwarder#getDroppedLogEntryCount()}.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class OverflowPolicy {
+
+  private static final OverflowPolicy THROW_EXCEPTION
+      = new OverflowPolicy(Kind.THROW_EXCEPTION, Duration.ZERO, LogSeverity.TRACE, 1, null);
+  private static final OverflowPolicy DROP_NEWEST
+      = new OverflowPolicy(Kind.DROP_NEWEST, Duration.ZERO, LogSeverity.TRACE, 1, null);
+  private static final OverflowPolicy DROP_OLDEST
+      = new OverflowPolicy(Kind.DROP_OLDEST, Duration.ZERO, LogSeverity.TRACE, 1, null);
+
+  private final Kind kind;
+  private final Duration blockTimeout;
+  private final LogSeverity minimumRetainedSeverity;
+  private final int sampleInterval;
+  private final @Nullable LogEntrySpillover spillover;
+
+  private OverflowPolicy(
+      Kind kind,
+      Duration blockTimeout,
+      LogSeverity minimumRetainedSeverity,
+      int sampleInterval,
+      @Nullable LogEntrySpillover spillover
+  ) {
+    this.kind = kind;
+    this.blockTimeout = blockTimeout;
+    this.minimumRetainedSeverity = minimumRetainedSeverity;
+    this.sampleInterval = sampleInterval;
+    this.spillover = spillover;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  Duration getBlockTimeout() {
+    return blockTimeout;
+  }
+
+  LogSeverity getMinimumRetainedSeverity() {
+    return minimumRetainedSeverity;
+  }
+
+  int getSampleInterval() {
+    return sampleInterval;
+  }
+
+  @Nullable LogEntrySpillover getSpillover() {
+    return spillover;
+  }
+
+  /**
+   * Raise a {@link ForwarderQueueOverflowException} to the caller. This is the default.
+   *
+   * @return the policy.
+   */
+  public static OverflowPolicy throwException() {
+    return THROW_EXCEPTION;
+  }
+
+  /**
+   * Drop the entry that did not fit.
+   *
+   * @return the policy.
+   */
+  public static OverflowPolicy dropNewest() {
+    return DROP_NEWEST;
+  }
+
+  /**
+   * Drop the oldest entry in the queue to make room for the entry that did not fit.
+   *
+   * <p>If room cannot be made after a few attempts, for example because the payload storage
+   * is full rather than the queue, the new entry is dropped instead.
+   *
+   * @return the policy.
+   */
+  public static OverflowPolicy dropOldest() {
+    return DROP_OLDEST;
+  }
+
+  /**
+   * Block the submitting thread until there is room for the entry, or the timeout elapses.
+   *
+   * <p>The entry is dropped if the timeout elapses first.
+   *
+   * @param timeout the maximum time to block for. Must be positive.
+   * @return the policy.
+   */
+  public static OverflowPolicy block(Duration timeout) {
+    requireNonNull(timeout, "timeout");
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("Timeout must be positive (got " + timeout + ")");
+    }
+    return new OverflowPolicy(Kind.BLOCK, timeout, LogSeverity.TRACE, 1, null);
+  }
+
+  /**
+   * Shed less severe entries first.
+   *
+   * <p>Once the queue is at least half full, only one in every {@code sampleInterval} entries
+   * below the minimum retained severity is accepted, chosen at random, and the rest are
+   * dropped. Entries at or above the minimum retained severity are always accepted, and if the
+   * queue is full they drop the oldest entry to make room, as with {@link #dropOldest()}.
+   *
+   * @param minimumRetainedSeverity the least severe level that is never sampled.
+   * @param sampleInterval          keep one in every this many less severe entries while the
+   *                                queue is under pressure. Must be positive.
+   * @return the policy.
+   */
+  public static OverflowPolicy sampleBySeverity(
+      LogSeverity minimumRetainedSeverity,
+      int sampleInterval
+  ) {
+    requireNonNull(minimumRetainedSeverity, "minimumRetainedSeverity");
+    if (sampleInterval < 1) {
+      throw new IllegalArgumentException(
+          "Sample interval must be positive (got " + sampleInterval + ")"
+      );
+    }
+    return new OverflowPolicy(
+        Kind.SAMPLE_BY_SEVERITY,
+        Duration.ZERO,
+        minimumRetainedSeverity,
+        sampleInterval,
+        null
+    );
+  }
+
+  /**
+   * Write entries that do not fit to a secondary store, to be replayed once the queue has been
+   * drained.
+   *
+   * <p>Entries are dropped if the spillover has no room for them either.
+   *
+   * @param spillover the spillover to write entries to.
+   * @return the policy.
+   */
+  public static OverflowPolicy spill(LogEntrySpillover spillover) {
+    requireNonNull(spillover, "spillover");
+    return new OverflowPolicy(Kind.SPILL, Duration.ZERO, LogSeverity.TRACE, 1, spillover);
+  }
+
+  enum Kind {
+    THROW_EXCEPTION,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    BLOCK,
+    SAMPLE_BY_SEVERITY,
+    SPILL,
+  }
+}
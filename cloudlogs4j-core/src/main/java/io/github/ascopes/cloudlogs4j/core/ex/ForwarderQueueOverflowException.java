@@ -16,7 +16,8 @@
 package io.github.ascopes.cloudlogs4j.core.ex;
 
 /**
- * Exception that is raised if the log queue is too full.
+ * Exception that is raised if the log queue is too full, or if the storage for queued log entries
+ * has reached its memory limit.
  *
  * @author Ashley Scopes
  * @since 0.0.1
@@ -24,6 +25,7 @@ package io.github.ascopes.cloudlogs4j.core.ex;
 public final class ForwarderQueueOverflowException extends CloudLogs4jException {
 
   private final int queueCapacity;
+  private final long memoryLimit;
 
   /**
    * Initialise this exception.
@@ -35,6 +37,21 @@ public final class ForwarderQueueOverflowException extends CloudLogs4jException
         + " dropped (capacity is " + queueCapacity + ")");
 
     this.queueCapacity = queueCapacity;
+    memoryLimit = 0L;
+  }
+
+  /**
+   * Initialise this exception for when the queue storage has reached its memory limit.
+   *
+   * @param queueCapacity the queue capacity.
+   * @param memoryLimit   the memory limit of the queue storage, in bytes.
+   */
+  public ForwarderQueueOverflowException(int queueCapacity, long memoryLimit) {
+    super("Internal log storage memory limit has been reached; log events may be"
+        + " dropped (limit is " + memoryLimit + " bytes)");
+
+    this.queueCapacity = queueCapacity;
+    this.memoryLimit = memoryLimit;
   }
 
   /**
@@ -45,4 +62,13 @@ public final class ForwarderQueueOverflowException extends CloudLogs4jException
   public int getQueueCapacity() {
     return queueCapacity;
   }
+
+  /**
+   * Get the memory limit of the queue storage.
+   *
+   * @return the memory limit in bytes, or {@code 0} if the queue capacity was reached instead.
+   */
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Shared executor for background tasks, such as sending requests, retrying them, and refreshing
+ * credentials.
+ *
+ * <p>On Java 21 and newer, each task runs on its own virtual thread, so tasks that block on I/O
+ * are cheap. On older versions, tasks run on a small pool of daemon platform threads instead,
+ * which are stopped again when they have been idle for a while. The choice is made at runtime,
+ * depending on whether the running JVM has the virtual thread APIs and lets them be used.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class TaskExecutors {
+
+  private static final String THREAD_NAME_PREFIX = "cloudlogs4j-task-";
+  private static final int MAX_PLATFORM_THREADS = 8;
+  private static final long PLATFORM_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+  private static final @Nullable ExecutorService VIRTUAL_THREAD_EXECUTOR =
+      VirtualThreads.newExecutor(THREAD_NAME_PREFIX);
+  private static final ExecutorService EXECUTOR = VIRTUAL_THREAD_EXECUTOR == null
+      ? createPlatformThreadExecutor()
+      : VIRTUAL_THREAD_EXECUTOR;
+
+  private TaskExecutors() {
+    throw new UnsupportedOperationException("static-only class");
+  }
+
+  /**
+   * Get the shared executor.
+   *
+   * @return the executor. This must not be shut down.
+   */
+  public static ExecutorService getExecutor() {
+    return EXECUTOR;
+  }
+
+  /**
+   * Determine if the shared executor runs tasks on virtual threads.
+   *
+   * @return {@code true} if virtual threads are used, or {@code false} if platform threads are.
+   */
+  public static boolean isUsingVirtualThreads() {
+    return VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  private static ExecutorService createPlatformThreadExecutor() {
+    var threadCount = Math.max(
+        2,
+        Math.min(MAX_PLATFORM_THREADS, Runtime.getRuntime().availableProcessors())
+    );
+    var threadNumber = new AtomicInteger();
+    var pool = new ThreadPoolExecutor(
+        threadCount,
+        threadCount,
+        PLATFORM_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        task -> {
+          var thread = new Thread(task, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        }
+    );
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+}
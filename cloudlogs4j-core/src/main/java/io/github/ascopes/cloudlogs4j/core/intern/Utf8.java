@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free UTF-8 encoding of character sequences.
+ *
+ * <p>{@link String#getBytes} and {@link java.nio.charset.CharsetEncoder} both allocate for each
+ * call, which is wasteful when encoding straight into a buffer that is already owned by the
+ * caller. These helpers instead work in two passes: one to compute the exact encoded length, and
+ * one to write the bytes.
+ *
+ * <p>Unpaired surrogates are encoded as {@code '?'}, matching {@link String#getBytes}.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class Utf8 {
+
+  private static final byte REPLACEMENT = (byte) '?';
+
+  private Utf8() {
+    throw new UnsupportedOperationException("static-only class");
+  }
+
+  /**
+   * Compute the number of bytes needed to encode the given characters as UTF-8.
+   *
+   * @param chars the characters to encode.
+   * @return the encoded length, in bytes.
+   */
+  public static int encodedLength(CharSequence chars) {
+    var length = chars.length();
+    var encodedLength = (long) length;
+
+    for (var i = 0; i < length; ++i) {
+      var c = chars.charAt(i);
+
+      if (c < 0x80) {
+        continue;
+      }
+
+      if (c < 0x800) {
+        encodedLength += 1;
+      } else if (isSurrogatePair(chars, i, length)) {
+        // Four bytes for the two chars.
+        encodedLength += 2;
+        ++i;
+      } else if (Character.isSurrogate(c)) {
+        // Replaced with a single byte.
+        continue;
+      } else {
+        encodedLength += 2;
+      }
+    }
+
+    if (encodedLength > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Encoded length exceeds the maximum array size");
+    }
+
+    return (int) encodedLength;
+  }
+
+  /**
+   * Encode the given characters as UTF-8 into an array.
+   *
+   * <p>The array must have at least {@link #encodedLength(CharSequence)} bytes available after
+   * the offset.
+   *
+   * @param chars  the characters to encode.
+   * @param dest   the array to write to.
+   * @param offset the offset to start writing at.
+   * @return the offset after the last byte that was written.
+   */
+  public static int encode(CharSequence chars, byte[] dest, int offset) {
+    var length = chars.length();
+    var i = 0;
+
+    // Fast path for the common case of ASCII text.
+    for (; i < length; ++i) {
+      var c = chars.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      dest[offset++] = (byte) c;
+    }
+
+    for (; i < length; ++i) {
+      var c = chars.charAt(i);
+
+      if (c < 0x80) {
+        dest[offset++] = (byte) c;
+      } else if (c < 0x800) {
+        dest[offset++] = (byte) (0xC0 | c >> 6);
+        dest[offset++] = (byte) (0x80 | c & 0x3F);
+      } else if (isSurrogatePair(chars, i, length)) {
+        var codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        dest[offset++] = (byte) (0xF0 | codePoint >> 18);
+        dest[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        dest[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        dest[offset++] = (byte) (0x80 | codePoint & 0x3F);
+      } else if (Character.isSurrogate(c)) {
+        dest[offset++] = REPLACEMENT;
+      } else {
+        dest[offset++] = (byte) (0xE0 | c >> 12);
+        dest[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+        dest[offset++] = (byte) (0x80 | c & 0x3F);
+      }
+    }
+
+    return offset;
+  }
+
+  /**
+   * Encode the given characters as UTF-8 into a region of a buffer, using absolute puts.
+   *
+   * <p>The position and limit of the buffer are not changed, so several threads can safely write
+   * to disjoint regions of the same buffer. Nothing is ever written at or beyond the end index,
+   * even if the characters are modified while they are being encoded.
+   *
+   * @param chars the characters to encode.
+   * @param dest  the buffer to write to.
+   * @param index the index to start writing at.
+   * @param end   the index to stop writing at, exclusive.
+   * @return the index after the last byte that was written.
+   * @throws IndexOutOfBoundsException if the encoded characters do not fit before the end index.
+   */
+  public static int encode(CharSequence chars, ByteBuffer dest, int index, int end) {
+    var length = chars.length();
+
+    for (var i = 0; i < length; ++i) {
+      var c = chars.charAt(i);
+
+      // Surrogate pairs are the longest encoding, at four bytes.
+      if (index + 4 > end) {
+        checkFits(chars, i, length, index, end);
+      }
+
+      if (c < 0x80) {
+        dest.put(index++, (byte) c);
+      } else if (c < 0x800) {
+        dest.put(index++, (byte) (0xC0 | c >> 6));
+        dest.put(index++, (byte) (0x80 | c & 0x3F));
+      } else if (isSurrogatePair(chars, i, length)) {
+        var codePoint = Character.toCodePoint(c, chars.charAt(++i));
+        dest.put(index++, (byte) (0xF0 | codePoint >> 18));
+        dest.put(index++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+        dest.put(index++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+        dest.put(index++, (byte) (0x80 | codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        dest.put(index++, REPLACEMENT);
+      } else {
+        dest.put(index++, (byte) (0xE0 | c >> 12));
+        dest.put(index++, (byte) (0x80 | c >> 6 & 0x3F));
+        dest.put(index++, (byte) (0x80 | c & 0x3F));
+      }
+    }
+
+    return index;
+  }
+
+  private static void checkFits(CharSequence chars, int i, int length, int index, int end) {
+    var c = chars.charAt(i);
+    int bytes;
+
+    if (c < 0x80 || Character.isSurrogate(c) && !isSurrogatePair(chars, i, length)) {
+      bytes = 1;
+    } else if (c < 0x800) {
+      bytes = 2;
+    } else if (Character.isSurrogate(c)) {
+      bytes = 4;
+    } else {
+      bytes = 3;
+    }
+
+    if (index + bytes > end) {
+      throw new IndexOutOfBoundsException(
+          "Encoded characters do not fit before index " + end
+      );
+    }
+  }
+
+  private static boolean isSurrogatePair(CharSequence chars, int index, int length) {
+    return Character.isHighSurrogate(chars.charAt(index))
+        && index + 1 < length
+        && Character.isLowSurrogate(chars.charAt(index + 1));
+  }
+}
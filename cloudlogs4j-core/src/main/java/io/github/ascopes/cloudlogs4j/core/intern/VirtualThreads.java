@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Access to virtual threads, where the running JVM supports them.
+ *
+ * <p>The library is compiled for Java 17, so the Java 21 APIs are looked up once when this class
+ * is loaded, rather than being linked against directly. If they are missing, or the JVM refuses
+ * to create virtual threads, they are not supported.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class VirtualThreads {
+
+  private static final @Nullable Handles HANDLES = lookUpHandles();
+
+  private VirtualThreads() {
+    throw new UnsupportedOperationException("static-only class");
+  }
+
+  /**
+   * Create an executor that runs each task on a new virtual thread.
+   *
+   * @param namePrefix the prefix of the thread names.
+   * @return the executor, or {@code null} if virtual threads are not supported.
+   */
+  static @Nullable ExecutorService newExecutor(String namePrefix) {
+    return newExecutor(HANDLES, namePrefix);
+  }
+
+  /**
+   * Create an executor that runs each task on a new virtual thread, through the given handles.
+   *
+   * @param handles    the handles to the virtual thread APIs, or {@code null} if they are missing.
+   * @param namePrefix the prefix of the thread names.
+   * @return the executor, or {@code null} if virtual threads are not supported.
+   */
+  static @Nullable ExecutorService newExecutor(@Nullable Handles handles, String namePrefix) {
+    if (handles == null) {
+      return null;
+    }
+
+    try {
+      // Thread.ofVirtual().name(namePrefix, 0).factory()
+      var builder = handles.ofVirtual.invoke();
+      builder = handles.name.invoke(builder, namePrefix, 0L);
+      var factory = (ThreadFactory) handles.factory.invoke(builder);
+      return (ExecutorService) handles.newThreadPerTaskExecutor.invoke(factory);
+    } catch (Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      // Java 19 and 20 have these APIs as a preview feature, but refuse to create virtual threads
+      // unless previews are enabled.
+      return null;
+    }
+  }
+
+  private static @Nullable Handles lookUpHandles() {
+    try {
+      var lookup = MethodHandles.publicLookup();
+      var builderType = Class.forName("java.lang.Thread$Builder");
+      var virtualBuilderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+
+      return new Handles(
+          lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(virtualBuilderType)),
+          lookup.findVirtual(
+              builderType,
+              "name",
+              MethodType.methodType(builderType, String.class, long.class)
+          ),
+          lookup.findVirtual(builderType, "factory", MethodType.methodType(ThreadFactory.class)),
+          lookup.findStatic(
+              Executors.class,
+              "newThreadPerTaskExecutor",
+              MethodType.methodType(ExecutorService.class, ThreadFactory.class)
+          )
+      );
+    } catch (ReflectiveOperationException ex) {
+      // Older than Java 21.
+      return null;
+    }
+  }
+
+  record Handles(
+      MethodHandle ofVirtual,
+      MethodHandle name,
+      MethodHandle factory,
+      MethodHandle newThreadPerTaskExecutor
+  ) {
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import io.github.ascopes.cloudlogs4j.core.intern.Utf8;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link PayloadStorage} that keeps payloads in slabs of pooled direct byte buffers.
+ *
+ * <p>Producers reserve space in the current slab by advancing its position with a
+ * compare-and-set, then write their payload with absolute puts, so producers sharing a slab never
+ * contend on anything else. Each slab is reference counted: the storage holds one reference while
+ * the slab is current, and each payload within it holds another. Once the slab has been replaced
+ * and every payload within it released, it is returned to the pool.
+ *
+ * <p>Payloads larger than a slab are copied to the heap instead. Both slabs and these oversized
+ * payloads count towards the memory limit, and oversized payloads stop counting once they are
+ * released.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class DirectPayloadStorage extends PayloadStorage {
+
+  private static final VarHandle CURRENT;
+
+  static {
+    try {
+      CURRENT = MethodHandles.lookup()
+          .findVarHandle(DirectPayloadStorage.class, "current", Slab.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final int slabBytes;
+  private final long memoryLimit;
+  private final AtomicLong allocatedBytes;
+  private final Queue<Slab> freeSlabs;
+  private Slab[] slabs;
+  private int[] offsets;
+  private byte[][] oversizedPayloads;
+
+  // Only updated via the CURRENT var handle.
+  private volatile @Nullable Slab current;
+
+  DirectPayloadStorage(int slabBytes, long memoryLimit) {
+    if (slabBytes < 1) {
+      throw new IllegalArgumentException("Slab size must be positive (got " + slabBytes + ")");
+    }
+
+    if (memoryLimit < slabBytes) {
+      throw new IllegalArgumentException(
+          "Memory limit must be at least the slab size of " + slabBytes + " (got "
+              + memoryLimit + ")"
+      );
+    }
+
+    this.slabBytes = slabBytes;
+    this.memoryLimit = memoryLimit;
+    allocatedBytes = new AtomicLong(0);
+    freeSlabs = new ConcurrentLinkedQueue<>();
+    slabs = new Slab[0];
+    offsets = new int[0];
+    oversizedPayloads = new byte[0][];
+    current = null;
+  }
+
+  @Override
+  public long getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  /**
+   * Get the amount of memory that is allocated for slabs and oversized payloads, in bytes.
+   *
+   * @return the allocated memory.
+   */
+  long getAllocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  @Override
+  void allocateSlots(int capacity) {
+    slabs = new Slab[capacity];
+    offsets = new int[capacity];
+    oversizedPayloads = new byte[capacity][];
+  }
+
+  @Override
+  int write(int slot, byte[] contents) {
+    var length = contents.length;
+
+    if (length > slabBytes) {
+      if (!tryAllocate(length)) {
+        return NO_SPACE;
+      }
+      oversizedPayloads[slot] = contents.clone();
+      return length;
+    }
+
+    var slab = reserve(slot, length);
+    if (slab == null) {
+      return NO_SPACE;
+    }
+
+    slab.buffer.put(offsets[slot], contents, 0, length);
+    return length;
+  }
+
+  @Override
+  int write(int slot, ByteBuffer contents) {
+    var length = contents.remaining();
+
+    if (length > slabBytes) {
+      if (!tryAllocate(length)) {
+        return NO_SPACE;
+      }
+      var oversized = new byte[length];
+      contents.get(contents.position(), oversized, 0, length);
+      oversizedPayloads[slot] = oversized;
+      return length;
+    }
+
+    var slab = reserve(slot, length);
+    if (slab == null) {
+      return NO_SPACE;
+    }
+
+    slab.buffer.put(offsets[slot], contents, contents.position(), length);
+    return length;
+  }
+
+  @Override
+  int write(int slot, CharSequence contents, int encodedLength) {
+    if (encodedLength > slabBytes) {
+      if (!tryAllocate(encodedLength)) {
+        return NO_SPACE;
+      }
+      var oversized = new byte[encodedLength];
+      // Assign before encoding, so that the allocation is still freed if encoding fails.
+      oversizedPayloads[slot] = oversized;
+      return Utf8.encode(contents, oversized, 0);
+    }
+
+    var slab = reserve(slot, encodedLength);
+    if (slab == null) {
+      return NO_SPACE;
+    }
+
+    // The slab is shared with other producers, so the characters must not overrun the space we
+    // reserved if they were modified since their length was measured.
+    var offset = offsets[slot];
+    return Utf8.encode(contents, slab.buffer, offset, offset + encodedLength) - offset;
+  }
+
+  @Override
+  ByteBuffer read(int slot, int length) {
+    var oversized = oversizedPayloads[slot];
+    if (oversized != null) {
+      return ByteBuffer.wrap(oversized, 0, length);
+    }
+
+    var view = slabs[slot].consumerView;
+    var offset = offsets[slot];
+    return view.clear().position(offset).limit(offset + length);
+  }
+
+  @Override
+  void release(int slot) {
+    var slab = slabs[slot];
+    if (slab != null) {
+      slabs[slot] = null;
+      slab.release();
+    }
+
+    var oversized = oversizedPayloads[slot];
+    if (oversized != null) {
+      oversizedPayloads[slot] = null;
+      allocatedBytes.addAndGet(-oversized.length);
+    }
+  }
+
+  private @Nullable Slab reserve(int slot, int length) {
+    while (true) {
+      var slab = current;
+
+      if (slab != null) {
+        if (!slab.tryRetain()) {
+          // The slab was replaced and fully released after we read it, so look again.
+          continue;
+        }
+
+        var offset = slab.tryBump(length);
+        if (offset >= 0) {
+          slabs[slot] = slab;
+          offsets[slot] = offset;
+          return slab;
+        }
+
+        slab.release();
+      }
+
+      // The current slab is exhausted, so try to replace it.
+      var next = acquireSlab();
+
+      if (next == null) {
+        if (current != slab) {
+          // Another producer replaced the slab in the meantime.
+          continue;
+        }
+        return null;
+      }
+
+      if (CURRENT.compareAndSet(this, slab, next)) {
+        if (slab != null) {
+          // Drop the reference held on behalf of the storage while the slab was current.
+          slab.release();
+        }
+      } else {
+        // Another producer got there first. Dropping our reference puts the slab back in the
+        // pool once anyone else who raced to use it is done with it.
+        next.release();
+      }
+    }
+  }
+
+  private @Nullable Slab acquireSlab() {
+    var slab = freeSlabs.poll();
+
+    if (slab == null) {
+      if (!tryAllocate(slabBytes)) {
+        return null;
+      }
+
+      slab = new Slab(ByteBuffer.allocateDirect(slabBytes));
+    }
+
+    // Pooled slabs have no references, so nobody else can be using this one.
+    slab.references.set(1);
+    return slab;
+  }
+
+  private boolean tryAllocate(int bytes) {
+    long allocated;
+    do {
+      allocated = allocatedBytes.get();
+      if (allocated + bytes > memoryLimit) {
+        return false;
+      }
+    } while (!allocatedBytes.compareAndSet(allocated, allocated + bytes));
+    return true;
+  }
+
+  private final class Slab {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer consumerView;
+    private final AtomicInteger position;
+    private final AtomicInteger references;
+
+    private Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+      consumerView = buffer.duplicate();
+      position = new AtomicInteger(0);
+      references = new AtomicInteger(0);
+    }
+
+    private boolean tryRetain() {
+      int count;
+      do {
+        count = references.get();
+        if (count == 0) {
+          return false;
+        }
+      } while (!references.compareAndSet(count, count + 1));
+      return true;
+    }
+
+    private int tryBump(int length) {
+      int offset;
+      do {
+        offset = position.get();
+        if (offset + length > buffer.capacity()) {
+          return -1;
+        }
+      } while (!position.compareAndSet(offset, offset + length));
+      return offset;
+    }
+
+    private void release() {
+      if (references.decrementAndGet() == 0) {
+        position.set(0);
+        freeSlabs.add(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import io.github.ascopes.cloudlogs4j.core.intern.Utf8;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PayloadStorage} that keeps payloads on the heap.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+final class HeapPayloadStorage extends PayloadStorage {
+
+  /**
+   * The largest payload that a slot keeps storage for after it has been drained, in bytes.
+   */
+  static final int MAX_RETAINED_PAYLOAD_BYTES = 16 * 1024;
+
+  private static final int MIN_SLOT_BUFFER_BYTES = 64;
+
+  private byte[][] payloads;
+  private byte[][] slotBuffers;
+  private ByteBuffer[] slotBufferViews;
+
+  HeapPayloadStorage() {
+    payloads = new byte[0][];
+    slotBuffers = new byte[0][];
+    slotBufferViews = new ByteBuffer[0];
+  }
+
+  @Override
+  public long getMemoryLimit() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  void allocateSlots(int capacity) {
+    payloads = new byte[capacity][];
+    // Slot buffers are allocated lazily, as most queues never fill up.
+    slotBuffers = new byte[capacity][];
+    slotBufferViews = new ByteBuffer[capacity];
+  }
+
+  @Override
+  int write(int slot, byte[] contents) {
+    payloads[slot] = contents;
+    return contents.length;
+  }
+
+  @Override
+  int write(int slot, ByteBuffer contents) {
+    var length = contents.remaining();
+    contents.get(contents.position(), reserve(slot, length), 0, length);
+    return length;
+  }
+
+  @Override
+  int write(int slot, CharSequence contents, int encodedLength) {
+    return Utf8.encode(contents, reserve(slot, encodedLength), 0);
+  }
+
+  @Override
+  ByteBuffer read(int slot, int length) {
+    var contents = payloads[slot];
+    return contents == null
+        ? slotBufferViews[slot].clear().limit(length)
+        : ByteBuffer.wrap(contents, 0, length);
+  }
+
+  @Override
+  void release(int slot) {
+    payloads[slot] = null;
+  }
+
+  private byte[] reserve(int slot, int length) {
+    if (length > MAX_RETAINED_PAYLOAD_BYTES) {
+      var oneOff = new byte[length];
+      payloads[slot] = oneOff;
+      return oneOff;
+    }
+
+    var buffer = slotBuffers[slot];
+
+    if (buffer == null || buffer.length < length) {
+      var size = Math.max(MIN_SLOT_BUFFER_BYTES, Integer.highestOneBit(length - 1) << 1);
+      buffer = new byte[Math.min(size, MAX_RETAINED_PAYLOAD_BYTES)];
+      slotBuffers[slot] = buffer;
+      slotBufferViews[slot] = ByteBuffer.wrap(buffer);
+    }
+
+    return buffer;
+  }
+}
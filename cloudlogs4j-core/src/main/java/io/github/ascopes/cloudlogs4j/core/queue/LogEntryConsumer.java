@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import java.nio.ByteBuffer;
+
+/**
+ * Callback that receives log entries as they are drained from a queue.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+@FunctionalInterface
+public interface LogEntryConsumer {
+
+  /**
+   * Accept a log entry.
+   *
+   * <p>The contents buffer is only valid for the duration of this call. Implementations must
+   * copy anything they wish to retain before returning.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry, between the buffer position and
+   *                  limit.
+   * @throws CloudLogs4jException if the entry cannot be processed.
+   */
+  void accept(long timestamp, ByteBuffer contents) throws CloudLogs4jException;
+}
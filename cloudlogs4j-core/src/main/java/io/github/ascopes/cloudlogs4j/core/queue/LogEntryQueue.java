@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import io.github.ascopes.cloudlogs4j.core.intern.Utf8;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer of log entries.
+ *
+ * <p>Timestamps are held in a {@code long[]}, and slots are reused once the consumer has released
+ * them. Payloads are held by a {@link PayloadStorage} strategy, which keeps them on the heap by
+ * default. Offering an entry never takes a lock.
+ *
+ * <p>Each slot carries a sequence number that is used to hand it between producers and the
+ * consumer. A producer claims a position with a single compare-and-set on the tail counter,
+ * writes the slot, and then publishes it by advancing the slot sequence. The consumer never
+ * touches the tail counter, so it never contends with producers over it. Instead, it claims each
+ * published entry with a compare-and-set on the head counter, which lets producers evict the
+ * oldest entry (see {@link #evictOldest()}) without ever handing the same entry out twice.
+ *
+ * <p>Only one thread may drain the queue at any one time. Any number of threads may offer
+ * entries or evict entries concurrently.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class LogEntryQueue {
+
+  /**
+   * The largest capacity that a queue can be created with.
+   */
+  public static final int MAX_CAPACITY = 1 << 30;
+
+  private static final int SKIPPED = -1;
+
+  private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final VarHandle HEAD;
+  private static final VarHandle TAIL;
+
+  static {
+    try {
+      var lookup = MethodHandles.lookup();
+      HEAD = lookup.findVarHandle(LogEntryQueue.class, "head", long.class);
+      TAIL = lookup.findVarHandle(LogEntryQueue.class, "tail", long.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final long[] sequences;
+  private final long[] timestamps;
+  private final int[] lengths;
+  private final PayloadStorage payloadStorage;
+
+  // Only updated via the TAIL var handle.
+  private volatile long tail;
+
+  // Only updated via the HEAD var handle. The consumer advances it for each entry it drains, and
+  // producers may advance it to evict the oldest entry.
+  private volatile long head;
+
+  /**
+   * Initialise this queue with payloads stored on the heap.
+   *
+   * @param capacity the minimum capacity of the queue. This is rounded up to the next power of
+   *                 two.
+   * @throws IllegalArgumentException if the capacity is less than 1 or greater than
+   *                                  {@link #MAX_CAPACITY}.
+   */
+  public LogEntryQueue(int capacity) {
+    this(capacity, PayloadStorage.heap());
+  }
+
+  /**
+   * Initialise this queue.
+   *
+   * @param capacity       the minimum capacity of the queue. This is rounded up to the next power
+   *                       of two.
+   * @param payloadStorage the storage to hold payloads in. This must not be used by any other
+   *                       queue.
+   * @throws IllegalArgumentException if the capacity is less than 1 or greater than
+   *                                  {@link #MAX_CAPACITY}.
+   * @throws IllegalStateException    if the payload storage is already used by another queue.
+   */
+  public LogEntryQueue(int capacity, PayloadStorage payloadStorage) {
+    if (capacity < 1 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException(
+          "Queue capacity must be between 1 and " + MAX_CAPACITY + " (got " + capacity + ")"
+      );
+    }
+
+    this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    mask = this.capacity - 1;
+    sequences = new long[this.capacity];
+    timestamps = new long[this.capacity];
+    lengths = new int[this.capacity];
+    this.payloadStorage = requireNonNull(payloadStorage, "payloadStorage");
+    payloadStorage.attach(this.capacity);
+
+    for (var i = 0; i < this.capacity; ++i) {
+      sequences[i] = i;
+    }
+
+    tail = 0L;
+    head = 0L;
+  }
+
+  /**
+   * Get the capacity of the queue.
+   *
+   * @return the capacity.
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the storage that payloads are held in.
+   *
+   * @return the payload storage.
+   */
+  public PayloadStorage payloadStorage() {
+    return payloadStorage;
+  }
+
+  /**
+   * Get an estimate of the number of entries in the queue.
+   *
+   * <p>This is only a snapshot, and may already be out of date when it is returned.
+   *
+   * @return the estimated size.
+   */
+  public int size() {
+    // Read head first so that a concurrent drain can only make the result larger than reality,
+    // never negative.
+    var currentHead = head;
+    var currentTail = (long) TAIL.getVolatile(this);
+    return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+  }
+
+  /**
+   * Offer a log entry to the queue.
+   *
+   * <p>Depending on the payload storage, the contents array may be stored by reference, so
+   * callers must not modify it after it has been offered.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry.
+   * @return the outcome.
+   */
+  public OfferResult offer(long timestamp, byte[] contents) {
+    var position = claim();
+    if (position < 0) {
+      return OfferResult.QUEUE_FULL;
+    }
+
+    var index = (int) position & mask;
+    int length;
+
+    try {
+      length = payloadStorage.write(index, contents);
+    } catch (RuntimeException ex) {
+      publish(position, index, timestamp, SKIPPED);
+      throw ex;
+    }
+
+    return publish(position, index, timestamp, length);
+  }
+
+  /**
+   * Offer a log entry to the queue.
+   *
+   * <p>The remaining contents of the buffer are copied into the queue. The position of the buffer
+   * is not changed, so callers may reuse it as soon as this method returns.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry, between the buffer position and
+   *                  limit.
+   * @return the outcome.
+   */
+  public OfferResult offer(long timestamp, ByteBuffer contents) {
+    var position = claim();
+    if (position < 0) {
+      return OfferResult.QUEUE_FULL;
+    }
+
+    var index = (int) position & mask;
+    int length;
+
+    try {
+      length = payloadStorage.write(index, contents);
+    } catch (RuntimeException ex) {
+      publish(position, index, timestamp, SKIPPED);
+      throw ex;
+    }
+
+    return publish(position, index, timestamp, length);
+  }
+
+  /**
+   * Offer a log entry to the queue.
+   *
+   * <p>The contents are encoded as UTF-8 directly into the queue, so callers may reuse the
+   * character sequence as soon as this method returns.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the contents of the log entry.
+   * @return the outcome.
+   */
+  public OfferResult offer(long timestamp, CharSequence contents) {
+    var encodedLength = Utf8.encodedLength(contents);
+    var position = claim();
+    if (position < 0) {
+      return OfferResult.QUEUE_FULL;
+    }
+
+    var index = (int) position & mask;
+    int length;
+
+    try {
+      length = payloadStorage.write(index, contents, encodedLength);
+    } catch (RuntimeException ex) {
+      publish(position, index, timestamp, SKIPPED);
+      throw ex;
+    }
+
+    return publish(position, index, timestamp, length);
+  }
+
+  /**
+   * Drain up to the given number of log entries from the queue, in the order they were
+   * published.
+   *
+   * <p>This must only be called from one thread at a time.
+   *
+   * <p>If the consumer raises an exception, the entry that was being processed is still
+   * removed from the queue, and the exception is propagated to the caller. Entries that a
+   * producer failed to write, for example because the character sequence was modified while it
+   * was being encoded, are removed without being passed to the consumer.
+   *
+   * @param consumer   the consumer to pass each entry to.
+   * @param maxEntries the maximum number of entries to drain.
+   * @return the number of entries that were drained.
+   * @throws CloudLogs4jException if the consumer raises an exception.
+   */
+  public int drain(LogEntryConsumer consumer, int maxEntries) throws CloudLogs4jException {
+    var count = 0;
+
+    while (count < maxEntries) {
+      var position = (long) HEAD.getVolatile(this);
+      var index = (int) position & mask;
+
+      if ((long) SEQUENCES.getAcquire(sequences, index) != position + 1) {
+        // Nothing has been published here yet.
+        break;
+      }
+
+      if (!HEAD.compareAndSet(this, position, position + 1)) {
+        // A producer evicted this entry first.
+        continue;
+      }
+
+      var length = lengths[index];
+      ++count;
+
+      try {
+        // Skipped slots are those that a producer failed to write, so have nothing to pass on.
+        if (length != SKIPPED) {
+          consumer.accept(timestamps[index], payloadStorage.read(index, length));
+        }
+      } finally {
+        release(position, index);
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Discard the oldest entry in the queue to make room for a newer one.
+   *
+   * <p>This may be called from any thread, concurrently with producers and the consumer.
+   *
+   * @return {@code true} if an entry was discarded, or {@code false} if there was nothing that
+   *     could be discarded, either because the queue is empty or because the oldest entry is
+   *     still being written or consumed.
+   */
+  public boolean evictOldest() {
+    var position = (long) HEAD.getVolatile(this);
+    var index = (int) position & mask;
+
+    if ((long) SEQUENCES.getAcquire(sequences, index) != position + 1
+        || !HEAD.compareAndSet(this, position, position + 1)) {
+      return false;
+    }
+
+    release(position, index);
+    return true;
+  }
+
+  /**
+   * Determine if the queue has nothing available to drain.
+   *
+   * <p>This is only accurate when called from the consumer thread.
+   *
+   * @return {@code true} if the queue is empty, or {@code false} otherwise.
+   */
+  public boolean isEmpty() {
+    var position = head;
+    var index = (int) position & mask;
+    return (long) SEQUENCES.getAcquire(sequences, index) != position + 1;
+  }
+
+  private long claim() {
+    do {
+      var position = (long) TAIL.getVolatile(this);
+      var sequence = (long) SEQUENCES.getAcquire(sequences, (int) position & mask);
+
+      if (sequence < position) {
+        // The slot has not yet been released by the consumer from the previous lap.
+        return -1L;
+      }
+
+      // If the sequence is ahead of us, another producer has already claimed this position, so
+      // re-read the tail.
+      if (sequence == position && TAIL.compareAndSet(this, position, position + 1)) {
+        return position;
+      }
+    } while (true);
+  }
+
+  private void release(long position, int index) {
+    payloadStorage.release(index);
+    // Hand the slot back to producers for the next lap around the ring.
+    SEQUENCES.setRelease(sequences, index, position + capacity);
+  }
+
+  private OfferResult publish(long position, int index, long timestamp, int length) {
+    // A claimed slot must always be published, even if there was no space for the payload, or
+    // the consumer would stall waiting for it.
+    var stored = length != PayloadStorage.NO_SPACE;
+    timestamps[index] = timestamp;
+    lengths[index] = stored ? length : SKIPPED;
+    SEQUENCES.setRelease(sequences, index, position + 1);
+    return stored ? OfferResult.ACCEPTED : OfferResult.STORAGE_FULL;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import java.nio.ByteBuffer;
+
+/**
+ * Secondary store that log entries overflow into when the in-memory queue is full.
+ *
+ * <p>Entries are spilled by application threads, and replayed by the forwarder thread once the
+ * in-memory queue has been drained. Replayed entries are not discarded until the forwarder has
+ * flushed them, waited for them to be delivered, and calls {@link #acknowledge()}. If the flush or
+ * the delivery fails, the forwarder calls {@link #rewind()} instead so that they are replayed
+ * again.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public interface LogEntrySpillover {
+
+  /**
+   * Store a log entry that did not fit in the queue.
+   *
+   * <p>This may be called from any number of threads concurrently, and must copy the contents
+   * before returning.
+   *
+   * @param timestamp the UNIX timestamp of the log entry, in milliseconds.
+   * @param contents  the byte-encoded contents of the log entry, between the buffer position and
+   *                  limit.
+   * @return {@code true} if the entry was stored, or {@code false} if there was no room for it.
+   */
+  boolean spill(long timestamp, ByteBuffer contents);
+
+  /**
+   * Pass up to the given number of spilled log entries to a consumer, in the order they were
+   * spilled.
+   *
+   * <p>This is only called from one thread at a time.
+   *
+   * @param consumer   the consumer to pass each entry to.
+   * @param maxEntries the maximum number of entries to replay.
+   * @return the number of entries that were replayed.
+   * @throws CloudLogs4jException if the entries cannot be read, or the consumer raises an
+   *                              exception.
+   */
+  int replay(LogEntryConsumer consumer, int maxEntries) throws CloudLogs4jException;
+
+  /**
+   * Discard every entry that has been replayed so far, now that it has been flushed.
+   *
+   * <p>This is only called from the thread that calls {@link #replay}.
+   *
+   * @throws CloudLogs4jException if the entries cannot be discarded.
+   */
+  default void acknowledge() throws CloudLogs4jException {
+    // Nothing to do by default.
+  }
+
+  /**
+   * Replay every entry that has been replayed since the last {@link #acknowledge()} again.
+   *
+   * <p>This is only called from the thread that calls {@link #replay}.
+   */
+  default void rewind() {
+    // Nothing to do by default.
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+/**
+ * Outcome of offering a log entry to a {@link LogEntryQueue}.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public enum OfferResult {
+
+  /**
+   * The entry was queued.
+   */
+  ACCEPTED,
+
+  /**
+   * The entry was rejected because every slot in the queue is in use.
+   */
+  QUEUE_FULL,
+
+  /**
+   * The entry was rejected because the payload storage has reached its memory limit.
+   */
+  STORAGE_FULL,
+}
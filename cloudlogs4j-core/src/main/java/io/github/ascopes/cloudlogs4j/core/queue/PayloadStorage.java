@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strategy for storing the payloads of log entries while they sit in a {@link LogEntryQueue}.
+ *
+ * <p>Two strategies are available:
+ *
+ * <ul>
+ *   <li>{@link #heap()} keeps payloads on the heap, in arrays owned by each queue slot. This is
+ *       the default.
+ *   <li>{@link #direct(int, long)} copies payloads into slabs of pooled direct byte buffers
+ *       outside the heap, up to a fixed memory limit. This keeps large backlogs out of the old
+ *       generation when the sink slows down.
+ * </ul>
+ *
+ * <p>A storage instance holds per-slot state, so it can only be used by a single queue.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public abstract class PayloadStorage {
+
+  /**
+   * Returned by the write methods when there is no space for the payload.
+   */
+  static final int NO_SPACE = -1;
+
+  private boolean attached;
+
+  PayloadStorage() {
+    attached = false;
+  }
+
+  /**
+   * Get the maximum amount of memory this storage will use for payloads, in bytes.
+   *
+   * @return the memory limit, or {@link Long#MAX_VALUE} if the storage is unbounded.
+   */
+  public abstract long getMemoryLimit();
+
+  /**
+   * Prepare per-slot state for a queue.
+   *
+   * @param capacity the capacity of the queue.
+   * @throws IllegalStateException if the storage is already used by another queue.
+   */
+  final synchronized void attach(int capacity) {
+    if (attached) {
+      throw new IllegalStateException("Payload storage is already used by another queue");
+    }
+    attached = true;
+    allocateSlots(capacity);
+  }
+
+  /**
+   * Allocate per-slot state.
+   *
+   * @param capacity the number of slots.
+   */
+  abstract void allocateSlots(int capacity);
+
+  /**
+   * Store a payload for a slot. This is only called by the producer that owns the slot.
+   *
+   * @param slot     the slot.
+   * @param contents the payload. Implementations may store this by reference.
+   * @return the length of the stored payload, or {@link #NO_SPACE}.
+   */
+  abstract int write(int slot, byte[] contents);
+
+  /**
+   * Copy a payload for a slot. This is only called by the producer that owns the slot.
+   *
+   * @param slot     the slot.
+   * @param contents the payload, between the buffer position and limit. The position must not be
+   *                 changed.
+   * @return the length of the stored payload, or {@link #NO_SPACE}.
+   */
+  abstract int write(int slot, ByteBuffer contents);
+
+  /**
+   * Encode a payload for a slot as UTF-8. This is only called by the producer that owns the slot.
+   *
+   * @param slot          the slot.
+   * @param contents      the payload.
+   * @param encodedLength the number of bytes the payload will take once encoded.
+   * @return the length of the stored payload, or {@link #NO_SPACE}.
+   */
+  abstract int write(int slot, CharSequence contents, int encodedLength);
+
+  /**
+   * Get a view of the payload for a slot. This is only called by the consumer.
+   *
+   * <p>The view may be reused for other slots, so is only valid until the next call.
+   *
+   * @param slot   the slot.
+   * @param length the length of the payload.
+   * @return the view of the payload, between the buffer position and limit.
+   */
+  abstract ByteBuffer read(int slot, int length);
+
+  /**
+   * Release the payload for a slot once it has been removed from the queue. This is called by the
+   * consumer once it is finished with the payload, and by producers that evict the oldest entry
+   * to make room. Each slot is only released by one thread, once per write, and slots that were
+   * never successfully written to are released too.
+   *
+   * @param slot the slot.
+   */
+  abstract void release(int slot);
+
+  /**
+   * Create a storage strategy that keeps payloads on the heap.
+   *
+   * <p>Byte arrays are stored by reference. Byte buffers and character sequences are copied or
+   * encoded into an array owned by the queue slot, which is reused the next time the slot is
+   * used, so offering them does not allocate once the queue has warmed up. Payloads larger than
+   * {@value HeapPayloadStorage#MAX_RETAINED_PAYLOAD_BYTES} bytes are copied into a one-off array
+   * instead, so that a few large entries cannot pin large amounts of memory to the queue.
+   *
+   * @return the storage.
+   */
+  public static PayloadStorage heap() {
+    return new HeapPayloadStorage();
+  }
+
+  /**
+   * Create a storage strategy that keeps payloads in pooled direct byte buffers.
+   *
+   * <p>Memory is allocated in fixed-size slabs, and payloads are packed into the current slab
+   * with a lock-free bump pointer. Each slab is returned to a pool once every payload within it
+   * has been drained, and is reused rather than being freed. No more than the memory limit is
+   * ever allocated. Once it has been reached, offers fail with {@link OfferResult#STORAGE_FULL}
+   * until memory is reclaimed.
+   *
+   * <p>All payloads are copied, including byte arrays. Payloads too large to fit in a single
+   * slab are copied onto the heap instead, and count towards the memory limit until they are
+   * drained.
+   *
+   * @param slabBytes   the size of each slab, in bytes.
+   * @param memoryLimit the maximum amount of memory to allocate for slabs and oversized
+   *                    payloads, in bytes. Must be at least the slab size.
+   * @return the storage.
+   */
+  public static PayloadStorage direct(int slabBytes, long memoryLimit) {
+    return new DirectPayloadStorage(slabBytes, memoryLimit);
+  }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import static java.util.Objects.requireNonNull;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderSpilloverException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32C;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * {@link LogEntrySpillover} that appends entries to memory-mapped segment files on disk.
+ *
+ * <p>Each segment is a file of a fixed size that is mapped into memory in full when it is
+ * created. Entries are appended to the newest segment as length-prefixed records holding the
+ * payload length, the timestamp, the payload, and a CRC32C checksum of the timestamp and
+ * payload. Once a segment has no room left for a record, a new one is started. Segments are
+ * replayed oldest first, and deleted once every record within them has been acknowledged. No
+ * more entries are accepted while the total size of the segments is at the disk limit.
+ *
+ * <p>The position up to which records have been acknowledged is kept in a small memory-mapped
+ * file alongside the segments. Segments that are left over in the directory from a previous run
+ * are replayed from that position before any new entries, so records that were replayed but not
+ * yet acknowledged when the previous run ended may be replayed a second time, but acknowledged
+ * ones are not. Neither the records nor the position are forced to the storage device, so they
+ * survive the process exiting, but not necessarily the machine crashing, in which case delivery
+ * is only at-least-once.
+ *
+ * <p>Deleted segments are unmapped by the garbage collector once nothing refers to them any more.
+ *
+ * <p>The directory must not be shared with any other spillover.
+ *
+ * @author Ashley Scopes
+ * @since 0.0.1
+ */
+public final class SegmentFileSpillover implements LogEntrySpillover {
+
+  // Payload length, timestamp, payload, checksum.
+  private static final int RECORD_OVERHEAD_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".spill";
+  private static final String ACKNOWLEDGED_FILE_NAME = "acknowledged.pos";
+  // Segment ID, position, checksum.
+  private static final int ACKNOWLEDGED_FILE_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final long maxDiskBytes;
+  private final int maxSegments;
+  private final CRC32C writeChecksum;
+  private final CRC32C readChecksum;
+  private final CRC32C acknowledgedChecksum;
+
+  // Guarded by this. Segments form a linked list from oldest to newest.
+  private @Nullable Segment head;
+  private @Nullable Segment tail;
+  private int segmentCount;
+  private long nextSegmentId;
+
+  // Only accessed by the replaying thread. The acknowledged position is within the head segment.
+  private @Nullable Segment readSegment;
+  private int readPosition;
+  private int acknowledgedPosition;
+  private @Nullable MappedByteBuffer acknowledgedFile;
+
+  private SegmentFileSpillover(Path directory, int segmentBytes, long maxDiskBytes) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxDiskBytes = maxDiskBytes;
+    maxSegments = (int) Math.min(Integer.MAX_VALUE, maxDiskBytes / segmentBytes);
+    writeChecksum = new CRC32C();
+    readChecksum = new CRC32C();
+    acknowledgedChecksum = new CRC32C();
+    head = null;
+    tail = null;
+    segmentCount = 0;
+    nextSegmentId = 0;
+    readSegment = null;
+    readPosition = 0;
+    acknowledgedPosition = 0;
+    acknowledgedFile = null;
+  }
+
+  /**
+   * Get the directory that segments are stored in.
+   *
+   * @return the directory.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Get the size of each segment file, in bytes.
+   *
+   * @return the segment size.
+   */
+  public int getSegmentBytes() {
+    return segmentBytes;
+  }
+
+  /**
+   * Get the maximum total size of the segment files, in bytes.
+   *
+   * @return the disk limit.
+   */
+  public long getMaxDiskBytes() {
+    return maxDiskBytes;
+  }
+
+  /**
+   * Get the total size of the segment files that currently exist, in bytes.
+   *
+   * @return the disk usage.
+   */
+  public synchronized long getDiskUsage() {
+    return (long) segmentCount * segmentBytes;
+  }
+
+  @Override
+  public synchronized boolean spill(long timestamp, ByteBuffer contents) {
+    var length = contents.remaining();
+    var recordBytes = RECORD_OVERHEAD_BYTES + length;
+
+    if (recordBytes > segmentBytes) {
+      return false;
+    }
+
+    var segment = tail;
+
+    if (segment == null || segment.writePosition + recordBytes > segmentBytes) {
+      if (segmentCount >= maxSegments) {
+        return false;
+      }
+
+      try {
+        segment = createSegment();
+      } catch (IOException ex) {
+        return false;
+      }
+    }
+
+    var buffer = segment.buffer;
+    var position = segment.writePosition;
+    buffer.putInt(position, length);
+    buffer.putLong(position + Integer.BYTES, timestamp);
+    buffer.put(position + Integer.BYTES + Long.BYTES, contents, contents.position(), length);
+
+    writeChecksum.reset();
+    writeChecksum.update(buffer.slice(position + Integer.BYTES, Long.BYTES + length));
+    buffer.putInt(position + Integer.BYTES + Long.BYTES + length, (int) writeChecksum.getValue());
+
+    segment.writePosition = position + recordBytes;
+    return true;
+  }
+
+  @Override
+  public int replay(LogEntryConsumer consumer, int maxEntries) throws CloudLogs4jException {
+    var count = 0;
+    var segment = readSegment;
+    var limit = 0;
+
+    while (count < maxEntries) {
+      if (segment == null || readPosition >= limit) {
+        // Only synchronize once we run out of records that we already know were written.
+        synchronized (this) {
+          if (segment == null) {
+            segment = head;
+            readPosition = acknowledgedPosition;
+          } else if (readPosition >= segment.writePosition && segment.next != null) {
+            segment = segment.next;
+            readPosition = 0;
+          }
+
+          if (segment == null) {
+            break;
+          }
+
+          readSegment = segment;
+          limit = segment.writePosition;
+        }
+
+        if (readPosition >= limit) {
+          break;
+        }
+      }
+
+      var recordBytes = readRecord(segment, readPosition, consumer);
+
+      if (recordBytes == 0) {
+        // A corrupt record. Nothing after it in this segment can be trusted.
+        readPosition = limit;
+        continue;
+      }
+
+      readPosition += recordBytes;
+      ++count;
+    }
+
+    return count;
+  }
+
+  @Override
+  public void acknowledge() throws ForwarderSpilloverException {
+    var segment = readSegment;
+
+    if (segment == null) {
+      return;
+    }
+
+    acknowledgedPosition = readPosition;
+    writeAcknowledgedPosition(segment.id, acknowledgedPosition);
+
+    while (true) {
+      Segment deleted;
+
+      synchronized (this) {
+        deleted = head;
+
+        if (deleted == null || deleted == segment) {
+          return;
+        }
+
+        head = deleted.next;
+        --segmentCount;
+      }
+
+      try {
+        Files.deleteIfExists(deleted.path);
+      } catch (IOException ex) {
+        throw new ForwarderSpilloverException("Failed to delete " + deleted.path, ex);
+      }
+    }
+  }
+
+  @Override
+  public void rewind() {
+    synchronized (this) {
+      readSegment = head;
+    }
+    readPosition = acknowledgedPosition;
+  }
+
+  private int readRecord(
+      Segment segment,
+      int position,
+      LogEntryConsumer consumer
+  ) throws CloudLogs4jException {
+    var buffer = segment.buffer;
+    var length = buffer.getInt(position);
+
+    if (length < 0 || length > segmentBytes - RECORD_OVERHEAD_BYTES - position) {
+      return 0;
+    }
+
+    var timestamp = buffer.getLong(position + Integer.BYTES);
+    var payloadStart = position + Integer.BYTES + Long.BYTES;
+    var checksumView = segment.readView.clear().limit(payloadStart + length);
+    readChecksum.reset();
+    readChecksum.update(checksumView.position(position + Integer.BYTES));
+
+    if ((int) readChecksum.getValue() != buffer.getInt(payloadStart + length)) {
+      return 0;
+    }
+
+    consumer.accept(timestamp, segment.readView.position(payloadStart));
+    return RECORD_OVERHEAD_BYTES + length;
+  }
+
+  private void writeAcknowledgedPosition(long segmentId, int position) {
+    var file = requireNonNull(acknowledgedFile);
+    file.putLong(0, segmentId);
+    file.putInt(Long.BYTES, position);
+    acknowledgedChecksum.reset();
+    acknowledgedChecksum.update(file.slice(0, Long.BYTES + Integer.BYTES));
+    file.putInt(Long.BYTES + Integer.BYTES, (int) acknowledgedChecksum.getValue());
+  }
+
+  private void readAcknowledgedPosition() {
+    var file = requireNonNull(acknowledgedFile);
+    var segmentId = file.getLong(0);
+    var position = file.getInt(Long.BYTES);
+    acknowledgedChecksum.reset();
+    acknowledgedChecksum.update(file.slice(0, Long.BYTES + Integer.BYTES));
+
+    // Anything that does not match the oldest segment is stale, so we replay all of it instead.
+    var segment = head;
+    if ((int) acknowledgedChecksum.getValue() == file.getInt(Long.BYTES + Integer.BYTES)
+        && segment != null
+        && segment.id == segmentId
+        && position >= 0
+        && position <= segment.writePosition) {
+      acknowledgedPosition = position;
+    }
+  }
+
+  private Segment createSegment() throws IOException {
+    var id = nextSegmentId;
+    var path = directory.resolve(segmentFileName(id));
+    var segment = mapSegment(id, path, StandardOpenOption.CREATE_NEW);
+    ++nextSegmentId;
+    link(segment);
+    return segment;
+  }
+
+  private void recover() throws IOException {
+    var ids = new ArrayList<Long>();
+
+    try (var paths = Files.list(directory)) {
+      for (var path : (Iterable<Path>) paths::iterator) {
+        var id = parseSegmentId(path.getFileName().toString());
+        if (id >= 0) {
+          ids.add(id);
+        }
+      }
+    }
+
+    ids.sort(null);
+
+    for (var id : ids) {
+      var path = directory.resolve(segmentFileName(id));
+
+      if (Files.size(path) != segmentBytes) {
+        // Written with a different segment size, or truncated. We cannot trust it.
+        Files.delete(path);
+        continue;
+      }
+
+      var segment = mapSegment(id, path, StandardOpenOption.READ);
+      segment.writePosition = scanRecords(segment);
+      link(segment);
+      nextSegmentId = id + 1;
+    }
+
+    try (var channel = FileChannel.open(
+        directory.resolve(ACKNOWLEDGED_FILE_NAME),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+    )) {
+      // A new file is filled with zeros, which fails the checksum.
+      acknowledgedFile = channel.map(MapMode.READ_WRITE, 0, ACKNOWLEDGED_FILE_BYTES);
+    }
+
+    readAcknowledgedPosition();
+  }
+
+  private int scanRecords(Segment segment) {
+    var end = 0;
+
+    try {
+      while (end + RECORD_OVERHEAD_BYTES <= segmentBytes) {
+        var recordBytes = readRecord(segment, end, (timestamp, contents) -> { });
+        if (recordBytes == 0) {
+          break;
+        }
+        end += recordBytes;
+      }
+    } catch (CloudLogs4jException ex) {
+      // Our consumer never raises exceptions.
+      throw new IllegalStateException(ex);
+    }
+
+    return end;
+  }
+
+  private void link(Segment segment) {
+    if (tail == null) {
+      head = segment;
+    } else {
+      tail.next = segment;
+    }
+    tail = segment;
+    ++segmentCount;
+  }
+
+  private Segment mapSegment(
+      long id,
+      Path path,
+      StandardOpenOption openOption
+  ) throws IOException {
+    try (var channel = FileChannel.open(
+        path,
+        openOption,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+    )) {
+      // The mapping stays valid once the channel has been closed.
+      return new Segment(id, path, channel.map(MapMode.READ_WRITE, 0, segmentBytes));
+    }
+  }
+
+  /**
+   * Open a spillover in the given directory, recovering any segments that were left over from a
+   * previous run.
+   *
+   * @param directory    the directory to store segments in. This is created if it does not
+   *                     exist.
+   * @param segmentBytes the size of each segment file, in bytes. This also limits the size of
+   *                     individual entries. Must be positive.
+   * @param maxDiskBytes the maximum total size of the segment files, in bytes. Must be at least
+   *                     the segment size.
+   * @return the spillover.
+   * @throws ForwarderSpilloverException if the directory or the existing segments cannot be
+   *                                     read.
+   */
+  public static SegmentFileSpillover open(
+      Path directory,
+      int segmentBytes,
+      long maxDiskBytes
+  ) throws ForwarderSpilloverException {
+    requireNonNull(directory, "directory");
+
+    if (segmentBytes <= RECORD_OVERHEAD_BYTES) {
+      throw new IllegalArgumentException(
+          "Segment size must be greater than " + RECORD_OVERHEAD_BYTES + " (got "
+              + segmentBytes + ")"
+      );
+    }
+
+    if (maxDiskBytes < segmentBytes) {
+      throw new IllegalArgumentException(
+          "Disk limit must be at least the segment size of " + segmentBytes + " (got "
+              + maxDiskBytes + ")"
+      );
+    }
+
+    var spillover = new SegmentFileSpillover(directory, segmentBytes, maxDiskBytes);
+
+    try {
+      Files.createDirectories(directory);
+      spillover.recover();
+    } catch (IOException ex) {
+      throw new ForwarderSpilloverException("Failed to open spillover in " + directory, ex);
+    }
+
+    return spillover;
+  }
+
+  private static String segmentFileName(long id) {
+    return SEGMENT_PREFIX + String.format("%020d", id) + SEGMENT_SUFFIX;
+  }
+
+  private static long parseSegmentId(String fileName) {
+    if (!fileName.startsWith(SEGMENT_PREFIX) || !fileName.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+
+    try {
+      return Long.parseLong(
+          fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())
+      );
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  private static final class Segment {
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final ByteBuffer readView;
+    private int writePosition;
+    private @Nullable Segment next;
+
+    private Segment(long id, Path path, MappedByteBuffer buffer) {
+      this.id = id;
+      this.path = path;
+      this.buffer = buffer;
+      readView = buffer.duplicate();
+      writePosition = 0;
+      next = null;
+    }
+  }
+}
@@ -17,6 +17,7 @@ module io.github.ascopes.cloudlogs4j.core {
   exports io.github.ascopes.cloudlogs4j.core;
   exports io.github.ascopes.cloudlogs4j.core.ex;
   exports io.github.ascopes.cloudlogs4j.core.intern;
+  exports io.github.ascopes.cloudlogs4j.core.queue;
 
   requires java.base;
   requires static org.jspecify;
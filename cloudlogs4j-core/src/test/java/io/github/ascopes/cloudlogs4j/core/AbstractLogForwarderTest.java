@@ -0,0 +1,607 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.ascopes.cloudlogs4j.core.ex.CloudLogs4jException;
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderQueueOverflowException;
+import io.github.ascopes.cloudlogs4j.core.ex.ForwarderTimeoutException;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntryConsumer;
+import io.github.ascopes.cloudlogs4j.core.queue.LogEntrySpillover;
+import io.github.ascopes.cloudlogs4j.core.queue.PayloadStorage;
+import io.github.ascopes.cloudlogs4j.core.queue.SegmentFileSpillover;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link AbstractLogForwarder} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("AbstractLogForwarder tests")
+class AbstractLogForwarderTest {
+
+  @DisplayName("The forwarder is not running until it is started")
+  @Test
+  void forwarderIsNotRunningUntilStarted() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(16);
+
+    // Then
+    assertThat(forwarder.isRunning()).isFalse();
+    forwarder.start();
+    assertThat(forwarder.isRunning()).isTrue();
+    forwarder.stop(null);
+    assertThat(forwarder.isRunning()).isFalse();
+  }
+
+  @DisplayName("Submitted entries are appended and flushed")
+  @Test
+  void submittedEntriesAreAppendedAndFlushed() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(16);
+    forwarder.start();
+
+    // When
+    forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+    forwarder.submitLogEntry(2, "bar".getBytes(UTF_8));
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar");
+  }
+
+  @DisplayName("Entries can be submitted as byte buffers and character sequences")
+  @Test
+  void entriesCanBeSubmittedAsByteBuffersAndCharacterSequences() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(16);
+    var buffer = ByteBuffer.wrap("foo".getBytes(UTF_8));
+    var builder = new StringBuilder("bar");
+    forwarder.start();
+
+    // When
+    forwarder.submitLogEntry(1, buffer);
+    forwarder.submitLogEntry(2, builder);
+    builder.setLength(0);
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar");
+    assertThat(buffer.remaining()).isEqualTo(3);
+  }
+
+  @DisplayName("Entries submitted before starting are forwarded once started")
+  @Test
+  void entriesSubmittedBeforeStartingAreForwardedOnceStarted() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(16);
+    forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+
+    // When
+    forwarder.start();
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.flushed).containsExactly("1:foo");
+  }
+
+  @DisplayName("Submitting to a full queue raises an exception")
+  @Test
+  void submittingToFullQueueRaisesException() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(2);
+    forwarder.submitLogEntry(1, new byte[0]);
+    forwarder.submitLogEntry(2, new byte[0]);
+
+    // Then
+    assertThatThrownBy(() -> forwarder.submitLogEntry(3, new byte[0]))
+        .isInstanceOf(ForwarderQueueOverflowException.class)
+        .extracting(ex -> ((ForwarderQueueOverflowException) ex).getQueueCapacity())
+        .isEqualTo(2);
+  }
+
+  @DisplayName("Submitting beyond the storage memory limit raises an exception")
+  @Test
+  void submittingBeyondStorageMemoryLimitRaisesException() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(16, PayloadStorage.direct(8, 8));
+    forwarder.submitLogEntry(1, new byte[8]);
+
+    // Then
+    assertThatThrownBy(() -> forwarder.submitLogEntry(2, new byte[8]))
+        .isInstanceOfSatisfying(ForwarderQueueOverflowException.class, ex -> {
+          assertThat(ex.getQueueCapacity()).isEqualTo(16);
+          assertThat(ex.getMemoryLimit()).isEqualTo(8);
+        });
+  }
+
+  @DisplayName("The drop-newest policy drops and counts entries that do not fit")
+  @Test
+  void dropNewestPolicyDropsAndCountsEntriesThatDoNotFit() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.dropNewest());
+
+    // When
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+    forwarder.start();
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isEqualTo(1);
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar");
+  }
+
+  @DisplayName("The drop-oldest policy evicts the oldest entry to make room")
+  @Test
+  void dropOldestPolicyEvictsTheOldestEntryToMakeRoom() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.dropOldest());
+
+    // When
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+    forwarder.start();
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isEqualTo(1);
+    assertThat(forwarder.flushed).containsExactly("2:bar", "3:baz");
+  }
+
+  @DisplayName("The blocking policy drops the entry once the timeout elapses")
+  @Test
+  void blockingPolicyDropsTheEntryOnceTheTimeoutElapses() throws Exception {
+    // Given
+    var timeout = Duration.ofMillis(50);
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.block(timeout));
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+
+    // When
+    var startedAt = System.nanoTime();
+    forwarder.submitLogEntry(3, "baz");
+    var blockedFor = Duration.ofNanos(System.nanoTime() - startedAt);
+
+    // Then
+    assertThat(blockedFor).isGreaterThanOrEqualTo(timeout);
+    assertThat(forwarder.getDroppedLogEntryCount()).isEqualTo(1);
+  }
+
+  @DisplayName("The blocking policy accepts the entry once there is room")
+  @Test
+  void blockingPolicyAcceptsTheEntryOnceThereIsRoom() throws Exception {
+    // Given
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.block(Duration.ofSeconds(10)));
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    var starter = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      forwarder.start();
+    });
+    starter.start();
+
+    // When
+    forwarder.submitLogEntry(3, "baz");
+    starter.join();
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isZero();
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar", "3:baz");
+  }
+
+  @DisplayName("The sampling policy sheds less severe entries first")
+  @Test
+  void samplingPolicyShedsLessSevereEntriesFirst() throws Exception {
+    // Given
+    var policy = OverflowPolicy.sampleBySeverity(LogSeverity.WARN, Integer.MAX_VALUE);
+    var forwarder = new RecordingForwarder(4, policy);
+
+    // When
+    forwarder.submitLogEntry(1, LogSeverity.INFO, "a");
+    forwarder.submitLogEntry(2, LogSeverity.INFO, "b");
+    forwarder.submitLogEntry(3, LogSeverity.INFO, "c");
+    forwarder.submitLogEntry(4, LogSeverity.WARN, "d");
+    forwarder.submitLogEntry(5, LogSeverity.WARN, "e");
+    forwarder.submitLogEntry(6, LogSeverity.ERROR, "f");
+    forwarder.start();
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isEqualTo(2);
+    assertThat(forwarder.flushed).containsExactly("2:b", "4:d", "5:e", "6:f");
+  }
+
+  @DisplayName("The spill policy replays spilled entries once the queue has been drained")
+  @Test
+  void spillPolicyReplaysSpilledEntriesOnceTheQueueHasBeenDrained() throws Exception {
+    // Given
+    var spillover = new InMemorySpillover();
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.spill(spillover));
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+
+    // When
+    forwarder.start();
+    try {
+      forwarder.awaitFlushedEntries(3);
+    } finally {
+      forwarder.stop(Duration.ofSeconds(10));
+    }
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isZero();
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar", "3:baz");
+  }
+
+  @DisplayName("Spilled segment files are deleted once their entries have been flushed")
+  @Test
+  void spilledSegmentFilesAreDeletedOnceTheirEntriesHaveBeenFlushed(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, 40, 40);
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.spill(spillover));
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+    forwarder.submitLogEntry(4, "qux");
+    forwarder.submitLogEntry(5, "quux");
+
+    // When
+    forwarder.start();
+    try {
+      forwarder.awaitFlushedEntries(4);
+    } finally {
+      forwarder.stop(Duration.ofSeconds(10));
+    }
+
+    // Then
+    assertThat(forwarder.getDroppedLogEntryCount()).isEqualTo(1);
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar", "3:baz", "4:qux");
+    assertThat(spillover.replay((timestamp, contents) -> { }, 100)).isZero();
+  }
+
+  @DisplayName("Spilled entries are replayed again if their delivery fails after flushing")
+  @Test
+  void spilledEntriesAreReplayedAgainIfTheirDeliveryFailsAfterFlushing(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, 40, 40);
+    var failures = new CopyOnWriteArrayList<Exception>();
+    var forwarder = new RecordingForwarder(2, OverflowPolicy.spill(spillover)) {
+      private boolean failed;
+
+      @Override
+      protected void flush() {
+        var deliveryFails = !failed && pending.contains("3:baz");
+        super.flush();
+
+        if (deliveryFails) {
+          // Simulate the asynchronous delivery of the batch failing after the hand-off.
+          failed = true;
+          handleDeliveryFailure(new IllegalStateException("delivery failed"));
+        }
+      }
+
+      @Override
+      protected void handleForwardingFailure(Exception ex) {
+        failures.add(ex);
+      }
+    };
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+
+    // When
+    forwarder.start();
+    try {
+      forwarder.awaitFlushedEntries(4);
+    } finally {
+      forwarder.stop(Duration.ofSeconds(10));
+    }
+
+    // Then
+    assertThat(failures).hasSize(1);
+    assertThat(forwarder.flushed).containsExactly("1:foo", "2:bar", "3:baz", "3:baz");
+    assertThat(spillover.replay((timestamp, contents) -> { }, 100)).isZero();
+  }
+
+  @DisplayName("Spilled entries are replayed again if flushing a full batch fails mid-replay")
+  @Test
+  void spilledEntriesAreReplayedAgainIfFlushingFullBatchFailsMidReplay(@TempDir Path directory)
+      throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, 40, 80);
+    var policy = FlushPolicy.builder().maxPendingLogEntries(4).build();
+    var failures = new CopyOnWriteArrayList<Exception>();
+    var forwarder = new RecordingForwarder(2, policy, OverflowPolicy.spill(spillover)) {
+      private boolean failed;
+
+      @Override
+      protected void flush() {
+        if (!failed && pending.contains("3:baz")) {
+          // Lose the whole batch, including entries that were already read from the spillover.
+          failed = true;
+          pending.clear();
+          pendingBytes = 0;
+          throw new IllegalStateException("flush failed");
+        }
+        super.flush();
+      }
+
+      @Override
+      protected void handleForwardingFailure(Exception ex) {
+        failures.add(ex);
+      }
+    };
+    forwarder.submitLogEntry(1, "foo");
+    forwarder.submitLogEntry(2, "bar");
+    forwarder.submitLogEntry(3, "baz");
+    forwarder.submitLogEntry(4, "qux");
+
+    // When
+    forwarder.start();
+    try {
+      forwarder.awaitFlushedEntries(3);
+    } finally {
+      forwarder.stop(Duration.ofSeconds(10));
+    }
+
+    // Then
+    assertThat(failures).hasSize(1);
+    assertThat(forwarder.flushed).containsExactly("4:qux", "3:baz", "4:qux");
+    assertThat(spillover.replay((timestamp, contents) -> { }, 100)).isZero();
+  }
+
+  @DisplayName("Stopping raises an exception if the timeout elapses")
+  @Test
+  void stoppingRaisesExceptionIfTimeoutElapses() throws Exception {
+    // Given
+    var release = new CountDownLatch(1);
+    var forwarder = new RecordingForwarder(16) {
+      @Override
+      protected void flush() {
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    forwarder.start();
+
+    // Then
+    try {
+      assertThatThrownBy(() -> forwarder.stop(Duration.ofMillis(50)))
+          .isInstanceOf(ForwarderTimeoutException.class);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @DisplayName("Pending entries are held until the linger elapses")
+  @Test
+  void pendingEntriesAreHeldUntilTheLingerElapses() throws Exception {
+    // Given
+    var linger = Duration.ofMillis(300);
+    var forwarder = new RecordingForwarder(16, FlushPolicy.builder().linger(linger).build());
+    forwarder.start();
+
+    try {
+      // When
+      var submittedAt = System.nanoTime();
+      forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+      var flushedAt = forwarder.awaitFlushes(1);
+
+      // Then
+      assertThat(Duration.ofNanos(flushedAt - submittedAt)).isGreaterThanOrEqualTo(linger);
+      assertThat(forwarder.batches).containsExactly(List.of("1:foo"));
+    } finally {
+      forwarder.stop(null);
+    }
+  }
+
+  @DisplayName("Pending entries are flushed immediately when the count threshold is reached")
+  @Test
+  void pendingEntriesAreFlushedWhenCountThresholdIsReached() throws Exception {
+    // Given
+    var policy = FlushPolicy.builder()
+        .linger(Duration.ofHours(1))
+        .maxPendingLogEntries(2)
+        .build();
+    var forwarder = new RecordingForwarder(16, policy);
+    forwarder.start();
+
+    try {
+      // When
+      forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+      forwarder.submitLogEntry(2, "bar".getBytes(UTF_8));
+      forwarder.submitLogEntry(3, "baz".getBytes(UTF_8));
+      forwarder.awaitFlushes(1);
+
+      // Then
+      assertThat(forwarder.batches).containsExactly(List.of("1:foo", "2:bar"));
+    } finally {
+      forwarder.stop(null);
+    }
+  }
+
+  @DisplayName("Pending entries are flushed immediately when the byte threshold is reached")
+  @Test
+  void pendingEntriesAreFlushedWhenByteThresholdIsReached() throws Exception {
+    // Given
+    var policy = FlushPolicy.builder()
+        .linger(Duration.ofHours(1))
+        .maxPendingBytes(5)
+        .build();
+    var forwarder = new RecordingForwarder(16, policy);
+    forwarder.start();
+
+    try {
+      // When
+      forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+      forwarder.submitLogEntry(2, "bar".getBytes(UTF_8));
+      forwarder.awaitFlushes(1);
+
+      // Then
+      assertThat(forwarder.batches).containsExactly(List.of("1:foo", "2:bar"));
+    } finally {
+      forwarder.stop(null);
+    }
+  }
+
+  @DisplayName("Stopping flushes entries that are still lingering")
+  @Test
+  void stoppingFlushesEntriesThatAreStillLingering() throws Exception {
+    // Given
+    var policy = FlushPolicy.builder().linger(Duration.ofHours(1)).build();
+    var forwarder = new RecordingForwarder(16, policy);
+    forwarder.start();
+    forwarder.submitLogEntry(1, "foo".getBytes(UTF_8));
+
+    // When
+    forwarder.stop(Duration.ofSeconds(10));
+
+    // Then
+    assertThat(forwarder.flushed).containsExactly("1:foo");
+  }
+
+  static class RecordingForwarder extends AbstractLogForwarder {
+    final List<String> pending = new ArrayList<>();
+    final List<String> flushed = new CopyOnWriteArrayList<>();
+    final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    final List<Long> flushTimes = new CopyOnWriteArrayList<>();
+    long pendingBytes;
+
+    RecordingForwarder(int queueCapacity) {
+      super(queueCapacity);
+    }
+
+    RecordingForwarder(int queueCapacity, FlushPolicy flushPolicy) {
+      super(queueCapacity, flushPolicy);
+    }
+
+    RecordingForwarder(int queueCapacity, PayloadStorage payloadStorage) {
+      super(queueCapacity, FlushPolicy.defaults(), payloadStorage);
+    }
+
+    RecordingForwarder(int queueCapacity, OverflowPolicy overflowPolicy) {
+      this(queueCapacity, FlushPolicy.defaults(), overflowPolicy);
+    }
+
+    RecordingForwarder(
+        int queueCapacity,
+        FlushPolicy flushPolicy,
+        OverflowPolicy overflowPolicy
+    ) {
+      super(queueCapacity, flushPolicy, PayloadStorage.heap(), overflowPolicy);
+    }
+
+    void awaitFlushedEntries(int count) throws InterruptedException {
+      var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+      while (flushed.size() < count) {
+        if (System.nanoTime() > deadline) {
+          throw new AssertionError("Timed out waiting for " + count + " flushed entries");
+        }
+        Thread.sleep(5);
+      }
+    }
+
+    long awaitFlushes(int count) throws InterruptedException {
+      var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+      while (flushTimes.size() < count) {
+        if (System.nanoTime() > deadline) {
+          throw new AssertionError("Timed out waiting for " + count + " flushes");
+        }
+        Thread.sleep(5);
+      }
+      return flushTimes.get(count - 1);
+    }
+
+    @Override
+    protected void appendLogEntry(long timestamp, ByteBuffer contents) {
+      pendingBytes += contents.remaining();
+      pending.add(timestamp + ":" + UTF_8.decode(contents));
+    }
+
+    @Override
+    protected int getPendingLogEntryCount() {
+      return pending.size();
+    }
+
+    @Override
+    protected long getPendingLogEntryBytes() {
+      return pendingBytes;
+    }
+
+    @Override
+    protected void flush() {
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      flushTimes.add(System.nanoTime());
+      batches.add(List.copyOf(pending));
+      flushed.addAll(pending);
+      pending.clear();
+      pendingBytes = 0;
+    }
+  }
+
+  static class InMemorySpillover implements LogEntrySpillover {
+    final Queue<Map.Entry<Long, ByteBuffer>> entries = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public boolean spill(long timestamp, ByteBuffer contents) {
+      var copy = ByteBuffer.allocate(contents.remaining()).put(contents).flip();
+      return entries.add(Map.entry(timestamp, copy));
+    }
+
+    @Override
+    public int replay(LogEntryConsumer consumer, int maxEntries) throws CloudLogs4jException {
+      var count = 0;
+      Map.Entry<Long, ByteBuffer> entry;
+      while (count < maxEntries && (entry = entries.poll()) != null) {
+        consumer.accept(entry.getKey(), entry.getValue());
+        ++count;
+      }
+      return count;
+    }
+  }
+}
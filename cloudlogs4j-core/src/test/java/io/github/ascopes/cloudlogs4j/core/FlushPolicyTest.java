@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * {@link FlushPolicy} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("FlushPolicy tests")
+class FlushPolicyTest {
+
+  @DisplayName("The default policy flushes as soon as the queue runs dry")
+  @Test
+  void defaultPolicyFlushesAsSoonAsTheQueueRunsDry() {
+    // Given
+    var policy = FlushPolicy.defaults();
+
+    // Then
+    assertThat(policy.getLinger()).isZero();
+    assertThat(policy.remainingLingerNanos(0, true)).isLessThanOrEqualTo(0);
+    assertThat(policy.remainingLingerNanos(1_000_000_000L, false)).isPositive();
+  }
+
+  @DisplayName("A non-zero linger is honoured while entries are still arriving")
+  @Test
+  void nonZeroLingerIsHonouredWhileEntriesAreStillArriving() {
+    // Given
+    var policy = FlushPolicy.builder().linger(Duration.ofMillis(10)).build();
+
+    // Then
+    assertThat(policy.remainingLingerNanos(4_000_000L, false)).isEqualTo(6_000_000L);
+    assertThat(policy.remainingLingerNanos(4_000_000L, true)).isEqualTo(6_000_000L);
+    assertThat(policy.remainingLingerNanos(10_000_000L, false)).isZero();
+  }
+
+  @DisplayName("The batch is full once either threshold is reached")
+  @Test
+  void batchIsFullOnceEitherThresholdIsReached() {
+    // Given
+    var policy = FlushPolicy.builder().maxPendingLogEntries(10).maxPendingBytes(100).build();
+
+    // Then
+    assertThat(policy.isBatchFull(9, 99)).isFalse();
+    assertThat(policy.isBatchFull(10, 0)).isTrue();
+    assertThat(policy.isBatchFull(1, 100)).isTrue();
+  }
+
+  @DisplayName("The queue is under pressure once the threshold fraction is in use")
+  @Test
+  void queueIsUnderPressureOnceThresholdFractionIsInUse() {
+    // Given
+    var policy = FlushPolicy.builder().queuePressureThreshold(0.75).build();
+
+    // Then
+    assertThat(policy.isQueueUnderPressure(767, 1024)).isFalse();
+    assertThat(policy.isQueueUnderPressure(768, 1024)).isTrue();
+  }
+
+  @DisplayName("Negative linger durations are rejected")
+  @Test
+  void negativeLingerDurationsAreRejected() {
+    // Then
+    assertThatThrownBy(() -> FlushPolicy.builder().linger(Duration.ofMillis(-1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("Out of range queue pressure thresholds are rejected")
+  @ParameterizedTest(name = "for threshold {0}")
+  @ValueSource(doubles = {0, -0.5, 1.01, Double.NaN})
+  void outOfRangeQueuePressureThresholdsAreRejected(double threshold) {
+    // Then
+    assertThatThrownBy(() -> FlushPolicy.builder().queuePressureThreshold(threshold))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
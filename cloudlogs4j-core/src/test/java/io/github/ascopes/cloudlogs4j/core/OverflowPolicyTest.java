@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * {@link OverflowPolicy} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("OverflowPolicy tests")
+class OverflowPolicyTest {
+
+  @DisplayName("The blocking policy keeps its timeout")
+  @Test
+  void blockingPolicyKeepsItsTimeout() {
+    // Given
+    var policy = OverflowPolicy.block(Duration.ofMillis(250));
+
+    // Then
+    assertThat(policy.getKind()).isEqualTo(OverflowPolicy.Kind.BLOCK);
+    assertThat(policy.getBlockTimeout()).isEqualTo(Duration.ofMillis(250));
+  }
+
+  @DisplayName("Blocking timeouts that are not positive are rejected")
+  @ParameterizedTest(name = "for {0}ms")
+  @ValueSource(longs = {-1, 0})
+  void blockingTimeoutsThatAreNotPositiveAreRejected(long millis) {
+    // Then
+    assertThatThrownBy(() -> OverflowPolicy.block(Duration.ofMillis(millis)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Timeout must be positive");
+  }
+
+  @DisplayName("The sampling policy keeps its severity and interval")
+  @Test
+  void samplingPolicyKeepsItsSeverityAndInterval() {
+    // Given
+    var policy = OverflowPolicy.sampleBySeverity(LogSeverity.WARN, 10);
+
+    // Then
+    assertThat(policy.getKind()).isEqualTo(OverflowPolicy.Kind.SAMPLE_BY_SEVERITY);
+    assertThat(policy.getMinimumRetainedSeverity()).isEqualTo(LogSeverity.WARN);
+    assertThat(policy.getSampleInterval()).isEqualTo(10);
+  }
+
+  @DisplayName("Sample intervals that are not positive are rejected")
+  @ParameterizedTest(name = "for {0}")
+  @ValueSource(ints = {-1, 0})
+  void sampleIntervalsThatAreNotPositiveAreRejected(int sampleInterval) {
+    // Then
+    assertThatThrownBy(() -> OverflowPolicy.sampleBySeverity(LogSeverity.WARN, sampleInterval))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Sample interval must be positive");
+  }
+
+  @DisplayName("Severities are ordered from least to most severe")
+  @Test
+  void severitiesAreOrderedFromLeastToMostSevere() {
+    // Then
+    assertThat(LogSeverity.ERROR.isAtLeast(LogSeverity.WARN)).isTrue();
+    assertThat(LogSeverity.WARN.isAtLeast(LogSeverity.WARN)).isTrue();
+    assertThat(LogSeverity.INFO.isAtLeast(LogSeverity.WARN)).isFalse();
+  }
+}
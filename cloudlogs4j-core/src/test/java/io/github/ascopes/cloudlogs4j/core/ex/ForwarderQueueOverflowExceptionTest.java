@@ -62,4 +62,26 @@ class ForwarderQueueOverflowExceptionTest {
             queueCapacity
         );
   }
+
+  @DisplayName("Initialising with a memory limit sets the memory limit and exception message")
+  @Test
+  void initialisingWithMemoryLimitSetsMemoryLimitAndExceptionMessage() {
+    // Given
+    var queueCapacity = RANDOM.nextInt(1, 1_000);
+    var memoryLimit = RANDOM.nextLong(1, 1_000_000);
+
+    // When
+    var ex = new ForwarderQueueOverflowException(queueCapacity, memoryLimit);
+
+    // Then
+    assertThat(ex.getQueueCapacity()).isEqualTo(queueCapacity);
+    assertThat(ex.getMemoryLimit()).isEqualTo(memoryLimit);
+    assertThat(ex)
+        .hasNoCause()
+        .hasMessage(
+            "Internal log storage memory limit has been reached; log events may "
+                + "be dropped (limit is %d bytes)",
+            memoryLimit
+        );
+  }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link TaskExecutors} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("TaskExecutors tests")
+class TaskExecutorsTest {
+
+  @DisplayName("Tasks run on daemon or virtual threads")
+  @Test
+  void tasksRunOnDaemonOrVirtualThreads() throws Exception {
+    // Given
+    var executor = TaskExecutors.getExecutor();
+
+    // When
+    var thread = CompletableFuture.supplyAsync(Thread::currentThread, executor)
+        .get(10, TimeUnit.SECONDS);
+
+    // Then
+    assertThat(thread.getName()).startsWith("cloudlogs4j-task-");
+    assertThat(thread.isDaemon()).isTrue();
+  }
+
+  @DisplayName("Virtual threads are used exactly when the running JVM supports them")
+  @Test
+  void virtualThreadsAreUsedExactlyWhenTheRunningJvmSupportsThem() throws Exception {
+    // Given
+    var executor = TaskExecutors.getExecutor();
+
+    // When
+    var thread = CompletableFuture.supplyAsync(Thread::currentThread, executor)
+        .get(10, TimeUnit.SECONDS);
+
+    // Then
+    var supported = Runtime.version().feature() >= 21;
+    assertThat(TaskExecutors.isUsingVirtualThreads()).isEqualTo(supported);
+    assertThat(thread.getClass().getName().equals("java.lang.VirtualThread")).isEqualTo(supported);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * {@link Utf8} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("Utf8 tests")
+class Utf8Test {
+
+  @DisplayName("Encoding matches String#getBytes")
+  @ValueSource(strings = {
+      "",
+      "hello, world",
+      "héllo wörld",
+      "€100",
+      "😀 grinning",
+      "lone high \uD83D surrogate",
+      "lone low \uDE00 surrogate",
+      "trailing high surrogate \uD83D",
+  })
+  @ParameterizedTest(name = "for \"{0}\"")
+  void encodingMatchesStringGetBytes(String value) {
+    // Given
+    var expected = value.getBytes(UTF_8);
+    var dest = new byte[expected.length + 4];
+
+    // When
+    var length = Utf8.encodedLength(value);
+    var end = Utf8.encode(new StringBuilder(value), dest, 2);
+
+    // Then
+    assertThat(length).isEqualTo(expected.length);
+    assertThat(end).isEqualTo(2 + expected.length);
+    assertThat(Arrays.copyOfRange(dest, 2, end)).isEqualTo(expected);
+  }
+
+  @DisplayName("Encoding into a buffer matches String#getBytes")
+  @ValueSource(strings = {
+      "",
+      "hello, world",
+      "héllo wörld",
+      "日本語",
+      "😀 grinning",
+      "lone high \uD83D surrogate",
+      "trailing high surrogate \uD83D",
+  })
+  @ParameterizedTest(name = "for \"{0}\"")
+  void encodingIntoBufferMatchesStringGetBytes(String value) {
+    // Given
+    var expected = value.getBytes(UTF_8);
+    var dest = ByteBuffer.allocate(expected.length + 4);
+
+    // When
+    var end = Utf8.encode(value, dest, 2, 2 + expected.length);
+
+    // Then
+    assertThat(end).isEqualTo(2 + expected.length);
+    assertThat(Arrays.copyOfRange(dest.array(), 2, end)).isEqualTo(expected);
+  }
+
+  @DisplayName("Encoding into a buffer never writes beyond the end index")
+  @ValueSource(strings = {"abcd", "aé", "a日", "a😀"})
+  @ParameterizedTest(name = "for \"{0}\"")
+  void encodingIntoBufferNeverWritesBeyondTheEndIndex(String value) {
+    // Given
+    var dest = ByteBuffer.allocate(16);
+    var end = value.getBytes(UTF_8).length - 1;
+
+    // Then
+    assertThatThrownBy(() -> Utf8.encode(value, dest, 0, end))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+    for (var i = end; i < dest.capacity(); ++i) {
+      assertThat(dest.get(i)).isZero();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.intern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.ascopes.cloudlogs4j.core.intern.VirtualThreads.Handles;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link VirtualThreads} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("VirtualThreads tests")
+class VirtualThreadsTest {
+
+  @DisplayName("No executor is created if the JVM refuses to create virtual threads")
+  @Test
+  void noExecutorIsCreatedIfTheJvmRefusesToCreateVirtualThreads() throws Exception {
+    // Given
+    var refuse = MethodHandles.lookup().findStatic(
+        VirtualThreadsTest.class,
+        "refuseVirtualThreads",
+        MethodType.methodType(Object.class)
+    );
+    // Only the first handle is reached, as Java 19 and 20 fail in Thread.ofVirtual().
+    var handles = new Handles(refuse, refuse, refuse, refuse);
+
+    // When
+    var executor = VirtualThreads.newExecutor(handles, "test-");
+
+    // Then
+    assertThat(executor).isNull();
+  }
+
+  @DisplayName("No executor is created if the virtual thread APIs are missing")
+  @Test
+  void noExecutorIsCreatedIfTheVirtualThreadApisAreMissing() {
+    // When
+    var executor = VirtualThreads.newExecutor(null, "test-");
+
+    // Then
+    assertThat(executor).isNull();
+  }
+
+  private static Object refuseVirtualThreads() {
+    throw new UnsupportedOperationException("Preview features are not enabled");
+  }
+}
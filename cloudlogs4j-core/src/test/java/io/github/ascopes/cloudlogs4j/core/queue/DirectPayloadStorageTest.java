@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link DirectPayloadStorage} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("DirectPayloadStorage tests")
+class DirectPayloadStorageTest {
+
+  @DisplayName("Invalid slab sizes and memory limits are rejected")
+  @Test
+  void invalidSlabSizesAndMemoryLimitsAreRejected() {
+    // Then
+    assertThatThrownBy(() -> PayloadStorage.direct(0, 1_024))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> PayloadStorage.direct(1_024, 1_023))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("Storage cannot be shared between queues")
+  @Test
+  void storageCannotBeSharedBetweenQueues() {
+    // Given
+    var storage = PayloadStorage.direct(1_024, 4_096);
+    new LogEntryQueue(4, storage);
+
+    // Then
+    assertThatThrownBy(() -> new LogEntryQueue(4, storage))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @DisplayName("Payloads of every kind are copied off-heap and read back")
+  @Test
+  void payloadsOfEveryKindAreCopiedAndReadBack() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(8, PayloadStorage.direct(1_024, 4_096));
+    var array = "foo".getBytes(UTF_8);
+    var drained = new ArrayList<String>();
+
+    // When
+    queue.offer(1, array);
+    queue.offer(2, ByteBuffer.wrap("xbarx".getBytes(UTF_8), 1, 3));
+    queue.offer(3, new StringBuilder("bäz"));
+    array[0] = 'g';
+    queue.drain((timestamp, contents) -> drained.add(UTF_8.decode(contents).toString()), 8);
+
+    // Then
+    assertThat(drained).containsExactly("foo", "bar", "bäz");
+  }
+
+  @DisplayName("Offers fail once the memory limit is reached, until slabs are reclaimed")
+  @Test
+  void offersFailOnceMemoryLimitIsReachedUntilSlabsAreReclaimed() throws Exception {
+    // Given
+    var storage = (DirectPayloadStorage) PayloadStorage.direct(100, 200);
+    var queue = new LogEntryQueue(16, storage);
+    var payload = new byte[40];
+
+    // When
+    for (var i = 0; i < 4; ++i) {
+      assertThat(queue.offer(i, payload)).isEqualTo(OfferResult.ACCEPTED);
+    }
+    var rejected = queue.offer(4, payload);
+    queue.drain((timestamp, contents) -> { }, 16);
+
+    // Then
+    assertThat(rejected).isEqualTo(OfferResult.STORAGE_FULL);
+    for (var i = 0; i < 4; ++i) {
+      assertThat(queue.offer(i, payload)).isEqualTo(OfferResult.ACCEPTED);
+    }
+    assertThat(storage.getAllocatedBytes()).isEqualTo(200);
+  }
+
+  @DisplayName("Entries rejected for lack of storage are skipped when draining")
+  @Test
+  void entriesRejectedForLackOfStorageAreSkipped() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(8, PayloadStorage.direct(10, 10));
+    var drained = new ArrayList<Long>();
+
+    // When
+    queue.offer(1, new byte[8]);
+    queue.offer(2, new byte[8]);
+    queue.offer(3, new byte[2]);
+    queue.drain((timestamp, contents) -> drained.add(timestamp), 8);
+
+    // Then
+    assertThat(drained).containsExactly(1L, 3L);
+  }
+
+  @DisplayName("Payloads larger than a slab are stored on the heap")
+  @Test
+  void payloadsLargerThanSlabAreStoredOnTheHeap() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4, PayloadStorage.direct(16, 128));
+    var large = "x".repeat(100);
+    var drained = new ArrayList<String>();
+
+    // When
+    var result = queue.offer(1, large);
+    queue.drain((timestamp, contents) -> drained.add(UTF_8.decode(contents).toString()), 4);
+
+    // Then
+    assertThat(result).isEqualTo(OfferResult.ACCEPTED);
+    assertThat(drained).containsExactly(large);
+  }
+
+  @DisplayName("Payloads larger than a slab count towards the memory limit until drained")
+  @Test
+  void payloadsLargerThanSlabCountTowardsTheMemoryLimitUntilDrained() throws Exception {
+    // Given
+    var storage = (DirectPayloadStorage) PayloadStorage.direct(16, 128);
+    var queue = new LogEntryQueue(4, storage);
+    var large = new byte[100];
+
+    // When
+    var first = queue.offer(1, large);
+    var second = queue.offer(2, large);
+    var allocatedBeforeDrain = storage.getAllocatedBytes();
+    queue.drain((timestamp, contents) -> { }, 4);
+    var third = queue.offer(3, large);
+
+    // Then
+    assertThat(first).isEqualTo(OfferResult.ACCEPTED);
+    assertThat(second).isEqualTo(OfferResult.STORAGE_FULL);
+    assertThat(allocatedBeforeDrain).isEqualTo(100);
+    assertThat(third).isEqualTo(OfferResult.ACCEPTED);
+  }
+
+  @DisplayName("Character sequences that grow while being encoded never overrun their space")
+  @Test
+  void characterSequencesThatGrowWhileBeingEncodedNeverOverrunTheirSpace() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4, PayloadStorage.direct(32, 32));
+    var lengthChecks = new AtomicInteger();
+    var growing = new CharSequence() {
+      @Override
+      public int length() {
+        // Simulate another thread appending after the length was measured.
+        return lengthChecks.getAndIncrement() == 0 ? 3 : 10;
+      }
+
+      @Override
+      public char charAt(int index) {
+        return 'a';
+      }
+
+      @Override
+      public CharSequence subSequence(int start, int end) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    var drained = new ArrayList<String>();
+
+    // When
+    var result = catchThrowable(() -> queue.offer(1, growing));
+    queue.offer(2, "xyz");
+    queue.drain((timestamp, contents) -> drained.add(UTF_8.decode(contents).toString()), 4);
+
+    // Then
+    assertThat(result).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThat(drained).containsExactly("xyz");
+  }
+
+  @DisplayName("Payloads from concurrent producers are not corrupted")
+  @Test
+  void payloadsFromConcurrentProducersAreNotCorrupted() throws Exception {
+    // Given
+    var producerCount = 4;
+    var entriesPerProducer = 20_000;
+    var storage = (DirectPayloadStorage) PayloadStorage.direct(4_096, 64 * 4_096);
+    var queue = new LogEntryQueue(1_024, storage);
+    var startLatch = new CountDownLatch(1);
+    var producers = new ArrayList<Thread>();
+
+    for (var p = 0; p < producerCount; ++p) {
+      var producerId = p;
+      var producer = new Thread(() -> {
+        try {
+          startLatch.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        for (var i = 0; i < entriesPerProducer; ++i) {
+          var timestamp = (long) producerId * entriesPerProducer + i;
+          var contents = "entry-" + timestamp;
+          while (queue.offer(timestamp, contents) != OfferResult.ACCEPTED) {
+            Thread.onSpinWait();
+          }
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+
+    // When
+    var seen = new HashMap<Long, String>();
+    startLatch.countDown();
+
+    while (seen.size() < producerCount * entriesPerProducer) {
+      queue.drain(
+          (timestamp, contents) -> seen.put(timestamp, UTF_8.decode(contents).toString()),
+          512
+      );
+    }
+
+    for (var producer : producers) {
+      producer.join();
+    }
+
+    // Then
+    assertThat(seen).allSatisfy((timestamp, contents) ->
+        assertThat(contents).isEqualTo("entry-" + timestamp));
+    assertThat(storage.getAllocatedBytes()).isLessThanOrEqualTo(storage.getMemoryLimit());
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * {@link LogEntryQueue} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("LogEntryQueue tests")
+class LogEntryQueueTest {
+
+  @DisplayName("The capacity is rounded up to the next power of two")
+  @CsvSource({"1, 1", "2, 2", "3, 4", "1000, 1024", "1024, 1024"})
+  @ParameterizedTest(name = "a requested capacity of {0} results in {1}")
+  void capacityIsRoundedUpToNextPowerOfTwo(int requested, int expected) {
+    // When
+    var queue = new LogEntryQueue(requested);
+
+    // Then
+    assertThat(queue.capacity()).isEqualTo(expected);
+  }
+
+  @DisplayName("Invalid capacities are rejected")
+  @Test
+  void invalidCapacitiesAreRejected() {
+    // Then
+    assertThatThrownBy(() -> new LogEntryQueue(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @DisplayName("Entries are drained in the order they were offered")
+  @Test
+  void entriesAreDrainedInOrder() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(8);
+    queue.offer(1, "foo".getBytes(UTF_8));
+    queue.offer(2, "bar".getBytes(UTF_8));
+    queue.offer(3, "baz".getBytes(UTF_8));
+    var drained = new ArrayList<String>();
+
+    // When
+    var count = queue.drain((timestamp, contents) -> drained.add(timestamp + ":" + decode(contents)),
+        Integer.MAX_VALUE);
+
+    // Then
+    assertThat(count).isEqualTo(3);
+    assertThat(drained).containsExactly("1:foo", "2:bar", "3:baz");
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.size()).isZero();
+  }
+
+  @DisplayName("Draining respects the maximum number of entries")
+  @Test
+  void drainingRespectsTheMaximumNumberOfEntries() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(8);
+    for (var i = 0; i < 5; ++i) {
+      queue.offer(i, new byte[0]);
+    }
+
+    // When
+    var count = queue.drain((timestamp, contents) -> { }, 2);
+
+    // Then
+    assertThat(count).isEqualTo(2);
+    assertThat(queue.size()).isEqualTo(3);
+  }
+
+  @DisplayName("Offering to a full queue fails until entries are drained")
+  @Test
+  void offeringToFullQueueFailsUntilEntriesAreDrained() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4);
+    for (var i = 0; i < 4; ++i) {
+      assertThat(queue.offer(i, new byte[0])).isEqualTo(OfferResult.ACCEPTED);
+    }
+
+    // Then
+    assertThat(queue.offer(4, new byte[0])).isEqualTo(OfferResult.QUEUE_FULL);
+    queue.drain((timestamp, contents) -> { }, 1);
+    assertThat(queue.offer(4, new byte[0])).isEqualTo(OfferResult.ACCEPTED);
+    assertThat(queue.offer(5, new byte[0])).isEqualTo(OfferResult.QUEUE_FULL);
+  }
+
+  @DisplayName("Evicting the oldest entry makes room for a newer one")
+  @Test
+  void evictingTheOldestEntryMakesRoomForNewerOne() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(2);
+    queue.offer(1, "foo");
+    queue.offer(2, "bar");
+    var drained = new ArrayList<String>();
+
+    // When
+    var evicted = queue.evictOldest();
+    var result = queue.offer(3, "baz");
+    queue.drain((timestamp, contents) -> drained.add(timestamp + ":" + UTF_8.decode(contents)), 8);
+
+    // Then
+    assertThat(evicted).isTrue();
+    assertThat(result).isEqualTo(OfferResult.ACCEPTED);
+    assertThat(drained).containsExactly("2:bar", "3:baz");
+    assertThat(queue.evictOldest()).isFalse();
+  }
+
+  @DisplayName("Every entry from concurrent producers is drained exactly once")
+  @Test
+  void everyEntryFromConcurrentProducersIsDrainedExactlyOnce() throws Exception {
+    // Given
+    var producerCount = 4;
+    var entriesPerProducer = 50_000;
+    var queue = new LogEntryQueue(1_024);
+    var startLatch = new CountDownLatch(1);
+    var producers = new ArrayList<Thread>();
+
+    for (var p = 0; p < producerCount; ++p) {
+      var producerId = p;
+      var producer = new Thread(() -> {
+        try {
+          startLatch.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        for (var i = 0; i < entriesPerProducer; ++i) {
+          var timestamp = (long) producerId * entriesPerProducer + i;
+          while (queue.offer(timestamp, new byte[0]) != OfferResult.ACCEPTED) {
+            Thread.onSpinWait();
+          }
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+
+    // When
+    var seen = new HashSet<Long>();
+    var lastSeenPerProducer = new long[producerCount];
+    var outOfOrder = new ArrayList<Long>();
+    startLatch.countDown();
+
+    while (seen.size() < producerCount * entriesPerProducer) {
+      queue.drain((timestamp, contents) -> {
+        var producerId = (int) (timestamp / entriesPerProducer);
+        if (timestamp < lastSeenPerProducer[producerId]) {
+          outOfOrder.add(timestamp);
+        }
+        lastSeenPerProducer[producerId] = timestamp;
+        seen.add(timestamp);
+      }, 512);
+    }
+
+    for (var producer : producers) {
+      producer.join();
+    }
+
+    // Then
+    assertThat(seen).hasSize(producerCount * entriesPerProducer);
+    assertThat(outOfOrder).isEmpty();
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @DisplayName("An entry is still consumed if the consumer throws an exception")
+  @Test
+  void entryIsStillConsumedIfConsumerThrows() {
+    // Given
+    var queue = new LogEntryQueue(4);
+    queue.offer(1, new byte[0]);
+    queue.offer(2, new byte[0]);
+    var drained = new ArrayList<Long>();
+
+    // Then
+    assertThatThrownBy(() -> queue.drain((timestamp, contents) -> {
+      throw new IllegalStateException("bang");
+    }, 10)).isInstanceOf(IllegalStateException.class);
+
+    assertThat(queue.size()).isEqualTo(1);
+    assertThat(drainAll(queue, drained)).containsExactly(2L);
+  }
+
+  @DisplayName("Byte buffers are copied without moving their position")
+  @Test
+  void byteBuffersAreCopiedWithoutMovingTheirPosition() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4);
+    var buffer = ByteBuffer.allocate(16);
+    buffer.put("xxfooyy".getBytes(UTF_8)).position(2).limit(5);
+    var drained = new ArrayList<String>();
+
+    // When
+    queue.offer(1, buffer);
+    buffer.clear().put("barbarbar".getBytes(UTF_8));
+    queue.drain((timestamp, contents) -> drained.add(decode(contents)), Integer.MAX_VALUE);
+
+    // Then
+    assertThat(drained).containsExactly("foo");
+  }
+
+  @DisplayName("Character sequences are encoded as UTF-8")
+  @Test
+  void characterSequencesAreEncodedAsUtf8() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4);
+    var builder = new StringBuilder("héllo wörld \uD83D\uDE00");
+    var drained = new ArrayList<String>();
+
+    // When
+    queue.offer(1, builder);
+    builder.setLength(0);
+    queue.drain((timestamp, contents) -> drained.add(decode(contents)), Integer.MAX_VALUE);
+
+    // Then
+    assertThat(drained).containsExactly("héllo wörld \uD83D\uDE00");
+  }
+
+  @DisplayName("Slot storage is reused and resized across laps of the ring")
+  @Test
+  void slotStorageIsReusedAndResizedAcrossLaps() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(2);
+    var drained = new ArrayList<String>();
+    var large = "x".repeat(HeapPayloadStorage.MAX_RETAINED_PAYLOAD_BYTES + 1);
+
+    // When
+    for (var value : List.of("a", "bb".repeat(100), "c", large, "d")) {
+      queue.offer(1, value);
+      queue.drain((timestamp, contents) -> drained.add(decode(contents)), Integer.MAX_VALUE);
+    }
+
+    // Then
+    assertThat(drained).containsExactly("a", "bb".repeat(100), "c", large, "d");
+  }
+
+  @DisplayName("Entries that fail to be written are skipped")
+  @Test
+  void entriesThatFailToBeWrittenAreSkipped() throws Exception {
+    // Given
+    var queue = new LogEntryQueue(4);
+    // Fails part of the way through encoding, once the slot has been claimed.
+    var broken = new CharSequence() {
+      private int calls = 0;
+
+      @Override
+      public int length() {
+        return 3;
+      }
+
+      @Override
+      public char charAt(int index) {
+        if (++calls > length()) {
+          throw new IllegalStateException("bang");
+        }
+        return 'x';
+      }
+
+      @Override
+      public CharSequence subSequence(int start, int end) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    var drained = new ArrayList<String>();
+
+    // When
+    queue.offer(1, "before");
+    assertThatThrownBy(() -> queue.offer(2, broken)).isInstanceOf(IllegalStateException.class);
+    queue.offer(3, "after");
+    var count = queue.drain(
+        (timestamp, contents) -> drained.add(decode(contents)),
+        Integer.MAX_VALUE
+    );
+
+    // Then
+    assertThat(count).isEqualTo(3);
+    assertThat(drained).containsExactly("before", "after");
+  }
+
+  private static List<Long> drainAll(LogEntryQueue queue, List<Long> into) {
+    try {
+      queue.drain((timestamp, contents) -> into.add(timestamp), Integer.MAX_VALUE);
+    } catch (Exception ex) {
+      throw new AssertionError(ex);
+    }
+    return into;
+  }
+
+  private static String decode(ByteBuffer buffer) {
+    return UTF_8.decode(buffer).toString();
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2022 Ashley Scopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ascopes.cloudlogs4j.core.queue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link SegmentFileSpillover} tests.
+ *
+ * @author Ashley Scopes
+ */
+@DisplayName("SegmentFileSpillover tests")
+class SegmentFileSpilloverTest {
+
+  // Each record of a three byte payload takes up 19 bytes, so this fits two records.
+  private static final int SEGMENT_BYTES = 40;
+
+  @TempDir
+  Path directory;
+
+  @DisplayName("Spilled entries are replayed in order across segments")
+  @Test
+  void spilledEntriesAreReplayedInOrderAcrossSegments() throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 5; ++i) {
+      assertThat(spillover.spill(i, utf8("ab" + i))).isTrue();
+    }
+
+    // When
+    var replayed = replay(spillover, 100);
+
+    // Then
+    assertThat(replayed).containsExactly("0:ab0", "1:ab1", "2:ab2", "3:ab3", "4:ab4");
+    assertThat(segmentFiles()).hasSize(3);
+  }
+
+  @DisplayName("Replaying respects the maximum number of entries")
+  @Test
+  void replayingRespectsTheMaximumNumberOfEntries() throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 3; ++i) {
+      spillover.spill(i, utf8("ab" + i));
+    }
+
+    // Then
+    assertThat(replay(spillover, 2)).containsExactly("0:ab0", "1:ab1");
+    assertThat(replay(spillover, 2)).containsExactly("2:ab2");
+    assertThat(replay(spillover, 2)).isEmpty();
+  }
+
+  @DisplayName("Entries are rejected once the disk limit is reached")
+  @Test
+  void entriesAreRejectedOnceTheDiskLimitIsReached() throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+
+    // Then
+    for (var i = 0; i < 4; ++i) {
+      assertThat(spillover.spill(i, utf8("foo"))).isTrue();
+    }
+    assertThat(spillover.spill(4, utf8("foo"))).isFalse();
+    assertThat(spillover.spill(5, ByteBuffer.allocate(SEGMENT_BYTES))).isFalse();
+    assertThat(spillover.getDiskUsage()).isEqualTo(2 * SEGMENT_BYTES);
+  }
+
+  @DisplayName("Acknowledged segments are deleted")
+  @Test
+  void acknowledgedSegmentsAreDeleted() throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+    for (var i = 0; i < 4; ++i) {
+      spillover.spill(i, utf8("foo"));
+    }
+
+    // When
+    replay(spillover, 3);
+    spillover.acknowledge();
+
+    // Then
+    assertThat(segmentFiles()).hasSize(1);
+    assertThat(spillover.getDiskUsage()).isEqualTo(SEGMENT_BYTES);
+    assertThat(spillover.spill(4, utf8("bar"))).isTrue();
+    assertThat(replay(spillover, 100)).containsExactly("3:foo", "4:bar");
+  }
+
+  @DisplayName("Rewinding replays unacknowledged entries again")
+  @Test
+  void rewindingReplaysUnacknowledgedEntriesAgain() throws Exception {
+    // Given
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 4; ++i) {
+      spillover.spill(i, utf8("ab" + i));
+    }
+    replay(spillover, 1);
+    spillover.acknowledge();
+    replay(spillover, 2);
+
+    // When
+    spillover.rewind();
+
+    // Then
+    assertThat(replay(spillover, 100)).containsExactly("1:ab1", "2:ab2", "3:ab3");
+  }
+
+  @DisplayName("Segments left over from a previous run are recovered")
+  @Test
+  void segmentsLeftOverFromPreviousRunAreRecovered() throws Exception {
+    // Given
+    var previous = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 3; ++i) {
+      previous.spill(i, utf8("ab" + i));
+    }
+
+    // When
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    spillover.spill(3, utf8("new"));
+
+    // Then
+    assertThat(replay(spillover, 100)).containsExactly("0:ab0", "1:ab1", "2:ab2", "3:new");
+  }
+
+  @DisplayName("Acknowledged entries are not replayed again after reopening")
+  @Test
+  void acknowledgedEntriesAreNotReplayedAgainAfterReopening() throws Exception {
+    // Given
+    var previous = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 3; ++i) {
+      previous.spill(i, utf8("ab" + i));
+    }
+    replay(previous, 1);
+    previous.acknowledge();
+    replay(previous, 1);
+
+    // When
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+
+    // Then
+    assertThat(replay(spillover, 100)).containsExactly("1:ab1", "2:ab2");
+  }
+
+  @DisplayName("Corrupt records are skipped along with the rest of their segment")
+  @Test
+  void corruptRecordsAreSkippedAlongWithTheRestOfTheirSegment() throws Exception {
+    // Given
+    var previous = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+    for (var i = 0; i < 3; ++i) {
+      previous.spill(i, utf8("ab" + i));
+    }
+    var firstSegment = segmentFiles().get(0);
+    var bytes = Files.readAllBytes(firstSegment);
+    // Flip a byte in the payload of the second record.
+    bytes[19 + 12] ^= 1;
+    Files.write(firstSegment, bytes);
+
+    // When
+    var spillover = SegmentFileSpillover.open(directory, SEGMENT_BYTES, 1_000);
+
+    // Then
+    assertThat(replay(spillover, 100)).containsExactly("0:ab0", "2:ab2");
+  }
+
+  @DisplayName("Invalid sizes are rejected")
+  @Test
+  void invalidSizesAreRejected() {
+    // Then
+    assertThatThrownBy(() -> SegmentFileSpillover.open(directory, 16, 1_000))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Segment size must be greater than 16");
+    assertThatThrownBy(() -> SegmentFileSpillover.open(directory, SEGMENT_BYTES, 39))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Disk limit must be at least the segment size");
+  }
+
+  private List<Path> segmentFiles() throws Exception {
+    try (var paths = Files.list(directory)) {
+      return paths
+          .filter(path -> path.getFileName().toString().endsWith(".spill"))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static List<String> replay(SegmentFileSpillover spillover, int maxEntries)
+      throws Exception {
+    var replayed = new ArrayList<String>();
+    spillover.replay(
+        (timestamp, contents) -> replayed.add(timestamp + ":" + UTF_8.decode(contents)),
+        maxEntries
+    );
+    return replayed;
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(UTF_8));
+  }
+}